@@ -3,7 +3,6 @@ package com.labproject.keepmoneyv3.activities;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.EditText;
@@ -16,6 +15,7 @@ import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import com.labproject.keepmoneyv3.utility.User;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -69,17 +69,11 @@ public class LoginActivity extends AppCompatActivity {
         if(strUsername.equals("")||strPassword.equals("")) {
             Toast.makeText(getApplicationContext(),"Errore, uno o più campi non compilati correttamente",Toast.LENGTH_SHORT).show();
         } else {
-            Cursor cursor = dbManager.queryCheckUserLogin(strUsername, encodePassword(strPassword));
-            if(cursor != null) {
-                if(cursor.moveToNext()) {
-                    String strLoggedUser_Email = cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_EMAIL));
-                    String strLoggedUser_Name = cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_NAME));
-                    String strLoggedUser_Surname = cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_FAMILY_NAME));
-                    String strLoggedUser_Username = cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_ID));
-                    String strLoggedUser_Password = cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_PWD));
-                    float fltLoggedUser_Total = Float.parseFloat(cursor.getString(cursor.getColumnIndex(DbStrings.TableUsersField.USERS_TOT)));
+            ArrayList<User> users = dbManager.queryCheckUserLogin(strUsername, encodePassword(strPassword), CursorReader.listOf(RowMappers::user));
+            if(users != null) {
+                if(!users.isEmpty()) {
                     Bundle loginScreenMainActivityBundle = new Bundle();
-                    user = new User(strLoggedUser_Username,strLoggedUser_Password,strLoggedUser_Name,strLoggedUser_Surname,strLoggedUser_Email,fltLoggedUser_Total);
+                    user = users.get(0);
                     loginScreenMainActivityBundle.putSerializable(ApplicationTags.SerializableTags.USER_KEY,user);
                     newActivityRunning(NavigationActivity.class, loginScreenMainActivityBundle);
                 } else  {
@@ -120,28 +114,31 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     /**
-     * A method used to add the predefined categories of the app in the database
+     * A method used to add the predefined categories of the app in the database.
+     * They are counted and added on the write executor, so the login is never waiting for them.
      * */
     private void addPredefinedCategories(){
-        Cursor cursor = dbManager.countQuery(DbStrings.TableCategoriesFields.TABLE_NAME); // call to the method to get the number of rows of the table called "categories"
-        int numRows;
-        if(cursor != null) {
-            // insert the categories if the table is empty (no records)
-            while (cursor.moveToNext()) {
-                numRows = cursor.getInt(cursor.getColumnIndex("numRows")); // save the number of rows got before from the db in numRows as an integer
-                if (numRows == 0) { //if the table is empty, then add the predefined categories
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_TECH_ID, getString(R.string.tech), R.drawable.ic_baseline_computer_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FOOD_ID, getString(R.string.food), R.drawable.ic_baseline_fastfood_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FAMILY_ID, getString(R.string.family), R.drawable.ic_baseline_family_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FUN_ID, getString(R.string.fun), R.drawable.ic_baseline_emoji_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HOME_ID, getString(R.string.home), R.drawable.ic_baseline_home_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HOLIDAY_ID, getString(R.string.holiday), R.drawable.ic_baseline_beach_access_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID, getString(R.string.salary), R.drawable.ic_baseline_attach_money_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_PRESENT_ID, getString(R.string.present), R.drawable.ic_baseline_card_giftcard_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_BET_ID, getString(R.string.bet), R.drawable.ic_baseline_casino_24);
-                    dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HEALTH_ID, getString(R.string.health), R.drawable.ic_baseline_healing_24);
-                }
-            }
+        DbExecutors.writes().execute(this::insertPredefinedCategories);
+    }
+
+    /**
+     * This method adds the predefined categories if the table is empty. It runs on the write executor.
+     * */
+    private void insertPredefinedCategories(){
+        Long numRows = dbManager.countQuery(DbStrings.TableCategoriesFields.TABLE_NAME, CursorReader.firstLong("numRows")); // call to the method to get the number of rows of the table called "categories"
+
+        // insert the categories if the table is empty (no records)
+        if (numRows != null && numRows == 0) { //if the table is empty, then add the predefined categories
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_TECH_ID, getString(R.string.tech), R.drawable.ic_baseline_computer_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FOOD_ID, getString(R.string.food), R.drawable.ic_baseline_fastfood_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FAMILY_ID, getString(R.string.family), R.drawable.ic_baseline_family_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_FUN_ID, getString(R.string.fun), R.drawable.ic_baseline_emoji_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HOME_ID, getString(R.string.home), R.drawable.ic_baseline_home_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HOLIDAY_ID, getString(R.string.holiday), R.drawable.ic_baseline_beach_access_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID, getString(R.string.salary), R.drawable.ic_baseline_attach_money_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_PRESENT_ID, getString(R.string.present), R.drawable.ic_baseline_card_giftcard_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_BET_ID, getString(R.string.bet), R.drawable.ic_baseline_casino_24);
+            dbManager.insertCategories(ApplicationTags.PredefinedCategoriesId.CAT_HEALTH_ID, getString(R.string.health), R.drawable.ic_baseline_healing_24);
         }
     }
 
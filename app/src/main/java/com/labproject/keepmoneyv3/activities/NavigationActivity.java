@@ -1,14 +1,27 @@
 package com.labproject.keepmoneyv3.activities;
 
-import android.annotation.SuppressLint;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.os.SystemClock;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import com.labproject.keepmoneyv3.BuildConfig;
 import com.labproject.keepmoneyv3.R;
+import com.labproject.keepmoneyv3.database.CategoryRepository;
+import com.labproject.keepmoneyv3.database.DataSeeder;
+import com.labproject.keepmoneyv3.database.DbBackup;
+import com.labproject.keepmoneyv3.database.DbExecutors;
 import com.labproject.keepmoneyv3.database.DbManager;
+import com.labproject.keepmoneyv3.database.DbRepository;
 import com.labproject.keepmoneyv3.database.DbStrings;
 import com.labproject.keepmoneyv3.dialogs.DialogAddNameToWishList;
 import com.labproject.keepmoneyv3.dialogs.DialogAddNewType;
@@ -16,16 +29,22 @@ import com.labproject.keepmoneyv3.dialogs.DialogAddWishListItems;
 import com.labproject.keepmoneyv3.dialogs.DialogEditWishList;
 import com.labproject.keepmoneyv3.dialogs.DialogIncome;
 import com.labproject.keepmoneyv3.dialogs.DialogPurchase;
+import com.labproject.keepmoneyv3.transfer.MovementExporter;
+import com.labproject.keepmoneyv3.transfer.StatementImporter;
+import com.labproject.keepmoneyv3.transfer.StatementParser;
 import com.labproject.keepmoneyv3.ui.dashboard.DashboardFragment;
 import com.labproject.keepmoneyv3.ui.movements.MovementsFragment;
 import com.labproject.keepmoneyv3.ui.wishlist.WishListsFragment;
 import com.labproject.keepmoneyv3.utility.Category;
 import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import com.labproject.keepmoneyv3.utility.User;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.DialogFragment;
 import androidx.navigation.NavController;
@@ -34,9 +53,18 @@ import androidx.navigation.ui.NavigationUI;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 
 /**
  * This class is the "hub" of the app. It is used to navigate through the various menus tabs
@@ -56,6 +84,15 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
         MovementsFragment.MovementsFragmentListener, DialogEditWishList.DialogEditWishListListener {
 
     private User user; // the variable used to store the user passed inside the bundle by the login or the registration
+    private DataSeeder dataSeeder; // the seeding started from the debug menu, null when it is not running
+    private StatementImporter statementImporter; // the import of a bank statement, null when it is not running
+    private MovementExporter movementExporter; // the export of the movements, null when it is not running
+    private boolean backupRunning; // true while a backup or a restore is running
+
+    private static final int IMPORT_REQUEST_CODE = 1; // the choice of the statement to import
+    private static final int EXPORT_REQUEST_CODE = 2; // the choice of the file of the export
+    private static final int BACKUP_REQUEST_CODE = 3; // the choice of the file of the backup
+    private static final int RESTORE_REQUEST_CODE = 4; // the choice of the backup to restore
 
 
     /**
@@ -78,6 +115,528 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
         Bundle bundle = getIntent().getExtras();
         user = (User) bundle.getSerializable(ApplicationTags.SerializableTags.USER_KEY);
 
+        // the total passed to the fragments and to the dialogs follows the changes of the database,
+        // this is the only place where it's set, so a write is never applied twice to it
+        DbRepository repository = new DbRepository(getApplicationContext());
+        DbRepository.observe(() -> repository.getUserTotal(user.getUsername()), DbStrings.TableUsersField.TABLE_NAME)
+                .observe(this, total -> {
+                    if (total != null) {
+                        user.setTotal(total);
+                    }
+                });
+
+        // the dialogs of the movements show the categories without waiting for the database
+        CategoryRepository.preload(this);
+    }
+
+    /**
+     * This method stops the seeding of the debug menu, the import and the export, if they are running:
+     * their listeners would update an activity that no longer exists.
+     * */
+    @Override
+    protected void onDestroy() {
+        if (dataSeeder != null) {
+            dataSeeder.cancel();
+        }
+        if (statementImporter != null) {
+            statementImporter.cancel();
+        }
+        if (movementExporter != null) {
+            movementExporter.cancel();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * This method shows the menu of the activity, with the debug tools in the debug builds.
+     * */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.navigation_menu, menu);
+        if (BuildConfig.DEBUG) {
+            getMenuInflater().inflate(R.menu.debug_menu, menu);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.import_statement) {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("*/*"); // the statements don't have a common MIME type
+            startActivityForResult(intent, IMPORT_REQUEST_CODE);
+            return true;
+        } else if (item.getItemId() == R.id.export_movements) {
+            showExportFormatDialog();
+            return true;
+        } else if (item.getItemId() == R.id.archive_movements) {
+            showArchiveDialog();
+            return true;
+        } else if (item.getItemId() == R.id.create_backup) {
+            String date = new SimpleDateFormat("yyyy-MM-dd", Locale.ITALIAN).format(new Date());
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("application/x-sqlite3");
+            intent.putExtra(Intent.EXTRA_TITLE, "keepmoney_" + date + ".db");
+            startActivityForResult(intent, BACKUP_REQUEST_CODE);
+            return true;
+        } else if (item.getItemId() == R.id.restore_backup) {
+            new AlertDialog.Builder(this)
+                    .setTitle(R.string.restore_backup)
+                    .setMessage("Tutti i dati salvati verranno sostituiti da quelli del backup. Continuare?")
+                    .setPositiveButton("Ripristina", (dialog, which) -> {
+                        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                        intent.addCategory(Intent.CATEGORY_OPENABLE);
+                        intent.setType("*/*"); // the providers don't agree on the MIME type of the databases
+                        startActivityForResult(intent, RESTORE_REQUEST_CODE);
+                    })
+                    .setNegativeButton("Annulla", null)
+                    .show();
+            return true;
+        } else if (BuildConfig.DEBUG && item.getItemId() == R.id.debug_seed_data) {
+            showSeedDataDialog();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == IMPORT_REQUEST_CODE && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            importStatement(data.getData());
+        } else if (requestCode == EXPORT_REQUEST_CODE && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            exportMovements(data.getData());
+        } else if (requestCode == BACKUP_REQUEST_CODE && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            createBackup(data.getData());
+        } else if (requestCode == RESTORE_REQUEST_CODE && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            restoreBackup(data.getData());
+        }
+    }
+
+    /**
+     * This method imports the movements of a bank statement for the logged user, in background,
+     * showing the number of lines read. The format is chosen from the extension of the file:
+     * QIF, OFX or CSV. The import can be cancelled from the progress dialog, the movements
+     * already saved are kept.
+     *
+     * @param uri       the statement chosen by the user
+     *
+     * @see StatementImporter
+     * */
+    private void importStatement(Uri uri) {
+        if (statementImporter != null) {
+            Toast.makeText(getApplicationContext(), "Importazione già in corso", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String fileName = null;
+        try (Cursor cursor = getContentResolver().query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                fileName = cursor.getString(0);
+            }
+        }
+
+        BufferedReader reader;
+        try {
+            InputStream input = getContentResolver().openInputStream(uri);
+            if (input == null) {
+                throw new IOException();
+            }
+            reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        } catch (IOException | SecurityException e) {
+            Toast.makeText(getApplicationContext(), "Impossibile aprire il file", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        StatementImporter importer = new StatementImporter(getApplicationContext(), user.getUsername());
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Importazione movimenti")
+                .setMessage("Lettura del file...")
+                .setCancelable(false)
+                .setNegativeButton("Annulla", (dialog, which) -> importer.cancel())
+                .create();
+        progressDialog.show();
+
+        statementImporter = importer;
+        importer.start(StatementParser.forFile(fileName, reader), new StatementImporter.ImportListener() {
+            @Override
+            public void onProgress(int lines, int movements) {
+                progressDialog.setMessage("Righe lette: " + lines + "\nMovimenti salvati: " + movements);
+            }
+
+            @Override
+            public void onFinished(StatementImporter.ImportResult result) {
+                statementImporter = null;
+                if (isFinishing() || isDestroyed())
+                    return;
+
+                progressDialog.dismiss();
+                String message = "Entrate importate: " + result.getIncomes() + ", spese importate: " + result.getPurchases();
+                if (result.getSkippedRows() > 0) {
+                    message += "\nRighe ignorate: " + result.getSkippedRows() + " (" + result.getFirstError() + ")";
+                }
+                if (result.getFailure() != null) {
+                    message = "Importazione interrotta: " + result.getFailure() + "\n" + message;
+                } else if (result.isCancelled()) {
+                    message = "Importazione annullata\n" + message;
+                }
+                Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * This method asks the format of the export, and then where the file must be saved.
+     * */
+    private void showExportFormatDialog() {
+        final MovementExporter.Format[] FORMATS = {MovementExporter.Format.CSV, MovementExporter.Format.JSON_LINES};
+        String[] labels = {"CSV (foglio di calcolo)", "JSON Lines"};
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_movements)
+                .setItems(labels, (dialog, which) -> {
+                    String date = new SimpleDateFormat("yyyy-MM-dd", Locale.ITALIAN).format(new Date());
+                    Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                    intent.addCategory(Intent.CATEGORY_OPENABLE);
+                    intent.setType(FORMATS[which].getMimeType());
+                    intent.putExtra(Intent.EXTRA_TITLE, "movimenti_" + date + "." + FORMATS[which].getExtension());
+                    startActivityForResult(intent, EXPORT_REQUEST_CODE);
+                })
+                .show();
+    }
+
+    /**
+     * This method exports all the movements of the logged user to the file chosen by the user, in background,
+     * showing the progress of the rows written. The format is chosen from the extension of the file, as for
+     * the import, so it survives the recreation of the activity. If the export fails or is cancelled,
+     * the incomplete file is deleted.
+     *
+     * @param uri       the file created by the user
+     *
+     * @see MovementExporter
+     * */
+    private void exportMovements(Uri uri) {
+        if (movementExporter != null) {
+            Toast.makeText(getApplicationContext(), "Esportazione già in corso", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        String fileName = null;
+        try (Cursor cursor = getContentResolver().query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                fileName = cursor.getString(0);
+            }
+        }
+        MovementExporter.Format format = fileName != null
+                && fileName.toLowerCase(Locale.ROOT).endsWith("." + MovementExporter.Format.JSON_LINES.getExtension())
+                ? MovementExporter.Format.JSON_LINES : MovementExporter.Format.CSV;
+
+        OutputStream output;
+        try {
+            output = getContentResolver().openOutputStream(uri, "wt");
+            if (output == null) {
+                throw new IOException();
+            }
+        } catch (IOException | SecurityException e) {
+            Toast.makeText(getApplicationContext(), "Impossibile creare il file", Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        MovementExporter exporter = new MovementExporter(getApplicationContext(), user.getUsername());
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Esportazione movimenti")
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Annulla", (dialog, which) -> exporter.cancel())
+                .create();
+        progressDialog.show();
+
+        movementExporter = exporter;
+        exporter.start(output, format, new MovementExporter.ExportListener() {
+            @Override
+            public void onProgress(int rows, int totalRows) {
+                progressBar.setMax(totalRows);
+                progressBar.setProgress(rows);
+            }
+
+            @Override
+            public void onFinished(int rows, String failure, boolean cancelled) {
+                movementExporter = null;
+                if (failure != null || cancelled) {
+                    try {
+                        DocumentsContract.deleteDocument(getContentResolver(), uri);
+                    } catch (IOException | SecurityException | UnsupportedOperationException e) {
+                        // the provider doesn't delete its files, the incomplete file is left to the user
+                    }
+                }
+                if (isFinishing() || isDestroyed())
+                    return;
+
+                progressDialog.dismiss();
+                String message;
+                if (failure != null) {
+                    message = "Esportazione interrotta: " + failure;
+                } else if (cancelled) {
+                    message = "Esportazione annullata";
+                } else {
+                    message = "Movimenti esportati: " + rows;
+                }
+                Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    /**
+     * This method saves a copy of the database to the file chosen by the user, in background.
+     * The application can be used while the copy is made.
+     *
+     * @param uri       the file created by the user
+     *
+     * @see DbBackup#createSnapshot(Context, OutputStream)
+     * */
+    private void createBackup(Uri uri) {
+        if (backupRunning) {
+            Toast.makeText(getApplicationContext(), "Backup già in corso", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Context context = getApplicationContext();
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.create_backup)
+                .setView(new ProgressBar(this))
+                .setCancelable(false)
+                .create();
+        progressDialog.show();
+
+        backupRunning = true;
+        long start = SystemClock.elapsedRealtime();
+        DbExecutors.files().execute(() -> {
+            String message;
+            try (OutputStream output = context.getContentResolver().openOutputStream(uri, "wt")) {
+                if (output == null) {
+                    throw new IOException("Impossibile creare il file");
+                }
+                long bytes = DbBackup.createSnapshot(context, output);
+                message = String.format(Locale.ITALIAN, "Backup salvato: %.1f MB in %.1f s",
+                        bytes / (1024.0 * 1024.0), (SystemClock.elapsedRealtime() - start) / 1000.0);
+            } catch (IOException | SecurityException e) {
+                message = "Backup non riuscito: " + e.getMessage();
+                try {
+                    DocumentsContract.deleteDocument(context.getContentResolver(), uri);
+                } catch (IOException | SecurityException | UnsupportedOperationException deleteError) {
+                    // the provider doesn't delete its files, the incomplete file is left to the user
+                }
+            }
+
+            String result = message;
+            DbExecutors.postToMainThread(() -> {
+                backupRunning = false;
+                Toast.makeText(context, result, Toast.LENGTH_LONG).show();
+                if (!isFinishing() && !isDestroyed()) {
+                    progressDialog.dismiss();
+                }
+            });
+        });
+    }
+
+    /**
+     * This method replaces the database with the backup chosen by the user, in background. The backup is copied
+     * and checked on the file executor, so an invalid file leaves the data as they are, and only the swap runs on
+     * the write executor. After the restore the logged user could not exist anymore, so the login is shown again.
+     *
+     * @param uri       the backup chosen by the user
+     *
+     * @see DbBackup#prepareRestore(Context, InputStream)
+     * @see DbBackup#restore(Context, File)
+     * */
+    private void restoreBackup(Uri uri) {
+        if (backupRunning) {
+            Toast.makeText(getApplicationContext(), "Backup già in corso", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        Context context = getApplicationContext();
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.restore_backup)
+                .setView(new ProgressBar(this))
+                .setCancelable(false)
+                .create();
+        progressDialog.show();
+
+        backupRunning = true;
+        DbExecutors.files().execute(() -> {
+            File prepared;
+            try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+                if (input == null) {
+                    throw new IOException("Impossibile aprire il file");
+                }
+                prepared = DbBackup.prepareRestore(context, input);
+            } catch (IOException | SecurityException e) {
+                restoreFinished(progressDialog, e.getMessage());
+                return;
+            }
+
+            DbExecutors.writes().execute(() -> { // no write must run while the database is replaced
+                String failure = null;
+                try {
+                    DbBackup.restore(context, prepared);
+                } catch (IOException e) {
+                    failure = e.getMessage();
+                }
+                restoreFinished(progressDialog, failure);
+            });
+        });
+    }
+
+    /**
+     * This method shows the result of a restore on the main thread. If it has succeeded the login is shown again.
+     *
+     * @param progressDialog    the dialog shown during the restore
+     * @param failure           the message of the error, null if the restore has succeeded
+     * */
+    private void restoreFinished(AlertDialog progressDialog, String failure) {
+        Context context = getApplicationContext();
+        DbExecutors.postToMainThread(() -> {
+            backupRunning = false;
+            if (failure != null) {
+                Toast.makeText(context, "Ripristino non riuscito: " + failure, Toast.LENGTH_LONG).show();
+                if (!isFinishing() && !isDestroyed()) {
+                    progressDialog.dismiss();
+                }
+                return;
+            }
+
+            Toast.makeText(context, "Backup ripristinato, accedi di nuovo", Toast.LENGTH_LONG).show();
+            Intent intent = new Intent(context, LoginActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            startActivity(intent);
+        });
+    }
+
+    /**
+     * This method asks how old the movements to archive must be. The archived movements are no longer
+     * read by the lists of the recent movements, but they are still shown with the archive and exported.
+     * */
+    private void showArchiveDialog() {
+        final int[] YEARS = {1, 2, 3, 5};
+        String[] labels = new String[YEARS.length];
+        for (int i = 0; i < YEARS.length; i++) {
+            labels[i] = YEARS[i] == 1 ? "Più vecchi di 1 anno" : "Più vecchi di " + YEARS[i] + " anni";
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.archive_movements)
+                .setItems(labels, (dialog, which) -> archiveMovements(YEARS[which]))
+                .show();
+    }
+
+    /**
+     * This method moves to the archive, in background, the incomes and the simple purchases of the logged user
+     * made before the beginning of the current month of some years ago, so every archived month is complete.
+     * The totals of the user don't change.
+     *
+     * @param years     the age of the movements to archive
+     *
+     * @see DbManager#archiveMovements(String, long)
+     * */
+    private void archiveMovements(int years) {
+        Calendar cutoff = Calendar.getInstance();
+        cutoff.set(Calendar.DAY_OF_MONTH, 1);
+        cutoff.set(Calendar.HOUR_OF_DAY, 0);
+        cutoff.set(Calendar.MINUTE, 0);
+        cutoff.set(Calendar.SECOND, 0);
+        cutoff.set(Calendar.MILLISECOND, 0);
+        cutoff.add(Calendar.YEAR, -years);
+
+        Context context = getApplicationContext();
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle(R.string.archive_movements)
+                .setView(new ProgressBar(this))
+                .setCancelable(false)
+                .create();
+        progressDialog.show();
+
+        String username = user.getUsername();
+        long cutoffMillis = cutoff.getTimeInMillis();
+        DbExecutors.writes().execute(() -> {
+            int archived = new DbManager(context).archiveMovements(username, cutoffMillis);
+
+            DbExecutors.postToMainThread(() -> {
+                String message = archived > 0 ? "Movimenti archiviati: " + archived : "Nessun movimento da archiviare";
+                Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+                if (!isFinishing() && !isDestroyed()) {
+                    progressDialog.dismiss();
+                }
+            });
+        });
+    }
+
+    /**
+     * This method asks how many years of movements must be generated for the logged user.
+     * */
+    private void showSeedDataDialog() {
+        final int[] YEARS = {1, 5, 10, 20};
+        String[] labels = new String[YEARS.length];
+        for (int i = 0; i < YEARS.length; i++) {
+            labels[i] = YEARS[i] == 1 ? "1 anno" : YEARS[i] + " anni";
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.debug_seed_data)
+                .setItems(labels, (dialog, which) -> seedData(YEARS[which]))
+                .show();
+    }
+
+    /**
+     * This method fills the database with some years of movements of the logged user, in background,
+     * showing the progress of the months generated. The seeding can be cancelled from the progress dialog,
+     * the movements already written are kept.
+     *
+     * @param years     the number of years to generate
+     *
+     * @see DataSeeder
+     * */
+    private void seedData(int years) {
+        if (dataSeeder != null) {
+            Toast.makeText(getApplicationContext(), "Generazione dei dati già in corso", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        DataSeeder seeder = new DataSeeder(getApplicationContext(), user.getUsername(), years, System.currentTimeMillis());
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setMax(years * 12);
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Generazione dati")
+                .setView(progressBar)
+                .setCancelable(false)
+                .setNegativeButton("Annulla", (dialog, which) -> seeder.cancel())
+                .create();
+        progressDialog.show();
+
+        long start = SystemClock.elapsedRealtime();
+        dataSeeder = seeder;
+        seeder.start(new DataSeeder.SeedListener() {
+            @Override
+            public void onProgress(int months, int totalMonths) {
+                progressBar.setProgress(months);
+            }
+
+            @Override
+            public void onFinished(int rows, boolean completed) {
+                dataSeeder = null;
+                if (isFinishing() || isDestroyed())
+                    return;
+
+                progressDialog.dismiss();
+                long seconds = (SystemClock.elapsedRealtime() - start) / 1000;
+                String message = completed ? "Dati generati: " + rows + " righe in " + seconds + " s"
+                        : "Generazione interrotta: " + rows + " righe salvate";
+                Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     /**
@@ -168,54 +727,45 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
 
     /**
      * Callback method that saves the income the user is inserting right now inside the database.
+     * The income is saved on the write executor, the total of the user is read again by the observer of the users table.
      *
      * @param val       the value of the income
-     * @param date      the date of the income
+     * @param date      the date of the income, in epoch milliseconds
      * @param idCat     the id of the income's category
      *
      * @see DialogIncome.DialogIncomeListener
      * */
     @Override
-    public void DialogIncomeInsert(float val, String date, String idCat) {
-        DbManager dbManager = new DbManager(getApplicationContext());
-        long testValue = dbManager.insertIncome(val, date, idCat, user.getUsername()); // save the entry inside the DB
+    public void DialogIncomeInsert(Money val, long date, String idCat) {
+        Context context = getApplicationContext();
+        String username = user.getUsername();
 
-        // check if the entry has been saved
-        if (testValue > 0) {
-            user.setTotal(user.getTotal() + val);
-            dbManager.updateUserTotal(user.getTotal(), user.getUsername());
-            refreshActivity();
-        }
+        DbExecutors.writes().execute(() -> {
+            new DbManager(context).insertIncome(val, date, idCat, username); // save the entry and the new total inside the DB
+        });
     }
 
     /**
      * Callback method that saves the purchase the user is making right now inside the database.
+     * The purchase is saved on the write executor, the total of the user is read again by the observer of the users table.
      *
      * @param item      the item bought
-     * @param date      the date of the purchase
-     * @param time      the time of the purchase
+     * @param date      the date and time of the purchase, in epoch milliseconds
      *
      * @see com.labproject.keepmoneyv3.dialogs.DialogPurchase.DialogPurchaseListener
      * */
     @Override
-    public void DialogPurchaseInsert(@NotNull Item item, String date, String time) {
-        DbManager dbManager = new DbManager(getApplicationContext());
-        long testValue = dbManager.insertItems(item.getPrice(), item.getAmount(), item.getName(), item.getValid(), item.getCatID());
-        int listId = 0;
-
-        if(testValue > 0){ // only proceed if the insert of the item in the database is successful
-            item.setId((int) testValue);
-            testValue = dbManager.insertPurchases(date, time, user.getUsername(), item.getId(), listId);
-
-            if (testValue > 0){ // only proceed if the insert of the purchases in the database is successful
-                Toast.makeText(getApplicationContext(), "Spesa registrata correttamente", Toast.LENGTH_SHORT).show();
-                // update total value
-                float purchasePrice = item.getPrice() * item.getAmount();
-                user.setTotal(user.getTotal() - purchasePrice);
-                dbManager.updateUserTotal(user.getTotal(), user.getUsername());
-                refreshActivity();
+    public void DialogPurchaseInsert(@NotNull Item item, long date) {
+        Context context = getApplicationContext();
+        String username = user.getUsername();
+
+        DbExecutors.writes().execute(() -> {
+            long testValue = new DbManager(context).insertPurchaseWithItem(item, date, username); // item, purchase and new total
+
+            if (testValue > 0){ // only proceed if the insert of the purchase in the database is successful
+                DbExecutors.postToMainThread(() -> Toast.makeText(context, "Spesa registrata correttamente", Toast.LENGTH_SHORT).show());
             }
-        }
+        });
     }
 
     /**
@@ -227,23 +777,47 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
      * */
     @Override
     public void WishListInsert(@NotNull ArrayList<Item> items, String listName, String listDescription) {
+        final int PROGRESS_THRESHOLD = 100; // the progress is shown only for big lists
+
         DbManager dbManager = new DbManager(getApplicationContext());
-        int listId = (int) dbManager.insertWishLists(listName, listDescription, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
+        AlertDialog progressDialog = null;
+        ProgressBar progressBar = null;
+
+        if (items.size() >= PROGRESS_THRESHOLD) {
+            progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+            progressBar.setMax(items.size());
+            progressDialog = new AlertDialog.Builder(this)
+                    .setTitle("Salvataggio lista")
+                    .setView(progressBar)
+                    .setCancelable(false)
+                    .create();
+            progressDialog.show();
+        }
 
-        if(listId > 0) {
-            for (int i = 0; i < items.size(); i++) {
-                // insert items
-                int itemId = (int) dbManager.insertItems(items.get(i).getPrice(), items.get(i).getAmount(),
-                        items.get(i).getName(), items.get(i).getValid(), items.get(i).getCatID());
+        final AlertDialog finalProgressDialog = progressDialog;
+        final ProgressBar finalProgressBar = progressBar;
+        String username = user.getUsername();
 
-                // insert purchases
-                if (itemId > 0) {
-                    dbManager.insertWLElementPurchase(user.getUsername(), itemId, listId);
-                }
-            }
-        }
+        // the whole list is written in a single transaction, outside the main thread
+        DbExecutors.writes().execute(() -> {
+            long listId = dbManager.insertWishListWithItems(listName, listDescription, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED,
+                    items, username, (inserted, total) -> {
+                        if (finalProgressBar != null)
+                            DbExecutors.postToMainThread(() -> finalProgressBar.setProgress(inserted));
+                    });
+
+            DbExecutors.postToMainThread(() -> {
+                if (finalProgressDialog != null)
+                    finalProgressDialog.dismiss();
 
-        refreshActivity();
+                if (isFinishing() || isDestroyed())
+                    return;
+
+                if (listId <= 0) {
+                    Toast.makeText(getApplicationContext(), "Impossibile salvare la lista, riprovare", Toast.LENGTH_LONG).show();
+                }
+            });
+        });
     }
 
     /**
@@ -258,22 +832,6 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
         return user;
     }
 
-    /**
-     * This method is used to refresh the activity once a new movement has been registered, to update all the values
-     * */
-    private void refreshActivity() {
-        finish(); // end the current activity
-        overridePendingTransition(0, 0);
-
-        Bundle bundleRefreshActivity = new Bundle();
-        bundleRefreshActivity.putSerializable(ApplicationTags.SerializableTags.USER_KEY, user);
-
-        Intent intent = getIntent().putExtras(bundleRefreshActivity);
-        startActivity(intent);// restart the activity
-
-        overridePendingTransition(0, 0);
-    }
-
     /**
      * Method used to change floating action buttons visibility, according to the selected fragment (in this case Wishlist)
      * */
@@ -327,63 +885,31 @@ public class NavigationActivity extends AppCompatActivity implements DialogAddNe
      * This method is used to confirm a WishList.
      * It updates the "isConfirmed" field of the WishList's table row
      * and the one of the items related to it. When a WishList is confirmed
-     * the budget of the user is updated too.
+     * the budget of the user is updated too. The list is confirmed on the write executor,
+     * and the result is shown on the main thread; the new total is read by the observer of the users table.
      *
      * @param listId        the id of the list to confirm
      * @param listTotal     the total of the list
      * */
     @Override
-    public void confirmWishList(int listId, float listTotal) {
-        DbManager dbManager = new DbManager(getApplicationContext());
-
-        ArrayList<Item>wishListItems = new ArrayList<>();
-        Cursor cursor = dbManager.getWishListsItems(listId);
-        
-        // get all the item related to the wishlist
-
-        if (cursor != null){
-            while (cursor.moveToNext()){
-                int id = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
-                float price = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE));
-                int amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
-                int isConfirmed = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED));
-                String name = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
-                String idCat = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID_CAT));
-                wishListItems.add(new Item(id,name,amount,isConfirmed,price,idCat));//add the item inside the wl
-            }
-        }
-
-        if(user.getTotal() > listTotal) {
-            int purchId = 0;
-            // update wishlists
-            dbManager.updateAtWishListConfirmation(ApplicationTags.MiscellaneousTags.CONFIRMED, listId);
-
-            String format = "dd/MM/yyyy HH:mm:ss";
-            @SuppressLint("SimpleDateFormat") SimpleDateFormat formatter = new SimpleDateFormat(format);
-            Date date = new Date();
-            String dateWishList = formatter.format(date).split(" ")[0];
-            String timeWishList = formatter.format(date).split(" ")[1];
-
-            // updating the validity of the items in the wishlist and entering the date on which it was actually bought
-            for (Item item : wishListItems) {
-                cursor = dbManager.queryGetPurchaseIdFromItemId(item.getId());
-
-                if(cursor != null) {
-                    while (cursor.moveToNext()) {
-                        purchId = cursor.getInt(cursor.getColumnIndex(DbStrings.TablePurchasesFields.PURCH_ID));
+    public void confirmWishList(int listId, Money listTotal) {
+        Context context = getApplicationContext();
+        String username = user.getUsername();
+        long date = System.currentTimeMillis();
+
+        if(user.getTotal().compareTo(listTotal) > 0) {
+            DbExecutors.writes().execute(() -> {
+                // the list, its items, the purchase dates and the user total are updated in a single transaction
+                boolean confirmed = new DbManager(context).confirmWishListPurchase(listId, username, date);
+
+                DbExecutors.postToMainThread(() -> {
+                    if (confirmed) {
+                        Toast.makeText(context, "Lista acquistata correttamente", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(context, "Impossibile completare l'acquisto della lista, riprovare", Toast.LENGTH_LONG).show();
                     }
-                    dbManager.updatePurchasesDateAndTime(dateWishList, timeWishList, purchId);
-                }
-
-                dbManager.updateItemsValidity(ApplicationTags.MiscellaneousTags.CONFIRMED, item.getId());
-            }
-
-            // update user total, subtracting the wishlist total
-            user.setTotal(user.getTotal() - listTotal);
-            dbManager.updateUserTotal(user.getTotal(), user.getUsername());
-
-            Toast.makeText(getApplicationContext(), "Lista acquistata correttamente", Toast.LENGTH_SHORT).show();
-            refreshActivity();
+                });
+            });
         } else {
             Toast.makeText(getApplicationContext(), "Impossibile completare l'acquisto della lista perchè il budget è insufficente!", Toast.LENGTH_LONG).show();
         }
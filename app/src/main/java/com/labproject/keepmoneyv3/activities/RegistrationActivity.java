@@ -11,6 +11,7 @@ import android.widget.Toast;
 import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.User;
 
 import java.nio.charset.StandardCharsets;
@@ -44,7 +45,7 @@ public class RegistrationActivity extends AppCompatActivity {
     }
 
     /**
-     * This method performs the registration of a new user.
+     * This method performs the registration of a new user. The user is saved on the write executor.
      *
      * @param view      the actual view
      * */
@@ -70,17 +71,26 @@ public class RegistrationActivity extends AppCompatActivity {
 
             // if the matching is successful perform the query to add the new user into the db
             if (matcher.find()) {
-                long testValue = mDbManager.insertUser(strUsernameReg, encodePassword(strPasswordReg), strNameReg, strSurnameReg, strEmail, 0f);//insert the user in the local db
-
-                //If the query is successful, the user information are passed to the NavigationActivity
-                if (testValue > 0) {
-                    User user = new User(strUsernameReg, strPasswordReg, strNameReg, strSurnameReg, strEmail, 0f);
-                    Bundle navActivityBundle = new Bundle();
-                    navActivityBundle.putSerializable(ApplicationTags.SerializableTags.USER_KEY, user);
-                    newActivityRunning(navActivityBundle);
-                } else {
-                    Toast.makeText(getApplicationContext(), "Nome utente già inserito", Toast.LENGTH_LONG).show();
-                }
+                String encodedPassword = encodePassword(strPasswordReg);
+
+                DbExecutors.writes().execute(() -> {
+                    long testValue = mDbManager.insertUser(strUsernameReg, encodedPassword, strNameReg, strSurnameReg, strEmail, Money.ZERO);//insert the user in the local db
+
+                    DbExecutors.postToMainThread(() -> {
+                        if (isFinishing() || isDestroyed())
+                            return;
+
+                        //If the query is successful, the user information are passed to the NavigationActivity
+                        if (testValue > 0) {
+                            User user = new User(strUsernameReg, strPasswordReg, strNameReg, strSurnameReg, strEmail, Money.ZERO);
+                            Bundle navActivityBundle = new Bundle();
+                            navActivityBundle.putSerializable(ApplicationTags.SerializableTags.USER_KEY, user);
+                            newActivityRunning(navActivityBundle);
+                        } else {
+                            Toast.makeText(getApplicationContext(), "Nome utente già inserito", Toast.LENGTH_LONG).show();
+                        }
+                    });
+                });
             } else {
                 Toast.makeText(getApplicationContext(), "Indirizzo email sbagliato!", Toast.LENGTH_LONG).show();
             }
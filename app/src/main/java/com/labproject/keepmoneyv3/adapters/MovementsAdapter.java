@@ -0,0 +1,154 @@
+package com.labproject.keepmoneyv3.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.labproject.keepmoneyv3.R;
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is used to show the incomes or the purchases of the logged user in a RecyclerView.
+ * Every new list is compared with the one shown in background, by AsyncListDiffer, so only the rows
+ * that have been added, removed, moved or changed are drawn again, instead of the whole list.
+ * The rows are identified by the id of the income or of the item, which is also their stable id.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DefaultListViewItems    the rows shown
+ * */
+public class MovementsAdapter extends RecyclerView.Adapter<MovementsAdapter.MovementViewHolder> {
+
+    public interface OnItemClickListener {
+        void onItemClick(DefaultListViewItems item); // a listener used to perform a specific action when a movement is clicked
+    }
+
+    private static final DiffUtil.ItemCallback<DefaultListViewItems> DIFF_CALLBACK = new DiffUtil.ItemCallback<DefaultListViewItems>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull DefaultListViewItems oldItem, @NonNull DefaultListViewItems newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull DefaultListViewItems oldItem, @NonNull DefaultListViewItems newItem) {
+            return oldItem.getImage() == newItem.getImage()
+                    && oldItem.getItemName().equals(newItem.getItemName())
+                    && oldItem.getPrice().equals(newItem.getPrice());
+        }
+    };
+
+    private final AsyncListDiffer<DefaultListViewItems> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private List<DefaultListViewItems> rows = Collections.emptyList(); // the last list submitted, shown when its diff is done
+    private OnItemClickListener listener;
+
+    public MovementsAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * This method, that overrides the standard one, is used to create the view holder of a row.
+     * */
+    @NonNull
+    @Override
+    public MovementViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.default_list_view_item, parent, false);
+        MovementViewHolder holder = new MovementViewHolder(view);
+
+        view.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (listener != null && position != RecyclerView.NO_POSITION) {
+                listener.onItemClick(getItem(position));
+            }
+        });
+        return holder;
+    }
+
+    /**
+     * This method, that overrides the standard one, shows the values of a row in its view holder.
+     * */
+    @Override
+    public void onBindViewHolder(@NonNull MovementViewHolder holder, int position) {
+        DefaultListViewItems item = getItem(position);
+        String price = "" + item.getPrice() + " €";
+
+        holder.imageView.setImageResource(item.getImage());
+        holder.txtObj.setText(item.getItemName());
+        holder.txtPrice.setText(price);
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    public DefaultListViewItems getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    /**
+     * This method replaces the rows shown, for example with the rows in another order. The old and the new
+     * rows are compared in background, then only the differences are applied to the RecyclerView.
+     *
+     * @param newRows       the rows, in the order they are shown
+     * */
+    public void submitRows(List<DefaultListViewItems> newRows) {
+        rows = new ArrayList<>(newRows);
+        differ.submitList(rows);
+    }
+
+    /**
+     * This method adds a page of rows at the end of the rows submitted last.
+     * The objects are shown in the order they are passed, which is the order chosen by the query.
+     *
+     * @param page      the rows to add
+     * */
+    public void addPage(List<DefaultListViewItems> page) {
+        List<DefaultListViewItems> newRows = new ArrayList<>(rows.size() + page.size());
+        newRows.addAll(rows);
+        newRows.addAll(page);
+        rows = newRows;
+        differ.submitList(rows);
+    }
+
+    /**
+     * @return the number of rows submitted last, even if they are not shown yet
+     * */
+    public int getSubmittedCount() {
+        return rows.size();
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The view holder class.
+     * */
+    protected static class MovementViewHolder extends RecyclerView.ViewHolder {
+        final ImageView imageView;
+        final TextView txtObj, txtPrice;
+
+        MovementViewHolder(View itemView) {
+            super(itemView);
+            imageView = itemView.findViewById(R.id.firstImageview2); // image of the category
+            txtObj = itemView.findViewById(R.id.textView); // name of the movement
+            txtPrice = itemView.findViewById(R.id.txtPrice); // price of the movement
+        }
+    }
+}
@@ -12,9 +12,6 @@ import com.labproject.keepmoneyv3.ui.movements.IncomesAndPurchasesTabFragment;
 import com.labproject.keepmoneyv3.ui.movements.WishListsTabFragment;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import com.labproject.keepmoneyv3.utility.User;
-import com.labproject.keepmoneyv3.utility.WishLists;
-
-import java.util.ArrayList;
 
 /**
  * This adapter is used to build the three tab fragments used to visualize the
@@ -24,15 +21,18 @@ public class TabPagerAdapter extends FragmentStatePagerAdapter {
 
     private final int simplePurchasesRows;
     private final int incomesRows;
+    private final int archivedPurchasesRows;
+    private final int archivedIncomesRows;
     private final User user;
-    private final ArrayList<WishLists>confirmedWishLists;
 
-    public TabPagerAdapter(FragmentManager fm, int simplePurchasesRows, int incomesRows, User user, ArrayList<WishLists>confirmedWishLists) {
+    public TabPagerAdapter(FragmentManager fm, int simplePurchasesRows, int incomesRows,
+                           int archivedPurchasesRows, int archivedIncomesRows, User user) {
         super(fm);
         this.simplePurchasesRows = simplePurchasesRows;
         this.incomesRows = incomesRows;
+        this.archivedPurchasesRows = archivedPurchasesRows;
+        this.archivedIncomesRows = archivedIncomesRows;
         this.user = user;
-        this.confirmedWishLists = confirmedWishLists;
     }
 
     /**
@@ -59,6 +59,7 @@ public class TabPagerAdapter extends FragmentStatePagerAdapter {
 
                 // inserting in args (a Bundle) all the information that we have to pass to the TabFragment, to then allow processing using the user's information
                 args.putInt(ApplicationTags.SerializableTags.PURCHASES_ROWS_KEY,simplePurchasesRows);
+                args.putInt(ApplicationTags.SerializableTags.ARCHIVED_ROWS_KEY,archivedPurchasesRows);
                 args.putInt(ApplicationTags.SerializableTags.POSITION_KEY,PURCHASE_LIST_PAGE);
                 args.putSerializable(ApplicationTags.SerializableTags.USERNAME_KEY, user);
 
@@ -69,6 +70,7 @@ public class TabPagerAdapter extends FragmentStatePagerAdapter {
                 tabFragment = new IncomesAndPurchasesTabFragment();
 
                 args.putSerializable(ApplicationTags.SerializableTags.INCOMES_ROWS_KEY,incomesRows);
+                args.putInt(ApplicationTags.SerializableTags.ARCHIVED_ROWS_KEY,archivedIncomesRows);
                 args.putInt(ApplicationTags.SerializableTags.POSITION_KEY,ENTRIES_LIST_PAGE);
                 args.putSerializable(ApplicationTags.SerializableTags.USERNAME_KEY, user);
 
@@ -78,7 +80,6 @@ public class TabPagerAdapter extends FragmentStatePagerAdapter {
                 tabFragment = new WishListsTabFragment();
 
                 tabFragment.setArguments(args);
-                args.putSerializable(ApplicationTags.SerializableTags.WISH_LIST_KEYS, confirmedWishLists);
                 args.putInt(ApplicationTags.SerializableTags.POSITION_KEY,WL_LIST_PAGE);
                 args.putSerializable(ApplicationTags.SerializableTags.USERNAME_KEY, user);
         }
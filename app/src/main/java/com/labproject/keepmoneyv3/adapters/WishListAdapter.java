@@ -12,6 +12,7 @@ import androidx.cardview.widget.CardView;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.labproject.keepmoneyv3.R;
+import com.labproject.keepmoneyv3.utility.Money;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -78,7 +79,7 @@ public class WishListAdapter extends RecyclerView.Adapter<WishListAdapter.WLView
      * @param listName      the name of the item
      * @param price         the price of the purchase
      * */
-    public void buildMap(String listName,float price){
+    public void buildMap(String listName,Money price){
         ListViewData listViewData = new ListViewData(listName, price);
         items.add(listViewData);
     }
@@ -92,9 +93,9 @@ public class WishListAdapter extends RecyclerView.Adapter<WishListAdapter.WLView
      * */
     private static class ListViewData implements Serializable {
         private final String listName;
-        private final float price;
+        private final Money price;
 
-        public ListViewData(String listName, float price) {
+        public ListViewData(String listName, Money price) {
             this.listName = listName;
             this.price = price;
         }
@@ -104,7 +105,7 @@ public class WishListAdapter extends RecyclerView.Adapter<WishListAdapter.WLView
         }
 
 
-        public float getPrice() {
+        public Money getPrice() {
             return price;
         }
     }
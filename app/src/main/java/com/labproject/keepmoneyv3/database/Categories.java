@@ -0,0 +1,91 @@
+package com.labproject.keepmoneyv3.database;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class contains all the categories, read together from the database. It can't be changed,
+ * so it's shared by all the screens and threads without copying it. The categories of the incomes
+ * and of the purchases are chosen once, when the object is built, by the id of the categories
+ * and not by their names, which depend on the language of the device.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see CategoryRepository      which builds and caches it
+ * */
+public class Categories {
+
+    // the categories of the incomes, the purchases can have all the others
+    private static final Set<String> INCOME_IDS = new HashSet<>(Arrays.asList(
+            ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_PRESENT_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_BET_ID));
+    // the categories that are only of the incomes
+    private static final Set<String> INCOME_ONLY_IDS = Collections.singleton(
+            ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID);
+
+    private final Map<String, Category> byId;
+    private final List<Category> all;
+    private final List<Category> incomeCategories;
+    private final List<Category> purchaseCategories;
+
+    /**
+     * @param categories    the categories, in the order they are shown
+     * */
+    Categories(List<Category> categories) {
+        Map<String, Category> map = new LinkedHashMap<>();
+        List<Category> incomes = new ArrayList<>();
+        List<Category> purchases = new ArrayList<>();
+
+        for (Category category : categories) {
+            map.put(category.getId(), category);
+            if (INCOME_IDS.contains(category.getId())) {
+                incomes.add(category);
+            }
+            if (!INCOME_ONLY_IDS.contains(category.getId())) {
+                purchases.add(category);
+            }
+        }
+
+        byId = Collections.unmodifiableMap(map);
+        all = Collections.unmodifiableList(new ArrayList<>(map.values()));
+        incomeCategories = Collections.unmodifiableList(incomes);
+        purchaseCategories = Collections.unmodifiableList(purchases);
+    }
+
+    /**
+     * @param id    the id of the category
+     *
+     * @return the category, null if there isn't a category with this id
+     * */
+    public Category get(String id) {
+        return byId.get(id);
+    }
+
+    public List<Category> getAll() {
+        return all;
+    }
+
+    /**
+     * @return the categories that can be chosen for an income
+     * */
+    public List<Category> getIncomeCategories() {
+        return incomeCategories;
+    }
+
+    /**
+     * @return the categories that can be chosen for a purchase or for an item of a wishlist
+     * */
+    public List<Category> getPurchaseCategories() {
+        return purchaseCategories;
+    }
+}
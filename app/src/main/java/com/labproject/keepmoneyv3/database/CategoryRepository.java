@@ -0,0 +1,116 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.labproject.keepmoneyv3.utility.Category;
+
+import java.util.ArrayList;
+
+/**
+ * This class reads the categories, which change only when they are created, and keeps them in memory
+ * for all the screens. They are read from the database only the first time they are needed, and again
+ * only after a write to the categories table, which is notified by InvalidationTracker. So the dialogs
+ * that choose a category show them without waiting for a query.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see Categories              the categories kept in memory
+ * @see InvalidationTracker     which tells when they must be read again
+ * */
+public class CategoryRepository {
+
+    private static final Object LOCK = new Object();
+    private static Categories cached; // null until the categories are read, or after they have been changed
+    private static long generation; // number of changes of the categories, a read started before a change is not cached
+
+    private final DbManager dbManager;
+
+    public CategoryRepository(Context context) {
+        dbManager = new DbManager(context);
+    }
+
+    /**
+     * This method returns the categories, reading them from the database only if they are not in memory.
+     * It must not run on the main thread.
+     *
+     * @return the categories, null if the query failed
+     * */
+    public Categories getCategories() {
+        long readGeneration;
+        synchronized (LOCK) {
+            if (cached != null) {
+                return cached;
+            }
+            readGeneration = generation;
+        }
+
+        ArrayList<Category> list = dbManager.queryGetAllRows(DbStrings.TableCategoriesFields.TABLE_NAME,
+                CursorReader.listOf(RowMappers::category));
+        if (list == null) {
+            return null;
+        }
+        Categories categories = new Categories(list);
+
+        synchronized (LOCK) {
+            if (generation == readGeneration) {
+                cached = categories; // the table has not been changed during the read
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * This method returns the categories as a LiveData, for the screens. If the categories are in memory,
+     * the LiveData already contains them, and the observer receives them as soon as it's added,
+     * otherwise they are read on the read executor.
+     *
+     * @param context       any context, used to open the database
+     *
+     * @return the LiveData of the categories, set once, to null if the query failed
+     *
+     * @see DbRepository#load(java.util.function.Supplier)
+     * */
+    public static LiveData<Categories> load(Context context) {
+        Categories categories = getCachedCategories();
+        if (categories == null) {
+            return DbRepository.load(new CategoryRepository(context)::getCategories);
+        }
+
+        MutableLiveData<Categories> result = new MutableLiveData<>();
+        result.setValue(categories);
+        return result;
+    }
+
+    /**
+     * This method reads the categories on the read executor, if they are not in memory yet,
+     * so the first dialog that shows them doesn't wait for the query.
+     *
+     * @param context       any context, used to open the database
+     * */
+    public static void preload(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        DbExecutors.reads().execute(() -> new CategoryRepository(applicationContext).getCategories());
+    }
+
+    /**
+     * @return the categories in memory, null if they have not been read yet
+     * */
+    public static Categories getCachedCategories() {
+        synchronized (LOCK) {
+            return cached;
+        }
+    }
+
+    /**
+     * This method removes the categories from memory, after a write to the categories table.
+     * */
+    static void invalidate() {
+        synchronized (LOCK) {
+            cached = null;
+            generation++;
+        }
+    }
+}
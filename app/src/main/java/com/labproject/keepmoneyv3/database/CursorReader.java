@@ -0,0 +1,51 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+
+/**
+ * This interface reads the result of a query run by DbManager. The cursor is owned by DbManager:
+ * it is passed to the reader, and it is closed as soon as the reader returns, so it must not be kept.
+ *
+ * @param <T>   the type of the value read from the cursor
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager   which runs the queries
+ * @see RowMappers  used to read the rows as objects
+ * */
+public interface CursorReader<T> {
+
+    /**
+     * This method reads the value returned to the caller of the query.
+     *
+     * @param cursor    the cursor of the query, positioned before the first row
+     *
+     * @return the value read
+     * */
+    T read(Cursor cursor);
+
+    /**
+     * This method returns a reader that maps all the rows of the cursor.
+     *
+     * @param factory   the factory of the mapper used for the rows
+     * @param <T>       the type of the objects built from the rows
+     *
+     * @return the reader
+     * */
+    static <T> CursorReader<ArrayList<T>> listOf(RowMapper.Factory<T> factory) {
+        return cursor -> RowMappers.mapAll(cursor, factory);
+    }
+
+    /**
+     * This method returns a reader of a column of the first row, used by the counts and the sums.
+     *
+     * @param column    the name of the column
+     *
+     * @return the reader, which reads 0 if there are no rows or if the value is null
+     * */
+    static CursorReader<Long> firstLong(String column) {
+        return cursor -> cursor.moveToFirst() ? cursor.getLong(cursor.getColumnIndexOrThrow(column)) : 0L;
+    }
+}
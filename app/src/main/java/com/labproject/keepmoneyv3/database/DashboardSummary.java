@@ -0,0 +1,74 @@
+package com.labproject.keepmoneyv3.database;
+
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.util.ArrayList;
+
+/**
+ * This class contains the data shown by the dashboard: the sum of the incomes, the sum of the confirmed
+ * purchases and the most recent simple purchases of a user. Everything is read by a single query,
+ * so the values always come from the same state of the database.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager       which runs the query
+ * */
+public class DashboardSummary {
+
+    // columns of the sums, repeated on every row of the query
+    static final String SUM_INCOMES_COLUMN = "sumInc";
+    static final String SUM_PURCHASES_COLUMN = "sumPurch";
+
+    private final Money incomes;
+    private final Money purchases;
+    private final ArrayList<DefaultListViewItems> recentPurchases;
+
+    private DashboardSummary(Money incomes, Money purchases, ArrayList<DefaultListViewItems> recentPurchases) {
+        this.incomes = incomes;
+        this.purchases = purchases;
+        this.recentPurchases = recentPurchases;
+    }
+
+    public Money getIncomes() {
+        return incomes;
+    }
+
+    public Money getPurchases() {
+        return purchases;
+    }
+
+    public ArrayList<DefaultListViewItems> getRecentPurchases() {
+        return recentPurchases;
+    }
+
+    /**
+     * This method returns the reader of the query of the summary. The query returns a row for every
+     * recent purchase, or a single row with no purchase if the user has none.
+     *
+     * @return the reader
+     * */
+    static CursorReader<DashboardSummary> reader() {
+        return cursor -> {
+            final int sumIncomes = cursor.getColumnIndexOrThrow(SUM_INCOMES_COLUMN);
+            final int sumPurchases = cursor.getColumnIndexOrThrow(SUM_PURCHASES_COLUMN);
+            final int itemId = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_ID);
+            RowMapper<DefaultListViewItems> mapper = RowMappers.itemListViewItem(cursor);
+
+            Money incomes = Money.ZERO;
+            Money purchases = Money.ZERO;
+            ArrayList<DefaultListViewItems> recentPurchases = new ArrayList<>();
+
+            while (cursor.moveToNext()) {
+                if (cursor.isFirst()) {
+                    incomes = Money.ofCents(cursor.getLong(sumIncomes)); // 0 if the sum is null
+                    purchases = Money.ofCents(cursor.getLong(sumPurchases));
+                }
+                if (!cursor.isNull(itemId)) {
+                    recentPurchases.add(mapper.map(cursor));
+                }
+            }
+            return new DashboardSummary(incomes, purchases, recentPurchases);
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * This class fills the database with some years of realistic movements of a user, and it is only used
+ * by the debug builds to try the screens with the amount of data of a heavy user.
+ * Every month gets a salary, some other incomes, a few purchases every day and sometimes a wishlist,
+ * bought or only planned. The months are generated from the oldest one and written in batches of about
+ * BATCH_ROWS rows, every batch in its own transaction on the write executor: the other writes of the app
+ * can run between two batches, and a cancelled seeding keeps the batches already written.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see MovementBatch   the movements written in a single transaction
+ * */
+public class DataSeeder {
+
+    /**
+     * Listener used to follow the seeding, always called on the main thread.
+     * */
+    public interface SeedListener {
+        void onProgress(int months, int totalMonths);
+        void onFinished(int rows, boolean completed);
+    }
+
+    /*
+     * The kinds of the generated purchases: category, how often it is chosen, the range of the price
+     * of a single unit in cents and the names of the items.
+     * */
+    private static class PurchaseKind {
+        final String idCat;
+        final int weight;
+        final int minCents;
+        final int maxCents;
+        final String[] names;
+
+        PurchaseKind(String idCat, int weight, int minCents, int maxCents, String... names) {
+            this.idCat = idCat;
+            this.weight = weight;
+            this.minCents = minCents;
+            this.maxCents = maxCents;
+            this.names = names;
+        }
+    }
+
+    private static final PurchaseKind[] PURCHASE_KINDS = {
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_FOOD_ID, 45, 80, 2500,
+                    "pane", "latte", "pasta", "frutta", "verdura", "caffè", "pizza", "formaggio", "carne", "pesce", "spesa supermercato"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_FUN_ID, 15, 500, 4000,
+                    "cinema", "concerto", "videogioco", "libro", "aperitivo", "ristorante", "abbonamento streaming"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_HOME_ID, 12, 200, 6000,
+                    "detersivo", "bolletta luce", "bolletta gas", "lampadine", "piante", "asciugamani", "pentola"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_FAMILY_ID, 8, 500, 4000,
+                    "giocattolo", "libri scuola", "vestiti bambini", "pannolini", "regalo compleanno"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_TECH_ID, 8, 300, 8000,
+                    "cavo usb", "cuffie", "caricabatterie", "mouse", "tastiera", "chiavetta usb", "batterie"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_HEALTH_ID, 8, 300, 6000,
+                    "farmacia", "visita medica", "dentista", "vitamine", "occhiali"),
+            new PurchaseKind(ApplicationTags.PredefinedCategoriesId.CAT_HOLIDAY_ID, 4, 2000, 25000,
+                    "biglietto treno", "hotel", "volo", "noleggio auto", "museo")
+    };
+    private static final String[] WISH_LIST_NAMES = {
+            "Spesa grande", "Casa nuova", "Regali di Natale", "Vacanze estive", "Rientro a scuola", "Ufficio", "Festa"};
+
+    private static final int BATCH_ROWS = 2000; // rows written in a single transaction
+    private static final int MAX_DAILY_PURCHASES = 5; // about 2.5 purchases a day, as a heavy user
+    private static final int MAX_WISH_LIST_ITEMS = 12;
+    private static final int SALARY_DAY = 27;
+
+    private final DbManager dbManager;
+    private final String username;
+    private final int totalMonths;
+    private final Random random;
+    private final Calendar month; // the first day of the next month to generate
+
+    private volatile boolean cancelled;
+    private int generatedMonths;
+    private int writtenRows;
+
+    /**
+     * @param context       any context, used to open the database
+     * @param username      the user that gets the movements
+     * @param years         the number of years to generate, ending with the current month
+     * @param seed          the seed of the random generator, the same seed gives the same movements
+     * */
+    public DataSeeder(Context context, String username, int years, long seed) {
+        this.dbManager = new DbManager(context);
+        this.username = username;
+        this.totalMonths = years * 12;
+        this.random = new Random(seed);
+
+        month = Calendar.getInstance();
+        month.set(Calendar.DAY_OF_MONTH, 1);
+        month.set(Calendar.HOUR_OF_DAY, 0);
+        month.set(Calendar.MINUTE, 0);
+        month.set(Calendar.SECOND, 0);
+        month.set(Calendar.MILLISECOND, 0);
+        month.add(Calendar.MONTH, 1 - totalMonths);
+    }
+
+    /**
+     * This method starts the seeding in background. It must be called only once.
+     *
+     * @param listener      notified after every batch and at the end
+     * */
+    public void start(SeedListener listener) {
+        DbExecutors.writes().execute(() -> writeNextBatch(listener));
+    }
+
+    /**
+     * This method stops the seeding after the batch that is being written.
+     * */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * This method generates and writes the months of a batch, then it queues the next batch
+     * behind the writes that have been queued in the meantime.
+     *
+     * @param listener      the listener of the seeding
+     * */
+    private void writeNextBatch(SeedListener listener) {
+        MovementBatch batch = new MovementBatch();
+        long now = System.currentTimeMillis();
+
+        while (generatedMonths < totalMonths && batch.size() < BATCH_ROWS && !cancelled) {
+            generateMonth(batch, now);
+            month.add(Calendar.MONTH, 1);
+            generatedMonths++;
+        }
+
+        boolean inserted = !cancelled && dbManager.insertBatch(batch, username);
+        if (inserted) {
+            writtenRows += batch.size();
+        }
+
+        int months = generatedMonths;
+        int rows = writtenRows;
+        if (inserted && months < totalMonths) {
+            DbExecutors.postToMainThread(() -> listener.onProgress(months, totalMonths));
+            DbExecutors.writes().execute(() -> writeNextBatch(listener));
+        } else {
+            DbExecutors.postToMainThread(() -> listener.onFinished(rows, inserted));
+        }
+    }
+
+    /**
+     * This method adds to the batch the movements of the month, without going after the current day.
+     *
+     * @param batch     the batch
+     * @param now       the current time, in epoch milliseconds
+     * */
+    private void generateMonth(MovementBatch batch, long now) {
+        int days = month.getActualMaximum(Calendar.DAY_OF_MONTH);
+        if (generatedMonths == totalMonths - 1) { // the current month, up to today
+            Calendar today = Calendar.getInstance();
+            today.setTimeInMillis(now);
+            days = today.get(Calendar.DAY_OF_MONTH);
+        }
+
+        if (days >= SALARY_DAY) {
+            batch.addIncome(Money.ofCents(cents(180_000, 320_000)), dateOf(SALARY_DAY, now),
+                    ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID);
+        }
+        if (random.nextInt(4) == 0) {
+            batch.addIncome(Money.ofCents(cents(2_000, 30_000)), dateOf(1 + random.nextInt(days), now),
+                    ApplicationTags.PredefinedCategoriesId.CAT_PRESENT_ID);
+        }
+        if (random.nextInt(6) == 0) {
+            batch.addIncome(Money.ofCents(cents(500, 15_000)), dateOf(1 + random.nextInt(days), now),
+                    ApplicationTags.PredefinedCategoriesId.CAT_BET_ID);
+        }
+
+        for (int day = 1; day <= days; day++) {
+            int purchases = random.nextInt(MAX_DAILY_PURCHASES + 1);
+            for (int i = 0; i < purchases; i++) {
+                PurchaseKind kind = randomKind();
+                int amount = kind.idCat.equals(ApplicationTags.PredefinedCategoriesId.CAT_FOOD_ID) ? 1 + random.nextInt(2) : 1;
+                batch.addPurchase(randomItem(kind, amount), dateOf(day, now));
+            }
+        }
+
+        if (random.nextBoolean()) {
+            ArrayList<Item> items = new ArrayList<>();
+            int size = 3 + random.nextInt(MAX_WISH_LIST_ITEMS - 2);
+            for (int i = 0; i < size; i++) {
+                items.add(randomItem(randomKind(), 1));
+            }
+
+            // the older lists are almost always bought, the ones of the last months are often only planned
+            boolean bought = random.nextInt(10) < (generatedMonths < totalMonths - 3 ? 9 : 3);
+            batch.addWishList(WISH_LIST_NAMES[random.nextInt(WISH_LIST_NAMES.length)],
+                    "Lista generata per i test", items, bought ? dateOf(1 + random.nextInt(days), now) : null);
+        }
+    }
+
+    private PurchaseKind randomKind() {
+        int totalWeight = 0;
+        for (PurchaseKind kind : PURCHASE_KINDS) {
+            totalWeight += kind.weight;
+        }
+
+        int choice = random.nextInt(totalWeight);
+        for (PurchaseKind kind : PURCHASE_KINDS) {
+            choice -= kind.weight;
+            if (choice < 0) {
+                return kind;
+            }
+        }
+        return PURCHASE_KINDS[0];
+    }
+
+    private Item randomItem(PurchaseKind kind, int amount) {
+        String name = kind.names[random.nextInt(kind.names.length)];
+        return new Item(name, amount, ApplicationTags.MiscellaneousTags.CONFIRMED,
+                Money.ofCents(cents(kind.minCents, kind.maxCents)), kind.idCat);
+    }
+
+    /**
+     * @return a random value between the two limits, rounded to 10 cents
+     * */
+    private long cents(int min, int max) {
+        return (min + random.nextInt(max - min)) / 10 * 10;
+    }
+
+    /**
+     * @return a random time between 8:00 and 21:00 of a day of the month, never after the current time
+     * */
+    private long dateOf(int day, long now) {
+        Calendar date = (Calendar) month.clone();
+        date.set(Calendar.DAY_OF_MONTH, day);
+        date.set(Calendar.HOUR_OF_DAY, 8 + random.nextInt(13));
+        date.set(Calendar.MINUTE, random.nextInt(60));
+        return Math.min(date.getTimeInMillis(), now);
+    }
+}
@@ -0,0 +1,335 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class saves a copy of the whole database to a file, and restores the database from one of these copies.
+ *
+ * A copy is always consistent, as it's made inside a single read transaction. When SQLite supports it
+ * (version 3.27, Android 11), the copy is written by VACUUM INTO on a connection of its own, so it doesn't
+ * take any connection used by DbManager and the writes go on while it's running. The SQLite of Android 10
+ * doesn't have it, so the log is moved into the database and the file is copied while the write lock is held:
+ * the reads go on, the writes wait for the end of the copy.
+ *
+ * A restore copies the file next to the database and checks it, on the file executor, and then
+ * renames it in place of the database on the write executor, so the writes wait only for the swap.
+ * The durations are written to the log, with the DbBackup tag.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbHelper#replaceDatabase(File)      which swaps the database files
+ * */
+public class DbBackup {
+
+    private static final String TAG = "DbBackup";
+    private static final int[] VACUUM_INTO_VERSION = {3, 27, 0};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the tables without which the file is not a database of the application
+    private static final String[] REQUIRED_TABLES = {
+            DbStrings.TableUsersField.TABLE_NAME,
+            DbStrings.TableCategoriesFields.TABLE_NAME,
+            DbStrings.TableItemsFields.TABLE_NAME,
+            DbStrings.TableIncomesFields.TABLE_NAME,
+            DbStrings.TableWishListsFields.TABLE_NAME,
+            DbStrings.TablePurchasesFields.TABLE_NAME
+    };
+    // all the tables, notified as changed after a restore
+    private static final String[] ALL_TABLES = {
+            DbStrings.TableUsersField.TABLE_NAME,
+            DbStrings.TableCategoriesFields.TABLE_NAME,
+            DbStrings.TableItemsFields.TABLE_NAME,
+            DbStrings.TableIncomesFields.TABLE_NAME,
+            DbStrings.TableWishListsFields.TABLE_NAME,
+            DbStrings.TablePurchasesFields.TABLE_NAME,
+            DbStrings.TableMonthlyTotalsFields.TABLE_NAME,
+            DbStrings.TableBalanceJournalFields.TABLE_NAME,
+            DbStrings.TableBalanceCheckpointsFields.TABLE_NAME,
+            DbStrings.TableItemsSearchFields.TABLE_NAME,
+            DbStrings.TableWishListsSearchFields.TABLE_NAME,
+            DbStrings.TableIncomesArchiveFields.TABLE_NAME,
+            DbStrings.TablePurchasesArchiveFields.TABLE_NAME,
+            DbStrings.TablePurchasesArchiveSearchFields.TABLE_NAME,
+            DbStrings.TableArchivedPeriodsFields.TABLE_NAME
+    };
+
+    private DbBackup() {}
+
+    /**
+     * This method saves a consistent copy of the database, while the application keeps using it.
+     * The copy is written to a temporary file that is renamed only at the end, so the destination
+     * is never left incomplete. It must not run on the main thread.
+     *
+     * @param context       any context, used to open the database
+     * @param destination   the file of the copy, replaced if it exists
+     *
+     * @return the size of the copy, in bytes
+     *
+     * @throws IOException if the copy can't be written
+     * */
+    public static long createSnapshot(Context context, File destination) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        DbHelper dbHelper = DbHelper.getInstance(context);
+        SQLiteDatabase db = dbHelper.getWritableDatabase(); // the database is created or migrated before the copy
+        File dbFile = new File(db.getPath());
+        File temporary = new File(destination.getPath() + ".tmp");
+        deleteIfExists(temporary);
+
+        try {
+            if (supportsVacuumInto(db)) {
+                vacuumInto(dbFile, temporary);
+            } else {
+                copyUnderWriteLock(db, dbFile, temporary);
+            }
+            Files.move(temporary.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (SQLiteException e) {
+            throw new IOException("Impossibile copiare il database", e);
+        } finally {
+            deleteIfExists(temporary);
+        }
+
+        long bytes = destination.length();
+        Log.i(TAG, "snapshot of " + bytes + " bytes in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return bytes;
+    }
+
+    /**
+     * This method saves a consistent copy of the database to a stream, like the file chosen by the user.
+     * The copy is made in the cache directory first, so the database is read only for the time of the copy,
+     * whatever the speed of the stream.
+     *
+     * @param context       any context, used to open the database
+     * @param out           the stream of the copy, it's not closed
+     *
+     * @return the size of the copy, in bytes
+     *
+     * @throws IOException if the copy can't be written
+     *
+     * @see #createSnapshot(Context, File)
+     * */
+    public static long createSnapshot(Context context, OutputStream out) throws IOException {
+        File snapshot = new File(context.getCacheDir(), DbHelper.DB_NAME + "-snapshot");
+        try {
+            long bytes = createSnapshot(context, snapshot);
+            try (InputStream in = new FileInputStream(snapshot)) {
+                copy(in, out);
+            }
+            return bytes;
+        } finally {
+            deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * This method prepares the restore of a copy saved by createSnapshot. The copy is written next to
+     * the database and checked with quick_check; it's kept only if it's a valid database of the application,
+     * of this version or of an older one, which is migrated when it's opened. The database is not changed.
+     *
+     * It reads the whole copy, so it should run on the file executor, not on the write executor,
+     * where it would stop the writes for the time of the copy.
+     *
+     * @param context       any context, used to find the database
+     * @param snapshot      the content of the copy, it's not closed
+     *
+     * @return the checked copy, to pass to restore
+     *
+     * @throws IOException if the copy can't be read or it's not valid
+     *
+     * @see #restore(Context, File)
+     * */
+    public static File prepareRestore(Context context, InputStream snapshot) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        File dbFile = context.getDatabasePath(DbHelper.DB_NAME);
+        File restored = new File(dbFile.getPath() + "-restore");
+        deleteDatabaseFiles(restored);
+
+        boolean valid = false;
+        try {
+            try (FileOutputStream out = new FileOutputStream(restored)) {
+                copy(snapshot, out);
+                out.getFD().sync(); // the file must be on disk before it replaces the database
+            }
+            long copied = SystemClock.elapsedRealtime();
+
+            validate(restored);
+            deleteIfExists(new File(restored.getPath() + "-wal")); // created when the copy is opened to check it
+            deleteIfExists(new File(restored.getPath() + "-shm"));
+            valid = true;
+            Log.i(TAG, "restore of " + restored.length() + " bytes prepared: copy " + (copied - start) + " ms, check "
+                    + (SystemClock.elapsedRealtime() - copied) + " ms");
+        } finally {
+            if (!valid) {
+                deleteDatabaseFiles(restored);
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * This method replaces the database with a copy checked by prepareRestore. The copy is renamed in place
+     * of the database, and it's deleted if the swap fails, so the database is not changed.
+     *
+     * It should run on the write executor, so the queued writes are not lost during the swap;
+     * a write running on another thread is waited for before the database is closed. The screens
+     * should read all their data again, as every table is notified as changed.
+     *
+     * @param context       any context, used to open the database
+     * @param prepared      the copy returned by prepareRestore
+     *
+     * @throws IOException if the copy can't replace the database
+     * */
+    public static void restore(Context context, File prepared) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            DbHelper.getInstance(context).replaceDatabase(prepared);
+            Log.i(TAG, "restore swapped in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        } finally {
+            deleteDatabaseFiles(prepared);
+        }
+
+        InvalidationTracker.notifyChanged(ALL_TABLES);
+    }
+
+    /**
+     * This method checks that a file is an intact database of the application, that can be opened by this version.
+     *
+     * @param file      the file to check
+     *
+     * @throws IOException if it's not valid
+     * */
+    static void validate(File file) throws IOException {
+        SQLiteDatabase db;
+        try {
+            db = openReadOnly(file);
+        } catch (SQLiteException e) {
+            throw new IOException("Il file non è un database", e);
+        }
+
+        try {
+            String check = DatabaseUtils.stringForQuery(db, "PRAGMA quick_check(1);", null);
+            if (!"ok".equalsIgnoreCase(check)) {
+                throw new IOException("Il database è danneggiato: " + check);
+            }
+
+            int version = db.getVersion();
+            if (version < 1 || version > DbHelper.VERSION) {
+                throw new IOException("Versione del database non supportata: " + version);
+            }
+
+            Set<String> tables = new HashSet<>();
+            try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table';", null)) {
+                while (cursor.moveToNext()) {
+                    tables.add(cursor.getString(0));
+                }
+            }
+            for (String table : REQUIRED_TABLES) {
+                if (!tables.contains(table)) {
+                    throw new IOException("Il database non contiene la tabella " + table);
+                }
+            }
+        } catch (SQLiteException e) {
+            throw new IOException("Il database è danneggiato", e);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * @return true if the SQLite of the device has VACUUM INTO
+     * */
+    private static boolean supportsVacuumInto(SQLiteDatabase db) {
+        String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version();", null).split("\\.");
+        for (int i = 0; i < VACUUM_INTO_VERSION.length; i++) {
+            int part = i < version.length ? Integer.parseInt(version[i]) : 0;
+            if (part != VACUUM_INTO_VERSION[i]) {
+                return part > VACUUM_INTO_VERSION[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method writes the copy with VACUUM INTO, on a read-only connection opened only for it.
+     * The copy is made in a read transaction, which in WAL mode doesn't stop the writes.
+     * */
+    private static void vacuumInto(File dbFile, File destination) {
+        SQLiteDatabase db = openReadOnly(dbFile);
+        try {
+            db.execSQL("VACUUM INTO ?;", new Object[]{destination.getPath()});
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * This method copies the database file when VACUUM INTO is not available. The log is moved into
+     * the database first, then the write lock is taken, so the file can't change until it has been copied.
+     * */
+    private static void copyUnderWriteLock(SQLiteDatabase db, File dbFile, File destination) throws IOException {
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE);", null)) {
+            if (!cursor.moveToFirst() || cursor.getInt(0) != 0) {
+                throw new IOException("Il database è occupato, riprova più tardi");
+            }
+        }
+
+        db.beginTransactionNonExclusive();
+        try {
+            // a write committed between the checkpoint and the lock would be only in the log
+            File wal = new File(dbFile.getPath() + "-wal");
+            if (wal.length() > 0) {
+                throw new IOException("Il database è occupato, riprova più tardi");
+            }
+            try (InputStream in = new FileInputStream(dbFile); OutputStream out = new FileOutputStream(destination)) {
+                copy(in, out);
+            }
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * This method opens a connection used only by this class. The default error handler deletes
+     * the files of a corrupted database, this one leaves them as they are.
+     * */
+    private static SQLiteDatabase openReadOnly(File file) {
+        return SQLiteDatabase.openDatabase(file.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS, corrupted -> { });
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static void deleteDatabaseFiles(File file) throws IOException {
+        deleteIfExists(file);
+        deleteIfExists(new File(file.getPath() + "-wal"));
+        deleteIfExists(new File(file.getPath() + "-shm"));
+        deleteIfExists(new File(file.getPath() + "-journal"));
+    }
+
+    private static void deleteIfExists(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Impossibile eliminare " + file.getName());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * This class wraps the executors used to run the database operations outside the main thread,
+ * and the handler used to send their results back to it.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public class DbExecutors {
+
+    // SQLite allows only one writer at a time, so all the writes are queued on a single thread
+    private static final Executor WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
+    // WAL lets the reads run together, a small fixed pool keeps them from competing with the writer and the UI
+    private static final int READ_THREADS = 2;
+    private static final Executor READ_EXECUTOR = Executors.newFixedThreadPool(READ_THREADS);
+    // the imports and the exports read and write long files, so they get their own thread instead of a reader
+    private static final Executor FILE_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final Handler MAIN_THREAD_HANDLER = new Handler(Looper.getMainLooper());
+
+    private DbExecutors() {}
+
+    /**
+     * This method returns the executor used for the database writes.
+     *
+     * @return the write executor
+     * */
+    public static Executor writes() {
+        return WRITE_EXECUTOR;
+    }
+
+    /**
+     * This method returns the executor used for the database reads.
+     *
+     * @return the read executor
+     * */
+    public static Executor reads() {
+        return READ_EXECUTOR;
+    }
+
+    /**
+     * This method returns the executor used to read and write the files of the imports and the exports.
+     *
+     * @return the file executor
+     * */
+    public static Executor files() {
+        return FILE_EXECUTOR;
+    }
+
+    /**
+     * This method runs an action on the main thread, for example to update the UI
+     * once a background operation is completed.
+     *
+     * @param action        the action to run
+     * */
+    public static void postToMainThread(Runnable action) {
+        MAIN_THREAD_HANDLER.post(action);
+    }
+}
@@ -3,19 +3,281 @@ package com.labproject.keepmoneyv3.database;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.StrictMode;
+
+import com.labproject.keepmoneyv3.BuildConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Class used to create the tables of the database, that will be used to store all the users data.
+ * There is a single instance of this class for the whole process, so every DbManager shares the
+ * same connection pool. Write-ahead logging is enabled, so readers never wait for a writer.
  *
  */
 
 public class DbHelper extends SQLiteOpenHelper {
-    private final static int VERSION = 1;
-    private final static String DB_NAME = "KeepMoneyDb";
 
-    public DbHelper(Context context) {
+    /*
+     * The ordered list of the schema migrations. Version 1 is the schema created by onCreate,
+     * every change to the schema must be appended here with the next version number.
+     * */
+    private final static Migration[] MIGRATIONS = {
+            new Migration(2, // indexes used by the queries of DbManager
+                    DbStrings.TablePurchasesFields.CREATE_INDEX_USER_LIST,
+                    DbStrings.TablePurchasesFields.CREATE_INDEX_ITEM,
+                    DbStrings.TablePurchasesFields.CREATE_INDEX_LIST,
+                    DbStrings.TableIncomesFields.CREATE_INDEX_USER,
+                    DbStrings.TableItemsFields.CREATE_INDEX_CATEGORY),
+            new Migration(3, // dates saved as epoch milliseconds, indexed for range queries and sorting
+                    DbStrings.TableIncomesFields.UPDATE_DATE_TO_MILLIS,
+                    DbStrings.TablePurchasesFields.UPDATE_DATE_TO_MILLIS,
+                    DbStrings.TableIncomesFields.DROP_INDEX_USER,
+                    DbStrings.TableIncomesFields.CREATE_INDEX_USER_DATE,
+                    DbStrings.TablePurchasesFields.CREATE_INDEX_USER_DATE),
+            new Migration(4, // money saved as integer cents
+                    DbStrings.TableUsersField.UPDATE_TOTAL_TO_CENTS,
+                    DbStrings.TableItemsFields.UPDATE_PRICE_TO_CENTS,
+                    DbStrings.TableIncomesFields.UPDATE_VALUE_TO_CENTS),
+            new Migration(5, // totals by month and category, kept up to date by triggers
+                    DbStrings.TableMonthlyTotalsFields.getCreateTable(),
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_INCOMES_INSERT,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_INCOMES_DELETE,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_INCOMES_UPDATE,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_PURCHASES_INSERT,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_PURCHASES_DELETE,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_PURCHASES_UPDATE,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_ITEMS_UPDATE,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_ITEMS_DELETE,
+                    DbStrings.TableMonthlyTotalsFields.DELETE_ALL,
+                    DbStrings.TableMonthlyTotalsFields.INSERT_FROM_MOVEMENTS),
+            new Migration(6, // journal of the changes of the user totals, starting from the current totals
+                    DbStrings.TableBalanceJournalFields.getCreateTable(),
+                    DbStrings.TableBalanceJournalFields.CREATE_INDEX_USER,
+                    DbStrings.TableBalanceCheckpointsFields.getCreateTable(),
+                    DbStrings.TableBalanceJournalFields.INSERT_OPENINGS,
+                    DbStrings.TableBalanceCheckpointsFields.INSERT_FROM_OPENINGS),
+            new Migration(7, // full-text indexes of the items and the wishlists, kept up to date by triggers
+                    DbStrings.TableItemsSearchFields.getCreateTable(),
+                    DbStrings.TableItemsSearchFields.CREATE_TRIGGER_ITEMS_INSERT,
+                    DbStrings.TableItemsSearchFields.CREATE_TRIGGER_ITEMS_BEFORE_UPDATE,
+                    DbStrings.TableItemsSearchFields.CREATE_TRIGGER_ITEMS_AFTER_UPDATE,
+                    DbStrings.TableItemsSearchFields.CREATE_TRIGGER_ITEMS_DELETE,
+                    DbStrings.TableItemsSearchFields.REBUILD,
+                    DbStrings.TableWishListsSearchFields.getCreateTable(),
+                    DbStrings.TableWishListsSearchFields.CREATE_TRIGGER_WISH_LISTS_INSERT,
+                    DbStrings.TableWishListsSearchFields.CREATE_TRIGGER_WISH_LISTS_BEFORE_UPDATE,
+                    DbStrings.TableWishListsSearchFields.CREATE_TRIGGER_WISH_LISTS_AFTER_UPDATE,
+                    DbStrings.TableWishListsSearchFields.CREATE_TRIGGER_WISH_LISTS_DELETE,
+                    DbStrings.TableWishListsSearchFields.REBUILD),
+            new Migration(8, // archive of the old movements, with its summary by month
+                    DbStrings.TableIncomesArchiveFields.getCreateTable(),
+                    DbStrings.TableIncomesArchiveFields.CREATE_INDEX_USER_DATE,
+                    DbStrings.TablePurchasesArchiveFields.getCreateTable(),
+                    DbStrings.TablePurchasesArchiveFields.CREATE_INDEX_USER_DATE,
+                    DbStrings.TableArchivedPeriodsFields.getCreateTable(),
+                    DbStrings.TableArchivedPeriodsFields.CREATE_TRIGGER_INCOMES_ARCHIVE_INSERT,
+                    DbStrings.TableArchivedPeriodsFields.CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_INCOMES_ARCHIVE_INSERT,
+                    DbStrings.TableMonthlyTotalsFields.CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT),
+            new Migration(9, // incomes sorted by value without a temporary sort
+                    DbStrings.TableIncomesFields.CREATE_INDEX_USER_VALUE,
+                    DbStrings.TableIncomesArchiveFields.CREATE_INDEX_USER_VALUE),
+            new Migration(10, // full-text index of the archived purchases, kept up to date by a trigger
+                    DbStrings.TablePurchasesArchiveSearchFields.getCreateTable(),
+                    DbStrings.TablePurchasesArchiveSearchFields.CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT,
+                    DbStrings.TablePurchasesArchiveSearchFields.REBUILD)
+    };
+
+    private final static int FIRST_VERSION = 1;
+    final static int VERSION = MIGRATIONS[MIGRATIONS.length - 1].getVersion();
+    final static String DB_NAME = "KeepMoneyDb";
+    private final static long CLOSE_TIMEOUT_MILLIS = 10_000; // max wait for the queries still running at a restore
+
+    private static DbHelper instance; // the process-wide database owner
+
+    private final HashMap<String, SQLiteStatement> statements = new HashMap<>(); // precompiled statements, by SQL
+    // shared by the writes, taken alone by replaceDatabase, so the database is never replaced during a write
+    private final ReentrantReadWriteLock replaceLock = new ReentrantReadWriteLock();
+
+    private DbHelper(Context context) {
         super(context,DB_NAME,null,VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * This method returns the only DbHelper of the process, creating it the first time it is called.
+     * Only the application context is retained, so no activity or fragment is leaked.
+     *
+     * @param context       any context, used to get the application context
+     *
+     * @return the shared DbHelper
+     * */
+    public static synchronized DbHelper getInstance(Context context) {
+        if (instance == null) {
+            if (BuildConfig.DEBUG) {
+                detectLeakedCursors();
+            }
+            instance = new DbHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * This method closes the shared DbHelper, so the next call of getInstance opens the database again.
+     * It is used by the tests, where every test gets a new application and a new database.
+     * */
+    static synchronized void closeInstance() {
+        if (instance != null) {
+            for (SQLiteStatement statement : instance.statements.values()) {
+                statement.close();
+            }
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * This method makes the debug builds report every cursor, statement or database that is
+     * garbage collected without being closed, with the stack trace of the call that opened it.
+     * The reports are written to the log with the StrictMode tag, the rest of the VM policy is kept.
+     * */
+    private static void detectLeakedCursors() {
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder(StrictMode.getVmPolicy())
+                .detectLeakedSqlLiteObjects()
+                .detectLeakedClosableObjects()
+                .penaltyLog()
+                .build());
+    }
+
+    /**
+     * This method begins a write: it opens a transaction that doesn't block the readers, and keeps the database
+     * from being replaced by a restore until endWrite is called. The writes don't wait for each other here,
+     * SQLite runs them one at a time; they wait only for a restore that is in progress.
+     * It must always be followed by endWrite, in a finally block.
+     *
+     * @return the database, inside the transaction
+     *
+     * @see #replaceDatabase(File)
+     * */
+    SQLiteDatabase beginWrite() {
+        replaceLock.readLock().lock();
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransactionNonExclusive();
+            return db;
+        } catch (RuntimeException e) {
+            replaceLock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * This method ends a write begun by beginWrite: the transaction is committed if it has been marked
+     * as successful, otherwise it is rolled back, and a restore waiting for the write can go on.
+     *
+     * @param db        the database returned by beginWrite
+     * */
+    void endWrite(SQLiteDatabase db) {
+        try {
+            db.endTransaction();
+        } finally {
+            replaceLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method returns a precompiled statement for the SQL passed to it. The statement is compiled
+     * only the first time, then it is reused by every DbManager. A statement holds its bindings,
+     * so the caller must synchronize on it while binding and executing. It can be called only
+     * between beginWrite and endWrite, as replaceDatabase closes the statements once the writes are over.
+     *
+     * @param sql       the SQL of the statement, with "?" in place of the values
+     *
+     * @return the precompiled statement
+     * @throws IllegalStateException if it's called outside a write
+     * */
+    synchronized SQLiteStatement getStatement(String sql) {
+        if (replaceLock.getReadHoldCount() == 0) {
+            throw new IllegalStateException("getStatement chiamato fuori da una scrittura");
+        }
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = getWritableDatabase().compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * This method replaces the database with another database file, which must be in the same directory,
+     * so it can be renamed in place of the old one: the database is always either the old one or the new one.
+     * The connections are closed first, waiting for the queries that are still running, and the database
+     * is opened again, and migrated if it is older, by the next call of getReadableDatabase or getWritableDatabase.
+     * Those calls wait for the end of this method, as they are synchronized on the same object.
+     * The writes begun by beginWrite, on any thread, are waited for before the statements and the connections
+     * are closed, and the ones begun later wait until the new database is in place. It must not be called
+     * during a write, and it should run on the write executor, so the writes queued there run on the new database.
+     *
+     * @param replacement   the new database file, already validated, it's moved in place of the database
+     *
+     * @throws IOException if the database is still in use after CLOSE_TIMEOUT_MILLIS, or the file can't be moved
+     * */
+    void replaceDatabase(File replacement) throws IOException {
+        // the lock is taken before the monitor, as the writes do, otherwise a write calling getStatement would deadlock
+        replaceLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                swapDatabaseFile(replacement);
+            }
+        } finally {
+            replaceLock.writeLock().unlock();
+        }
     }
+
+    private void swapDatabaseFile(File replacement) throws IOException {
+        SQLiteDatabase db = getWritableDatabase();
+        File dbFile = new File(db.getPath());
+
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements.clear();
+        close();
+
+        // the queries started before close keep the connections open until they end
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MILLIS;
+        while (db.isOpen()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Il database è ancora in uso");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Ripristino interrotto");
+            }
+        }
+
+        // the log of the old database would be applied to the new one
+        deleteIfExists(new File(dbFile.getPath() + "-wal"));
+        deleteIfExists(new File(dbFile.getPath() + "-shm"));
+        deleteIfExists(new File(dbFile.getPath() + "-journal"));
+        Files.move(replacement.toPath(), dbFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteIfExists(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Impossibile eliminare " + file.getName());
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         String table = DbStrings.TableUsersField.getCreateTable();//users table creation
@@ -35,9 +297,37 @@ public class DbHelper extends SQLiteOpenHelper {
 
         table = DbStrings.TablePurchasesFields.getCreateTable();//purchase table creation
         db.execSQL(table);
+
+        migrate(db, FIRST_VERSION, VERSION); // a new database goes through the same steps of an old one
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {}
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * This method applies, in order, all the migrations between two versions of the database.
+     *
+     * @param db            the database to migrate
+     * @param oldVersion    the current version of the database
+     * @param newVersion    the version to reach
+     * */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getVersion() > oldVersion && migration.getVersion() <= newVersion) {
+                migration.apply(db);
+            }
+        }
+    }
+
+    /**
+     * This method returns the ordered list of the migrations, used to check them outside the app.
+     *
+     * @return the migrations
+     * */
+    static Migration[] getMigrations() {
+        return MIGRATIONS.clone();
+    }
 
 }
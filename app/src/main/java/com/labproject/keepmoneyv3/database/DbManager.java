@@ -4,26 +4,86 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 import android.widget.Toast;
 
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+import com.labproject.keepmoneyv3.utility.WishLists;
+
+import java.util.ArrayList;
+
 /**
  * This is the database manager class. Its methods perform all the queries used to get information from the db into the application.
  *
  * @author Giacomo Detomaso and Michelangelo De Pascale
  *
- * @see DbHelper        used to get the DB
+ * @see DbHelper        used to get the DB, shared by all the DbManager instances
  * @see DbStrings       used to access to all the tables
  * @see ContentValues   used to set the values of the queries
- * @see Cursor          used to provide the result of some queries
+ * @see CursorReader    used to read the result of the queries, the cursors never leave this class
+ * @see InvalidationTracker notified of the tables changed by every write
  * @see SQLiteDatabase  used to perform queries
+ * @see SQLiteStatement used to perform the most frequent inserts and updates
  * */
 public class DbManager {
+
+    /**
+     * Listener used to follow the progress of a bulk insert.
+     * */
+    public interface BulkInsertProgressListener {
+        void onProgress(int inserted, int total);
+    }
+
+    /**
+     * Listener notified of every query run by DbManager, used by the tests to check the plans of the queries.
+     * */
+    interface QueryListener {
+        void onQuery(String query, String[] args);
+    }
+
+    private static final String TAG = "DbManager";
+    private static final int BULK_PROGRESS_STEP = 50; // number of rows between two progress notifications
+    private static final int CHECKPOINT_INTERVAL = 100; // max number of journal entries after the last checkpoint of a user
+    private static final int SEARCH_CANDIDATES = 100; // number of most recent matches ranked by a search
+    private static final long ARCHIVE_STEP_MILLIS = 365L * 24 * 60 * 60 * 1000; // movements archived by a single transaction
+
+    static volatile QueryListener queryListener; // always null inside the application
+
     private final DbHelper dbHelper;
     private final Context context;
 
+    // precompiled statements of the most frequent writes, shared through the DbHelper
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO " + DbStrings.TableItemsFields.TABLE_NAME + " (" +
+                    DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED + ", " + DbStrings.TableItemsFields.ITEMS_NAME + ", " +
+                    DbStrings.TableItemsFields.ITEMS_PRICE + ", " + DbStrings.TableItemsFields.ITEMS_AMOUNT + ", " +
+                    DbStrings.TableItemsFields.ITEMS_ID_CAT + ") VALUES (?, ?, ?, ?, ?);";
+    private static final String INSERT_PURCHASE_SQL =
+            "INSERT INTO " + DbStrings.TablePurchasesFields.TABLE_NAME + " (" +
+                    DbStrings.TablePurchasesFields.PURCH_DATE + ", " + DbStrings.TablePurchasesFields.PURCH_ID_USER + ", " +
+                    DbStrings.TablePurchasesFields.PURCH_ITEM_ID + ", " + DbStrings.TablePurchasesFields.PURCH_WL_ID + ") " +
+                    "VALUES (?, ?, ?, ?);";
+    private static final String INSERT_INCOME_SQL =
+            "INSERT INTO " + DbStrings.TableIncomesFields.TABLE_NAME + " (" +
+                    DbStrings.TableIncomesFields.INCOMES_VAL + ", " + DbStrings.TableIncomesFields.INCOMES_DATE + ", " +
+                    DbStrings.TableIncomesFields.INCOMES_ID_CAT + ", " + DbStrings.TableIncomesFields.INCOMES_ID_USER + ") " +
+                    "VALUES (?, ?, ?, ?);";
+    private static final String ADD_TO_USER_TOTAL_SQL =
+            "UPDATE " + DbStrings.TableUsersField.TABLE_NAME + " SET " + DbStrings.TableUsersField.USERS_TOT + " = " +
+                    DbStrings.TableUsersField.USERS_TOT + " + ? WHERE " + DbStrings.TableUsersField.USERS_ID + " = ?;";
+    private static final String INSERT_JOURNAL_SQL =
+            "INSERT INTO " + DbStrings.TableBalanceJournalFields.TABLE_NAME + " (" +
+                    DbStrings.TableBalanceJournalFields.BJ_ID_USER + ", " + DbStrings.TableBalanceJournalFields.BJ_KIND + ", " +
+                    DbStrings.TableBalanceJournalFields.BJ_AMOUNT + ", " + DbStrings.TableBalanceJournalFields.BJ_REF_ID + ", " +
+                    DbStrings.TableBalanceJournalFields.BJ_DATE + ") VALUES (?, ?, ?, ?, ?);";
+
     public DbManager(Context context){
-        this.context = context;
-        dbHelper = new DbHelper(context);
+        this.context = context.getApplicationContext(); // only used to show the error messages
+        dbHelper = DbHelper.getInstance(context);
     }
 
     /**
@@ -35,11 +95,10 @@ public class DbManager {
      * @param name       the name of the user
      * @param surname    the surname of the user
      * @param email      email of the user
-     * @param total      total amount of money of the user
+     * @param total      total amount of money of the user, saved as the opening entry of the balance journal
      *
      * @return testValue if the user is inserted correctly, this value is greater than 0 */
-    public long insertUser(String username, String password, String name, String surname, String email, float total) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
+    public long insertUser(String username, String password, String name, String surname, String email, Money total) {
         ContentValues contentValues = new ContentValues();
 
         contentValues.put(DbStrings.TableUsersField.USERS_ID,username);
@@ -47,14 +106,23 @@ public class DbManager {
         contentValues.put(DbStrings.TableUsersField.USERS_NAME,name);
         contentValues.put(DbStrings.TableUsersField.USERS_FAMILY_NAME,surname);
         contentValues.put(DbStrings.TableUsersField.USERS_EMAIL, email);
-        contentValues.put(DbStrings.TableUsersField.USERS_TOT, total);
+        contentValues.put(DbStrings.TableUsersField.USERS_TOT, 0); // the opening entry adds the total
 
         long testValue = 0;
 
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            testValue = db.insert(DbStrings.TableUsersField.TABLE_NAME,null,contentValues);
+            testValue = db.insertOrThrow(DbStrings.TableUsersField.TABLE_NAME,null,contentValues);
+            recordBalanceChange(db, username, DbStrings.TableBalanceJournalFields.KIND_OPENING, total.getCents(), 0);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            testValue = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (testValue > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableUsersField.TABLE_NAME);
         }
         return testValue;
     }
@@ -67,47 +135,26 @@ public class DbManager {
      * @param desc      brief description of the category
      * @param picId     identifies the picture associated with the category*/
     public void insertCategories(String id, String desc, int picId) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues contentValues = new ContentValues();
         contentValues.put(DbStrings.TableCategoriesFields.CATEGORIES_ID,id);
         contentValues.put(DbStrings.TableCategoriesFields.CATEGORIES_DESC,desc);
         contentValues.put(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID,picId);
 
-        try {
-            db.insert(DbStrings.TableCategoriesFields.TABLE_NAME, null, contentValues);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-    }
-
-    /**
-     * This method is used to insert an item inside the database.
-     *
-     *
-     * @param price      the price of the item
-     * @param amount     indicates the amount item
-     * @param name       the name of the item
-     * @param valid      indicates if the item has been bought (valid = 1) or it's planned to (valid = 0)
-     * @param idCat      identifies the category of the item
-     *
-     * @return testValue if the item is inserted correctly, this value is greater than 0 */
-    public long insertItems(float price, int amount, String name, int valid, String idCat){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED,valid);
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_NAME ,name);
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_PRICE,price);
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_AMOUNT,amount);
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_ID_CAT,idCat);
-
-        long testValue = 0;
+        long testValue = -1;
 
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            testValue = db.insert(DbStrings.TableItemsFields.TABLE_NAME,null,contentValues);
+            testValue = db.insert(DbStrings.TableCategoriesFields.TABLE_NAME, null, contentValues);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            testValue = -1; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (testValue != -1) {
+            InvalidationTracker.notifyChanged(DbStrings.TableCategoriesFields.TABLE_NAME);
         }
-        return testValue;
     }
 
     /**
@@ -121,7 +168,6 @@ public class DbManager {
      * @return testValue if the income is inserted correctly, this value is greater than 0
      * */
     public long insertWishLists(String name, String desc, int valid) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues contentValues = new ContentValues();
         contentValues.put(DbStrings.TableWishListsFields.WL_NAME,name);
         contentValues.put(DbStrings.TableWishListsFields.WL_DESC,desc);
@@ -129,41 +175,18 @@ public class DbManager {
 
         long testValue = 0;
 
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
             testValue = db.insert(DbStrings.TableWishListsFields.TABLE_NAME,null,contentValues);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            testValue = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
         }
-        return testValue;
-    }
-
-    /**
-     * This method is used to insert a purchase inside the database.
-     *
-     *
-     * @param dateP     the date of the purchase
-     * @param timeP     the time of the purchase
-     * @param idUser    the id of the user
-     * @param idItem    the id of the item
-     * @param idWl      the id of the wishlist
-     *
-     * @return testValue if the income is inserted correctly, this value is greater than 0
-     * */
-    public long insertPurchases(String dateP, String timeP, String idUser, int idItem, int idWl){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_DATE, dateP);
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_TIME, timeP);
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_ID_USER, idUser);
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_ITEM_ID, idItem);
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_WL_ID, idWl);
-
-        long testValue = 0;
-
-        try {
-            testValue = db.insert(DbStrings.TablePurchasesFields.TABLE_NAME,null,contentValues);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+        if (testValue > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableWishListsFields.TABLE_NAME);
         }
         return testValue;
     }
@@ -179,67 +202,263 @@ public class DbManager {
      *
      **/
     public void insertWLElementPurchase(String idUser, int idItem, int idWl){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
         ContentValues contentValues = new ContentValues();
 
         contentValues.put(DbStrings.TablePurchasesFields.PURCH_ID_USER,idUser);
         contentValues.put(DbStrings.TablePurchasesFields.PURCH_ITEM_ID,idItem);
         contentValues.put(DbStrings.TablePurchasesFields.PURCH_WL_ID,idWl);
 
+        long testValue = -1;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            db.insert(DbStrings.TablePurchasesFields.TABLE_NAME,null,contentValues);
+            testValue = db.insert(DbStrings.TablePurchasesFields.TABLE_NAME,null,contentValues);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            testValue = -1; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (testValue != -1) {
+            InvalidationTracker.notifyChanged(DbStrings.TablePurchasesFields.TABLE_NAME);
         }
     }
 
     /**
-     * This method is used to insert an income inside the database.
+     * This method is used to insert a wishlist, all its items and the related purchases inside the database.
+     * Everything is written in a single transaction: if one of the rows can't be inserted, nothing is saved.
+     * The error is reported as the other writes do, so it can be called outside the main thread.
+     *
+     * @param name              the name of the list
+     * @param desc              a description of the list
+     * @param valid             indicates if the list has been bought (valid = 1) or it's planned to (valid = 0)
+     * @param items             the items of the list
+     * @param idUser            the id of the user
+     * @param progressListener  notified every BULK_PROGRESS_STEP items, it can be null
+     *
+     * @return listId if the wishlist is inserted correctly, this value is greater than 0
+     * */
+    public long insertWishListWithItems(String name, String desc, int valid, ArrayList<Item> items, String idUser,
+                                        BulkInsertProgressListener progressListener){
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DbStrings.TableWishListsFields.WL_NAME,name);
+        contentValues.put(DbStrings.TableWishListsFields.WL_DESC,desc);
+        contentValues.put(DbStrings.TableWishListsFields.WL_IS_CONFIRMED, valid);
+
+        long listId = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try {
+            listId = db.insertOrThrow(DbStrings.TableWishListsFields.TABLE_NAME,null,contentValues);
+
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                long itemId = executeInsertItem(item.getPrice(), item.getAmount(), item.getName(), item.getValid(), item.getCatID());
+
+                // the purchase of a wishlist element has no date and time until the list is confirmed
+                executeInsertPurchase(null, idUser, itemId, listId);
+
+                if (progressListener != null && ((i + 1) % BULK_PROGRESS_STEP == 0 || i + 1 == items.size())) {
+                    progressListener.onProgress(i + 1, items.size());
+                }
+            }
+
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            listId = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (listId > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableWishListsFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME);
+        }
+        return listId;
+    }
+
+    /**
+     * This method is used to insert a simple purchase and its item inside the database. The cost of the item
+     * is taken from the total of the user, in the same transaction.
+     *
+     * @param item      the item bought
+     * @param date      the date and time of the purchase, in epoch milliseconds
+     * @param idUser    the id of the user
+     *
+     * @return testValue if the purchase is inserted correctly, this value is greater than 0
+     * */
+    public long insertPurchaseWithItem(Item item, long date, String idUser){
+        long testValue = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try {
+            long itemId = executeInsertItem(item.getPrice(), item.getAmount(), item.getName(), item.getValid(), item.getCatID());
+            testValue = executeInsertPurchase(date, idUser, itemId, 0);
+            recordBalanceChange(db, idUser, DbStrings.TableBalanceJournalFields.KIND_PURCHASE,
+                    -item.getPrice().times(item.getAmount()).getCents(), testValue);
+            db.setTransactionSuccessful();
+        }catch (Exception e){
+            testValue = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (testValue > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
+        }
+        return testValue;
+    }
+
+    /**
+     * This method is used to insert an income inside the database. The value of the income
+     * is added to the total of the user, in the same transaction.
      *
      *
      * @param val       the value of the income
-     * @param date      the date of the income
+     * @param date      the date of the income, in epoch milliseconds
      * @param idCat     the category of the income
      * @param idUser    the id of the user
      *
      * @return testValue if the income is inserted correctly, this value is greater than 0 */
-    public long insertIncome(float val, String date, String idCat, String idUser){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(DbStrings.TableIncomesFields.INCOMES_VAL,val);
-        contentValues.put(DbStrings.TableIncomesFields.INCOMES_DATE,date);
-        contentValues.put(DbStrings.TableIncomesFields.INCOMES_ID_CAT,idCat);
-        contentValues.put(DbStrings.TableIncomesFields.INCOMES_ID_USER,idUser);
-
+    public long insertIncome(Money val, long date, String idCat, String idUser){
         long testValue = 0;
 
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            testValue = db.insert(DbStrings.TableIncomesFields.TABLE_NAME,null,contentValues);
+            SQLiteStatement statement = dbHelper.getStatement(INSERT_INCOME_SQL);
+            synchronized (statement) {
+                statement.clearBindings();
+                statement.bindLong(1, val.getCents());
+                statement.bindLong(2, date);
+                bindStringOrNull(statement, 3, idCat);
+                bindStringOrNull(statement, 4, idUser);
+                testValue = statement.executeInsert();
+            }
+            recordBalanceChange(db, idUser, DbStrings.TableBalanceJournalFields.KIND_INCOME, val.getCents(), testValue);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            testValue = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (testValue > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
         }
         return testValue;
     }
 
     /**
-     * This method is used to remove an income from the database.
+     * This method is used to insert many movements of a user inside the database, in a single transaction:
+     * if one of the rows can't be inserted, nothing is saved. The rows are written with the precompiled
+     * statements, and the change of the total is applied once, with a single entry of the balance journal.
+     * It does not show any message, so it can be called outside the main thread.
+     *
+     * @param batch     the incomes, purchases and wishlists to insert
+     * @param idUser    the id of the user
+     *
+     * @return true if the whole batch is inserted
+     * */
+    public boolean insertBatch(MovementBatch batch, String idUser){
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        boolean inserted = false;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try {
+            SQLiteStatement incomeStatement = dbHelper.getStatement(INSERT_INCOME_SQL);
+            synchronized (incomeStatement) {
+                for (MovementBatch.Income income : batch.getIncomes()) {
+                    incomeStatement.clearBindings();
+                    incomeStatement.bindLong(1, income.value.getCents());
+                    incomeStatement.bindLong(2, income.date);
+                    bindStringOrNull(incomeStatement, 3, income.idCat);
+                    bindStringOrNull(incomeStatement, 4, idUser);
+                    incomeStatement.executeInsert();
+                }
+            }
+
+            for (MovementBatch.Purchase purchase : batch.getPurchases()) {
+                Item item = purchase.item;
+                long itemId = executeInsertItem(item.getPrice(), item.getAmount(), item.getName(), item.getValid(), item.getCatID());
+                executeInsertPurchase(purchase.date, idUser, itemId, 0);
+            }
+
+            for (MovementBatch.WishList wishList : batch.getWishLists()) {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(DbStrings.TableWishListsFields.WL_NAME, wishList.name);
+                contentValues.put(DbStrings.TableWishListsFields.WL_DESC, wishList.desc);
+                contentValues.put(DbStrings.TableWishListsFields.WL_IS_CONFIRMED, wishList.getValid());
+                long listId = db.insertOrThrow(DbStrings.TableWishListsFields.TABLE_NAME, null, contentValues);
+
+                for (Item item : wishList.items) {
+                    long itemId = executeInsertItem(item.getPrice(), item.getAmount(), item.getName(), item.getValid(), item.getCatID());
+                    executeInsertPurchase(wishList.date, idUser, itemId, listId);
+                }
+            }
+
+            long balanceChange = batch.getBalanceChange().getCents();
+            if (balanceChange != 0) {
+                recordBalanceChange(db, idUser, DbStrings.TableBalanceJournalFields.KIND_BATCH, balanceChange, 0);
+            }
+            db.setTransactionSuccessful();
+            inserted = true;
+        } catch (Exception e) {
+            inserted = false; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (inserted) {
+            InvalidationTracker.notifyChanged(DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME,
+                    DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableWishListsFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
+        }
+        return inserted;
+    }
+
+    /**
+     * This method is used to remove an income from the database. The value of the income
+     * is taken from the total of the user, in the same transaction.
      *
      *
      * @param incomeId      the id of the income
      *
      * @return affectedRows if the purchase is removed correctly, this value is greater than 0 */
     public long removeIncome(int incomeId){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
+        String[] args = {Integer.toString(incomeId)};
         int affectedRows = 0;
-        affectedRows += db.delete("incomes","id =?", new String[]{Integer.toString(incomeId)});
 
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try (Cursor cursor = rawQuery(db, "SELECT value, userId FROM incomes WHERE id = ?;", args)) {
+            if (cursor.moveToFirst()) {
+                long value = cursor.getLong(0);
+                String userId = cursor.getString(1);
+
+                affectedRows += delete(db, DbStrings.TableIncomesFields.TABLE_NAME,"id = ?", args);
+                recordBalanceChange(db, userId, DbStrings.TableBalanceJournalFields.KIND_INCOME_REMOVED, -value, incomeId);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
+        }
         return affectedRows;
     }
 
 
     /**
-     * This method is used to remove a purchase from the database.
+     * This method is used to remove a purchase from the database. If the item was bought, its cost
+     * is given back to the user, in the same transaction.
      *
      *
      * @param itemId         the id of the item
@@ -247,34 +466,94 @@ public class DbManager {
      *
      * @return affectedRows  if the purchase is removed correctly, this value is greater than 0 */
     public long removePurchase(int itemId, int purchaseId){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
+        String query = "SELECT purchases.userId, items.price * items.amount, items.isConfirmed " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId WHERE purchases.id = ?;";
         int affectedRows = 0;
-        affectedRows += db.delete("purchases", "id =?",new String[]{Integer.toString(purchaseId)});
-        affectedRows += db.delete("items","id=?", new String[]{Integer.toString(itemId)});
 
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try (Cursor cursor = rawQuery(db, query, new String[]{Integer.toString(purchaseId)})) {
+            boolean wasBought = cursor.moveToFirst() && cursor.getInt(2) == ApplicationTags.MiscellaneousTags.CONFIRMED;
+
+            affectedRows += delete(db, DbStrings.TablePurchasesFields.TABLE_NAME, "id = ?",new String[]{Integer.toString(purchaseId)});
+            affectedRows += delete(db, DbStrings.TableItemsFields.TABLE_NAME,"id = ?", new String[]{Integer.toString(itemId)});
+
+            if (wasBought) {
+                recordBalanceChange(db, cursor.getString(0), DbStrings.TableBalanceJournalFields.KIND_PURCHASE_REMOVED,
+                        cursor.getLong(1), purchaseId);
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
+        }
         return affectedRows;
     }
 
     /**
-     * This method is used to update the "total" of the user.
+     * This method is used to buy a wishlist: the list and its items are confirmed, their purchases get the date
+     * of the confirmation and the total of the list is taken from the total of the user, all in a single transaction.
+     * Only the purchases of the user are read and changed, and nothing is changed if the list is not of the user.
      *
+     * @param listId        the id of the list
+     * @param username      the username
+     * @param date          date and time of the confirmation, in epoch milliseconds
      *
-     * @param tot       total
-     * @param username  username
+     * @return true if the list has been confirmed
      * */
-    public void updateUserTotal(float tot,String username){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String whereClause = "username = '" + username + "'";//the where clause
-        ContentValues contentValues = new ContentValues();
-        contentValues.put(DbStrings.TableUsersField.USERS_TOT,tot);
-
+    public boolean confirmWishListPurchase(int listId, String username, long date){
+        String[] listArgs = {Integer.toString(listId), username};
+        String sumQuery = "SELECT COALESCE(SUM(items.price * items.amount), 0) FROM purchases " +
+                "JOIN items ON items.id = purchases.itemId " +
+                "WHERE purchases.listId = ? AND purchases.userId = ? AND items.isConfirmed = ?;";
+        boolean confirmed = false;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-             db.update(DbStrings.TableUsersField.TABLE_NAME,contentValues,whereClause,null);
+            long listTotal;
+            try (Cursor cursor = rawQuery(db, sumQuery,
+                    new String[]{listArgs[0], username, Integer.toString(ApplicationTags.MiscellaneousTags.NOT_CONFIRMED)})) {
+                cursor.moveToFirst();
+                listTotal = cursor.getLong(0);
+            }
+
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DbStrings.TableWishListsFields.WL_IS_CONFIRMED, ApplicationTags.MiscellaneousTags.CONFIRMED);
+            // the lists have no user, a list is of the user who made its purchases
+            if (update(db, DbStrings.TableWishListsFields.TABLE_NAME, contentValues,
+                    "id = ? AND EXISTS (SELECT 1 FROM purchases WHERE purchases.listId = wishLists.id AND purchases.userId = ?)", listArgs) == 0) {
+                return false; // not a list of the user, the transaction is rolled back
+            }
+
+            // the dates are set before confirming the items, so the monthly totals get the right month
+            contentValues = new ContentValues();
+            contentValues.put(DbStrings.TablePurchasesFields.PURCH_DATE, date);
+            update(db, DbStrings.TablePurchasesFields.TABLE_NAME, contentValues, "listId = ? AND userId = ?", listArgs);
+
+            contentValues = new ContentValues();
+            contentValues.put(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED, ApplicationTags.MiscellaneousTags.CONFIRMED);
+            update(db, DbStrings.TableItemsFields.TABLE_NAME, contentValues,
+                    "id IN (SELECT itemId FROM purchases WHERE listId = ? AND userId = ?)", listArgs);
+
+            recordBalanceChange(db, username, DbStrings.TableBalanceJournalFields.KIND_WISH_LIST_CONFIRMED, -listTotal, listId);
+            db.setTransactionSuccessful();
+            confirmed = true;
+        } catch (Exception e) {
+            confirmed = false; // nothing is changed, the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
 
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+        if (confirmed) {
+            InvalidationTracker.notifyChanged(DbStrings.TableWishListsFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TableUsersField.TABLE_NAME);
         }
+        return confirmed;
     }
 
     /**
@@ -285,15 +564,25 @@ public class DbManager {
      * @param id        item's ID
      * */
     public void updateItemsValidity(int valid, int id){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String whereClause = " id = " + id;
+        String whereClause = "id = ?";
+        String[] whereArgs = {Integer.toString(id)};
         ContentValues contentValues = new ContentValues();
         contentValues.put(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED,valid);
 
+        int affectedRows = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            db.update(DbStrings.TableItemsFields.TABLE_NAME,contentValues,whereClause,null);
+            affectedRows = update(db, DbStrings.TableItemsFields.TABLE_NAME,contentValues,whereClause,whereArgs);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableItemsFields.TABLE_NAME);
         }
     }
 
@@ -305,37 +594,55 @@ public class DbManager {
      * @param id        wishlistID
      * */
     public void updateAtWishListConfirmation(int valid, int id){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String whereClause = " id = " + id;
+        String whereClause = "id = ?";
+        String[] whereArgs = {Integer.toString(id)};
         ContentValues contentValues = new ContentValues();
         contentValues.put(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED,valid);
 
+        int affectedRows = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            db.update(DbStrings.TableWishListsFields.TABLE_NAME,contentValues,whereClause,null);
+            affectedRows = update(db, DbStrings.TableWishListsFields.TABLE_NAME,contentValues,whereClause,whereArgs);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableWishListsFields.TABLE_NAME);
         }
     }
 
     /**
-     * This method is used to update the date and time fields of a purchase.
+     * This method is used to update the date of a purchase.
      *
      *
-     * @param date      date of the wishlist purchase
-     * @param time      time of the wishlist purchase
-     * @param id        the id of the wishlist
+     * @param date      date and time of the wishlist purchase, in epoch milliseconds
+     * @param id        the id of the purchase
      * */
-    public void updatePurchasesDateAndTime(String date, String time, int id){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String whereClause = " id = " + id;
+    public void updatePurchasesDate(long date, int id){
+        String whereClause = "id = ?";
+        String[] whereArgs = {Integer.toString(id)};
         ContentValues contentValues = new ContentValues();
         contentValues.put(DbStrings.TablePurchasesFields.PURCH_DATE,date);
-        contentValues.put(DbStrings.TablePurchasesFields.PURCH_TIME,time);
 
+        int affectedRows = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            db.update(DbStrings.TablePurchasesFields.TABLE_NAME,contentValues,whereClause,null);
+            affectedRows = update(db, DbStrings.TablePurchasesFields.TABLE_NAME,contentValues,whereClause,whereArgs);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TablePurchasesFields.TABLE_NAME);
         }
     }
 
@@ -346,17 +653,27 @@ public class DbManager {
      * @param amount    the new amount of the item
      * @param id        the id of the item to update
      * */
-    public void updateWishListItemInfo(float price, int amount, int id){
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        String whereClause = " id = " + id;
+    public void updateWishListItemInfo(Money price, int amount, int id){
+        String whereClause = "id = ?";
+        String[] whereArgs = {Integer.toString(id)};
         ContentValues contentValues = new ContentValues();
-        contentValues.put(DbStrings.TableItemsFields.ITEMS_PRICE,price);
+        contentValues.put(DbStrings.TableItemsFields.ITEMS_PRICE,price.getCents());
         contentValues.put(DbStrings.TableItemsFields.ITEMS_AMOUNT,amount);
 
+        int affectedRows = 0;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
         try {
-            db.update(DbStrings.TableItemsFields.TABLE_NAME,contentValues,whereClause,null);
+            affectedRows = update(db, DbStrings.TableItemsFields.TABLE_NAME,contentValues,whereClause,whereArgs);
+            db.setTransactionSuccessful();
         }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+            affectedRows = 0; // the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+        if (affectedRows > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableItemsFields.TABLE_NAME);
         }
     }
 
@@ -366,18 +683,14 @@ public class DbManager {
      *
      *
      * @param itemId     the id of the item
-     * @return a cursor with the data obtained from the query launched by the method
-     * */
-    public Cursor queryGetIncomeValueFromItemId(int itemId){
-        String query = "SELECT value FROM incomes WHERE id = '" + itemId + "';";
-        Cursor cursor = null;
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+     * @param reader     reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T queryGetIncomeValueFromItemId(int itemId, CursorReader<T> reader){
+        String query = "SELECT value FROM incomes WHERE id = ?;";
+
+        return read(query, new String[]{Integer.toString(itemId)}, reader);
     }
 
     /**
@@ -385,19 +698,14 @@ public class DbManager {
      *
      *
      * @param itemId     the id of the item
+     * @param reader     reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor queryGetPurchaseIdFromItemId(int itemId){
-        String query = "SELECT purchases.id FROM purchases JOIN items ON purchases.itemId = items.id WHERE itemId = '" + itemId + "';";
-        Cursor cursor = null;
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+    public <T> T queryGetPurchaseIdFromItemId(int itemId, CursorReader<T> reader){
+        String query = "SELECT purchases.id FROM purchases JOIN items ON purchases.itemId = items.id WHERE itemId = ?;";
+
+        return read(query, new String[]{Integer.toString(itemId)}, reader);
     }
 
     /**
@@ -405,19 +713,14 @@ public class DbManager {
      *
      *
      * @param itemId     the id of the item
+     * @param reader     reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor queryGetCostFromItemId(int itemId){
-        String query = "SELECT price * amount AS cost FROM items WHERE id = '" + itemId + "';";
-        Cursor cursor = null;
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+    public <T> T queryGetCostFromItemId(int itemId, CursorReader<T> reader){
+        String query = "SELECT price * amount AS cost FROM items WHERE id = ?;";
+
+        return read(query, new String[]{Integer.toString(itemId)}, reader);
     }
 
 
@@ -427,146 +730,333 @@ public class DbManager {
      *
      * @param username  identifies an user uniquely
      * @param password  the password of the user account
+     * @param reader    reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor queryCheckUserLogin(String username, String password){
+    public <T> T queryCheckUserLogin(String username, String password, CursorReader<T> reader){
         String query = "SELECT users.* FROM users " +
-                "WHERE username = '" + username + "' AND password = '" + password + "';";
+                "WHERE username = ? AND password = ?;";
 
-        Cursor cursor = null;
+        return read(query, new String[]{username, password}, reader);
+    }
 
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+    /**
+     * This method performs a query to get the total of a user.
+     *
+     * @param username  the username
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getUserTotalQuery(String username, CursorReader<T> reader){
+        String query = "SELECT total FROM users WHERE username = ?;";
+
+        return read(query, new String[]{username}, reader);
     }
 
     /**
      * This method performs a query to get all the rows from a specified table.
      *
      * @param table         the name of the table to access
+     * @param reader        reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      **/
-    public Cursor queryGetAllRows(String table){
-        Cursor cursor = null;
-        try {
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.query(table,null,null,null,null,null,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+    public <T> T queryGetAllRows(String table, CursorReader<T> reader){
+        return read("SELECT * FROM " + table + ";", null, reader);
     }
 
     /**
      * This method is used to count the number of rows of a table without any specific constraint.
      *
      * @param table         the name of the table to access
+     * @param reader        reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor countQuery(String table){
+    public <T> T countQuery(String table, CursorReader<T> reader){
         String query = "SELECT COUNT(*) AS numRows FROM " + table;
-        Cursor cursor = null;
-        try {
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
 
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-
-        return cursor;
+        return read(query, null, reader);
     }
 
     /**
      * This method is used to count the number of rows in the "Incomes" table that belong to a specified user.
      *
      * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor countIncomesRowsByUsername(String username){
+    public <T> T countIncomesRowsByUsername(String username, CursorReader<T> reader){
         String query = "SELECT COUNT(*) AS numRows " +
                 "FROM incomes  " +
-                "WHERE userId = '" + username + "';";
-        Cursor cursor = null;
-        try {
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+                "WHERE userId = ?;";
+
+        return read(query, new String[]{username}, reader);
     }
 
     /**
      * This method is used to count the number of rows in the "Purchases" table that belong to a specified user and are not part of a wishlist.
      *
      * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor countSimplePurchasesRowsByUsername(String username){
+    public <T> T countSimplePurchasesRowsByUsername(String username, CursorReader<T> reader){
         String query = "SELECT COUNT(*) AS numRows " +
                 "FROM purchases " +
-                "WHERE userId = '" + username + "' AND listId = 0;";
-        Cursor cursor = null;
-        try {
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+                "WHERE userId = ? AND listId = 0;";
+
+        return read(query, new String[]{username}, reader);
+    }
+
+    /**
+     * This method is used to count the number of rows in the "Purchases" table that belong to a specified user,
+     * including the elements of the wishlists.
+     *
+     * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T countPurchasesRowsByUsername(String username, CursorReader<T> reader){
+        String query = "SELECT COUNT(*) AS numRows " +
+                "FROM purchases " +
+                "WHERE userId = ?;";
+
+        return read(query, new String[]{username}, reader);
+    }
+
+    /**
+     * This method is used to count the archived incomes and simple purchases of a user, read from the summary
+     * of the archive, in the columns "incomesRows" and "purchasesRows".
+     *
+     * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T countArchivedRowsByUsername(String username, CursorReader<T> reader){
+        String query = "SELECT SUM(incomesCount) AS incomesRows, SUM(purchasesCount) AS purchasesRows " +
+                "FROM archivedPeriods " +
+                "WHERE userId = ?;";
+
+        return read(query, new String[]{username}, reader);
     }
 
     /**
      * This method is used to get the sum of all the incomes that belong to a specified user.
+     * The sum is read from the monthly totals, so it doesn't depend on the number of incomes.
      *
      * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor sumIncomesQuery(String username){
-        String query = "SELECT SUM(incomes.value) AS sumInc FROM incomes JOIN users " +
-                "ON (users.username = incomes.userId) WHERE username = '" + username + "'";
-        Cursor cursor = null;
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+    public <T> T sumIncomesQuery(String username, CursorReader<T> reader){
+        String query = "SELECT SUM(incomes) AS sumInc FROM monthlyTotals WHERE userId = ?";
+
+        return read(query, new String[]{username}, reader);
+    }
+
+    /**
+     * This method is used to get the sum of all the confirmed purchases that belong to a specified user,
+     * including the items of the bought wishlists.
+     * The sum is read from the monthly totals, so it doesn't depend on the number of purchases.
+     *
+     * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T sumPurchasesQuery(String username, CursorReader<T> reader){
+        String query = "SELECT SUM(purchases) AS sumPurch FROM monthlyTotals WHERE userId = ?";
+
+        return read(query, new String[]{username}, reader);
+    }
+
+    /**
+     * This method is used to get the data of the dashboard with a single query: the sum of the incomes and
+     * the sum of the confirmed purchases of a user, read from the monthly totals, and its most recent simple purchases.
+     * A single query reads a single state of the database, so the sums and the purchases always match.
+     *
+     * @param username      the username
+     * @param limit         the number of recent purchases
+     *
+     * @return the summary, null if the query failed
+     * */
+    public DashboardSummary getDashboardSummary(String username, int limit){
+        String query = "SELECT totals." + DashboardSummary.SUM_INCOMES_COLUMN + ", totals." + DashboardSummary.SUM_PURCHASES_COLUMN + ", " +
+                "recent.id, recent.name, recent.price, recent.amount, recent.picId " +
+                "FROM (SELECT SUM(incomes) AS " + DashboardSummary.SUM_INCOMES_COLUMN + ", SUM(purchases) AS " +
+                DashboardSummary.SUM_PURCHASES_COLUMN + " FROM monthlyTotals WHERE userId = ?) AS totals " +
+                "LEFT JOIN (SELECT items.id, items.name, items.price, items.amount, categories.picId " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId = 0 " +
+                "ORDER BY purchases.itemId DESC LIMIT ?) AS recent ON 1 " +
+                "ORDER BY recent.id DESC;";
+
+        return read(query, new String[]{username, username, Integer.toString(limit)}, DashboardSummary.reader());
+    }
 
+    /**
+     * This method is used to get the incomes and the confirmed purchases of a user, summed month by month.
+     * The months are identified by their key, see DbStrings.TableMonthlyTotalsFields.monthKey.
+     *
+     * @param username      the username
+     * @param fromMonth     the key of the first month, included
+     * @param toMonth       the key of the last month, included
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getMonthlyTotalsQuery(String username, int fromMonth, int toMonth, CursorReader<T> reader){
+        String query = "SELECT month, SUM(incomes) AS sumInc, SUM(purchases) AS sumPurch FROM monthlyTotals " +
+                "WHERE userId = ? AND month >= ? AND month <= ? GROUP BY month ORDER BY month;";
+
+        return read(query, new String[]{username, Integer.toString(fromMonth), Integer.toString(toMonth)}, reader);
+    }
+
+    /**
+     * This method is used to get the incomes and the confirmed purchases of a user in a period, summed by category.
+     *
+     * @param username      the username
+     * @param fromMonth     the key of the first month, included
+     * @param toMonth       the key of the last month, included
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getCategoryTotalsQuery(String username, int fromMonth, int toMonth, CursorReader<T> reader){
+        String query = "SELECT idCat, SUM(incomes) AS sumInc, SUM(purchases) AS sumPurch FROM monthlyTotals " +
+                "WHERE userId = ? AND month >= ? AND month <= ? GROUP BY idCat;";
+
+        return read(query, new String[]{username, Integer.toString(fromMonth), Integer.toString(toMonth)}, reader);
+    }
+
+    /**
+     * This method is used to get the summary of the archive of a user: for every archived month,
+     * the number and the sum of its incomes and of its purchases, from the most recent month.
+     *
+     * @param username      the username
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getArchivedPeriodsQuery(String username, CursorReader<T> reader){
+        String query = "SELECT month, incomesCount, incomes, purchasesCount, purchases FROM archivedPeriods " +
+                "WHERE userId = ? ORDER BY month DESC;";
+
+        return read(query, new String[]{username}, reader);
+    }
+
+    /**
+     * This method computes again the monthly totals of all the users from their movements.
+     * The totals are kept up to date by the database itself, so this is needed only to repair them,
+     * for example after the time zone of the device has changed.
+     *
+     * @return true if the totals have been rebuilt
+     * */
+    public boolean rebuildMonthlyTotals(){
+        boolean rebuilt = false;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try {
+            db.execSQL(DbStrings.TableMonthlyTotalsFields.DELETE_ALL);
+            db.execSQL(DbStrings.TableMonthlyTotalsFields.INSERT_FROM_ALL_MOVEMENTS);
+            db.setTransactionSuccessful();
+            rebuilt = true;
+        } catch (Exception e) {
+            rebuilt = false; // nothing is changed, the transaction is rolled back
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (rebuilt) {
+            InvalidationTracker.notifyChanged(DbStrings.TableMonthlyTotalsFields.TABLE_NAME);
         }
-        return cursor;
+        return rebuilt;
     }
 
     /**
-     * This method is used to get the sum of all the purchases that belong to a specified user and are part of a wishlist.
+     * This method moves the incomes and the simple purchases of a user older than a cutoff into the archive tables,
+     * so the lists and the other queries of the recent movements read only the rows after the cutoff.
+     * The purchases are archived together with their item, the wishlists are never archived.
+     * The monthly totals, the total of the user and its journal don't change, and the archived movements
+     * are counted month by month in the "ArchivedPeriods" table.
+     *
+     * The movements are moved a year at a time, every year in its own transaction, so the other connections
+     * never wait for the whole archive. It must run on the write executor.
      *
      * @param username      the username
+     * @param cutoff        the movements made before this instant are archived, in epoch milliseconds
      *
-     * @return a cursor with the data obtained from the query launched by the method
-     * */
-    public Cursor sumPurchasesQuery(String username, int isConfirmed){
-        String query = "SELECT SUM(items.price*amount) AS sumPurch FROM items JOIN " +
-                "purchases ON (purchases.itemId = items.id) JOIN users " +
-                "ON (users.username = purchases.userId) WHERE isConfirmed = " + isConfirmed + " " +
-                "AND username = '" + username + "'";
-        Cursor cursor = null;
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+     * @return the number of archived movements, the ones of the years archived before an error are included
+     *
+     * @see #getIncomesHistoryPage(String, int, Page.Key, CursorReader)   which reads the recent and the archived incomes
+     * */
+    public int archiveMovements(String username, long cutoff){
+        String oldestQuery = "SELECT MIN(oldest) FROM (" +
+                "SELECT MIN(dateIncome) AS oldest FROM incomes WHERE userId = ? " +
+                "UNION ALL SELECT MIN(dateP) FROM purchases WHERE userId = ? AND listId = 0);";
+        int archived = 0;
+        long from;
+
+        try (Cursor cursor = rawQuery(dbHelper.getReadableDatabase(), oldestQuery, new String[]{username, username})) {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return 0; // no dated movements
+            }
+            from = cursor.getLong(0);
+        } catch (Exception e) {
+            reportError(e);
+            return 0;
+        }
+
+        while (from < cutoff) {
+            long to = Math.min(from + ARCHIVE_STEP_MILLIS, cutoff);
+            String[] args = {username, Long.toString(from), Long.toString(to)};
+
+            SQLiteDatabase db = dbHelper.beginWrite(); // a restore can run between two years, not during one
+            try {
+                execSQL(db, "INSERT INTO incomesArchive (id, value, dateIncome, idCat, userId) " +
+                        "SELECT id, value, dateIncome, idCat, userId FROM incomes " +
+                        "WHERE userId = ? AND dateIncome >= ? AND dateIncome < ?;", args);
+                int incomes = delete(db, DbStrings.TableIncomesFields.TABLE_NAME, "userId = ? AND dateIncome >= ? AND dateIncome < ?", args);
+
+                execSQL(db, "INSERT INTO purchasesArchive (id, dateP, userId, itemId, name, price, amount, idCat) " +
+                        "SELECT purchases.id, purchases.dateP, purchases.userId, purchases.itemId, " +
+                        "items.name, items.price, items.amount, items.idCat " +
+                        "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                        "WHERE purchases.userId = ? AND purchases.dateP >= ? AND purchases.dateP < ? " +
+                        "AND purchases.listId = 0 AND items.isConfirmed = " + ApplicationTags.MiscellaneousTags.CONFIRMED + ";", args);
+                // the purchases first, their triggers read the cost from the items
+                int purchases = delete(db, DbStrings.TablePurchasesFields.TABLE_NAME, "id IN (SELECT id FROM purchasesArchive " +
+                        "WHERE userId = ? AND dateP >= ? AND dateP < ?)", args);
+                delete(db, DbStrings.TableItemsFields.TABLE_NAME, "id IN (SELECT itemId FROM purchasesArchive " +
+                        "WHERE userId = ? AND dateP >= ? AND dateP < ?)", args);
+
+                db.setTransactionSuccessful();
+                archived += incomes + purchases;
+            } catch (Exception e) {
+                reportError(e);
+                break; // the year is rolled back, the previous ones stay archived
+            } finally {
+                dbHelper.endWrite(db);
+            }
+            from = to;
+        }
+
+        if (archived > 0) {
+            InvalidationTracker.notifyChanged(DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME,
+                    DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TableIncomesArchiveFields.TABLE_NAME,
+                    DbStrings.TablePurchasesArchiveFields.TABLE_NAME, DbStrings.TableArchivedPeriodsFields.TABLE_NAME);
         }
-        return cursor;
+        return archived;
     }
 
     /**
@@ -576,62 +1066,264 @@ public class DbManager {
      * @param limit     the number of items
      * @param listId    specify if the item is part of a wishlist
      * @param username  the username
+     * @param reader    reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor getPurchasesItemsQuery(int limit, int listId, String username){
+    public <T> T getPurchasesItemsQuery(int limit, int listId, String username, CursorReader<T> reader){
         String query;
+        String[] args;
+        // the purchases are read in the order of the (userId, listId, itemId) index, so they are never sorted
         if(limit > 0) {
              query =
                     "SELECT items.id, items.name,items.price, items.amount,categories.picId " +
-                            "FROM items JOIN categories ON categories.id = items.idCat" +
-                            " JOIN purchases ON purchases.itemId = items.id" +
-                            " JOIN users ON users.username = purchases.userId" +
-                            " WHERE listId = " + listId + " AND users.username = '" + username + "'" +
-                            " ORDER BY items.id DESC" +
-                            " LIMIT " + limit + ";";
+                            "FROM purchases JOIN items ON items.id = purchases.itemId" +
+                            " JOIN categories ON categories.id = items.idCat" +
+                            " WHERE purchases.userId = ? AND purchases.listId = ?" +
+                            " ORDER BY purchases.itemId DESC" +
+                            " LIMIT ?;";
+             args = new String[]{username, Integer.toString(listId), Integer.toString(limit)};
         } else {
             query =
                     "SELECT items.id, items.name,items.price, items.amount,categories.picId " +
-                            "FROM items JOIN categories ON categories.id = items.idCat" +
-                            " JOIN purchases ON purchases.itemId = items.id" +
-                            " JOIN users ON users.username = purchases.userId" +
-                            " WHERE listId = " + listId + " AND users.username = '" + username + "'" +
-                            " ORDER BY items.id DESC;";
+                            "FROM purchases JOIN items ON items.id = purchases.itemId" +
+                            " JOIN categories ON categories.id = items.idCat" +
+                            " WHERE purchases.userId = ? AND purchases.listId = ?" +
+                            " ORDER BY purchases.itemId DESC;";
+            args = new String[]{username, Integer.toString(listId)};
         }
 
-        Cursor cursor = null;
+        return read(query, args, reader);
+    }
 
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+    /**
+     * This method is used to get a page of the simple purchases of a user, the ones that are not part of a wishlist.
+     * The pages are read with keyset pagination, so the time needed doesn't depend on the position of the page.
+     * Sorted by price the pages are slower: the cost is computed from the item, so no index has it, and all the
+     * simple purchases of the user after the key are read and sorted before the first row is returned.
+     *
+     * @param username  the username
+     * @param sort      the order of the purchases, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the last purchase of the previous page, null to get the first page
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see Page
+     * */
+    public <T> T getSimplePurchasesPage(String username, int sort, Page.Key after, CursorReader<T> reader){
+        String sortKey = sort == ApplicationTags.MiscellaneousTags.SORT_PREDEFINED ? "purchases.dateP" : "items.price * items.amount";
+        String query = "SELECT items.id, items.name, items.price, items.amount, categories.picId, " +
+                sortKey + " AS " + Page.SORT_KEY_COLUMN + ", purchases.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId = 0" +
+                pageClause(sortKey, "purchases.id", sort, after);
+
+        return read(query, pageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a page of the incomes of a user.
+     * The pages are read with keyset pagination, so the time needed doesn't depend on the position of the page.
+     *
+     * @param username  the username
+     * @param sort      the order of the incomes, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the last income of the previous page, null to get the first page
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see Page
+     * */
+    public <T> T getIncomesPage(String username, int sort, Page.Key after, CursorReader<T> reader){
+        String sortKey = sort == ApplicationTags.MiscellaneousTags.SORT_PREDEFINED ? "incomes.dateIncome" : "incomes.value";
+        String query = "SELECT incomes.id, incomes.value, incomes.dateIncome, categories.picId, " +
+                sortKey + " AS " + Page.SORT_KEY_COLUMN + ", incomes.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM incomes JOIN categories ON incomes.idCat = categories.id " +
+                "WHERE incomes.userId = ?" +
+                pageClause(sortKey, "incomes.id", sort, after);
+
+        return read(query, pageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a page of the simple purchases of a user, the archived ones included.
+     * The recent purchases and the archived ones are read by two SELECTs, both with the condition
+     * of the page, and merged in the order of the page, so only the first rows of each one are read.
+     * As in getSimplePurchasesPage, this is not true for the pages sorted by price, which are sorted without an index.
+     *
+     * @param username  the username
+     * @param sort      the order of the purchases, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the last purchase of the previous page, null to get the first page
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see #archiveMovements(String, long)
+     * */
+    public <T> T getSimplePurchasesHistoryPage(String username, int sort, Page.Key after, CursorReader<T> reader){
+        boolean byDate = sort == ApplicationTags.MiscellaneousTags.SORT_PREDEFINED;
+        String sortKey = byDate ? "purchases.dateP" : "items.price * items.amount";
+        String archiveSortKey = byDate ? "purchasesArchive.dateP" : "purchasesArchive.price * purchasesArchive.amount";
+        String query = "SELECT items.id, items.name, items.price, items.amount, categories.picId, " +
+                sortKey + " AS " + Page.SORT_KEY_COLUMN + ", purchases.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId = 0" +
+                pageCondition(sortKey, "purchases.id", sort, after) + " " +
+                "UNION ALL " +
+                "SELECT purchasesArchive.itemId, purchasesArchive.name, purchasesArchive.price, purchasesArchive.amount, " +
+                "categories.picId, " + archiveSortKey + ", purchasesArchive.id " +
+                "FROM purchasesArchive JOIN categories ON categories.id = purchasesArchive.idCat " +
+                "WHERE purchasesArchive.userId = ?" +
+                pageCondition(archiveSortKey, "purchasesArchive.id", sort, after) +
+                pageOrder(Page.SORT_KEY_COLUMN, Page.ROW_ID_COLUMN, sort, Page.SIZE);
+
+        return read(query, historyPageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a page of the incomes of a user, the archived ones included.
+     *
+     * @param username  the username
+     * @param sort      the order of the incomes, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the last income of the previous page, null to get the first page
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see #getSimplePurchasesHistoryPage(String, int, Page.Key, CursorReader)
+     * */
+    public <T> T getIncomesHistoryPage(String username, int sort, Page.Key after, CursorReader<T> reader){
+        boolean byDate = sort == ApplicationTags.MiscellaneousTags.SORT_PREDEFINED;
+        String sortKey = byDate ? "incomes.dateIncome" : "incomes.value";
+        String archiveSortKey = byDate ? "incomesArchive.dateIncome" : "incomesArchive.value";
+        String query = "SELECT incomes.id, incomes.value, incomes.dateIncome, categories.picId, " +
+                sortKey + " AS " + Page.SORT_KEY_COLUMN + ", incomes.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM incomes JOIN categories ON incomes.idCat = categories.id " +
+                "WHERE incomes.userId = ?" +
+                pageCondition(sortKey, "incomes.id", sort, after) + " " +
+                "UNION ALL " +
+                "SELECT incomesArchive.id, incomesArchive.value, incomesArchive.dateIncome, categories.picId, " +
+                archiveSortKey + ", incomesArchive.id " +
+                "FROM incomesArchive JOIN categories ON incomesArchive.idCat = categories.id " +
+                "WHERE incomesArchive.userId = ?" +
+                pageCondition(archiveSortKey, "incomesArchive.id", sort, after) +
+                pageOrder(Page.SORT_KEY_COLUMN, Page.ROW_ID_COLUMN, sort, Page.SIZE);
+
+        return read(query, historyPageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a chunk of the incomes of a user to export them, from the oldest one,
+     * with the name of their category, the archived ones included. The chunks are read with keyset pagination, like the pages,
+     * so every chunk is a short query and no read transaction is kept open for the whole export.
+     *
+     * @param username  the username
+     * @param after     the key of the last income of the previous chunk, null to get the first chunk
+     * @param limit     the max number of incomes of the chunk
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see Page.Key
+     * */
+    public <T> T getIncomesForExport(String username, Page.Key after, int limit, CursorReader<T> reader){
+        int sort = ApplicationTags.MiscellaneousTags.SORT_ASC;
+        String query = "SELECT incomes.id, incomes.dateIncome, incomes.value, incomes.idCat, " +
+                "categories.description AS catDescription, " +
+                "incomes.dateIncome AS " + Page.SORT_KEY_COLUMN + ", incomes.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM incomes LEFT JOIN categories ON categories.id = incomes.idCat " +
+                "WHERE incomes.userId = ?" +
+                pageCondition("incomes.dateIncome", "incomes.id", sort, after) + " " +
+                "UNION ALL " +
+                "SELECT incomesArchive.id, incomesArchive.dateIncome, incomesArchive.value, incomesArchive.idCat, " +
+                "categories.description, incomesArchive.dateIncome, incomesArchive.id " +
+                "FROM incomesArchive LEFT JOIN categories ON categories.id = incomesArchive.idCat " +
+                "WHERE incomesArchive.userId = ?" +
+                pageCondition("incomesArchive.dateIncome", "incomesArchive.id", sort, after) +
+                pageOrder(Page.SORT_KEY_COLUMN, Page.ROW_ID_COLUMN, sort, limit);
+
+        return read(query, historyPageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a chunk of the simple purchases of a user to export them, from the oldest one,
+     * with their item and the name of its category, the archived ones included.
+     *
+     * @param username  the username
+     * @param after     the key of the last purchase of the previous chunk, null to get the first chunk
+     * @param limit     the max number of purchases of the chunk
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see #getIncomesForExport(String, Page.Key, int, CursorReader)
+     * */
+    public <T> T getSimplePurchasesForExport(String username, Page.Key after, int limit, CursorReader<T> reader){
+        int sort = ApplicationTags.MiscellaneousTags.SORT_ASC;
+        String query = "SELECT purchases.id, purchases.dateP, items.name, items.price, items.amount, items.idCat, " +
+                "categories.description AS catDescription, " +
+                "purchases.dateP AS " + Page.SORT_KEY_COLUMN + ", purchases.id AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "LEFT JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId = 0" +
+                pageCondition("purchases.dateP", "purchases.id", sort, after) + " " +
+                "UNION ALL " +
+                "SELECT purchasesArchive.id, purchasesArchive.dateP, purchasesArchive.name, purchasesArchive.price, " +
+                "purchasesArchive.amount, purchasesArchive.idCat, categories.description, " +
+                "purchasesArchive.dateP, purchasesArchive.id " +
+                "FROM purchasesArchive LEFT JOIN categories ON categories.id = purchasesArchive.idCat " +
+                "WHERE purchasesArchive.userId = ?" +
+                pageCondition("purchasesArchive.dateP", "purchasesArchive.id", sort, after) +
+                pageOrder(Page.SORT_KEY_COLUMN, Page.ROW_ID_COLUMN, sort, limit);
+
+        return read(query, historyPageArgs(username, after), reader);
+    }
+
+    /**
+     * This method is used to get a chunk of the elements of the wishlists of a user to export them,
+     * a row for every item with the data of its list. The rows are ordered by wishlist, in the order
+     * of the (userId, listId, itemId) index.
+     *
+     * @param username  the username
+     * @param after     the key of the last element of the previous chunk, null to get the first chunk
+     * @param limit     the max number of elements of the chunk
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     *
+     * @see #getIncomesForExport(String, Page.Key, int, CursorReader)
+     * */
+    public <T> T getWishListItemsForExport(String username, Page.Key after, int limit, CursorReader<T> reader){
+        String query = "SELECT wishLists.id AS listId, wishLists.name AS listName, wishLists.description AS listDescription, " +
+                "wishLists.isConfirmed, purchases.dateP, items.name, items.price, items.amount, items.idCat, " +
+                "categories.description AS catDescription, " +
+                "purchases.listId AS " + Page.SORT_KEY_COLUMN + ", purchases.itemId AS " + Page.ROW_ID_COLUMN + " " +
+                "FROM purchases JOIN wishLists ON wishLists.id = purchases.listId " +
+                "JOIN items ON items.id = purchases.itemId " +
+                "LEFT JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId > 0" +
+                pageClause("purchases.listId", "purchases.itemId", ApplicationTags.MiscellaneousTags.SORT_ASC, after, limit);
+
+        return read(query, pageArgs(username, after), reader);
     }
 
     /**
      *  This method is used to get all the data of the purchases that belong to a specified user.
      *
      * @param username     the username
+     * @param reader       reads the result, the cursor is closed as soon as it returns
      *
-     * @return a cursor with the data obtained from the query launched by the method
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor getPurchasesDataQueryByUsername(String username){
+    public <T> T getPurchasesDataQueryByUsername(String username, CursorReader<T> reader){
         String query = "SELECT incomes.id, incomes.value,incomes.dateIncome,categories.picId " +
                 "FROM incomes JOIN categories ON incomes.idcat = categories.id " +
-                "WHERE userId = '" + username + "';";
+                "WHERE userId = ?;";
 
-        Cursor cursor = null;
-
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+        return read(query, new String[]{username}, reader);
     }
 
     /**
@@ -639,48 +1331,582 @@ public class DbManager {
      *
      * @param username      the username
      * @param isConfirmed   indicates if the user has confirmed the list or not
-     * @return a cursor with the data obtained from the query launched by the method
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor getWishListDataQuery(String username, int isConfirmed){
+    public <T> T getWishListDataQuery(String username, int isConfirmed, CursorReader<T> reader){
         String query = "SELECT SUM(items.price * items.amount) AS tot, wishLists.* " +
                 "FROM purchases JOIN wishLists ON purchases.listId = wishLists.id " +
                 "JOIN items ON items.id = purchases.itemId  " +
                 "JOIN categories ON categories.id = items.idCat " +
                 "JOIN users ON users.username = purchases.userId " +
-                "WHERE users.username = '" + username + "' AND wishLists.isConfirmed = " + isConfirmed + " " +
+                "WHERE users.username = ? AND wishLists.isConfirmed = ? " +
                 "GROUP BY listId;";
-        Cursor cursor = null;
 
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
-        }
-        return cursor;
+        return read(query, new String[]{username, Integer.toString(isConfirmed)}, reader);
+    }
+
+    /**
+     * This method is used to get the wishlists of a user with all their items, a row for every item.
+     * The rows are ordered by wishlist, so the items of a wishlist are next to each other, and they are read
+     * in the order of the (userId, listId, itemId) index, skipping the simple purchases.
+     *
+     * @param username      the username
+     * @param isConfirmed   indicates if the user has confirmed the lists or not
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getWishListsWithItemsQuery(String username, int isConfirmed, CursorReader<T> reader){
+        String query = "SELECT wishLists.id AS " + WishListDetails.LIST_ID_COLUMN + ", " +
+                "wishLists.name AS " + WishListDetails.LIST_NAME_COLUMN + ", " +
+                "wishLists.description AS " + WishListDetails.LIST_DESC_COLUMN + ", " +
+                "wishLists.isConfirmed AS " + WishListDetails.LIST_IS_CONFIRMED_COLUMN + ", " +
+                "items.id, items.name, items.price, items.amount, categories.picId " +
+                "FROM purchases JOIN wishLists ON wishLists.id = purchases.listId " +
+                "JOIN items ON items.id = purchases.itemId " +
+                "JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.listId > 0 AND wishLists.isConfirmed = ? " +
+                "ORDER BY purchases.listId, purchases.itemId;";
+
+        return read(query, new String[]{username, Integer.toString(isConfirmed)}, reader);
     }
 
     /**
      * This method is used to get all the items that belong to a specified wishlist.
      *
      * @param wlID      the id of the WishList
-     * @return a cursor with the data obtained from the query launched by the method
+     * @param reader    reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
      * */
-    public Cursor getWishListsItems(int wlID){
+    public <T> T getWishListsItems(int wlID, CursorReader<T> reader){
         String query = "SELECT items.*, categories.picId " +
                 "FROM purchases JOIN wishlists ON purchases.listId = wishLists.id " +
                 "JOIN items ON items.id = purchases.itemId  " +
                 "JOIN categories ON categories.id = items.idCat " +
-                "WHERE wishLists.id = " + wlID + ";";
-        Cursor cursor = null;
+                "WHERE wishLists.id = ?;";
 
-        try{
-            SQLiteDatabase db = dbHelper.getReadableDatabase();
-            cursor = db.rawQuery(query,null);
-        }catch (Exception e){
-            Toast.makeText(context,e.getMessage(),Toast.LENGTH_LONG).show();
+        return read(query, new String[]{Integer.toString(wlID)}, reader);
+    }
+
+    /**
+     * This method searches a text inside the names of the items bought by a user, the archived purchases included,
+     * and inside the names and the descriptions of the wishlists of the user, using the full-text indexes.
+     * Only the SEARCH_CANDIDATES most recent matches of the items and of the archive are ranked, so the time needed
+     * doesn't grow with the number of movements: the items with the shortest names come first, since the searched
+     * words are a bigger part of them, and the wishlists that match by name come before the ones
+     * that match only by description.
+     *
+     * @param username      the username
+     * @param text          the text typed by the user, every word is matched as a prefix
+     * @param limit         the max number of items and of wishlists
+     *
+     * @return the results, null if the query failed
+     * */
+    public SearchResults search(String username, String text, int limit){
+        String match = SearchResults.matchExpression(text, null);
+        if (match == null) {
+            return new SearchResults(new ArrayList<>(), new ArrayList<>());
+        }
+        String nameMatch = SearchResults.matchExpression(text, DbStrings.TableWishListsSearchFields.WLS_NAME);
+
+        // the unary + keeps SQLite from reading all the purchases of the user, every match is joined by item instead;
+        // an archived purchase keeps the id of its item, so the two SELECTs give the same ids
+        String itemsQuery = "SELECT hits.id, hits.name, hits.price, hits.amount, categories.picId " +
+                "FROM (SELECT * FROM (SELECT items.id, items.name, items.price, items.amount, items.idCat " +
+                "FROM itemsSearch JOIN items ON items.id = itemsSearch.docid " +
+                "JOIN purchases ON purchases.itemId = items.id " +
+                "WHERE itemsSearch MATCH ? AND +purchases.userId = ? " +
+                "ORDER BY itemsSearch.docid DESC LIMIT " + SEARCH_CANDIDATES + ") " +
+                "UNION ALL " +
+                "SELECT * FROM (SELECT purchasesArchive.itemId, purchasesArchive.name, purchasesArchive.price, " +
+                "purchasesArchive.amount, purchasesArchive.idCat " +
+                "FROM purchasesArchiveSearch JOIN purchasesArchive ON purchasesArchive.id = purchasesArchiveSearch.docid " +
+                "WHERE purchasesArchiveSearch MATCH ? AND +purchasesArchive.userId = ? " +
+                "ORDER BY purchasesArchiveSearch.docid DESC LIMIT " + SEARCH_CANDIDATES + ")) AS hits " +
+                "JOIN categories ON categories.id = hits.idCat " +
+                "ORDER BY length(hits.name), hits.id DESC LIMIT ?;";
+
+        String wishListsQuery = "SELECT hits.id, hits.name, hits.description, hits.isConfirmed " +
+                "FROM (SELECT wishLists.id, wishLists.name, wishLists.description, wishLists.isConfirmed " +
+                "FROM wishListsSearch JOIN wishLists ON wishLists.id = wishListsSearch.docid " +
+                "WHERE wishListsSearch MATCH ? " +
+                "AND EXISTS (SELECT 1 FROM purchases WHERE purchases.userId = ? AND purchases.listId = wishLists.id) " +
+                "ORDER BY wishListsSearch.docid DESC LIMIT " + SEARCH_CANDIDATES + ") AS hits " +
+                "ORDER BY hits.id IN (SELECT docid FROM wishListsSearch WHERE wishListsSearch MATCH ?) DESC, " +
+                "length(hits.name), hits.id DESC LIMIT ?;";
+
+        ArrayList<DefaultListViewItems> items = read(itemsQuery, new String[]{match, username, match, username, Integer.toString(limit)},
+                CursorReader.listOf(RowMappers::itemListViewItem));
+        ArrayList<WishLists> wishLists = read(wishListsQuery, new String[]{match, username, nameMatch, Integer.toString(limit)},
+                CursorReader.listOf(RowMappers::wishList));
+
+        return items != null && wishLists != null ? new SearchResults(items, wishLists) : null;
+    }
+
+    /**
+     * This method is used to get the incomes of a user made between two instants, ordered by date.
+     * Only the recent incomes are read, the archived ones are read by getIncomesHistoryPage.
+     *
+     * @param username      the username
+     * @param from          the first instant, included, in epoch milliseconds
+     * @param to            the last instant, excluded, in epoch milliseconds
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getIncomesBetween(String username, long from, long to, CursorReader<T> reader){
+        String query = "SELECT incomes.id, incomes.value, incomes.dateIncome, incomes.idCat, categories.picId " +
+                "FROM incomes JOIN categories ON incomes.idCat = categories.id " +
+                "WHERE userId = ? AND dateIncome >= ? AND dateIncome < ? " +
+                "ORDER BY dateIncome;";
+
+        return read(query, new String[]{username, Long.toString(from), Long.toString(to)}, reader);
+    }
+
+    /**
+     * This method is used to get the purchases of a user made between two instants, ordered by date.
+     * Only the recent purchases are read, the archived ones are read by getSimplePurchasesHistoryPage.
+     * The purchases of the wishlists not confirmed yet have no date, so they are never returned.
+     *
+     * @param username      the username
+     * @param from          the first instant, included, in epoch milliseconds
+     * @param to            the last instant, excluded, in epoch milliseconds
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T getPurchasesBetween(String username, long from, long to, CursorReader<T> reader){
+        String query = "SELECT items.id, items.name, items.price, items.amount, purchases.dateP, purchases.listId, categories.picId " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "JOIN categories ON categories.id = items.idCat " +
+                "WHERE purchases.userId = ? AND purchases.dateP >= ? AND purchases.dateP < ? " +
+                "ORDER BY purchases.dateP;";
+
+        return read(query, new String[]{username, Long.toString(from), Long.toString(to)}, reader);
+    }
+
+    /**
+     * This method is used to get the sum of the incomes of a user made between two instants.
+     * Only the recent incomes are summed, the months of the archive are summed by getMonthlyTotalsQuery.
+     *
+     * @param username      the username
+     * @param from          the first instant, included, in epoch milliseconds
+     * @param to            the last instant, excluded, in epoch milliseconds
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T sumIncomesBetween(String username, long from, long to, CursorReader<T> reader){
+        String query = "SELECT SUM(value) AS sumInc FROM incomes " +
+                "WHERE userId = ? AND dateIncome >= ? AND dateIncome < ?;";
+
+        return read(query, new String[]{username, Long.toString(from), Long.toString(to)}, reader);
+    }
+
+    /**
+     * This method is used to get the sum of the purchases of a user made between two instants.
+     * Only the recent purchases are summed, the months of the archive are summed by getMonthlyTotalsQuery.
+     *
+     * @param username      the username
+     * @param from          the first instant, included, in epoch milliseconds
+     * @param to            the last instant, excluded, in epoch milliseconds
+     * @param reader        reads the result, the cursor is closed as soon as it returns
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    public <T> T sumPurchasesBetween(String username, long from, long to, CursorReader<T> reader){
+        String query = "SELECT SUM(items.price * items.amount) AS sumPurch " +
+                "FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "WHERE purchases.userId = ? AND purchases.dateP >= ? AND purchases.dateP < ?;";
+
+        return read(query, new String[]{username, Long.toString(from), Long.toString(to)}, reader);
+    }
+
+    /**
+     * This method computes the total of a user from the balance journal, as the last checkpoint
+     * plus the entries written after it. Checkpoints are frequent, so the time needed
+     * doesn't grow with the history of the user.
+     *
+     * @param username      the username
+     *
+     * @return the total of the user
+     * */
+    public Money getJournalBalance(String username){
+        return Money.ofCents(readJournalBalance(dbHelper.getReadableDatabase(), username)[0]);
+    }
+
+    /**
+     * This method checks that the total saved for a user matches its balance journal.
+     * If it doesn't, the total is replaced by the one computed from the journal.
+     *
+     * @param username      the username
+     *
+     * @return true if the saved total was correct
+     * */
+    public boolean auditUserTotal(String username){
+        boolean correct = true;
+
+        SQLiteDatabase db = dbHelper.beginWrite();
+        try (Cursor cursor = rawQuery(db, "SELECT total FROM users WHERE username = ?;", new String[]{username})) {
+            if (cursor.moveToFirst()) {
+                long balance = readJournalBalance(db, username)[0];
+
+                if (cursor.getLong(0) != balance) {
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(DbStrings.TableUsersField.USERS_TOT, balance);
+                    update(db, DbStrings.TableUsersField.TABLE_NAME, contentValues, "username = ?", new String[]{username});
+                    correct = false;
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            reportError(e);
+        } finally {
+            dbHelper.endWrite(db);
+        }
+
+        if (!correct) {
+            InvalidationTracker.notifyChanged(DbStrings.TableUsersField.TABLE_NAME);
+        }
+        return correct;
+    }
+
+    /**
+     * This method builds the end of the query of a page: the condition that skips the rows up to
+     * the key of the previous page, the order and the limit. The rows with the same sort key
+     * are ordered by their id, so every row has a different key.
+     *
+     * @param sortKey       the expression the rows are sorted by
+     * @param rowId         the column of the id of the rows
+     * @param sort          the order, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after         the key of the last row of the previous page, null for the first page
+     *
+     * @return the end of the query, with two arguments if there is a previous page
+     * */
+    private static String pageClause(String sortKey, String rowId, int sort, Page.Key after){
+        return pageClause(sortKey, rowId, sort, after, Page.SIZE);
+    }
+
+    /**
+     * This method builds the end of the query of a page with a custom number of rows.
+     *
+     * @param limit         the max number of rows of the page
+     *
+     * @see #pageClause(String, String, int, Page.Key)
+     * */
+    private static String pageClause(String sortKey, String rowId, int sort, Page.Key after, int limit){
+        return pageCondition(sortKey, rowId, sort, after) + pageOrder(sortKey, rowId, sort, limit);
+    }
+
+    /**
+     * This method builds the condition that skips the rows up to the key of the previous page.
+     * A query made of more SELECTs adds it to every one of them, with its own arguments.
+     *
+     * @return the condition, empty for the first page
+     *
+     * @see #pageClause(String, String, int, Page.Key)
+     * */
+    private static String pageCondition(String sortKey, String rowId, int sort, Page.Key after){
+        if (after == null) {
+            return "";
+        }
+        // the arguments are bound as text, the computed keys have no affinity to convert them
+        return " AND (" + sortKey + ", " + rowId + ") " + (sort == ApplicationTags.MiscellaneousTags.SORT_ASC ? ">" : "<") +
+                " (CAST(? AS INTEGER), CAST(? AS INTEGER))";
+    }
+
+    /**
+     * This method builds the order and the limit of a page. A query made of more SELECTs is ordered
+     * by the key columns of the page, Page.SORT_KEY_COLUMN and Page.ROW_ID_COLUMN.
+     *
+     * @return the end of the query
+     *
+     * @see #pageClause(String, String, int, Page.Key)
+     * */
+    private static String pageOrder(String sortKey, String rowId, int sort, int limit){
+        String direction = sort == ApplicationTags.MiscellaneousTags.SORT_ASC ? " ASC" : " DESC";
+        return " ORDER BY " + sortKey + direction + ", " + rowId + direction + " LIMIT " + limit + ";";
+    }
+
+    /**
+     * This method returns the arguments of the query of a page.
+     *
+     * @param username      the username
+     * @param after         the key of the last row of the previous page, null for the first page
+     *
+     * @return the arguments
+     * */
+    private static String[] pageArgs(String username, Page.Key after){
+        if (after == null) {
+            return new String[]{username};
+        }
+        return new String[]{username, Long.toString(after.getSortKey()), Long.toString(after.getRowId())};
+    }
+
+    /**
+     * This method returns the arguments of the query of a page that reads the recent and the archived rows,
+     * the ones of pageArgs repeated for the two SELECTs.
+     *
+     * @param username      the username
+     * @param after         the key of the last row of the previous page, null for the first page
+     *
+     * @return the arguments
+     * */
+    private static String[] historyPageArgs(String username, Page.Key after){
+        String[] args = pageArgs(username, after);
+        String[] historyArgs = new String[args.length * 2];
+        System.arraycopy(args, 0, historyArgs, 0, args.length);
+        System.arraycopy(args, 0, historyArgs, args.length, args.length);
+        return historyArgs;
+    }
+
+    /**
+     * This method runs a read query and passes its cursor to the reader. The cursor is closed
+     * as soon as the reader returns, even if it throws, so no cursor is ever left open.
+     *
+     * @param query         the query, with "?" in place of the arguments
+     * @param args          the arguments of the query, it can be null
+     * @param reader        reads the result of the query
+     *
+     * @return the value returned by the reader, null if the query failed
+     * */
+    private <T> T read(String query, String[] args, CursorReader<T> reader){
+        try (Cursor cursor = rawQuery(dbHelper.getReadableDatabase(), query, args)) {
+            return reader.read(cursor);
+        } catch (Exception e) {
+            reportError(e);
+            return null;
+        }
+    }
+
+    /**
+     * This method runs a query on the database, notifying the query listener if there is one.
+     *
+     * @param db            the database
+     * @param query         the query, with "?" in place of the arguments
+     * @param args          the arguments of the query, it can be null
+     *
+     * @return the cursor, that must be closed by the caller
+     * */
+    private static Cursor rawQuery(SQLiteDatabase db, String query, String[] args){
+        QueryListener listener = queryListener;
+        if (listener != null) {
+            listener.onQuery(query, args);
+        }
+        return db.rawQuery(query, args);
+    }
+
+    /**
+     * This method runs a statement that returns no rows, notifying the query listener if there is one.
+     *
+     * @param db            the database
+     * @param sql           the statement, with "?" in place of the arguments
+     * @param args          the arguments of the statement
+     * */
+    private static void execSQL(SQLiteDatabase db, String sql, String[] args){
+        QueryListener listener = queryListener;
+        if (listener != null) {
+            listener.onQuery(sql, args);
+        }
+        db.execSQL(sql, args);
+    }
+
+    /**
+     * This method updates the rows of a table, notifying the query listener with the SQL of the update.
+     *
+     * @param db            the database
+     * @param table         the table
+     * @param values        the new values of the columns
+     * @param whereClause   the condition of the rows to update, with "?" in place of the arguments
+     * @param whereArgs     the arguments of the condition
+     *
+     * @return the number of updated rows
+     * */
+    private static int update(SQLiteDatabase db, String table, ContentValues values, String whereClause, String[] whereArgs){
+        QueryListener listener = queryListener;
+        if (listener != null) {
+            StringBuilder set = new StringBuilder();
+            for (String column : values.keySet()) {
+                set.append(set.length() > 0 ? ", " : "").append(column).append(" = ?");
+            }
+            String[] args = new String[values.size() + whereArgs.length];
+            int i = 0;
+            for (String column : values.keySet()) {
+                args[i++] = values.getAsString(column);
+            }
+            System.arraycopy(whereArgs, 0, args, i, whereArgs.length);
+            listener.onQuery("UPDATE " + table + " SET " + set + " WHERE " + whereClause + ";", args);
+        }
+        return db.update(table, values, whereClause, whereArgs);
+    }
+
+    /**
+     * This method deletes the rows of a table, notifying the query listener with the SQL of the delete.
+     *
+     * @param db            the database
+     * @param table         the table
+     * @param whereClause   the condition of the rows to delete, with "?" in place of the arguments
+     * @param whereArgs     the arguments of the condition
+     *
+     * @return the number of deleted rows
+     * */
+    private static int delete(SQLiteDatabase db, String table, String whereClause, String[] whereArgs){
+        QueryListener listener = queryListener;
+        if (listener != null) {
+            listener.onQuery("DELETE FROM " + table + " WHERE " + whereClause + ";", whereArgs);
+        }
+        return db.delete(table, whereClause, whereArgs);
+    }
+
+    /**
+     * This method shows the message of an error of a query. The queries can run on the database executors,
+     * so the message is logged right away and the toast is shown later from the main thread.
+     *
+     * @param e             the error
+     * */
+    private void reportError(Exception e){
+        Log.e(TAG, "query failed", e);
+        String message = e.getMessage();
+        DbExecutors.postToMainThread(() -> Toast.makeText(context, message, Toast.LENGTH_LONG).show());
+    }
+
+    /**
+     * This method appends an entry to the balance journal and applies it to the total of the user.
+     * Every CHECKPOINT_INTERVAL entries a new checkpoint is saved. It must be called inside the transaction
+     * that writes the movement, so the movement, the entry and the total are saved together.
+     *
+     * @param db            the database, inside a transaction
+     * @param username      the username
+     * @param kind          the kind of the entry, one of the KIND constants of DbStrings.TableBalanceJournalFields
+     * @param amount        the signed amount, in cents
+     * @param refId         the id of the income, purchase or wishlist, 0 if there is none
+     * */
+    private void recordBalanceChange(SQLiteDatabase db, String username, int kind, long amount, long refId){
+        SQLiteStatement journalStatement = dbHelper.getStatement(INSERT_JOURNAL_SQL);
+        SQLiteStatement totalStatement = dbHelper.getStatement(ADD_TO_USER_TOTAL_SQL);
+        long entryId;
+
+        synchronized (journalStatement) {
+            journalStatement.clearBindings();
+            bindStringOrNull(journalStatement, 1, username);
+            journalStatement.bindLong(2, kind);
+            journalStatement.bindLong(3, amount);
+            if (refId > 0) {
+                journalStatement.bindLong(4, refId);
+            } else {
+                journalStatement.bindNull(4);
+            }
+            journalStatement.bindLong(5, System.currentTimeMillis());
+            entryId = journalStatement.executeInsert();
+        }
+
+        synchronized (totalStatement) {
+            totalStatement.clearBindings();
+            totalStatement.bindLong(1, amount);
+            bindStringOrNull(totalStatement, 2, username);
+            totalStatement.executeUpdateDelete();
+        }
+
+        long[] balance = readJournalBalance(db, username);
+        if (balance[1] >= CHECKPOINT_INTERVAL) {
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DbStrings.TableBalanceCheckpointsFields.BC_ID_USER, username);
+            contentValues.put(DbStrings.TableBalanceCheckpointsFields.BC_JOURNAL_ID, entryId);
+            contentValues.put(DbStrings.TableBalanceCheckpointsFields.BC_BALANCE, balance[0]);
+            contentValues.put(DbStrings.TableBalanceCheckpointsFields.BC_DATE, System.currentTimeMillis());
+            db.insertOrThrow(DbStrings.TableBalanceCheckpointsFields.TABLE_NAME, null, contentValues);
+        }
+    }
+
+    /**
+     * This method reads the balance of a user from its last checkpoint and the journal entries after it.
+     * Both queries use the primary key or the index of their table.
+     *
+     * @param db            the database
+     * @param username      the username
+     *
+     * @return the balance in cents and the number of entries after the last checkpoint
+     * */
+    private static long[] readJournalBalance(SQLiteDatabase db, String username){
+        String checkpointQuery = "SELECT journalId, balance FROM balanceCheckpoints " +
+                "WHERE userId = ? ORDER BY journalId DESC LIMIT 1;";
+        String tailQuery = "SELECT COALESCE(SUM(amount), 0), COUNT(*) FROM balanceJournal " +
+                "WHERE userId = ? AND id > ?;";
+        long journalId = 0;
+        long balance = 0;
+
+        try (Cursor cursor = rawQuery(db, checkpointQuery, new String[]{username})) {
+            if (cursor.moveToFirst()) { // a user without checkpoints has all its entries in the tail
+                journalId = cursor.getLong(0);
+                balance = cursor.getLong(1);
+            }
+        }
+
+        try (Cursor cursor = rawQuery(db, tailQuery, new String[]{username, Long.toString(journalId)})) {
+            cursor.moveToFirst();
+            return new long[]{balance + cursor.getLong(0), cursor.getLong(1)};
+        }
+    }
+
+    /**
+     * This method inserts an item with the precompiled statement, throwing an exception if it fails.
+     *
+     * @return the id of the item
+     * */
+    private long executeInsertItem(Money price, int amount, String name, int valid, String idCat){
+        SQLiteStatement statement = dbHelper.getStatement(INSERT_ITEM_SQL);
+
+        synchronized (statement) {
+            statement.clearBindings();
+            statement.bindLong(1, valid);
+            bindStringOrNull(statement, 2, name);
+            statement.bindLong(3, price.getCents());
+            statement.bindLong(4, amount);
+            bindStringOrNull(statement, 5, idCat);
+            return statement.executeInsert();
+        }
+    }
+
+    /**
+     * This method inserts a purchase with the precompiled statement, throwing an exception if it fails.
+     *
+     * @param dateP     the date of the purchase in epoch milliseconds, null if it is not known yet
+     *
+     * @return the id of the purchase
+     * */
+    private long executeInsertPurchase(Long dateP, String idUser, long idItem, long idWl){
+        SQLiteStatement statement = dbHelper.getStatement(INSERT_PURCHASE_SQL);
+
+        synchronized (statement) {
+            statement.clearBindings();
+            if (dateP == null) {
+                statement.bindNull(1);
+            } else {
+                statement.bindLong(1, dateP);
+            }
+            bindStringOrNull(statement, 2, idUser);
+            statement.bindLong(3, idItem);
+            statement.bindLong(4, idWl);
+            return statement.executeInsert();
+        }
+    }
+
+    /**
+     * This method binds a string to a precompiled statement, binding NULL if the string is null.
+     *
+     * @param statement     the statement
+     * @param index         the 1-based index of the parameter
+     * @param value         the value to bind
+     * */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value){
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
-        return cursor;
     }
 
 }
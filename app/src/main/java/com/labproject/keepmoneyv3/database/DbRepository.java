@@ -0,0 +1,172 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * This class reads the data shown by the screens of the application as objects instead of cursors.
+ * The rows are built by the mappers of RowMappers, and every cursor is closed by DbManager as soon as it has been read.
+ * The screens run the reads with load, or with observe to follow the changes of the tables,
+ * so the queries never run on the main thread.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager       used to run the queries
+ * @see RowMappers      used to build the objects
+ * @see DbExecutors     used to run the reads in background
+ * */
+public class DbRepository {
+    private final DbManager dbManager;
+
+    public DbRepository(Context context) {
+        dbManager = new DbManager(context);
+    }
+
+    /**
+     * This method runs a read on the read executor and returns its result as a LiveData. The result is
+     * delivered on the main thread, and only while the lifecycle of the observer is started,
+     * so a screen closed before the end of the read is never updated.
+     *
+     * @param read      the read, for example one of the methods of this class
+     * @param <T>       the type of the result
+     *
+     * @return the LiveData of the result, which is set once, to null if the query failed
+     * */
+    public static <T> LiveData<T> load(Supplier<T> read) {
+        MutableLiveData<T> result = new MutableLiveData<>();
+        DbExecutors.reads().execute(() -> result.postValue(read.get()));
+        return result;
+    }
+
+    /**
+     * This method returns a LiveData that runs a read on the read executor, and runs it again every time
+     * one of the tables it reads is changed by DbManager, while the LiveData is observed.
+     *
+     * @param read      the read, for example one of the methods of this class
+     * @param tables    the names of the tables read, from DbStrings
+     * @param <T>       the type of the result
+     *
+     * @return the LiveData of the result, set to null if the query failed
+     *
+     * @see InvalidationTracker
+     * */
+    public static <T> LiveData<T> observe(Supplier<T> read, String... tables) {
+        return new TableLiveData<>(read, tables);
+    }
+
+    /**
+     * This method returns the total of a user.
+     *
+     * @param username  the username
+     *
+     * @return the total, null if the query failed
+     * */
+    public Money getUserTotal(String username) {
+        Long cents = dbManager.getUserTotalQuery(username, CursorReader.firstLong(DbStrings.TableUsersField.USERS_TOT));
+        return cents != null ? Money.ofCents(cents) : null;
+    }
+
+    /**
+     * This method returns the data shown by the dashboard, read by a single query.
+     *
+     * @param username  the username
+     * @param limit     the number of recent purchases
+     *
+     * @return the summary, null if the query failed
+     * */
+    public DashboardSummary getDashboardSummary(String username, int limit) {
+        return dbManager.getDashboardSummary(username, limit);
+    }
+
+    /**
+     * This method searches the items and the wishlists of a user that match a text.
+     *
+     * @param username  the username
+     * @param text      the text typed by the user
+     * @param limit     the max number of items and of wishlists
+     *
+     * @return the results, ordered from the most relevant one, null if the query failed
+     * */
+    public SearchResults search(String username, String text, int limit) {
+        return dbManager.search(username, text, limit);
+    }
+
+    /**
+     * This method reads the first pages of a list, until they contain a number of rows, so a list that
+     * the user has scrolled can be read again without losing its position.
+     *
+     * @param read      reads the page that follows a key, for example one of the methods of this class
+     * @param minRows   the number of rows to read, at least one page is read
+     * @param <T>       the type of the rows
+     *
+     * @return the pages joined as a single one, null if a query failed
+     * */
+    public static <T> Page<T> readPages(Function<Page.Key, Page<T>> read, int minRows) {
+        Page<T> pages = read.apply(null);
+        while (pages != null && !pages.isLast() && pages.getRows().size() < minRows) {
+            Page<T> next = read.apply(pages.getNextKey());
+            pages = next != null ? pages.append(next) : null;
+        }
+        return pages;
+    }
+
+    /**
+     * This method returns a page of the simple purchases of a user, ready to be shown in a list.
+     *
+     * @param username  the username
+     * @param sort      the order of the purchases, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the next page, returned by the previous one, null to get the first page
+     *
+     * @return the page, null if the query failed
+     * */
+    public Page<DefaultListViewItems> getSimplePurchasesPage(String username, int sort, Page.Key after) {
+        return dbManager.getSimplePurchasesPage(username, sort, after, Page.reader(RowMappers::itemListViewItem));
+    }
+
+    /**
+     * This method returns a page of the incomes of a user, ready to be shown in a list.
+     *
+     * @param username  the username
+     * @param sort      the order of the incomes, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the next page, returned by the previous one, null to get the first page
+     *
+     * @return the page, null if the query failed
+     * */
+    public Page<DefaultListViewItems> getIncomesPage(String username, int sort, Page.Key after) {
+        return dbManager.getIncomesPage(username, sort, after, Page.reader(RowMappers::incomeListViewItem));
+    }
+
+    /**
+     * This method returns a page of the simple purchases of a user, the archived ones included.
+     *
+     * @param username  the username
+     * @param sort      the order of the purchases, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the next page, returned by the previous one, null to get the first page
+     *
+     * @return the page, null if the query failed
+     * */
+    public Page<DefaultListViewItems> getSimplePurchasesHistoryPage(String username, int sort, Page.Key after) {
+        return dbManager.getSimplePurchasesHistoryPage(username, sort, after, Page.reader(RowMappers::itemListViewItem));
+    }
+
+    /**
+     * This method returns a page of the incomes of a user, the archived ones included.
+     *
+     * @param username  the username
+     * @param sort      the order of the incomes, one of the SORT tags of ApplicationTags.MiscellaneousTags
+     * @param after     the key of the next page, returned by the previous one, null to get the first page
+     *
+     * @return the page, null if the query failed
+     * */
+    public Page<DefaultListViewItems> getIncomesHistoryPage(String username, int sort, Page.Key after) {
+        return dbManager.getIncomesHistoryPage(username, sort, after, Page.reader(RowMappers::incomeListViewItem));
+    }
+}
@@ -1,5 +1,7 @@
 package com.labproject.keepmoneyv3.database;
 
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+
 /**
  * This class is used to wraps some static classes,
  * which are used to refer to database's table's names and fields.
@@ -19,7 +21,7 @@ public class DbStrings {
         public static final String USERS_NAME = "name";
         public static final String USERS_FAMILY_NAME = "familyName";
         public static final String USERS_EMAIL = "email";
-        public static final String USERS_TOT = "total";
+        public static final String USERS_TOT = "total"; // in cents since version 4
 
         private static final String CREATE_TABLE =
                 "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
@@ -30,6 +32,10 @@ public class DbStrings {
                         USERS_FAMILY_NAME + " VARCHAR(100) NOT NULL,\n" +
                         USERS_TOT + " DECIMAL NOT NULL); ";
 
+        // converts the total from units to cents
+        static final String UPDATE_TOTAL_TO_CENTS =
+                "UPDATE " + TABLE_NAME + " SET " + USERS_TOT + " = CAST(ROUND(" + USERS_TOT + " * 100) AS INTEGER);";
+
         static String getCreateTable(){
             return CREATE_TABLE;
         }
@@ -62,7 +68,7 @@ public class DbStrings {
     public static class TableItemsFields{
         public static final String TABLE_NAME = "items";
         public static final String ITEMS_ID = "id";
-        public static final String ITEMS_PRICE = "price";
+        public static final String ITEMS_PRICE = "price"; // price of a single unit, in cents since version 4
         public static final String ITEMS_AMOUNT = "amount";
         public static final String ITEMS_NAME = "name";
         public static final String ITEMS_IS_CONFIRMED = "isConfirmed";
@@ -79,6 +85,14 @@ public class DbStrings {
                         "FOREIGN KEY (" + ITEMS_ID_CAT + ") REFERENCES " +  //foreign key declaration
                         TableCategoriesFields.TABLE_NAME + " (" + TableCategoriesFields.CATEGORIES_ID + "));";
 
+        // converts the price from units to cents
+        static final String UPDATE_PRICE_TO_CENTS =
+                "UPDATE " + TABLE_NAME + " SET " + ITEMS_PRICE + " = CAST(ROUND(" + ITEMS_PRICE + " * 100) AS INTEGER);";
+
+        // index used by the joins between items and categories
+        static final String CREATE_INDEX_CATEGORY =
+                "CREATE INDEX IF NOT EXISTS idx_items_category ON " + TABLE_NAME + " (" + ITEMS_ID_CAT + ");";
+
         static String getCreateTable() {
             return CREATE_TABLE;
         }
@@ -90,8 +104,8 @@ public class DbStrings {
     public static class TableIncomesFields {
         public static final String TABLE_NAME = "incomes";
         public static final String INCOMES_ID = "id";
-        public static final String INCOMES_VAL = "value";
-        public static final String INCOMES_DATE = "dateIncome";
+        public static final String INCOMES_VAL = "value"; // in cents since version 4
+        public static final String INCOMES_DATE = "dateIncome"; // epoch milliseconds since version 3
         public static final String INCOMES_ID_CAT = "idCat";
         public static final String INCOMES_ID_USER = "userId";
 
@@ -109,6 +123,28 @@ public class DbStrings {
                         "FOREIGN KEY (" + INCOMES_ID_USER + ") REFERENCES " +
                         TableUsersField.TABLE_NAME + " (" + TableUsersField.USERS_ID + "));";
 
+        // converts the value from units to cents
+        static final String UPDATE_VALUE_TO_CENTS =
+                "UPDATE " + TABLE_NAME + " SET " + INCOMES_VAL + " = CAST(ROUND(" + INCOMES_VAL + " * 100) AS INTEGER);";
+
+        // index used to get the incomes of a user
+        static final String CREATE_INDEX_USER =
+                "CREATE INDEX IF NOT EXISTS idx_incomes_user ON " + TABLE_NAME + " (" + INCOMES_ID_USER + ");";
+
+        // index used to get or sort the incomes of a user by date, it replaces the previous one
+        static final String CREATE_INDEX_USER_DATE =
+                "CREATE INDEX IF NOT EXISTS idx_incomes_user_date ON " + TABLE_NAME + " (" + INCOMES_ID_USER + ", " + INCOMES_DATE + ");";
+        static final String DROP_INDEX_USER = "DROP INDEX IF EXISTS idx_incomes_user;";
+
+        // index used to sort the incomes of a user by value, the id orders the incomes with the same value
+        static final String CREATE_INDEX_USER_VALUE =
+                "CREATE INDEX IF NOT EXISTS idx_incomes_user_value ON " + TABLE_NAME +
+                        " (" + INCOMES_ID_USER + ", " + INCOMES_VAL + ", " + INCOMES_ID + ");";
+
+        // converts the old "d/M/yyyy" dates into epoch milliseconds, the dates that cannot be read become NULL
+        static final String UPDATE_DATE_TO_MILLIS =
+                "UPDATE " + TABLE_NAME + " SET " + INCOMES_DATE + " = " + localDateTimeToMillis(INCOMES_DATE, null) +
+                        " WHERE typeof(" + INCOMES_DATE + ") = 'text';";
 
         static String getCreateTable() {
             return CREATE_TABLE;
@@ -143,8 +179,8 @@ public class DbStrings {
     public static class TablePurchasesFields{
         public static final String TABLE_NAME = "purchases";
         public static final String PURCH_ID = "id";
-        public static final String PURCH_DATE = "dateP";
-        public static final String PURCH_TIME = "timeP";
+        public static final String PURCH_DATE = "dateP"; // date and time of the purchase, in epoch milliseconds since version 3
+        public static final String PURCH_TIME = "timeP"; // not used since version 3, the time is stored inside PURCH_DATE
         public static final String PURCH_ID_USER = "userId";
         public static final String PURCH_ITEM_ID = "itemId";
         public static final String PURCH_WL_ID = "listId";
@@ -168,9 +204,592 @@ public class DbStrings {
                         TableWishListsFields.TABLE_NAME + " (" + TableWishListsFields.WL_ID + ") " +
                         "ON UPDATE CASCADE ON DELETE SET DEFAULT);";
 
+        // index used to get the simple purchases or the wishlists of a user, it also covers the join with items
+        static final String CREATE_INDEX_USER_LIST =
+                "CREATE INDEX IF NOT EXISTS idx_purchases_user_list ON " + TABLE_NAME +
+                        " (" + PURCH_ID_USER + ", " + PURCH_WL_ID + ", " + PURCH_ITEM_ID + ");";
+
+        // index used to get the purchase related to an item
+        static final String CREATE_INDEX_ITEM =
+                "CREATE INDEX IF NOT EXISTS idx_purchases_item ON " + TABLE_NAME + " (" + PURCH_ITEM_ID + ");";
+
+        // index used to get the items of a wishlist
+        static final String CREATE_INDEX_LIST =
+                "CREATE INDEX IF NOT EXISTS idx_purchases_list ON " + TABLE_NAME + " (" + PURCH_WL_ID + ");";
+
+        // index used to get or sort the purchases of a user by date
+        static final String CREATE_INDEX_USER_DATE =
+                "CREATE INDEX IF NOT EXISTS idx_purchases_user_date ON " + TABLE_NAME + " (" + PURCH_ID_USER + ", " + PURCH_DATE + ");";
+
+        // converts the old "d/M/yyyy" dates and "HH:mm" times into a single epoch milliseconds value,
+        // the dates that cannot be read become NULL
+        static final String UPDATE_DATE_TO_MILLIS =
+                "UPDATE " + TABLE_NAME + " SET " + PURCH_DATE + " = " + localDateTimeToMillis(PURCH_DATE, PURCH_TIME) + ", " +
+                        PURCH_TIME + " = NULL" +
+                        " WHERE typeof(" + PURCH_DATE + ") = 'text';";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+    }
+
+    /**
+     * This class represents the "MonthlyTotals" table, which keeps the incomes and the confirmed purchases
+     * of every user summed by month and category. The table is kept up to date by triggers, so every change
+     * is written in the same transaction of the movement that causes it, and it can always be rebuilt
+     * from the movements.
+     */
+    public static class TableMonthlyTotalsFields {
+        public static final String TABLE_NAME = "monthlyTotals";
+        public static final String MT_ID_USER = "userId";
+        public static final String MT_MONTH = "month"; // local year and month as yyyyMM, 0 for the movements without a date
+        public static final String MT_ID_CAT = "idCat";
+        public static final String MT_INCOMES = "incomes"; // in cents
+        public static final String MT_PURCHASES = "purchases"; // in cents
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        MT_ID_USER + " VARCHAR(100) NOT NULL,\n" +
+                        MT_MONTH + " INTEGER NOT NULL,\n" +
+                        MT_ID_CAT + " VARCHAR(8) NOT NULL,\n" +
+                        MT_INCOMES + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        MT_PURCHASES + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        "PRIMARY KEY (" + MT_ID_USER + ", " + MT_MONTH + ", " + MT_ID_CAT + ")) WITHOUT ROWID;";
+
+        // the category and the cost of the item of a purchase, the category is NULL if the item is not confirmed
+        private static final String CONFIRMED_ITEM_CAT =
+                "(SELECT " + TableItemsFields.ITEMS_ID_CAT + " FROM " + TableItemsFields.TABLE_NAME +
+                        " WHERE " + TableItemsFields.ITEMS_ID + " = %1$s." + TablePurchasesFields.PURCH_ITEM_ID +
+                        " AND " + TableItemsFields.ITEMS_IS_CONFIRMED + " = " + ApplicationTags.MiscellaneousTags.CONFIRMED + ")";
+        private static final String ITEM_COST =
+                "(SELECT " + TableItemsFields.ITEMS_PRICE + " * " + TableItemsFields.ITEMS_AMOUNT + " FROM " + TableItemsFields.TABLE_NAME +
+                        " WHERE " + TableItemsFields.ITEMS_ID + " = %1$s." + TablePurchasesFields.PURCH_ITEM_ID + ")";
+
+        // the user and the date of the purchase of an item, every item belongs to a single purchase
+        private static final String ITEM_PURCHASE_USER =
+                "(SELECT " + TablePurchasesFields.PURCH_ID_USER + " FROM " + TablePurchasesFields.TABLE_NAME +
+                        " WHERE " + TablePurchasesFields.PURCH_ITEM_ID + " = %1$s." + TableItemsFields.ITEMS_ID + ")";
+        private static final String ITEM_PURCHASE_DATE =
+                "(SELECT " + TablePurchasesFields.PURCH_DATE + " FROM " + TablePurchasesFields.TABLE_NAME +
+                        " WHERE " + TablePurchasesFields.PURCH_ITEM_ID + " = %1$s." + TableItemsFields.ITEMS_ID + ")";
+        private static final String ITEM_CONFIRMED_CAT =
+                "CASE WHEN %1$s." + TableItemsFields.ITEMS_IS_CONFIRMED + " = " + ApplicationTags.MiscellaneousTags.CONFIRMED +
+                        " THEN %1$s." + TableItemsFields.ITEMS_ID_CAT + " END";
+        private static final String ITEM_OWN_COST =
+                "%1$s." + TableItemsFields.ITEMS_PRICE + " * %1$s." + TableItemsFields.ITEMS_AMOUNT;
+
+        static final String CREATE_TRIGGER_INCOMES_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_incomes_insert_totals AFTER INSERT ON " + TableIncomesFields.TABLE_NAME +
+                        " BEGIN\n" + incomeChange("NEW", "+") + "END;";
+        static final String CREATE_TRIGGER_INCOMES_DELETE =
+                "CREATE TRIGGER IF NOT EXISTS trg_incomes_delete_totals AFTER DELETE ON " + TableIncomesFields.TABLE_NAME +
+                        " BEGIN\n" + incomeChange("OLD", "-") + "END;";
+        static final String CREATE_TRIGGER_INCOMES_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_incomes_update_totals AFTER UPDATE OF " +
+                        TableIncomesFields.INCOMES_VAL + ", " + TableIncomesFields.INCOMES_DATE + ", " +
+                        TableIncomesFields.INCOMES_ID_CAT + ", " + TableIncomesFields.INCOMES_ID_USER +
+                        " ON " + TableIncomesFields.TABLE_NAME +
+                        " BEGIN\n" + incomeChange("OLD", "-") + incomeChange("NEW", "+") + "END;";
+
+        static final String CREATE_TRIGGER_PURCHASES_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_insert_totals AFTER INSERT ON " + TablePurchasesFields.TABLE_NAME +
+                        " BEGIN\n" + purchaseChange("NEW", "+") + "END;";
+        static final String CREATE_TRIGGER_PURCHASES_DELETE =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_delete_totals AFTER DELETE ON " + TablePurchasesFields.TABLE_NAME +
+                        " BEGIN\n" + purchaseChange("OLD", "-") + "END;";
+        static final String CREATE_TRIGGER_PURCHASES_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_update_totals AFTER UPDATE OF " +
+                        TablePurchasesFields.PURCH_DATE + ", " + TablePurchasesFields.PURCH_ID_USER + ", " +
+                        TablePurchasesFields.PURCH_ITEM_ID + " ON " + TablePurchasesFields.TABLE_NAME +
+                        " BEGIN\n" + purchaseChange("OLD", "-") + purchaseChange("NEW", "+") + "END;";
+
+        // a wishlist confirmation changes the validity of its items, so it is tracked here
+        static final String CREATE_TRIGGER_ITEMS_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_update_totals AFTER UPDATE OF " +
+                        TableItemsFields.ITEMS_PRICE + ", " + TableItemsFields.ITEMS_AMOUNT + ", " +
+                        TableItemsFields.ITEMS_IS_CONFIRMED + ", " + TableItemsFields.ITEMS_ID_CAT +
+                        " ON " + TableItemsFields.TABLE_NAME +
+                        " BEGIN\n" + itemChange("OLD", "-") + itemChange("NEW", "+") + "END;";
+        static final String CREATE_TRIGGER_ITEMS_DELETE =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_delete_totals AFTER DELETE ON " + TableItemsFields.TABLE_NAME +
+                        " BEGIN\n" + itemChange("OLD", "-") + "END;";
+
+        // an archived movement is removed from its table, so it is added back here and the totals don't change
+        static final String CREATE_TRIGGER_INCOMES_ARCHIVE_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_incomes_archive_insert_totals AFTER INSERT ON " + TableIncomesArchiveFields.TABLE_NAME +
+                        " BEGIN\n" + incomeChange("NEW", "+") + "END;";
+        static final String CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_archive_insert_totals AFTER INSERT ON " + TablePurchasesArchiveFields.TABLE_NAME +
+                        " BEGIN\n" + archivedPurchaseChange("NEW", "+") + "END;";
+
+        static final String DELETE_ALL = "DELETE FROM " + TABLE_NAME + ";";
+
+        // the totals of every movement, by user, month and category
+        private static final String MOVEMENT_TOTALS =
+                "SELECT " + TableIncomesFields.INCOMES_ID_USER + " AS userId, " +
+                        monthOf(TableIncomesFields.INCOMES_DATE) + " AS month, " +
+                        TableIncomesFields.INCOMES_ID_CAT + " AS idCat, " +
+                        TableIncomesFields.INCOMES_VAL + " AS inc, 0 AS purch FROM " + TableIncomesFields.TABLE_NAME + "\n" +
+                        "UNION ALL\n" +
+                        "SELECT p." + TablePurchasesFields.PURCH_ID_USER + ", " +
+                        monthOf("p." + TablePurchasesFields.PURCH_DATE) + ", " +
+                        "i." + TableItemsFields.ITEMS_ID_CAT + ", 0, " +
+                        "i." + TableItemsFields.ITEMS_PRICE + " * i." + TableItemsFields.ITEMS_AMOUNT +
+                        " FROM " + TablePurchasesFields.TABLE_NAME + " p JOIN " + TableItemsFields.TABLE_NAME + " i" +
+                        " ON i." + TableItemsFields.ITEMS_ID + " = p." + TablePurchasesFields.PURCH_ITEM_ID +
+                        " WHERE i." + TableItemsFields.ITEMS_IS_CONFIRMED + " = " + ApplicationTags.MiscellaneousTags.CONFIRMED;
+        private static final String ARCHIVED_MOVEMENT_TOTALS =
+                "SELECT " + TableIncomesArchiveFields.IA_ID_USER + ", " + monthOf(TableIncomesArchiveFields.IA_DATE) + ", " +
+                        TableIncomesArchiveFields.IA_ID_CAT + ", " + TableIncomesArchiveFields.IA_VAL + ", 0" +
+                        " FROM " + TableIncomesArchiveFields.TABLE_NAME + "\n" +
+                        "UNION ALL\n" +
+                        "SELECT " + TablePurchasesArchiveFields.PA_ID_USER + ", " + monthOf(TablePurchasesArchiveFields.PA_DATE) + ", " +
+                        TablePurchasesArchiveFields.PA_ID_CAT + ", 0, " +
+                        TablePurchasesArchiveFields.PA_PRICE + " * " + TablePurchasesArchiveFields.PA_AMOUNT +
+                        " FROM " + TablePurchasesArchiveFields.TABLE_NAME;
+
+        // sums again all the movements, used to fill the table for the first time, before the archive existed
+        static final String INSERT_FROM_MOVEMENTS = insertFrom(MOVEMENT_TOTALS);
+
+        // sums again all the movements, archived ones included, used to repair the table
+        static final String INSERT_FROM_ALL_MOVEMENTS = insertFrom(MOVEMENT_TOTALS + "\nUNION ALL\n" + ARCHIVED_MOVEMENT_TOTALS);
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+
+        /**
+         * This method returns the key used for a month inside the table.
+         *
+         * @param year      the year
+         * @param month     the month, starting from 0 like in Calendar
+         *
+         * @return the key of the month, as yyyyMM
+         * */
+        public static int monthKey(int year, int month) {
+            return year * 100 + month + 1;
+        }
+
+        private static String insertFrom(String totals) {
+            return "INSERT INTO " + TABLE_NAME + " (" + MT_ID_USER + ", " + MT_MONTH + ", " + MT_ID_CAT + ", " +
+                    MT_INCOMES + ", " + MT_PURCHASES + ")\n" +
+                    "SELECT userId, month, idCat, SUM(inc), SUM(purch) FROM (\n" + totals + ")\n" +
+                    "GROUP BY userId, month, idCat;";
+        }
+
+        /**
+         * This method builds the SQL expression that gives the key of the local month of a date
+         * saved in epoch milliseconds, or 0 if the date is NULL.
+         *
+         * @param date      the SQL expression of the date
+         *
+         * @return the SQL expression
+         * */
+        private static String monthOf(String date) {
+            return "COALESCE(CAST(strftime('%Y%m', (" + date + ") / 1000, 'unixepoch', 'localtime') AS INTEGER), 0)";
+        }
+
+        /**
+         * This method builds the statements that add a value to a row of the table, creating the row
+         * the first time. Nothing is done if the user or the category are NULL.
+         *
+         * @param column    the column to update
+         * @param user      the SQL expression of the user
+         * @param date      the SQL expression of the date
+         * @param cat       the SQL expression of the category
+         * @param sign      "+" to add the value, "-" to subtract it
+         * @param value     the SQL expression of the value
+         *
+         * @return the statements, to be used inside a trigger
+         * */
+        private static String addTo(String column, String user, String date, String cat, String sign, String value) {
+            String month = monthOf(date);
+            return "INSERT OR IGNORE INTO " + TABLE_NAME + " (" + MT_ID_USER + ", " + MT_MONTH + ", " + MT_ID_CAT + ")" +
+                    " SELECT " + user + ", " + month + ", " + cat +
+                    " WHERE " + user + " IS NOT NULL AND " + cat + " IS NOT NULL;\n" +
+                    "UPDATE " + TABLE_NAME + " SET " + column + " = " + column + " " + sign + " COALESCE(" + value + ", 0)" +
+                    " WHERE " + MT_ID_USER + " = " + user + " AND " + MT_MONTH + " = " + month +
+                    " AND " + MT_ID_CAT + " = " + cat + ";\n";
+        }
+
+        private static String incomeChange(String row, String sign) {
+            return addTo(MT_INCOMES, row + "." + TableIncomesFields.INCOMES_ID_USER, row + "." + TableIncomesFields.INCOMES_DATE,
+                    row + "." + TableIncomesFields.INCOMES_ID_CAT, sign, row + "." + TableIncomesFields.INCOMES_VAL);
+        }
+
+        private static String purchaseChange(String row, String sign) {
+            return addTo(MT_PURCHASES, row + "." + TablePurchasesFields.PURCH_ID_USER, row + "." + TablePurchasesFields.PURCH_DATE,
+                    String.format(CONFIRMED_ITEM_CAT, row), sign, String.format(ITEM_COST, row));
+        }
+
+        private static String itemChange(String row, String sign) {
+            return addTo(MT_PURCHASES, String.format(ITEM_PURCHASE_USER, row), String.format(ITEM_PURCHASE_DATE, row),
+                    String.format(ITEM_CONFIRMED_CAT, row), sign, String.format(ITEM_OWN_COST, row));
+        }
+
+        private static String archivedPurchaseChange(String row, String sign) {
+            return addTo(MT_PURCHASES, row + "." + TablePurchasesArchiveFields.PA_ID_USER, row + "." + TablePurchasesArchiveFields.PA_DATE,
+                    row + "." + TablePurchasesArchiveFields.PA_ID_CAT, sign,
+                    row + "." + TablePurchasesArchiveFields.PA_PRICE + " * " + row + "." + TablePurchasesArchiveFields.PA_AMOUNT);
+        }
+    }
+
+    /**
+     * This class represents the "BalanceJournal" table. Every change of the total of a user is appended
+     * here, together with what caused it, and the entries are never updated or deleted.
+     */
+    public static class TableBalanceJournalFields {
+        public static final String TABLE_NAME = "balanceJournal";
+        public static final String BJ_ID = "id";
+        public static final String BJ_ID_USER = "userId";
+        public static final String BJ_KIND = "kind";
+        public static final String BJ_AMOUNT = "amount"; // signed, in cents
+        public static final String BJ_REF_ID = "refId"; // id of the income, purchase or wishlist, NULL for the opening
+        public static final String BJ_DATE = "dateEntry"; // epoch milliseconds
+
+        // the kinds of the entries
+        public static final int KIND_OPENING = 0;
+        public static final int KIND_INCOME = 1;
+        public static final int KIND_PURCHASE = 2;
+        public static final int KIND_INCOME_REMOVED = 3;
+        public static final int KIND_PURCHASE_REMOVED = 4;
+        public static final int KIND_WISH_LIST_CONFIRMED = 5;
+        public static final int KIND_BATCH = 6; // the movements written together by DbManager.insertBatch
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        BJ_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,\n" +
+                        BJ_ID_USER + " VARCHAR(100) NOT NULL,\n" +
+                        BJ_KIND + " INT NOT NULL,\n" +
+                        BJ_AMOUNT + " INTEGER NOT NULL,\n" +
+                        BJ_REF_ID + " INTEGER,\n" +
+                        BJ_DATE + " DATE NOT NULL,\n" +
+                        "FOREIGN KEY (" + BJ_ID_USER + ") REFERENCES " +
+                        TableUsersField.TABLE_NAME + " (" + TableUsersField.USERS_ID + "));";
+
+        // index used to read the entries of a user after a checkpoint
+        static final String CREATE_INDEX_USER =
+                "CREATE INDEX IF NOT EXISTS idx_balance_journal_user ON " + TABLE_NAME + " (" + BJ_ID_USER + ", " + BJ_ID + ");";
+
+        // the history before the journal is unknown, so the total of every user becomes its opening entry
+        static final String INSERT_OPENINGS =
+                "INSERT INTO " + TABLE_NAME + " (" + BJ_ID_USER + ", " + BJ_KIND + ", " + BJ_AMOUNT + ", " + BJ_DATE + ") " +
+                        "SELECT " + TableUsersField.USERS_ID + ", " + KIND_OPENING + ", " + TableUsersField.USERS_TOT + ", " +
+                        "CAST(strftime('%s', 'now') AS INTEGER) * 1000 FROM " + TableUsersField.TABLE_NAME + ";";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+    }
+
+    /**
+     * This class represents the "BalanceCheckpoints" table. A checkpoint saves the total of a user after
+     * a journal entry, so the current total is the last checkpoint plus the few entries that follow it.
+     */
+    public static class TableBalanceCheckpointsFields {
+        public static final String TABLE_NAME = "balanceCheckpoints";
+        public static final String BC_ID_USER = "userId";
+        public static final String BC_JOURNAL_ID = "journalId"; // the last journal entry included in the balance
+        public static final String BC_BALANCE = "balance"; // in cents
+        public static final String BC_DATE = "dateCheckpoint"; // epoch milliseconds
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        BC_ID_USER + " VARCHAR(100) NOT NULL,\n" +
+                        BC_JOURNAL_ID + " INTEGER NOT NULL,\n" +
+                        BC_BALANCE + " INTEGER NOT NULL,\n" +
+                        BC_DATE + " DATE NOT NULL,\n" +
+                        "PRIMARY KEY (" + BC_ID_USER + ", " + BC_JOURNAL_ID + ")) WITHOUT ROWID;";
+
+        static final String INSERT_FROM_OPENINGS =
+                "INSERT INTO " + TABLE_NAME + " (" + BC_ID_USER + ", " + BC_JOURNAL_ID + ", " + BC_BALANCE + ", " + BC_DATE + ") " +
+                        "SELECT " + TableBalanceJournalFields.BJ_ID_USER + ", " + TableBalanceJournalFields.BJ_ID + ", " +
+                        TableBalanceJournalFields.BJ_AMOUNT + ", " + TableBalanceJournalFields.BJ_DATE +
+                        " FROM " + TableBalanceJournalFields.TABLE_NAME +
+                        " WHERE " + TableBalanceJournalFields.BJ_KIND + " = " + TableBalanceJournalFields.KIND_OPENING + ";";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+    }
+
+    /**
+     * This class represents the "ItemsSearch" table, the full-text index of the names of the items.
+     * The names are read from the items table, so the index doesn't store them again, and it is kept
+     * up to date by triggers. FTS4 is used because FTS5 is not available on every device.
+     */
+    public static class TableItemsSearchFields {
+        public static final String TABLE_NAME = "itemsSearch";
+        public static final String IS_DOC_ID = "docid"; // the id of the item
+        public static final String IS_NAME = TableItemsFields.ITEMS_NAME;
+
+        // the accents are removed, and the prefixes of 2 and 3 letters are indexed to speed up the searches while typing
+        private static final String CREATE_TABLE =
+                "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4(" +
+                        "content=\"" + TableItemsFields.TABLE_NAME + "\", " + IS_NAME + ", " +
+                        "tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\");";
+
+        // the old name must be removed from the index before it is changed in the items table
+        static final String CREATE_TRIGGER_ITEMS_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_insert_search AFTER INSERT ON " + TableItemsFields.TABLE_NAME +
+                        " BEGIN\n" + indexName("NEW") + "END;";
+        static final String CREATE_TRIGGER_ITEMS_BEFORE_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_before_update_search BEFORE UPDATE OF " + TableItemsFields.ITEMS_NAME +
+                        " ON " + TableItemsFields.TABLE_NAME + " BEGIN\n" + removeName("OLD") + "END;";
+        static final String CREATE_TRIGGER_ITEMS_AFTER_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_after_update_search AFTER UPDATE OF " + TableItemsFields.ITEMS_NAME +
+                        " ON " + TableItemsFields.TABLE_NAME + " BEGIN\n" + indexName("NEW") + "END;";
+        static final String CREATE_TRIGGER_ITEMS_DELETE =
+                "CREATE TRIGGER IF NOT EXISTS trg_items_delete_search BEFORE DELETE ON " + TableItemsFields.TABLE_NAME +
+                        " BEGIN\n" + removeName("OLD") + "END;";
+
+        // indexes again all the items, used to fill the index for the first time or to repair it
+        static final String REBUILD =
+                "INSERT INTO " + TABLE_NAME + " (" + TABLE_NAME + ") VALUES ('rebuild');";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+
+        private static String indexName(String row) {
+            return "INSERT INTO " + TABLE_NAME + " (" + IS_DOC_ID + ", " + IS_NAME + ") VALUES (" +
+                    row + "." + TableItemsFields.ITEMS_ID + ", " + row + "." + TableItemsFields.ITEMS_NAME + ");\n";
+        }
+
+        private static String removeName(String row) {
+            return "DELETE FROM " + TABLE_NAME + " WHERE " + IS_DOC_ID + " = " + row + "." + TableItemsFields.ITEMS_ID + ";\n";
+        }
+    }
+
+    /**
+     * This class represents the "WishListsSearch" table, the full-text index of the names and the descriptions
+     * of the wishlists. Like TableItemsSearchFields, it reads the text from the wishLists table and it is
+     * kept up to date by triggers.
+     */
+    public static class TableWishListsSearchFields {
+        public static final String TABLE_NAME = "wishListsSearch";
+        public static final String WLS_DOC_ID = "docid"; // the id of the wishlist
+        public static final String WLS_NAME = TableWishListsFields.WL_NAME;
+        public static final String WLS_DESC = TableWishListsFields.WL_DESC;
+
+        private static final String CREATE_TABLE =
+                "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4(" +
+                        "content=\"" + TableWishListsFields.TABLE_NAME + "\", " + WLS_NAME + ", " + WLS_DESC + ", " +
+                        "tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\");";
+
+        static final String CREATE_TRIGGER_WISH_LISTS_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_wish_lists_insert_search AFTER INSERT ON " + TableWishListsFields.TABLE_NAME +
+                        " BEGIN\n" + indexText("NEW") + "END;";
+        static final String CREATE_TRIGGER_WISH_LISTS_BEFORE_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_wish_lists_before_update_search BEFORE UPDATE OF " +
+                        TableWishListsFields.WL_NAME + ", " + TableWishListsFields.WL_DESC + " ON " + TableWishListsFields.TABLE_NAME +
+                        " BEGIN\n" + removeText("OLD") + "END;";
+        static final String CREATE_TRIGGER_WISH_LISTS_AFTER_UPDATE =
+                "CREATE TRIGGER IF NOT EXISTS trg_wish_lists_after_update_search AFTER UPDATE OF " +
+                        TableWishListsFields.WL_NAME + ", " + TableWishListsFields.WL_DESC + " ON " + TableWishListsFields.TABLE_NAME +
+                        " BEGIN\n" + indexText("NEW") + "END;";
+        static final String CREATE_TRIGGER_WISH_LISTS_DELETE =
+                "CREATE TRIGGER IF NOT EXISTS trg_wish_lists_delete_search BEFORE DELETE ON " + TableWishListsFields.TABLE_NAME +
+                        " BEGIN\n" + removeText("OLD") + "END;";
+
+        static final String REBUILD =
+                "INSERT INTO " + TABLE_NAME + " (" + TABLE_NAME + ") VALUES ('rebuild');";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+
+        private static String indexText(String row) {
+            return "INSERT INTO " + TABLE_NAME + " (" + WLS_DOC_ID + ", " + WLS_NAME + ", " + WLS_DESC + ") VALUES (" +
+                    row + "." + TableWishListsFields.WL_ID + ", " + row + "." + TableWishListsFields.WL_NAME + ", " +
+                    row + "." + TableWishListsFields.WL_DESC + ");\n";
+        }
+
+        private static String removeText(String row) {
+            return "DELETE FROM " + TABLE_NAME + " WHERE " + WLS_DOC_ID + " = " + row + "." + TableWishListsFields.WL_ID + ";\n";
+        }
+    }
+
+    /**
+     * This class represents the "IncomesArchive" table, which keeps the incomes older than the cutoff chosen
+     * by the user, moved here by DbManager.archiveMovements. The incomes keep their id and their columns,
+     * so the same queries and mappers can read both tables.
+     */
+    public static class TableIncomesArchiveFields {
+        public static final String TABLE_NAME = "incomesArchive";
+        public static final String IA_ID = TableIncomesFields.INCOMES_ID; // the id the income had in the incomes table
+        public static final String IA_VAL = TableIncomesFields.INCOMES_VAL;
+        public static final String IA_DATE = TableIncomesFields.INCOMES_DATE;
+        public static final String IA_ID_CAT = TableIncomesFields.INCOMES_ID_CAT;
+        public static final String IA_ID_USER = TableIncomesFields.INCOMES_ID_USER;
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        IA_ID + " INTEGER PRIMARY KEY,\n" +
+                        IA_VAL + " INTEGER NOT NULL,\n" +
+                        IA_DATE + " DATE,\n" +
+                        IA_ID_CAT + " VARCHAR(8) NOT NULL,\n" +
+                        IA_ID_USER + " VARCHAR(100) NOT NULL);";
+
+        // index used to get or sort the archived incomes of a user by date
+        static final String CREATE_INDEX_USER_DATE =
+                "CREATE INDEX IF NOT EXISTS idx_incomes_archive_user_date ON " + TABLE_NAME + " (" + IA_ID_USER + ", " + IA_DATE + ");";
+
+        // index used to sort the archived incomes of a user by value
+        static final String CREATE_INDEX_USER_VALUE =
+                "CREATE INDEX IF NOT EXISTS idx_incomes_archive_user_value ON " + TABLE_NAME +
+                        " (" + IA_ID_USER + ", " + IA_VAL + ", " + IA_ID + ");";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+    }
+
+    /**
+     * This class represents the "PurchasesArchive" table, which keeps the simple purchases older than the cutoff
+     * chosen by the user. A purchase is saved together with its item, which is removed from the items table.
+     */
+    public static class TablePurchasesArchiveFields {
+        public static final String TABLE_NAME = "purchasesArchive";
+        public static final String PA_ID = TablePurchasesFields.PURCH_ID; // the id the purchase had in the purchases table
+        public static final String PA_DATE = TablePurchasesFields.PURCH_DATE;
+        public static final String PA_ID_USER = TablePurchasesFields.PURCH_ID_USER;
+        public static final String PA_ITEM_ID = TablePurchasesFields.PURCH_ITEM_ID; // the id the item had in the items table
+        public static final String PA_NAME = TableItemsFields.ITEMS_NAME;
+        public static final String PA_PRICE = TableItemsFields.ITEMS_PRICE; // price of a single unit, in cents
+        public static final String PA_AMOUNT = TableItemsFields.ITEMS_AMOUNT;
+        public static final String PA_ID_CAT = TableItemsFields.ITEMS_ID_CAT;
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        PA_ID + " INTEGER PRIMARY KEY,\n" +
+                        PA_DATE + " DATE,\n" +
+                        PA_ID_USER + " VARCHAR(100) NOT NULL,\n" +
+                        PA_ITEM_ID + " INTEGER NOT NULL,\n" +
+                        PA_NAME + " VARCHAR(255),\n" +
+                        PA_PRICE + " INTEGER NOT NULL,\n" +
+                        PA_AMOUNT + " INT DEFAULT 0,\n" +
+                        PA_ID_CAT + " VARCHAR(8) NOT NULL);";
+
+        // index used to get or sort the archived purchases of a user by date
+        static final String CREATE_INDEX_USER_DATE =
+                "CREATE INDEX IF NOT EXISTS idx_purchases_archive_user_date ON " + TABLE_NAME + " (" + PA_ID_USER + ", " + PA_DATE + ");";
+
         static String getCreateTable() {
             return CREATE_TABLE;
         }
     }
 
+    /**
+     * This class represents the "PurchasesArchiveSearch" table, the full-text index of the names of the archived
+     * purchases, built like the one of the items. The archive is only appended to, so the index is kept
+     * up to date by a trigger on the inserts.
+     */
+    public static class TablePurchasesArchiveSearchFields {
+        public static final String TABLE_NAME = "purchasesArchiveSearch";
+        public static final String PAS_DOC_ID = "docid"; // the id of the archived purchase
+        public static final String PAS_NAME = TablePurchasesArchiveFields.PA_NAME;
+
+        private static final String CREATE_TABLE =
+                "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4(" +
+                        "content=\"" + TablePurchasesArchiveFields.TABLE_NAME + "\", " + PAS_NAME + ", " +
+                        "tokenize=unicode61 \"remove_diacritics=1\", prefix=\"2,3\");";
+
+        static final String CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_archive_insert_search AFTER INSERT ON " +
+                        TablePurchasesArchiveFields.TABLE_NAME + " BEGIN\n" +
+                        "INSERT INTO " + TABLE_NAME + " (" + PAS_DOC_ID + ", " + PAS_NAME + ") VALUES (NEW." +
+                        TablePurchasesArchiveFields.PA_ID + ", NEW." + TablePurchasesArchiveFields.PA_NAME + ");\n" +
+                        "END;";
+
+        // indexes again all the archived purchases, used to fill the index for the first time or to repair it
+        static final String REBUILD =
+                "INSERT INTO " + TABLE_NAME + " (" + TABLE_NAME + ") VALUES ('rebuild');";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+    }
+
+    /**
+     * This class represents the "ArchivedPeriods" table, the summary of the archive: the number and the sum
+     * of the archived incomes and purchases of every user, month by month. The archive is only appended to,
+     * so the table is kept up to date by triggers on the inserts of the two archive tables.
+     */
+    public static class TableArchivedPeriodsFields {
+        public static final String TABLE_NAME = "archivedPeriods";
+        public static final String AP_ID_USER = "userId";
+        public static final String AP_MONTH = "month"; // local year and month as yyyyMM, like in TableMonthlyTotalsFields
+        public static final String AP_INCOMES_COUNT = "incomesCount";
+        public static final String AP_INCOMES = "incomes"; // in cents
+        public static final String AP_PURCHASES_COUNT = "purchasesCount";
+        public static final String AP_PURCHASES = "purchases"; // in cents
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (\n" +
+                        AP_ID_USER + " VARCHAR(100) NOT NULL,\n" +
+                        AP_MONTH + " INTEGER NOT NULL,\n" +
+                        AP_INCOMES_COUNT + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        AP_INCOMES + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        AP_PURCHASES_COUNT + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        AP_PURCHASES + " INTEGER NOT NULL DEFAULT 0,\n" +
+                        "PRIMARY KEY (" + AP_ID_USER + ", " + AP_MONTH + ")) WITHOUT ROWID;";
+
+        static final String CREATE_TRIGGER_INCOMES_ARCHIVE_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_incomes_archive_insert_periods AFTER INSERT ON " + TableIncomesArchiveFields.TABLE_NAME +
+                        " BEGIN\n" + addTo(AP_INCOMES_COUNT, AP_INCOMES, "NEW." + TableIncomesArchiveFields.IA_ID_USER,
+                        "NEW." + TableIncomesArchiveFields.IA_DATE, "NEW." + TableIncomesArchiveFields.IA_VAL) + "END;";
+        static final String CREATE_TRIGGER_PURCHASES_ARCHIVE_INSERT =
+                "CREATE TRIGGER IF NOT EXISTS trg_purchases_archive_insert_periods AFTER INSERT ON " + TablePurchasesArchiveFields.TABLE_NAME +
+                        " BEGIN\n" + addTo(AP_PURCHASES_COUNT, AP_PURCHASES, "NEW." + TablePurchasesArchiveFields.PA_ID_USER,
+                        "NEW." + TablePurchasesArchiveFields.PA_DATE,
+                        "NEW." + TablePurchasesArchiveFields.PA_PRICE + " * NEW." + TablePurchasesArchiveFields.PA_AMOUNT) + "END;";
+
+        static String getCreateTable() {
+            return CREATE_TABLE;
+        }
+
+        /**
+         * This method builds the statements that count an archived movement in the row of its month,
+         * creating the row the first time.
+         *
+         * @param countColumn   the column of the number of movements
+         * @param sumColumn     the column of the sum of the movements
+         * @param user          the SQL expression of the user
+         * @param date          the SQL expression of the date
+         * @param value         the SQL expression of the value
+         *
+         * @return the statements, to be used inside a trigger
+         * */
+        private static String addTo(String countColumn, String sumColumn, String user, String date, String value) {
+            String month = TableMonthlyTotalsFields.monthOf(date);
+            return "INSERT OR IGNORE INTO " + TABLE_NAME + " (" + AP_ID_USER + ", " + AP_MONTH + ")" +
+                    " VALUES (" + user + ", " + month + ");\n" +
+                    "UPDATE " + TABLE_NAME + " SET " + countColumn + " = " + countColumn + " + 1, " +
+                    sumColumn + " = " + sumColumn + " + COALESCE(" + value + ", 0)" +
+                    " WHERE " + AP_ID_USER + " = " + user + " AND " + AP_MONTH + " = " + month + ";\n";
+        }
+    }
+
+    /**
+     * This method builds the SQL expression that converts a local date saved as "d/M/yyyy",
+     * and optionally a local time saved as "HH:mm" or "HH:mm:ss", into epoch milliseconds.
+     * The expression is NULL for a date or a time that cannot be read. It is used only by the migrations.
+     *
+     * @param dateColumn    the column that contains the date
+     * @param timeColumn    the column that contains the time, null if there is no time
+     *
+     * @return the SQL expression
+     * */
+    static String localDateTimeToMillis(String dateColumn, String timeColumn) {
+        String rest = "substr(" + dateColumn + ", instr(" + dateColumn + ", '/') + 1)"; // "M/yyyy"
+        String day = "CAST(substr(" + dateColumn + ", 1, instr(" + dateColumn + ", '/') - 1) AS INTEGER)";
+        String month = "CAST(substr(" + rest + ", 1, instr(" + rest + ", '/') - 1) AS INTEGER)";
+        String year = "CAST(substr(" + rest + ", instr(" + rest + ", '/') + 1) AS INTEGER)";
+        String time = timeColumn == null ? "'00:00'" : "COALESCE(" + timeColumn + ", '00:00')";
+
+        return "CAST(strftime('%s', printf('%04d-%02d-%02d ', " + year + ", " + month + ", " + day + ") || " + time +
+                ", 'utc') AS INTEGER) * 1000";
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.labproject.keepmoneyv3.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class tells the screens which tables have been changed by the writes of DbManager,
+ * so every screen reads again only the data that has changed.
+ * The observers are added, removed and notified on the main thread, the writes can be notified from any thread.
+ * The tables filled by the database itself, like the monthly totals and the balance journal,
+ * change together with the tables they are computed from, so they are notified only when they are rebuilt.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager           which notifies its writes
+ * @see DbRepository        used to observe the result of a read
+ * */
+public class InvalidationTracker {
+
+    /**
+     * Observer notified when one of its tables has been changed.
+     * */
+    public interface Observer {
+        void onInvalidated(Set<String> tables);
+    }
+
+    private static final Map<Observer, Set<String>> OBSERVERS = new HashMap<>();
+    private static final Map<String, Long> VERSIONS = new HashMap<>(); // number of changes of every table
+
+    private InvalidationTracker() {}
+
+    /**
+     * This method adds an observer of some tables.
+     *
+     * @param observer      the observer
+     * @param tables        the names of the tables, from DbStrings
+     * */
+    public static void addObserver(Observer observer, String... tables) {
+        OBSERVERS.put(observer, new HashSet<>(Arrays.asList(tables)));
+    }
+
+    public static void removeObserver(Observer observer) {
+        OBSERVERS.remove(observer);
+    }
+
+    /**
+     * This method returns a number that changes every time one of the tables is changed,
+     * used to know if the tables have been changed while nobody was observing them.
+     *
+     * @param tables        the names of the tables
+     *
+     * @return the number of changes of the tables
+     * */
+    public static long getVersion(String... tables) {
+        long version = 0;
+        for (String table : tables) {
+            Long tableVersion = VERSIONS.get(table);
+            version += tableVersion != null ? tableVersion : 0;
+        }
+        return version;
+    }
+
+    /**
+     * This method notifies the observers of the tables changed by a write. It must be called
+     * once the write has been committed, and the observers are notified later on the main thread.
+     * The categories kept in memory are removed at once, so no read that follows the write can find them.
+     *
+     * @param tables        the names of the changed tables
+     * */
+    static void notifyChanged(String... tables) {
+        Set<String> changed = new HashSet<>(Arrays.asList(tables));
+        if (changed.contains(DbStrings.TableCategoriesFields.TABLE_NAME)) {
+            CategoryRepository.invalidate();
+        }
+        DbExecutors.postToMainThread(() -> dispatch(changed));
+    }
+
+    private static void dispatch(Set<String> changed) {
+        for (String table : changed) {
+            Long version = VERSIONS.get(table);
+            VERSIONS.put(table, version != null ? version + 1 : 1);
+        }
+
+        // an observer can remove itself, or add another one, while it is notified
+        for (Map.Entry<Observer, Set<String>> entry : new ArrayList<>(OBSERVERS.entrySet())) {
+            Set<String> tables = new HashSet<>(entry.getValue());
+            tables.retainAll(changed);
+
+            if (!tables.isEmpty() && OBSERVERS.containsKey(entry.getKey())) {
+                entry.getKey().onInvalidated(tables);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * This class represents a single step of the evolution of the database schema.
+ * A migration brings the database from the previous version to the one it declares,
+ * by executing its SQL statements in order.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbHelper    where all the migrations are listed
+ * */
+public class Migration {
+    private final int version;
+    private final String[] statements;
+
+    Migration(int version, String... statements) {
+        this.version = version;
+        this.statements = statements;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String[] getStatements() {
+        return statements.clone();
+    }
+
+    /**
+     * This method executes all the statements of the migration on the database passed to it.
+     * It is always called inside the upgrade transaction opened by the SQLiteOpenHelper.
+     *
+     * @param db        the database to migrate
+     * */
+    void apply(SQLiteDatabase db) {
+        for (String statement : statements) {
+            db.execSQL(statement);
+        }
+    }
+}
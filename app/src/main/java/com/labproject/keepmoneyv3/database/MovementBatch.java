@@ -0,0 +1,154 @@
+package com.labproject.keepmoneyv3.database;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.util.ArrayList;
+
+/**
+ * This class collects many movements of a user, so they can be written by DbManager in a single transaction.
+ * The change of the total of the user is computed while the movements are added, and it is saved
+ * as a single entry of the balance journal instead of one entry for every movement.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager#insertBatch(MovementBatch, String)
+ * */
+public class MovementBatch {
+
+    static class Income {
+        final Money value;
+        final long date;
+        final String idCat;
+
+        Income(Money value, long date, String idCat) {
+            this.value = value;
+            this.date = date;
+            this.idCat = idCat;
+        }
+    }
+
+    static class Purchase {
+        final Item item;
+        final long date;
+
+        Purchase(Item item, long date) {
+            this.item = item;
+            this.date = date;
+        }
+    }
+
+    static class WishList {
+        final String name;
+        final String desc;
+        final ArrayList<Item> items;
+        final Long date; // null if the list has not been bought yet
+
+        WishList(String name, String desc, ArrayList<Item> items, Long date) {
+            this.name = name;
+            this.desc = desc;
+            this.items = items;
+            this.date = date;
+        }
+
+        int getValid() {
+            return date != null ? ApplicationTags.MiscellaneousTags.CONFIRMED : ApplicationTags.MiscellaneousTags.NOT_CONFIRMED;
+        }
+    }
+
+    private final ArrayList<Income> incomes = new ArrayList<>();
+    private final ArrayList<Purchase> purchases = new ArrayList<>();
+    private final ArrayList<WishList> wishLists = new ArrayList<>();
+    private Money balanceChange = Money.ZERO;
+    private int rows;
+
+    /**
+     * This method adds an income to the batch.
+     *
+     * @param value     the value of the income
+     * @param date      the date of the income, in epoch milliseconds
+     * @param idCat     the category of the income
+     * */
+    public void addIncome(Money value, long date, String idCat) {
+        incomes.add(new Income(value, date, idCat));
+        balanceChange = balanceChange.plus(value);
+        rows++;
+    }
+
+    /**
+     * This method adds a simple purchase and its item to the batch.
+     *
+     * @param item      the item bought
+     * @param date      the date and time of the purchase, in epoch milliseconds
+     * */
+    public void addPurchase(Item item, long date) {
+        purchases.add(new Purchase(item, date));
+        balanceChange = balanceChange.minus(item.getPrice().times(item.getAmount()));
+        rows += 2;
+    }
+
+    /**
+     * This method adds a wishlist and its items to the batch. The validity of the list and of its items
+     * follows the date: a list with a date has been bought and its cost is taken from the total.
+     *
+     * @param name      the name of the list
+     * @param desc      a description of the list
+     * @param items     the items of the list
+     * @param date      the date and time of the purchase of the list in epoch milliseconds, null if it is only planned
+     * */
+    public void addWishList(String name, String desc, ArrayList<Item> items, Long date) {
+        WishList wishList = new WishList(name, desc, items, date);
+        wishLists.add(wishList);
+
+        for (Item item : items) {
+            item.setValid(wishList.getValid());
+            if (date != null) {
+                balanceChange = balanceChange.minus(item.getPrice().times(item.getAmount()));
+            }
+        }
+        rows += 1 + 2 * items.size();
+    }
+
+    /**
+     * @return the number of rows that will be written: every purchase, and every element of a wishlist,
+     *         is made of an item and a purchase
+     * */
+    public int size() {
+        return rows;
+    }
+
+    public boolean isEmpty() {
+        return rows == 0;
+    }
+
+    /**
+     * @return the change of the total of the user, positive if the incomes are greater than the purchases
+     * */
+    public Money getBalanceChange() {
+        return balanceChange;
+    }
+
+    /**
+     * This method empties the batch, so it can be filled again after it has been written.
+     * */
+    public void clear() {
+        incomes.clear();
+        purchases.clear();
+        wishLists.clear();
+        balanceChange = Money.ZERO;
+        rows = 0;
+    }
+
+    ArrayList<Income> getIncomes() {
+        return incomes;
+    }
+
+    ArrayList<Purchase> getPurchases() {
+        return purchases;
+    }
+
+    ArrayList<WishList> getWishLists() {
+        return wishLists;
+    }
+}
@@ -0,0 +1,119 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+
+/**
+ * This class contains a page of the rows of a list, read with keyset pagination: every page starts
+ * right after the key of the last row of the previous one, so reading a page costs the same
+ * whatever the number of rows before it.
+ *
+ * @param <T>   the type of the rows
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager       which runs the queries of the pages
+ * */
+public class Page<T> {
+
+    public static final int SIZE = 50; // max number of rows of a page
+
+    // columns added to the queries of the pages, with the key of every row
+    static final String SORT_KEY_COLUMN = "pageSortKey";
+    static final String ROW_ID_COLUMN = "pageRowId";
+
+    /**
+     * This class identifies the position of a row inside a sorted list: the value the list is sorted by,
+     * and the id of the row, used to order the rows with the same value.
+     * */
+    public static class Key {
+        private final long sortKey;
+        private final long rowId;
+
+        Key(long sortKey, long rowId) {
+            this.sortKey = sortKey;
+            this.rowId = rowId;
+        }
+
+        long getSortKey() {
+            return sortKey;
+        }
+
+        long getRowId() {
+            return rowId;
+        }
+    }
+
+    private final ArrayList<T> rows;
+    private final Key nextKey;
+
+    private Page(ArrayList<T> rows, Key nextKey) {
+        this.rows = rows;
+        this.nextKey = nextKey;
+    }
+
+    public ArrayList<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * This method returns the key to pass to DbManager to read the next page.
+     *
+     * @return the key of the last row, null if this is the last page
+     * */
+    public Key getNextKey() {
+        return nextKey;
+    }
+
+    public boolean isLast() {
+        return nextKey == null;
+    }
+
+    /**
+     * This method joins this page with the one that follows it, as if they had been read as a single page.
+     *
+     * @param next      the page read with the key of this one
+     *
+     * @return a page with the rows of both pages, and the key of the next one
+     * */
+    public Page<T> append(Page<T> next) {
+        ArrayList<T> joined = new ArrayList<>(rows.size() + next.rows.size());
+        joined.addAll(rows);
+        joined.addAll(next.rows);
+        return new Page<>(joined, next.nextKey);
+    }
+
+    /**
+     * This method returns a reader that maps the rows of a page and reads the key of the next one.
+     *
+     * @param factory   the factory of the mapper used for the rows
+     * @param <T>       the type of the rows
+     *
+     * @return the reader
+     * */
+    public static <T> CursorReader<Page<T>> reader(RowMapper.Factory<T> factory) {
+        return cursor -> {
+            ArrayList<T> rows = RowMappers.mapAll(cursor, factory);
+            Key nextKey = null;
+
+            if (rows.size() == SIZE && cursor.moveToLast()) { // a shorter page is the last one
+                nextKey = keyOf(cursor);
+            }
+            return new Page<>(rows, nextKey);
+        };
+    }
+
+    /**
+     * This method reads the key of the current row of a cursor returned by a query of the pages,
+     * used to read the rows that follow it without building a Page, like the export does.
+     *
+     * @param cursor    the cursor, positioned on a row
+     *
+     * @return the key of the row
+     * */
+    public static Key keyOf(Cursor cursor) {
+        return new Key(cursor.getLong(cursor.getColumnIndexOrThrow(SORT_KEY_COLUMN)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(ROW_ID_COLUMN)));
+    }
+}
@@ -0,0 +1,35 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.Cursor;
+
+/**
+ * This interface represents an object that builds an object from the current row of a cursor.
+ * A mapper is created for a single cursor, so the indices of the columns it reads
+ * are resolved only once, when the mapper is created, and not for every row.
+ *
+ * @param <T>   the type of the objects built from the rows
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see RowMappers  where the mappers of the application are defined
+ * */
+public interface RowMapper<T> {
+
+    /**
+     * This method builds the object of the row the cursor is positioned on.
+     *
+     * @param cursor    the cursor the mapper has been created for
+     *
+     * @return the object of the row
+     * */
+    T map(Cursor cursor);
+
+    /**
+     * This interface creates the mapper of a cursor, resolving the indices of the columns it reads.
+     *
+     * @param <T>   the type of the objects built from the rows
+     * */
+    interface Factory<T> {
+        RowMapper<T> create(Cursor cursor);
+    }
+}
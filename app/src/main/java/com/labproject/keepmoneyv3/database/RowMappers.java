@@ -0,0 +1,156 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.annotation.SuppressLint;
+import android.database.Cursor;
+
+import com.labproject.keepmoneyv3.utility.Category;
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+import com.labproject.keepmoneyv3.utility.User;
+import com.labproject.keepmoneyv3.utility.WishLists;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * This class contains the mappers used to turn the rows returned by DbManager into the objects
+ * of the application. Every method is a RowMapper.Factory: it resolves the columns of the cursor
+ * passed to it and returns the mapper that reads them.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see RowMapper
+ * @see DbRepository    which uses these mappers to read the data of the screens
+ * */
+public class RowMappers {
+
+    private RowMappers() {}
+
+    /**
+     * This method reads all the rows of a cursor, starting from the first one.
+     * The cursor is not closed.
+     *
+     * @param cursor    the cursor to read
+     * @param factory   the factory of the mapper used for the rows
+     * @param <T>       the type of the objects built from the rows
+     *
+     * @return the objects built from the rows, in the order of the cursor
+     * */
+    public static <T> ArrayList<T> mapAll(Cursor cursor, RowMapper.Factory<T> factory) {
+        ArrayList<T> rows = new ArrayList<>(cursor.getCount());
+        RowMapper<T> mapper = factory.create(cursor);
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            rows.add(mapper.map(cursor));
+        }
+        return rows;
+    }
+
+    /**
+     * This method creates the mapper of the rows of the users table.
+     *
+     * @param cursor    a cursor with all the columns of the users table
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<User> user(Cursor cursor) {
+        final int username = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_ID);
+        final int password = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_PWD);
+        final int name = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_NAME);
+        final int surname = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_FAMILY_NAME);
+        final int email = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_EMAIL);
+        final int total = cursor.getColumnIndexOrThrow(DbStrings.TableUsersField.USERS_TOT);
+
+        return c -> new User(c.getString(username), c.getString(password), c.getString(name), c.getString(surname),
+                c.getString(email), Money.ofCents(c.getLong(total)));
+    }
+
+    /**
+     * This method creates the mapper of the rows of the categories table.
+     *
+     * @param cursor    a cursor with the id, the description and the picture of the categories
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<Category> category(Cursor cursor) {
+        final int id = cursor.getColumnIndexOrThrow(DbStrings.TableCategoriesFields.CATEGORIES_ID);
+        final int desc = cursor.getColumnIndexOrThrow(DbStrings.TableCategoriesFields.CATEGORIES_DESC);
+        final int picId = cursor.getColumnIndexOrThrow(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID);
+
+        return c -> new Category(c.getString(id), c.getString(desc), c.getInt(picId));
+    }
+
+    /**
+     * This method creates the mapper of the rows of the items table.
+     *
+     * @param cursor    a cursor with all the columns of the items table
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<Item> item(Cursor cursor) {
+        final int id = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_ID);
+        final int name = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_NAME);
+        final int amount = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_AMOUNT);
+        final int isConfirmed = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED);
+        final int price = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_PRICE);
+        final int idCat = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_ID_CAT);
+
+        return c -> new Item(c.getInt(id), c.getString(name), c.getInt(amount), c.getInt(isConfirmed),
+                Money.ofCents(c.getLong(price)), c.getString(idCat));
+    }
+
+    /**
+     * This method creates the mapper of the rows of the wishlists table.
+     *
+     * @param cursor    a cursor with all the columns of the wishlists table
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<WishLists> wishList(Cursor cursor) {
+        final int id = cursor.getColumnIndexOrThrow(DbStrings.TableWishListsFields.WL_ID);
+        final int name = cursor.getColumnIndexOrThrow(DbStrings.TableWishListsFields.WL_NAME);
+        final int desc = cursor.getColumnIndexOrThrow(DbStrings.TableWishListsFields.WL_DESC);
+        final int isConfirmed = cursor.getColumnIndexOrThrow(DbStrings.TableWishListsFields.WL_IS_CONFIRMED);
+
+        return c -> new WishLists(c.getInt(id), c.getString(name), c.getString(desc), c.getInt(isConfirmed));
+    }
+
+    /**
+     * This method creates the mapper that shows an item inside a list, with the total cost of the item.
+     *
+     * @param cursor    a cursor with the id, the name, the price and the amount of the items, and the picture of their category
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<DefaultListViewItems> itemListViewItem(Cursor cursor) {
+        final int id = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_ID);
+        final int name = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_NAME);
+        final int price = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_PRICE);
+        final int amount = cursor.getColumnIndexOrThrow(DbStrings.TableItemsFields.ITEMS_AMOUNT);
+        final int picId = cursor.getColumnIndexOrThrow(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID);
+
+        return c -> new DefaultListViewItems(c.getInt(id), c.getString(name), c.getInt(picId),
+                Money.ofCents(c.getLong(price)).times(c.getInt(amount)));
+    }
+
+    /**
+     * This method creates the mapper that shows an income inside a list, with its date in place of the name.
+     *
+     * @param cursor    a cursor with the id, the value and the date of the incomes, and the picture of their category
+     *
+     * @return the mapper
+     * */
+    public static RowMapper<DefaultListViewItems> incomeListViewItem(Cursor cursor) {
+        final int id = cursor.getColumnIndexOrThrow(DbStrings.TableIncomesFields.INCOMES_ID);
+        final int date = cursor.getColumnIndexOrThrow(DbStrings.TableIncomesFields.INCOMES_DATE);
+        final int value = cursor.getColumnIndexOrThrow(DbStrings.TableIncomesFields.INCOMES_VAL);
+        final int picId = cursor.getColumnIndexOrThrow(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID);
+        @SuppressLint("SimpleDateFormat") final SimpleDateFormat formatter = new SimpleDateFormat("d/M/yyyy"); // one per cursor, it is not thread safe
+
+        return c -> new DefaultListViewItems(c.getInt(id), formatter.format(new Date(c.getLong(date))), c.getInt(picId),
+                Money.ofCents(c.getLong(value)));
+    }
+}
@@ -0,0 +1,71 @@
+package com.labproject.keepmoneyv3.database;
+
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.WishLists;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * This class contains the result of a search made by a user: the items bought by the user and the wishlists
+ * of the user that match the searched text, both ordered from the most relevant one.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbManager       which runs the search on the full-text indexes
+ * */
+public class SearchResults {
+
+    private static final int MIN_PREFIX_LENGTH = 2; // shorter words match only whole words, a single letter would match almost everything
+
+    private final ArrayList<DefaultListViewItems> items;
+    private final ArrayList<WishLists> wishLists;
+
+    SearchResults(ArrayList<DefaultListViewItems> items, ArrayList<WishLists> wishLists) {
+        this.items = items;
+        this.wishLists = wishLists;
+    }
+
+    public ArrayList<DefaultListViewItems> getItems() {
+        return items;
+    }
+
+    public ArrayList<WishLists> getWishLists() {
+        return wishLists;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty() && wishLists.isEmpty();
+    }
+
+    /**
+     * This method turns the text typed by the user into the expression of a MATCH query. Every word of the text
+     * must be found, and the words are matched as prefixes, so the results appear while the user is typing.
+     * Only letters and digits are kept, so the text can never contain the operators of the query syntax.
+     *
+     * @param text      the text typed by the user
+     * @param column    the column where the words must be found, null to search all the columns
+     *
+     * @return the expression, null if the text contains no word
+     * */
+    static String matchExpression(String text, String column) {
+        StringBuilder match = new StringBuilder();
+
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            if (column != null) {
+                match.append(column).append(':');
+            }
+            match.append(word);
+            if (word.length() >= MIN_PREFIX_LENGTH) {
+                match.append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
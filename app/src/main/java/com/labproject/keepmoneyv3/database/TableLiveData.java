@@ -0,0 +1,65 @@
+package com.labproject.keepmoneyv3.database;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * This class is a LiveData that runs a read again every time one of the tables it reads is changed.
+ * The read runs only while the LiveData has active observers: the changes made while it is inactive
+ * are read once, as soon as it becomes active again.
+ *
+ * @param <T>   the type of the result of the read
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see InvalidationTracker     which notifies the changes
+ * */
+class TableLiveData<T> extends LiveData<T> implements InvalidationTracker.Observer {
+    private final Supplier<T> read;
+    private final String[] tables;
+
+    private long readVersion = -1; // version of the tables of the last read, -1 if nothing has been read yet
+    private int loads; // number of reads started, only the result of the last one is kept
+
+    TableLiveData(Supplier<T> read, String... tables) {
+        this.read = read;
+        this.tables = tables;
+    }
+
+    @Override
+    protected void onActive() {
+        InvalidationTracker.addObserver(this, tables);
+        if (readVersion != InvalidationTracker.getVersion(tables)) {
+            load();
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        InvalidationTracker.removeObserver(this);
+    }
+
+    @Override
+    public void onInvalidated(Set<String> changed) {
+        load();
+    }
+
+    /**
+     * This method runs the read on the read executor and sets its result on the main thread.
+     * */
+    private void load() {
+        int load = ++loads;
+        readVersion = InvalidationTracker.getVersion(tables);
+
+        DbExecutors.reads().execute(() -> {
+            T result = read.get();
+            DbExecutors.postToMainThread(() -> {
+                if (load == loads) { // otherwise a later read has been started by a newer change
+                    setValue(result);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.labproject.keepmoneyv3.database;
+
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Money;
+import com.labproject.keepmoneyv3.utility.WishLists;
+
+import java.util.ArrayList;
+
+/**
+ * This class contains a wishlist with its total and its items, ready to be shown by the screens.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see WishListRepository      which reads the wishlists of a user
+ * */
+public class WishListDetails {
+
+    // columns of the wishlist, renamed because the items have columns with the same names
+    static final String LIST_ID_COLUMN = "wlId";
+    static final String LIST_NAME_COLUMN = "wlName";
+    static final String LIST_DESC_COLUMN = "wlDescription";
+    static final String LIST_IS_CONFIRMED_COLUMN = "wlIsConfirmed";
+
+    private final WishLists wishList;
+    private final ArrayList<DefaultListViewItems> items = new ArrayList<>();
+    private Money total = Money.ZERO;
+
+    private WishListDetails(WishLists wishList) {
+        this.wishList = wishList;
+    }
+
+    public WishLists getWishList() {
+        return wishList;
+    }
+
+    public int getId() {
+        return wishList.getId();
+    }
+
+    public String getName() {
+        return wishList.getName();
+    }
+
+    public Money getTotal() {
+        return total;
+    }
+
+    public ArrayList<DefaultListViewItems> getItems() {
+        return items;
+    }
+
+    /**
+     * This method returns the reader of the query of the wishlists. The query returns a row for every item,
+     * with the columns of its wishlist, and the items of a wishlist are next to each other,
+     * so the wishlists are built with a single pass on the cursor.
+     *
+     * @return the reader
+     * */
+    static CursorReader<ArrayList<WishListDetails>> listReader() {
+        return cursor -> {
+            final int listId = cursor.getColumnIndexOrThrow(LIST_ID_COLUMN);
+            final int listName = cursor.getColumnIndexOrThrow(LIST_NAME_COLUMN);
+            final int listDesc = cursor.getColumnIndexOrThrow(LIST_DESC_COLUMN);
+            final int listIsConfirmed = cursor.getColumnIndexOrThrow(LIST_IS_CONFIRMED_COLUMN);
+            RowMapper<DefaultListViewItems> itemMapper = RowMappers.itemListViewItem(cursor);
+
+            ArrayList<WishListDetails> wishLists = new ArrayList<>();
+            WishListDetails current = null;
+
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(listId);
+                if (current == null || current.getId() != id) { // first item of a new wishlist
+                    current = new WishListDetails(new WishLists(id, cursor.getString(listName),
+                            cursor.getString(listDesc), cursor.getInt(listIsConfirmed)));
+                    wishLists.add(current);
+                }
+
+                DefaultListViewItems item = itemMapper.map(cursor);
+                current.items.add(item);
+                current.total = current.total.plus(item.getPrice()); // the price of the row is already multiplied by the amount
+            }
+            return wishLists;
+        };
+    }
+}
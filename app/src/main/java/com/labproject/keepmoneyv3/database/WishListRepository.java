@@ -0,0 +1,35 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+
+/**
+ * This class reads the wishlists shown by the screens of the application. The wishlists of a user are read
+ * with their totals and their items by a single query, so the time needed doesn't grow with the
+ * number of wishlists, as it did when the items of every wishlist were read by another query.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see WishListDetails     the wishlists read
+ * @see DbManager           used to run the query
+ * */
+public class WishListRepository {
+    private final DbManager dbManager;
+
+    public WishListRepository(Context context) {
+        dbManager = new DbManager(context);
+    }
+
+    /**
+     * This method returns the wishlists of a user, with their totals and their items.
+     *
+     * @param username      the username
+     * @param isConfirmed   specifies if the wishlists are bought or not
+     *
+     * @return the wishlists, ordered by id, null if the query failed
+     * */
+    public ArrayList<WishListDetails> getWishLists(String username, int isConfirmed) {
+        return dbManager.getWishListsWithItemsQuery(username, isConfirmed, WishListDetails.listReader());
+    }
+}
@@ -57,13 +57,11 @@ public class DatePickerDialogFragment extends DialogFragment implements android.
         if (dialogCalled.equals(ApplicationTags.DialogTags.DIALOG_INCOME_TAG)) {
             DialogIncome dialogIncome = (DialogIncome) requireActivity().getSupportFragmentManager().findFragmentByTag(dialogCalled);
             assert dialogIncome != null;
-            String data = day + "/" + (month + 1) + "/" + year;
-            dialogIncome.setStrDate(data);
+            dialogIncome.setDate(year, month, day);
         } else {
             DialogPurchase dialogPurchase = (DialogPurchase) requireActivity().getSupportFragmentManager().findFragmentByTag(dialogCalled);
             assert dialogPurchase != null;
-            String data = day + "/" + (month + 1)  + "/" + year;
-            dialogPurchase.setStrDate(data);
+            dialogPurchase.setDate(year, month, day);
         }
     }
 }
\ No newline at end of file
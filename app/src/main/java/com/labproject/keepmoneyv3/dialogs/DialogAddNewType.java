@@ -23,6 +23,7 @@ import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class is used to display the recycler view to select a category.
@@ -59,9 +60,9 @@ public class DialogAddNewType extends DialogFragment {
     }
 
 
-    private final ArrayList<Category> categories;
+    private final List<Category> categories;
 
-   public DialogAddNewType(ArrayList<Category> categories, String dialogTag){
+   public DialogAddNewType(List<Category> categories, String dialogTag){
         this.categories = categories;
         this.dialogTag = dialogTag;
     }
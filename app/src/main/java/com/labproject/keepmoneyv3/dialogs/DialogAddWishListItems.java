@@ -3,7 +3,6 @@ package com.labproject.keepmoneyv3.dialogs;
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.Dialog;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -21,6 +20,7 @@ import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.Category;
 import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
 
 import org.jetbrains.annotations.NotNull;
@@ -35,7 +35,7 @@ import java.util.ArrayList;
 
 public class DialogAddWishListItems extends DialogFragment {
     private View root;
-    private float subTotal;
+    private Money subTotal;
     private final ArrayList<Item> listItems;
     private Category category;
     private EditText txtCategoryItemList;
@@ -61,7 +61,7 @@ public class DialogAddWishListItems extends DialogFragment {
         builder.setTitle(ApplicationTags.DialogTitles.DIALOG_ADD_WISH_LIST_TITLE);
 
         txtCategoryItemList = root.findViewById(R.id.txtCategoryItemList);
-        subTotal = 0;
+        subTotal = Money.ZERO;
 
         txtTypeAction(txtCategoryItemList);
         btnAddNewItemAction();
@@ -99,19 +99,19 @@ public class DialogAddWishListItems extends DialogFragment {
                 break;
             }
 
-            // check the integer and float fields
+            // check the numeric fields
             if (isCorrect) {
                 int amount;
-                float itemCost;
+                Money itemCost;
                 String itemName = txtItem.getText().toString();
                 try {
                     amount = Integer.parseInt(txtAmountWL.getText().toString());
-                    itemCost = Float.parseFloat(txtCostWL.getText().toString());
+                    itemCost = Money.parse(txtCostWL.getText().toString());
 
-                    if(itemCost > 0 && amount > 0) {
+                    if(itemCost.isPositive() && amount > 0) {
                         listItems.add(new Item(itemName, amount, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, itemCost, category.getId()));
 
-                        subTotal = subTotal + (itemCost * amount);
+                        subTotal = subTotal.plus(itemCost.times(amount));
 
                         String message = "- Subtotale: " + subTotal + "€\n"
                                 + "- Numero di elementi: " + listItems.size();
@@ -169,25 +169,17 @@ public class DialogAddWishListItems extends DialogFragment {
      * */
     private void txtTypeAction(@NotNull EditText txtType) {
         txtType.setOnClickListener(v -> {
-            DbManager dbManager = new DbManager(getContext());
-            Cursor cursor = dbManager.queryGetAllRows(DbStrings.TableCategoriesFields.TABLE_NAME);
-            ArrayList<Category> allCategories = new ArrayList<>();
-
-            while (cursor.moveToNext()){
-                String id = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_ID));
-                String desc = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_DESC));
-                int picid = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-
-                if(!id.equals("cat07")) {
-                    allCategories.add(new Category(id, desc, picid));
+            // the categories are kept in memory, they are read in background only the first time
+            CategoryRepository.load(requireContext()).observe(this, categories -> {
+                if (categories == null) {
+                    return;
                 }
-            }
-
-            DialogAddNewType dialogAddNewType = new DialogAddNewType(allCategories, ApplicationTags.DialogTags.DIALOG_ADD_WISH_LIST_ITEMS_TAG);
-            FragmentManager manager = requireActivity().getSupportFragmentManager();
 
-            dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+                DialogAddNewType dialogAddNewType = new DialogAddNewType(categories.getPurchaseCategories(), ApplicationTags.DialogTags.DIALOG_ADD_WISH_LIST_ITEMS_TAG);
+                FragmentManager manager = requireActivity().getSupportFragmentManager();
 
+                dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+            });
         });
     }
 
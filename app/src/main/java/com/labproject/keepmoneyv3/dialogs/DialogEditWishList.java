@@ -4,7 +4,6 @@ import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -22,7 +21,6 @@ import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import com.labproject.keepmoneyv3.utility.User;
-import com.labproject.keepmoneyv3.utility.WishLists;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -79,82 +77,48 @@ public class DialogEditWishList extends DialogFragment {
         builder.setTitle(ApplicationTags.DialogTitles.DIALOG_EDIT_WISH_LIST_TITLE);
 
         User user = listener.GetUserFromSavedBundle();
-        ArrayList<WishLists>wishLists = new ArrayList<>();
-        getWishListData(wishLists, user.getUsername());
-
-        if(wishLists.size() > 0){
-            ArrayList<String> wlTitles = new ArrayList<>();
-            HashMap<String, ArrayList<DefaultListViewItems>> mapList = new HashMap<>();
-
-            buildDefaultWishListItemsMap(wishLists, mapList);
-            getWLTitles(wishLists, wlTitles);
-
-            ExpandableListView expandableListView = root.findViewById(R.id.simpleExpandableListView);
-            ExpandableListViewAdapter adapter = new ExpandableListViewAdapter(getContext(), mapList, wlTitles);
-            expandableListView.setAdapter(adapter);
-
-            expandableListView.setOnChildClickListener((expandableListView1, view, groupPosition, childPosition, l) -> {
-                DefaultListViewItems defaultListViewItems = adapter.getChild(groupPosition, childPosition);
-                DialogEditWishListElement dialogEditWishListElement = new DialogEditWishListElement(defaultListViewItems);
-                dialogEditWishListElement.show(getParentFragmentManager(), ApplicationTags.DialogTags.DIALOG_EDIT_WISH_LIST_ELEMENT_TAG);
-                dismiss();
-                return true;
-            });
-            requireActivity().getSupportFragmentManager().popBackStack();
-        } else {
-            Toast.makeText(getContext(), "Errore nel recuperare le liste!", Toast.LENGTH_SHORT).show();
-        }
+        ExpandableListView expandableListView = root.findViewById(R.id.simpleExpandableListView);
+
+        // the wishlists are read in background with all their items
+        WishListRepository repository = new WishListRepository(requireContext());
+        DbRepository.load(() -> repository.getWishLists(user.getUsername(), ApplicationTags.MiscellaneousTags.NOT_CONFIRMED))
+                .observe(this, wishLists -> {
+                    if(wishLists != null && wishLists.size() > 0){
+                        ArrayList<String> wlTitles = new ArrayList<>();
+                        HashMap<String, ArrayList<DefaultListViewItems>> mapList = new HashMap<>();
+
+                        buildDefaultWishListItemsMap(wishLists, mapList);
+                        getWLTitles(wishLists, wlTitles);
+
+                        ExpandableListViewAdapter adapter = new ExpandableListViewAdapter(getContext(), mapList, wlTitles);
+                        expandableListView.setAdapter(adapter);
+
+                        expandableListView.setOnChildClickListener((expandableListView1, view, groupPosition, childPosition, l) -> {
+                            DefaultListViewItems defaultListViewItems = adapter.getChild(groupPosition, childPosition);
+                            DialogEditWishListElement dialogEditWishListElement = new DialogEditWishListElement(defaultListViewItems);
+                            dialogEditWishListElement.show(getParentFragmentManager(), ApplicationTags.DialogTags.DIALOG_EDIT_WISH_LIST_ELEMENT_TAG);
+                            dismiss();
+                            return true;
+                        });
+                        requireActivity().getSupportFragmentManager().popBackStack();
+                    } else {
+                        Toast.makeText(getContext(), "Errore nel recuperare le liste!", Toast.LENGTH_SHORT).show();
+                    }
+                });
 
         return builder.create();
     }
 
-    /**
-     * This method is used to get the most important data of all the WishLists that are not confirmed.
-     * */
-    private void getWishListData(ArrayList<WishLists>wishLists, String username) {
-        DbManager manager = new DbManager(getContext());
-
-        Cursor cursor = manager.getWishListDataQuery(username, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                int wlId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_ID));
-                String listName = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_NAME));
-                String description = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_DESC));
-                int isConfirmed = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_IS_CONFIRMED));
-                wishLists.add(new WishLists(wlId, listName, description, isConfirmed));
-            }
-        }
-    }
-
     /**
      * This method builds the HashMap that needs to be send to the ExpandableWishListAdapter.
      *
-     * @param confirmedWl       the wishlist to populate
+     * @param wishLists         the wishlists, read with their items
      * @param map               the map to populate
      * */
-    private void buildDefaultWishListItemsMap(@NotNull ArrayList<WishLists> confirmedWl, HashMap<String, ArrayList<DefaultListViewItems>> map){
-        DbManager dbManager = new DbManager(getContext());
-
-        for(int i = 0; i < confirmedWl.size(); i++){
-            Cursor cursor = dbManager.getWishListsItems(confirmedWl.get(i).getId());
-            ArrayList<DefaultListViewItems> defaultListViewItems = new ArrayList<>();
-
-            if(cursor != null) {
-                while (cursor.moveToNext()){
-                    String itemName = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
-                    float itemPrice = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE));
-                    int amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
-                    int picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                    int id = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
-
-                    defaultListViewItems.add(new DefaultListViewItems(id, itemName, picId, itemPrice * amount));
-                }
-            }
-
-            map.put(confirmedWl.get(i).getName(), defaultListViewItems); // build the map
-
+    private void buildDefaultWishListItemsMap(@NotNull ArrayList<WishListDetails> wishLists, HashMap<String, ArrayList<DefaultListViewItems>> map){
+        for (WishListDetails wl : wishLists){
+            map.put(wl.getName(), wl.getItems()); // build the map
         }
-
     }
 
     /**
@@ -163,8 +127,8 @@ public class DialogEditWishList extends DialogFragment {
      * @param wishLists         the wishlists used to retrieve its list names
      * @param titles            the arraylist populated with the names of all wishlists
      * */
-    private void getWLTitles(@NotNull ArrayList<WishLists>wishLists, ArrayList<String>titles){
-        for (WishLists wl : wishLists){
+    private void getWLTitles(@NotNull ArrayList<WishListDetails>wishLists, ArrayList<String>titles){
+        for (WishListDetails wl : wishLists){
             titles.add(wl.getName());
         }
     }
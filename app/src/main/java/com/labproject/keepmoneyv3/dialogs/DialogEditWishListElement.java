@@ -2,6 +2,7 @@ package com.labproject.keepmoneyv3.dialogs;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -12,11 +13,13 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.DialogFragment;
+import androidx.fragment.app.FragmentManager;
 
 import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -63,7 +66,8 @@ public class DialogEditWishListElement extends DialogFragment {
 
     /**
      * This method edits price and amount of a WishList's item and save the updated
-     * values inside the database.
+     * values inside the database. The values are saved on the write executor, and the lists
+     * are shown again on the main thread once they are saved.
      * */
     private void btnEditWlElementAction(Button button){
         button.setOnClickListener(view -> {
@@ -72,14 +76,24 @@ public class DialogEditWishListElement extends DialogFragment {
 
             if(!strCostWlEdit.isEmpty() && !strAmountWlEdit.isEmpty()){
                 try {
-                    float itemPrice = Float.parseFloat(strCostWlEdit);
+                    Money itemPrice = Money.parse(strCostWlEdit);
                     int amount = Integer.parseInt(strAmountWlEdit);
 
-                    DbManager dbManager = new DbManager(getContext());
-                    dbManager.updateWishListItemInfo(itemPrice, amount, defaultListViewItems.getId());
+                    Context context = requireContext().getApplicationContext();
+                    FragmentManager fragmentManager = getParentFragmentManager();
+                    int itemId = defaultListViewItems.getId();
 
-                    DialogFragment dialogFragment = new DialogEditWishList();
-                    dialogFragment.show(getParentFragmentManager(), ApplicationTags.DialogTags.DIALOG_EDIT_WISH_LIST_TAG);
+                    DbExecutors.writes().execute(() -> {
+                        new DbManager(context).updateWishListItemInfo(itemPrice, amount, itemId);
+
+                        // the lists are read after the update, so they show the new values
+                        DbExecutors.postToMainThread(() -> {
+                            if (!fragmentManager.isStateSaved()) {
+                                DialogFragment dialogFragment = new DialogEditWishList();
+                                dialogFragment.show(fragmentManager, ApplicationTags.DialogTags.DIALOG_EDIT_WISH_LIST_TAG);
+                            }
+                        });
+                    });
                     dismiss();
                 } catch (Exception e){
                     Toast.makeText(getContext(), "Dati non numerici. Riprovare", Toast.LENGTH_SHORT).show();
@@ -4,7 +4,6 @@ import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -22,9 +21,10 @@ import com.labproject.keepmoneyv3.activities.NavigationActivity;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.Category;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
 
 
-import java.util.ArrayList;
+import java.util.Calendar;
 
 /**
  * A class tha represents the dialog where the user will register his entries.
@@ -42,7 +42,7 @@ public class DialogIncome extends DialogFragment {
      * @see NavigationActivity
      * */
     public interface DialogIncomeListener {
-        void DialogIncomeInsert(float val, String date, String idCat);
+        void DialogIncomeInsert(Money val, long date, String idCat);
     }
 
     /**
@@ -66,7 +66,7 @@ public class DialogIncome extends DialogFragment {
     private DialogIncomeListener listener;
     private EditText txtDate,txtType, txtIncome;
     private View root;
-    private String strDate;
+    private long date; // the date of the income, in epoch milliseconds
     private Category category;
 
     /**
@@ -111,7 +111,7 @@ public class DialogIncome extends DialogFragment {
             EditText [] txtFields = {txtIncome, txtDate,txtType};
 
             boolean isCorrect = true;//check if the values are correct
-            float val = 0;
+            Money val = Money.ZERO;
 
             for (EditText t : txtFields){
                 if (t.getText().toString().equals("")){
@@ -121,14 +121,14 @@ public class DialogIncome extends DialogFragment {
 
             if (isCorrect){
                 try {
-                    val = Float.parseFloat(txtIncome.getText().toString());//control if the value is a number
+                    val = Money.parse(txtIncome.getText().toString());//control if the value is a number
                 }catch (Exception e){
                     isCorrect = false;
                 }
 
-                if (isCorrect && val > 0){
+                if (isCorrect && val.isPositive()){
                     String idCat = category.getId();//extract the category id
-                    listener.DialogIncomeInsert(val, strDate,idCat);
+                    listener.DialogIncomeInsert(val, date, idCat);
                     dismiss();//close the dialog
                 }else {
                     Toast.makeText(getActivity(),"Il campo prezzo non è un numero o non è un numero maggiore di 0",Toast.LENGTH_LONG).show();
@@ -161,65 +161,37 @@ public class DialogIncome extends DialogFragment {
     private void txtTypeAction(EditText txtType){
 
         txtType.setOnClickListener(v -> {
-            DbManager dbManager = new DbManager(getContext());
-            Cursor cursor = dbManager.queryGetAllRows(DbStrings.TableCategoriesFields.TABLE_NAME);//get all the rows of the table category
-            ArrayList<Category> allCategories = new ArrayList<>();
-
-            while (cursor.moveToNext()){
-                String id = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_ID));
-                String desc = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_DESC));
-                int picid = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                allCategories.add(new Category(id, desc, picid));
-            }
-
-            //get the entries categories
-            ArrayList<Category> categoriesEntries = new ArrayList<>();
-            int pos = searchCategoryName(allCategories, "Stipendio");
-            categoriesEntries.add(allCategories.get(pos));
-            pos = searchCategoryName(allCategories, "Regalo");
-            categoriesEntries.add(allCategories.get(pos));
-            pos = searchCategoryName(allCategories, "Scommessa");
-            categoriesEntries.add(allCategories.get(pos));
-
-            DialogAddNewType dialogAddNewType = new DialogAddNewType(categoriesEntries, ApplicationTags.DialogTags.DIALOG_INCOME_TAG);
-            FragmentManager manager = requireActivity().getSupportFragmentManager();
+            // the categories are kept in memory, they are read in background only the first time
+            CategoryRepository.load(requireContext()).observe(this, categories -> {
+                if (categories == null) {
+                    return;
+                }
 
-            // show the dialog to select Entry's category
-            dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+                DialogAddNewType dialogAddNewType = new DialogAddNewType(categories.getIncomeCategories(), ApplicationTags.DialogTags.DIALOG_INCOME_TAG);
+                FragmentManager manager = requireActivity().getSupportFragmentManager();
 
+                // show the dialog to select Entry's category
+                dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+            });
         });
     }
 
     /**
-     * This method is used to search the name of the category, using a linear search. The method
-     * returns an integer, that corresponds to the position of the category inside the ArrayList.
-     * If the research is unsuccessful the return parameter will be equals to the size of the
-     * Arraylist.
-     *
-     * @param categories        all the categories
-     * @param catName           the name of the category to search
+     * This method is used to save the date of the income and to show it inside the EditText.
      *
-     * @return i                the position inside the ArrayList of the category
+     * @param year      the year of the date
+     * @param month     the month of the date, starting from 0
+     * @param day       the day of the date
      * */
-    private int searchCategoryName(ArrayList<Category> categories, String catName) {
-        int i;
-        for (i = 0; i < categories.size(); i++) {
-            if (categories.get(i).getName().equals(catName)) break;
-        }
-        return i;
-    }
-
-    /**
-     * This method is used to set the date string inside the EditText.
-     *
-     * @param strDate       the date string
-     * */
-    void setStrDate(String strDate){
+    void setDate(int year, int month, int day){
         txtDate = root.findViewById(R.id.txtDateIncome);
 
-        this.strDate = strDate;
-        String [] dataSQL = strDate.split("/");
-        strDate = dataSQL[2] + "/" + dataSQL[1] + "/" + dataSQL[0];
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day); // midnight of the selected day
+        this.date = calendar.getTimeInMillis();
+
+        String strDate = year + "/" + (month + 1) + "/" + day;
         txtDate.setText(strDate);
     }
 
@@ -4,7 +4,6 @@ import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -23,11 +22,12 @@ import com.labproject.keepmoneyv3.activities.NavigationActivity;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.Category;
 import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
+import java.util.Calendar;
 
 /**
  * This class is used to display the form to insert a new purchase.
@@ -40,17 +40,17 @@ public class DialogPurchase extends DialogFragment {
      * @see NavigationActivity
      * */
     public interface DialogPurchaseListener{
-        void DialogPurchaseInsert(Item item, String data, String ora);
+        void DialogPurchaseInsert(Item item, long date);
     }
 
     private DialogPurchaseListener listener;
-    private String strDate, strTime;
+    private final Calendar purchaseDate = Calendar.getInstance(); // date and time of the purchase
     private Category category;
     private EditText txtDate, txtTime,txtType, txtItem, txtPrice, txtAmount;
     private Button addBtn;
-    private final float total;
+    private final Money total;
 
-    public DialogPurchase(float total){
+    public DialogPurchase(Money total){
         this.total = total;
     }
 
@@ -97,6 +97,9 @@ public class DialogPurchase extends DialogFragment {
         txtAmount = root.findViewById(R.id.txtAmount);//quantity of item
         addBtn = root.findViewById(R.id.btnAddPurch);//button used to insert a new purchase
 
+        purchaseDate.set(Calendar.SECOND, 0);
+        purchaseDate.set(Calendar.MILLISECOND, 0);
+
         txtDateAction(txtDate);
         txtTimeAction(txtTime);
         txtTypeAction(txtType);
@@ -114,7 +117,7 @@ public class DialogPurchase extends DialogFragment {
             EditText [] txtFields = {txtType,txtDate, txtItem, txtPrice,txtTime};
 
             boolean isCorrect = true;//check if the values are correct
-            float val = 0;
+            Money val = Money.ZERO;
             int amount = 0;
 
             for (EditText t : txtFields){
@@ -126,17 +129,17 @@ public class DialogPurchase extends DialogFragment {
 
             if (isCorrect){
                 try {
-                    val = Float.parseFloat(txtPrice.getText().toString());//control if the value is a number
+                    val = Money.parse(txtPrice.getText().toString());//control if the value is a number
                     amount = Integer.parseInt(txtAmount.getText().toString());//control if the amount is a number
                 }catch (Exception e){
                     isCorrect = false;
                 }
 
-                if (isCorrect && val < total && val > 0){
+                if (isCorrect && val.compareTo(total) < 0 && val.isPositive()){
                     String idCat = category.getId();//extract the category id
                     String strItemName = txtItem.getText().toString();//item name
                     Item item = new Item(strItemName, amount, ApplicationTags.MiscellaneousTags.CONFIRMED, val, idCat);
-                    listener.DialogPurchaseInsert(item, strDate, strTime);
+                    listener.DialogPurchaseInsert(item, purchaseDate.getTimeInMillis());
                     dismiss();//close the dialog
                 }else {
                     Toast.makeText(getActivity(),"Il campo prezzo non è un accettabile poichè:" +
@@ -184,47 +187,43 @@ public class DialogPurchase extends DialogFragment {
      * */
     private void txtTypeAction(@NotNull EditText txtType){
         txtType.setOnClickListener(v -> {
-            DbManager dbManager = new DbManager(getContext());
-            Cursor cursor = dbManager.queryGetAllRows(DbStrings.TableCategoriesFields.TABLE_NAME);
-            ArrayList<Category> allCategories = new ArrayList<>();
-
-            while (cursor.moveToNext()){
-                String id = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_ID));
-                String desc = cursor.getString(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_DESC));
-                int picid = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-
-                if(!id.equals("cat07")) {
-                    allCategories.add(new Category(id, desc, picid));
+            // the categories are kept in memory, they are read in background only the first time
+            CategoryRepository.load(requireContext()).observe(this, categories -> {
+                if (categories == null) {
+                    return;
                 }
-            }
-
-            DialogAddNewType dialogAddNewType = new DialogAddNewType(allCategories, ApplicationTags.DialogTags.DIALOG_PURCHASES_TAG);
-            FragmentManager manager = requireActivity().getSupportFragmentManager();
 
-            dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+                DialogAddNewType dialogAddNewType = new DialogAddNewType(categories.getPurchaseCategories(), ApplicationTags.DialogTags.DIALOG_PURCHASES_TAG);
+                FragmentManager manager = requireActivity().getSupportFragmentManager();
 
+                dialogAddNewType.show(manager, ApplicationTags.DialogTags.DIALOG_ADD_NEW_TYPE_TAG);
+            });
         });
     }
 
     /**
-     * This method is used to set the date string inside the EditText.
+     * This method is used to save the date of the purchase and to show it inside the EditText.
      *
-     * @param strDate       the date string
+     * @param year      the year of the date
+     * @param month     the month of the date, starting from 0
+     * @param day       the day of the date
      * */
-    void setStrDate(@NotNull String strDate){
-        this.strDate = strDate;
-        String [] dataSQL = strDate.split("/");
-        strDate = dataSQL[2] + "/" + dataSQL[1] + "/" + dataSQL[0];
+    void setDate(int year, int month, int day){
+        purchaseDate.set(year, month, day);
+        String strDate = year + "/" + (month + 1) + "/" + day;
         txtDate.setText(strDate);
     }
 
     /**
-     * This method is used to set the time string inside the EditText.
+     * This method is used to save the time of the purchase and to show it inside the EditText.
      *
-     * @param strTime       the time string
+     * @param hourOfDay     the hour of the purchase
+     * @param minute        the minute of the purchase
+     * @param strTime       the time string to show
      * */
-    void setStrTime(String strTime){
-        this.strTime = strTime;
+    void setTime(int hourOfDay, int minute, String strTime){
+        purchaseDate.set(Calendar.HOUR_OF_DAY, hourOfDay);
+        purchaseDate.set(Calendar.MINUTE, minute);
         txtTime.setText(strTime);
     }
 
@@ -62,7 +62,7 @@ public class TimePickerDialogFragment extends DialogFragment implements android.
                 time = time + ":" + "0" + minute;
             else
                 time = time + ":" + minute;
-            dialogPurchase.setStrTime(time);
+            dialogPurchase.setTime(hourOfDay, minute, time);
         }
     }
 }
@@ -0,0 +1,229 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Parser of the statements saved as CSV. The first line must contain the names of the columns, which are
+ * recognized in Italian and in English: the date, the amount (or two columns with the incomes and the
+ * purchases), and optionally the description, the category and the quantity. The separator of the columns
+ * is the one used by the first line: a semicolon, a comma or a tab. The values can be quoted, also on more lines.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public class CsvStatementParser implements StatementParser {
+
+    // the accepted names of the columns, from the preferred one
+    private static final String[] DATE_COLUMNS = {"data", "date", "data operazione", "data contabile", "data valuta"};
+    private static final String[] AMOUNT_COLUMNS = {"importo", "amount", "valore", "value"};
+    private static final String[] INCOME_COLUMNS = {"entrate", "accrediti", "avere", "credit"};
+    private static final String[] PURCHASE_COLUMNS = {"uscite", "addebiti", "dare", "debit"};
+    private static final String[] DESCRIPTION_COLUMNS = {"descrizione", "description", "causale", "nome", "name", "oggetto"};
+    private static final String[] CATEGORY_COLUMNS = {"categoria", "category"};
+    private static final String[] QUANTITY_COLUMNS = {"quantità", "quantita", "quantity"};
+
+    private static final char[] SEPARATORS = {';', ',', '\t'};
+
+    private final BufferedReader reader;
+    private final StatementValues values = new StatementValues(
+            "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd",
+            "dd/MM/yyyy HH:mm:ss", "dd/MM/yyyy HH:mm", "dd/MM/yyyy", "dd-MM-yyyy", "dd.MM.yyyy");
+    private final ArrayList<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    private char separator;
+    private int line;
+    private boolean headerRead;
+    private int dateColumn, amountColumn, incomeColumn, purchaseColumn, descriptionColumn, categoryColumn, quantityColumn;
+
+    public CsvStatementParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public StatementRow next() throws StatementFormatException, IOException {
+        if (!headerRead) {
+            readHeader();
+        }
+
+        int rowLine;
+        do {
+            rowLine = line + 1;
+            if (!readFields()) {
+                return null;
+            }
+        } while (fields.size() == 1 && fields.get(0).trim().isEmpty()); // the empty lines are skipped
+
+        try {
+            long date = values.parseDate(field(dateColumn));
+            if (date < 0) {
+                throw new StatementFormatException(rowLine, "data non valida \"" + field(dateColumn) + "\"");
+            }
+
+            Money amount;
+            if (amountColumn >= 0) {
+                amount = StatementValues.parseAmount(field(amountColumn));
+            } else { // an income or a purchase, in the column of its kind
+                String income = field(incomeColumn).trim();
+                String purchase = field(purchaseColumn).trim();
+                amount = !income.isEmpty() ? StatementValues.parseAmount(income)
+                        : Money.ZERO.minus(StatementValues.parseAmount(purchase.replace("-", "")));
+            }
+            if (amount.getCents() == 0) {
+                throw new StatementFormatException(rowLine, "importo nullo");
+            }
+
+            String quantity = field(quantityColumn).trim();
+            int units = quantity.isEmpty() ? 1 : Integer.parseInt(quantity);
+            if (units < 1) {
+                throw new StatementFormatException(rowLine, "quantità non valida \"" + quantity + "\"");
+            }
+            return new StatementRow(date, amount, emptyToNull(field(descriptionColumn)), emptyToNull(field(categoryColumn)), units);
+        } catch (NumberFormatException e) {
+            throw new StatementFormatException(rowLine, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * This method reads the names of the columns from the first line, and the separator they use.
+     *
+     * @throws IOException if the date or the amount are missing
+     * */
+    private void readHeader() throws IOException {
+        headerRead = true;
+        String header = reader.readLine();
+        line++;
+        if (header == null) {
+            throw new IOException("Il file è vuoto");
+        }
+        if (header.startsWith("\uFEFF")) { // the byte order mark written by some spreadsheets
+            header = header.substring(1);
+        }
+
+        separator = SEPARATORS[0];
+        int separatorCount = 0;
+        for (char candidate : SEPARATORS) {
+            int count = 0;
+            for (int i = 0; i < header.length(); i++) {
+                if (header.charAt(i) == candidate) {
+                    count++;
+                }
+            }
+            if (count > separatorCount) {
+                separator = candidate;
+                separatorCount = count;
+            }
+        }
+
+        splitFields(header);
+        ArrayList<String> columns = new ArrayList<>();
+        for (String column : fields) {
+            columns.add(column.trim().toLowerCase(Locale.ITALIAN));
+        }
+
+        dateColumn = findColumn(columns, DATE_COLUMNS);
+        amountColumn = findColumn(columns, AMOUNT_COLUMNS);
+        incomeColumn = findColumn(columns, INCOME_COLUMNS);
+        purchaseColumn = findColumn(columns, PURCHASE_COLUMNS);
+        descriptionColumn = findColumn(columns, DESCRIPTION_COLUMNS);
+        categoryColumn = findColumn(columns, CATEGORY_COLUMNS);
+        quantityColumn = findColumn(columns, QUANTITY_COLUMNS);
+
+        if (dateColumn < 0 || (amountColumn < 0 && (incomeColumn < 0 || purchaseColumn < 0))) {
+            throw new IOException("Intestazione non riconosciuta: servono le colonne della data e dell'importo");
+        }
+    }
+
+    private static int findColumn(ArrayList<String> columns, String[] names) {
+        for (String name : names) {
+            int index = columns.indexOf(name);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method reads the fields of the next row, which can take more lines if a quoted value contains a new line.
+     *
+     * @return false at the end of the file
+     * */
+    private boolean readFields() throws IOException {
+        String text = reader.readLine();
+        if (text == null) {
+            return false;
+        }
+        line++;
+
+        while (!splitFields(text)) { // a quoted value goes on in the next line
+            String next = reader.readLine();
+            if (next == null) {
+                break;
+            }
+            line++;
+            text = text + "\n" + next;
+        }
+        return true;
+    }
+
+    /**
+     * This method splits a row in its fields, removing the quotes.
+     *
+     * @return false if the row ends inside a quoted value
+     * */
+    private boolean splitFields(String text) {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') { // an escaped quote
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return !quoted;
+    }
+
+    /**
+     * @return the value of a column of the current row, an empty string if the column is missing
+     * */
+    private String field(int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : "";
+    }
+
+    private static String emptyToNull(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
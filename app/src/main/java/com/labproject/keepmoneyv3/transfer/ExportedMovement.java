@@ -0,0 +1,64 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+/**
+ * A movement written by the export: an income, a simple purchase or an element of a wishlist.
+ * The same object is filled again for every row of the cursor, so the export doesn't create
+ * an object for every movement.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see MovementWriter      which writes the movements
+ * */
+class ExportedMovement {
+
+    enum Type {INCOME, PURCHASE, WISHLIST_ITEM}
+
+    static final long NO_DATE = -1; // the elements of the wishlists not confirmed yet have no date
+
+    Type type;
+    long date;
+    Money amount; // signed, negative for the purchases
+    String description;
+    String categoryId;
+    String categoryName;
+    int quantity;
+
+    // only for the elements of the wishlists
+    int listId;
+    String listName;
+    String listDescription;
+    boolean listConfirmed;
+
+    void setIncome(long date, Money value, String categoryId, String categoryName) {
+        set(Type.INCOME, date, value, null, categoryId, categoryName, 1);
+    }
+
+    void setPurchase(long date, Money price, int quantity, String name, String categoryId, String categoryName) {
+        set(Type.PURCHASE, date, Money.ZERO.minus(price.times(quantity)), name, categoryId, categoryName, quantity);
+    }
+
+    void setWishListItem(long date, Money price, int quantity, String name, String categoryId, String categoryName,
+                         int listId, String listName, String listDescription, boolean listConfirmed) {
+        set(Type.WISHLIST_ITEM, date, Money.ZERO.minus(price.times(quantity)), name, categoryId, categoryName, quantity);
+        this.listId = listId;
+        this.listName = listName;
+        this.listDescription = listDescription;
+        this.listConfirmed = listConfirmed;
+    }
+
+    private void set(Type type, long date, Money amount, String description, String categoryId, String categoryName, int quantity) {
+        this.type = type;
+        this.date = date;
+        this.amount = amount;
+        this.description = description;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.quantity = quantity;
+        this.listId = 0;
+        this.listName = null;
+        this.listDescription = null;
+        this.listConfirmed = false;
+    }
+}
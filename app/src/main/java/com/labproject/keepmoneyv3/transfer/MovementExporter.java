@@ -0,0 +1,257 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.labproject.keepmoneyv3.database.CursorReader;
+import com.labproject.keepmoneyv3.database.DbExecutors;
+import com.labproject.keepmoneyv3.database.DbManager;
+import com.labproject.keepmoneyv3.database.Page;
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class exports all the movements of a user to a file: the incomes, the simple purchases with their item,
+ * and the elements of the wishlists with their list, always with the category, the archived ones included.
+ * The movements are read in chunks of CHUNK_ROWS rows with keyset pagination, and every row is written
+ * from the cursor to a buffered output as soon as it is read, so the memory used doesn't depend on the number
+ * of movements, and every query is short enough not to keep the writes waiting.
+ *
+ * The export runs on the file executor and can be cancelled between two chunks.
+ * The file is closed at the end, also when the export fails or is cancelled.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see MovementWriter      the writers of the supported formats
+ * */
+public class MovementExporter {
+
+    /**
+     * The formats of the exported files.
+     * */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON_LINES("application/x-ndjson", "jsonl");
+
+        private final String mimeType;
+        private final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Listener used to follow the export, always called on the main thread.
+     * */
+    public interface ExportListener {
+        void onProgress(int rows, int totalRows);
+
+        /**
+         * @param rows          the number of movements written
+         * @param failure       the reason why the export stopped, null if it didn't fail
+         * @param cancelled     true if the export has been cancelled
+         * */
+        void onFinished(int rows, String failure, boolean cancelled);
+    }
+
+    private static final int CHUNK_ROWS = 1000; // rows read by a single query
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DbManager dbManager;
+    private final String username;
+    private final ExportedMovement movement = new ExportedMovement();
+
+    private volatile boolean cancelled;
+    private MovementWriter writer; // only used on the file executor
+    private IOException writeError;
+    private Page.Key lastKey;
+    private int rows;
+
+    /**
+     * @param context       any context, used to open the database
+     * @param username      the user whose movements are exported
+     * */
+    public MovementExporter(Context context, String username) {
+        this.dbManager = new DbManager(context.getApplicationContext());
+        this.username = username;
+    }
+
+    /**
+     * This method starts the export in background. It must be called only once.
+     *
+     * @param out           the stream of the file, closed at the end of the export
+     * @param format        the format of the file
+     * @param listener      notified after every chunk and at the end
+     * */
+    public void start(OutputStream out, Format format, ExportListener listener) {
+        DbExecutors.files().execute(() -> export(out, format, listener));
+    }
+
+    /**
+     * This method stops the export after the chunk that is being written.
+     * */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void export(OutputStream out, Format format, ExportListener listener) {
+        BufferedWriter buffered = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer = format == Format.CSV ? new MovementWriter.Csv(buffered) : new MovementWriter.JsonLines(buffered);
+        String failure = null;
+
+        try {
+            Long incomes = dbManager.countIncomesRowsByUsername(username, CursorReader.firstLong("numRows"));
+            Long purchases = dbManager.countPurchasesRowsByUsername(username, CursorReader.firstLong("numRows"));
+            Long archived = dbManager.countArchivedRowsByUsername(username,
+                    cursor -> cursor.moveToFirst() ? cursor.getLong(0) + cursor.getLong(1) : 0L);
+            if (incomes == null || purchases == null || archived == null) {
+                throw new IOException("Impossibile leggere i movimenti");
+            }
+            int totalRows = (int) (incomes + purchases + archived);
+
+            writer.writeHeader();
+            exportChunks(after -> dbManager.getIncomesForExport(username, after, CHUNK_ROWS, this::writeIncomes),
+                    totalRows, listener);
+            exportChunks(after -> dbManager.getSimplePurchasesForExport(username, after, CHUNK_ROWS, this::writePurchases),
+                    totalRows, listener);
+            exportChunks(after -> dbManager.getWishListItemsForExport(username, after, CHUNK_ROWS, this::writeWishListItems),
+                    totalRows, listener);
+        } catch (IOException e) {
+            failure = e.getMessage() != null ? e.getMessage() : "Impossibile scrivere il file";
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null && !cancelled) {
+                    failure = "Impossibile scrivere il file";
+                }
+            }
+        }
+
+        int written = rows;
+        String exportFailure = failure;
+        boolean exportCancelled = cancelled;
+        DbExecutors.postToMainThread(() -> listener.onFinished(written, exportFailure, exportCancelled));
+    }
+
+    /**
+     * A query of the export, which reads the chunk after a key with one of the readers of this class.
+     * */
+    private interface ChunkQuery {
+        Integer read(Page.Key after);
+    }
+
+    /**
+     * This method reads all the chunks of a query, until a chunk shorter than CHUNK_ROWS.
+     *
+     * @throws IOException if the query or the file fail
+     * */
+    private void exportChunks(ChunkQuery query, int totalRows, ExportListener listener) throws IOException {
+        lastKey = null;
+        int chunkRows = CHUNK_ROWS;
+
+        while (chunkRows == CHUNK_ROWS && !cancelled) {
+            Integer read = query.read(lastKey);
+            if (writeError != null) {
+                throw writeError;
+            }
+            if (read == null) {
+                throw new IOException("Impossibile leggere i movimenti");
+            }
+            chunkRows = read;
+
+            int progress = rows;
+            DbExecutors.postToMainThread(() -> listener.onProgress(progress, totalRows));
+        }
+    }
+
+    /**
+     * This method writes a chunk of incomes, and keeps the key of the last one.
+     *
+     * @return the number of rows of the chunk
+     * */
+    private Integer writeIncomes(Cursor cursor) {
+        int date = cursor.getColumnIndexOrThrow("dateIncome");
+        int value = cursor.getColumnIndexOrThrow("value");
+        int idCat = cursor.getColumnIndexOrThrow("idCat");
+        int catDescription = cursor.getColumnIndexOrThrow("catDescription");
+
+        return writeChunk(cursor, c -> movement.setIncome(c.getLong(date), Money.ofCents(c.getLong(value)),
+                c.getString(idCat), c.getString(catDescription)));
+    }
+
+    private Integer writePurchases(Cursor cursor) {
+        int date = cursor.getColumnIndexOrThrow("dateP");
+        int name = cursor.getColumnIndexOrThrow("name");
+        int price = cursor.getColumnIndexOrThrow("price");
+        int amount = cursor.getColumnIndexOrThrow("amount");
+        int idCat = cursor.getColumnIndexOrThrow("idCat");
+        int catDescription = cursor.getColumnIndexOrThrow("catDescription");
+
+        return writeChunk(cursor, c -> movement.setPurchase(c.getLong(date), Money.ofCents(c.getLong(price)),
+                c.getInt(amount), c.getString(name), c.getString(idCat), c.getString(catDescription)));
+    }
+
+    private Integer writeWishListItems(Cursor cursor) {
+        int date = cursor.getColumnIndexOrThrow("dateP");
+        int name = cursor.getColumnIndexOrThrow("name");
+        int price = cursor.getColumnIndexOrThrow("price");
+        int amount = cursor.getColumnIndexOrThrow("amount");
+        int idCat = cursor.getColumnIndexOrThrow("idCat");
+        int catDescription = cursor.getColumnIndexOrThrow("catDescription");
+        int listId = cursor.getColumnIndexOrThrow("listId");
+        int listName = cursor.getColumnIndexOrThrow("listName");
+        int listDescription = cursor.getColumnIndexOrThrow("listDescription");
+        int isConfirmed = cursor.getColumnIndexOrThrow("isConfirmed");
+
+        return writeChunk(cursor, c -> movement.setWishListItem(c.isNull(date) ? ExportedMovement.NO_DATE : c.getLong(date),
+                Money.ofCents(c.getLong(price)), c.getInt(amount), c.getString(name), c.getString(idCat),
+                c.getString(catDescription), c.getInt(listId), c.getString(listName), c.getString(listDescription),
+                c.getInt(isConfirmed) == ApplicationTags.MiscellaneousTags.CONFIRMED));
+    }
+
+    /**
+     * A reader of a row of the cursor into the movement of the exporter.
+     * */
+    private interface RowReader {
+        void read(Cursor cursor);
+    }
+
+    /**
+     * This method writes all the rows of a chunk. The errors of the file can't be thrown by a CursorReader,
+     * so they are kept and thrown by exportChunks once the cursor has been closed.
+     *
+     * @return the number of rows of the chunk
+     * */
+    private Integer writeChunk(Cursor cursor, RowReader rowReader) {
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                rowReader.read(cursor);
+                writer.write(movement);
+                lastKey = Page.keyOf(cursor);
+                count++;
+                rows++;
+            }
+        } catch (IOException e) {
+            writeError = e;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,234 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Writer of the movements of an export, one row at a time. Nothing is kept after a row has been written,
+ * so the memory used doesn't depend on the number of movements.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see MovementExporter    which reads the movements
+ * */
+abstract class MovementWriter implements Closeable {
+
+    protected final Writer out;
+    private final SimpleDateFormat dateFormat;
+    private final Date date = new Date();
+
+    /**
+     * @param out           the buffered writer of the file
+     * @param datePattern   the pattern of the dates, in the local time zone
+     * */
+    MovementWriter(Writer out, String datePattern) {
+        this.out = out;
+        this.dateFormat = new SimpleDateFormat(datePattern, Locale.ROOT);
+    }
+
+    /**
+     * This method writes what comes before the movements, like the names of the columns.
+     * */
+    abstract void writeHeader() throws IOException;
+
+    abstract void write(ExportedMovement movement) throws IOException;
+
+    /**
+     * @return the date of the movement, null if it has no date
+     * */
+    protected String formatDate(long millis) {
+        if (millis == ExportedMovement.NO_DATE) {
+            return null;
+        }
+        date.setTime(millis);
+        return dateFormat.format(date);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writer of CSV files, with the columns separated by semicolons as expected by the Italian spreadsheets.
+     * The names of the date, amount, description, category and quantity columns are the ones read by
+     * CsvStatementParser, and the category is written with its name.
+     * */
+    static class Csv extends MovementWriter {
+        private static final char SEPARATOR = ';';
+        private static final String[] COLUMNS = {"tipo", "data", "importo", "descrizione", "categoria", "quantità",
+                "lista", "descrizione lista", "stato lista"};
+
+        Csv(Writer out) {
+            super(out, "yyyy-MM-dd HH:mm:ss");
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    out.write(SEPARATOR);
+                }
+                out.write(COLUMNS[i]);
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        void write(ExportedMovement movement) throws IOException {
+            boolean wishListItem = movement.type == ExportedMovement.Type.WISHLIST_ITEM;
+
+            writeField(typeName(movement.type));
+            writeField(formatDate(movement.date));
+            writeField(movement.amount.toString());
+            writeField(movement.description);
+            writeField(movement.categoryName != null ? movement.categoryName : movement.categoryId);
+            writeField(Integer.toString(movement.quantity));
+            writeField(wishListItem ? movement.listName : null);
+            writeField(wishListItem ? movement.listDescription : null);
+            if (wishListItem) {
+                out.write(movement.listConfirmed ? "confermata" : "da confermare");
+            }
+            out.write("\r\n");
+        }
+
+        private static String typeName(ExportedMovement.Type type) {
+            switch (type) {
+                case INCOME:
+                    return "entrata";
+                case PURCHASE:
+                    return "acquisto";
+                default:
+                    return "lista";
+            }
+        }
+
+        /**
+         * This method writes a value followed by the separator, quoting it if it contains
+         * the separator, a quote or a new line.
+         * */
+        private void writeField(String value) throws IOException {
+            if (value != null) {
+                boolean quoted = false;
+                for (int i = 0; i < value.length() && !quoted; i++) {
+                    char c = value.charAt(i);
+                    quoted = c == SEPARATOR || c == '"' || c == '\n' || c == '\r';
+                }
+
+                if (quoted) {
+                    out.write('"');
+                    out.write(value.replace("\"", "\"\""));
+                    out.write('"');
+                } else {
+                    out.write(value);
+                }
+            }
+            out.write(SEPARATOR);
+        }
+    }
+
+    /**
+     * Writer of JSON Lines files: every movement is a JSON object on its own line, so the file can be read
+     * one movement at a time. The amounts are numbers with two decimal digits, the dates are in the local time.
+     * */
+    static class JsonLines extends MovementWriter {
+
+        JsonLines(Writer out) {
+            super(out, "yyyy-MM-dd'T'HH:mm:ss");
+        }
+
+        @Override
+        void writeHeader() {
+            // every line describes itself
+        }
+
+        @Override
+        void write(ExportedMovement movement) throws IOException {
+            out.write("{\"type\":");
+            writeString(typeName(movement.type));
+            out.write(",\"date\":");
+            writeString(formatDate(movement.date));
+            out.write(",\"amount\":");
+            out.write(movement.amount.toString());
+            if (movement.description != null) {
+                out.write(",\"description\":");
+                writeString(movement.description);
+            }
+            out.write(",\"categoryId\":");
+            writeString(movement.categoryId);
+            out.write(",\"category\":");
+            writeString(movement.categoryName);
+            out.write(",\"quantity\":");
+            out.write(Integer.toString(movement.quantity));
+
+            if (movement.type == ExportedMovement.Type.WISHLIST_ITEM) {
+                out.write(",\"list\":{\"id\":");
+                out.write(Integer.toString(movement.listId));
+                out.write(",\"name\":");
+                writeString(movement.listName);
+                out.write(",\"description\":");
+                writeString(movement.listDescription);
+                out.write(",\"confirmed\":");
+                out.write(movement.listConfirmed ? "true" : "false");
+                out.write('}');
+            }
+            out.write("}\n");
+        }
+
+        private static String typeName(ExportedMovement.Type type) {
+            switch (type) {
+                case INCOME:
+                    return "income";
+                case PURCHASE:
+                    return "purchase";
+                default:
+                    return "wishListItem";
+            }
+        }
+
+        /**
+         * This method writes a JSON string, escaping the quotes, the backslashes and the control characters,
+         * or null if there is no value.
+         * */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.write("null");
+                return;
+            }
+
+            out.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.write("\\\"");
+                        break;
+                    case '\\':
+                        out.write("\\\\");
+                        break;
+                    case '\n':
+                        out.write("\\n");
+                        break;
+                    case '\r':
+                        out.write("\\r");
+                        break;
+                    case '\t':
+                        out.write("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            out.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                        break;
+                }
+            }
+            out.write('"');
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * Parser of the statements saved as OFX (Open Financial Exchange), both in the SGML version, where the values
+ * have no closing tag, and in the XML one. The file is read one tag at a time and only the STMTTRN elements,
+ * the movements, are used: their date, amount, name and memo.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public class OfxStatementParser implements StatementParser {
+
+    private static final String MOVEMENT = "STMTTRN";
+
+    private final BufferedReader reader;
+    private final StatementValues values = new StatementValues("yyyyMMddHHmmss", "yyyyMMdd");
+    private final char[] buffer = new char[8192];
+    private final StringBuilder token = new StringBuilder();
+
+    private int position, limit;
+    private int line = 1;
+
+    public OfxStatementParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public StatementRow next() throws StatementFormatException, IOException {
+        String date = null, amount = null, name = null, memo = null;
+        boolean inMovement = false;
+        int movementLine = 0;
+        String tag;
+
+        while ((tag = nextTag()) != null) {
+            if (tag.equals(MOVEMENT)) {
+                inMovement = true;
+                movementLine = line;
+                date = amount = name = memo = null;
+            } else if (tag.equals("/" + MOVEMENT) && inMovement) {
+                return toRow(movementLine, date, amount, name != null && !name.isEmpty() ? name : memo);
+            } else if (inMovement) {
+                String value = nextValue();
+                switch (tag) {
+                    case "DTPOSTED":
+                        date = value;
+                        break;
+                    case "TRNAMT":
+                        amount = value;
+                        break;
+                    case "NAME":
+                        name = value;
+                        break;
+                    case "MEMO":
+                        memo = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private StatementRow toRow(int movementLine, String date, String amount, String description) throws StatementFormatException {
+        if (date == null || amount == null) {
+            throw new StatementFormatException(movementLine, "movimento senza data o importo");
+        }
+
+        // the dates are like "20240105120000.000[+1:CET]", the time and the time zone can be missing
+        int digits = 0;
+        while (digits < date.length() && digits < 14 && Character.isDigit(date.charAt(digits))) {
+            digits++;
+        }
+        long millis = values.parseDate(date.substring(0, digits));
+        if (millis < 0) {
+            throw new StatementFormatException(movementLine, "data non valida \"" + date + "\"");
+        }
+
+        Money value;
+        try {
+            value = StatementValues.parseAmount(amount);
+        } catch (NumberFormatException e) {
+            throw new StatementFormatException(movementLine, e.getMessage());
+        }
+        if (value.getCents() == 0) {
+            throw new StatementFormatException(movementLine, "importo nullo");
+        }
+        return new StatementRow(millis, value, description, null, 1);
+    }
+
+    /**
+     * This method skips the text up to the next tag and reads its name.
+     *
+     * @return the name of the tag, with a leading "/" for the closing tags, null at the end of the file
+     * */
+    private String nextTag() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != '<') {
+            // the text outside the tags, like the header of the SGML files, is skipped
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        token.setLength(0);
+        while ((c = read()) != -1 && c != '>') {
+            token.append((char) c);
+        }
+        return token.toString().trim();
+    }
+
+    /**
+     * This method reads the value after a tag, up to the next tag, without consuming it.
+     *
+     * @return the value, without the spaces around it and with the entities decoded
+     * */
+    private String nextValue() throws IOException {
+        token.setLength(0);
+        int c;
+        while ((c = peek()) != -1 && c != '<') {
+            token.append((char) read());
+        }
+        return token.toString().trim()
+                .replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&");
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            position++;
+            if (c == '\n') {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+}
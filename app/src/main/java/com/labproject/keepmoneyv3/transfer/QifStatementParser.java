@@ -0,0 +1,139 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Parser of the statements saved as QIF (Quicken Interchange Format). Every line starts with the code
+ * of its field and every movement ends with a line with "^". Only the movements of the bank, cash
+ * and credit card accounts are read, the lists of accounts, categories and investments are skipped.
+ * The split movements are read as a single movement with their total.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public class QifStatementParser implements StatementParser {
+
+    private static final String[] MOVEMENT_TYPES = {"!type:bank", "!type:cash", "!type:ccard", "!type:oth a", "!type:oth l"};
+
+    private final BufferedReader reader;
+    // the day comes first, as in the Italian statements, when it can't be told from the month
+    private final StatementValues values = new StatementValues("dd/MM/yyyy", "MM/dd/yyyy", "yyyy-MM-dd", "dd.MM.yyyy");
+    private final StatementValues shortYearValues = new StatementValues("dd/MM/yy", "MM/dd/yy", "dd.MM.yy");
+
+    private int line;
+    private boolean movements = true; // the files without a header contain only movements
+
+    public QifStatementParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public StatementRow next() throws StatementFormatException, IOException {
+        String date = null, amount = null, payee = null, memo = null, category = null;
+        int recordLine = 0;
+        String text;
+
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.trim().isEmpty()) {
+                continue;
+            }
+
+            char code = text.charAt(0);
+            String value = text.substring(1).trim();
+            if (code == '!') {
+                String header = text.trim().toLowerCase(Locale.ROOT);
+                if (header.startsWith("!type:") || header.startsWith("!account")) {
+                    movements = false;
+                    for (String type : MOVEMENT_TYPES) {
+                        movements |= header.equals(type);
+                    }
+                }
+                continue;
+            }
+
+            if (recordLine == 0) {
+                recordLine = line;
+            }
+            switch (code) {
+                case 'D':
+                    date = value;
+                    break;
+                case 'T':
+                case 'U':
+                    amount = value;
+                    break;
+                case 'P':
+                    payee = value;
+                    break;
+                case 'M':
+                    memo = value;
+                    break;
+                case 'L':
+                    category = value;
+                    break;
+                case '^':
+                    if (movements) {
+                        return toRow(recordLine, date, amount, payee != null && !payee.isEmpty() ? payee : memo, category);
+                    }
+                    date = amount = payee = memo = category = null;
+                    recordLine = 0;
+                    break;
+                default: // the number of the check, the address and the lines of the splits are not used
+                    break;
+            }
+        }
+
+        if (movements && recordLine > 0 && date != null) { // the last movement has no "^"
+            return toRow(recordLine, date, amount, payee != null && !payee.isEmpty() ? payee : memo, category);
+        }
+        return null;
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private StatementRow toRow(int recordLine, String date, String amount, String description, String category)
+            throws StatementFormatException {
+        if (date == null || amount == null) {
+            throw new StatementFormatException(recordLine, "movimento senza data o importo");
+        }
+
+        // dates like "1/ 5'24" are written as "1/5/24"
+        String normalized = date.replace(" ", "").replace('\'', '/');
+        int lastSeparator = Math.max(normalized.lastIndexOf('/'), normalized.lastIndexOf('.'));
+        boolean shortYear = lastSeparator >= 0 && normalized.length() - lastSeparator - 1 == 2;
+        long millis = (shortYear ? shortYearValues : values).parseDate(normalized);
+        if (millis < 0) {
+            throw new StatementFormatException(recordLine, "data non valida \"" + date + "\"");
+        }
+
+        Money value;
+        try {
+            value = StatementValues.parseAmount(amount);
+        } catch (NumberFormatException e) {
+            throw new StatementFormatException(recordLine, e.getMessage());
+        }
+        if (value.getCents() == 0) {
+            throw new StatementFormatException(recordLine, "importo nullo");
+        }
+
+        // the transfers to other accounts are written as "[Account]", the subcategories after a colon
+        String categoryName = null;
+        if (category != null && !category.isEmpty() && !category.startsWith("[")) {
+            int colon = category.indexOf(':');
+            categoryName = colon > 0 ? category.substring(0, colon) : category;
+        }
+        return new StatementRow(millis, value, description, categoryName, 1);
+    }
+}
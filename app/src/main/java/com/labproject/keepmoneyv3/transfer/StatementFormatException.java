@@ -0,0 +1,23 @@
+package com.labproject.keepmoneyv3.transfer;
+
+/**
+ * Exception thrown by a StatementParser when a row of the statement can't be read.
+ * The parser can still be used: the next call reads the following row.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public class StatementFormatException extends Exception {
+    private final int line;
+
+    public StatementFormatException(int line, String message) {
+        super("Riga " + line + ": " + message);
+        this.line = line;
+    }
+
+    /**
+     * @return the number of the line of the statement, starting from 1
+     * */
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,280 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import android.content.Context;
+
+import com.labproject.keepmoneyv3.database.Categories;
+import com.labproject.keepmoneyv3.database.CategoryRepository;
+import com.labproject.keepmoneyv3.database.DbExecutors;
+import com.labproject.keepmoneyv3.database.DbManager;
+import com.labproject.keepmoneyv3.database.MovementBatch;
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Category;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class imports the movements of a bank statement for a user. The statement is read by its parser
+ * on the file executor, and its rows are collected in batches of about BATCH_ROWS rows that are written
+ * on the write executor, each one in its own transaction: the next batch is read while the previous one
+ * is written. At most MAX_PENDING_BATCHES batches wait to be written, so the memory used does not
+ * depend on the size of the statement.
+ *
+ * A positive amount becomes an income, a negative one a purchase with its item, as if they were inserted
+ * from DialogIncome and DialogPurchase. The rows that can't be read are skipped and counted.
+ * If the import is cancelled or fails, the batches already written are kept.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see StatementParser     the parsers of the supported formats
+ * @see MovementBatch       the movements written in a single transaction
+ * */
+public class StatementImporter {
+
+    /**
+     * Listener used to follow the import, always called on the main thread.
+     * */
+    public interface ImportListener {
+        void onProgress(int lines, int movements);
+        void onFinished(ImportResult result);
+    }
+
+    /**
+     * The result of an import.
+     * */
+    public static class ImportResult {
+        private final int incomes;
+        private final int purchases;
+        private final int skippedRows;
+        private final String firstError;
+        private final String failure;
+        private final boolean cancelled;
+
+        ImportResult(int incomes, int purchases, int skippedRows, String firstError, String failure, boolean cancelled) {
+            this.incomes = incomes;
+            this.purchases = purchases;
+            this.skippedRows = skippedRows;
+            this.firstError = firstError;
+            this.failure = failure;
+            this.cancelled = cancelled;
+        }
+
+        public int getIncomes() {
+            return incomes;
+        }
+
+        public int getPurchases() {
+            return purchases;
+        }
+
+        /**
+         * @return the number of rows that can't be read
+         * */
+        public int getSkippedRows() {
+            return skippedRows;
+        }
+
+        /**
+         * @return the error of the first skipped row, null if no row has been skipped
+         * */
+        public String getFirstError() {
+            return firstError;
+        }
+
+        /**
+         * @return the reason why the import stopped before the end of the statement, null if it didn't
+         * */
+        public String getFailure() {
+            return failure;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isCompleted() {
+            return failure == null && !cancelled;
+        }
+    }
+
+    private static final int BATCH_ROWS = 5000; // rows written in a single transaction
+    private static final int MAX_PENDING_BATCHES = 2; // batches read and not written yet
+    // the categories used when the statement has none, or one that doesn't exist
+    private static final String DEFAULT_INCOME_CATEGORY = ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID;
+    private static final String DEFAULT_PURCHASE_CATEGORY = ApplicationTags.PredefinedCategoriesId.CAT_HOME_ID;
+    private static final String DEFAULT_ITEM_NAME = "Movimento importato";
+
+    private final Context context;
+    private final DbManager dbManager;
+    private final String username;
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private final HashMap<String, String> categories = new HashMap<>(); // category ids, by id and by lower case name
+
+    private volatile boolean cancelled;
+    private volatile boolean writeFailed;
+    private int writtenIncomes; // only used on the write executor
+    private int writtenPurchases;
+
+    /**
+     * @param context       any context, used to open the database
+     * @param username      the user that gets the movements
+     * */
+    public StatementImporter(Context context, String username) {
+        this.context = context.getApplicationContext();
+        this.dbManager = new DbManager(context);
+        this.username = username;
+    }
+
+    /**
+     * This method starts the import in background. It must be called only once.
+     *
+     * @param parser        the parser of the statement, closed at the end of the import
+     * @param listener      notified after every batch and at the end
+     * */
+    public void start(StatementParser parser, ImportListener listener) {
+        DbExecutors.files().execute(() -> read(parser, listener));
+    }
+
+    /**
+     * This method stops the import after the batch that is being written.
+     * */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * This method reads the statement and sends its batches to the write executor.
+     * The result is sent by the write executor too, after the last batch.
+     *
+     * @param parser        the parser of the statement
+     * @param listener      the listener of the import
+     * */
+    private void read(StatementParser parser, ImportListener listener) {
+        int skippedRows = 0;
+        String firstError = null;
+        String failure = null;
+
+        try {
+            loadCategories();
+
+            MovementBatch batch = new MovementBatch();
+            int[] counts = new int[2]; // incomes and purchases of the batch
+            boolean end = false;
+
+            while (!end && !cancelled && !writeFailed) {
+                try {
+                    StatementRow row = parser.next();
+                    if (row != null) {
+                        addRow(batch, counts, row);
+                    } else {
+                        end = true;
+                    }
+                } catch (StatementFormatException e) {
+                    skippedRows++;
+                    if (firstError == null) {
+                        firstError = e.getMessage();
+                    }
+                }
+
+                if (batch.size() >= BATCH_ROWS || (end && !batch.isEmpty())) {
+                    write(batch, counts[0], counts[1], parser.getLine(), listener);
+                    batch = new MovementBatch();
+                    counts = new int[2];
+                }
+            }
+        } catch (IOException e) {
+            failure = e.getMessage() != null ? e.getMessage() : "Impossibile leggere il file";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // the statement has already been read
+            }
+        }
+
+        // the write executor runs its tasks in order, so this one runs after the last batch
+        int skipped = skippedRows;
+        String error = firstError;
+        String readFailure = failure;
+        DbExecutors.writes().execute(() -> {
+            String importFailure = writeFailed ? "Impossibile salvare i movimenti" : readFailure;
+            ImportResult result = new ImportResult(writtenIncomes, writtenPurchases, skipped, error, importFailure, cancelled);
+            DbExecutors.postToMainThread(() -> listener.onFinished(result));
+        });
+    }
+
+    /**
+     * This method queues a batch on the write executor, waiting if too many batches are already queued.
+     * */
+    private void write(MovementBatch batch, int incomes, int purchases, int lines, ImportListener listener)
+            throws InterruptedException {
+        pendingBatches.acquire();
+        DbExecutors.writes().execute(() -> {
+            try {
+                if (cancelled || writeFailed) {
+                    return;
+                }
+                if (dbManager.insertBatch(batch, username)) {
+                    writtenIncomes += incomes;
+                    writtenPurchases += purchases;
+                    int movements = writtenIncomes + writtenPurchases;
+                    DbExecutors.postToMainThread(() -> listener.onProgress(lines, movements));
+                } else {
+                    writeFailed = true;
+                }
+            } finally {
+                pendingBatches.release();
+            }
+        });
+    }
+
+    /**
+     * This method adds a row of the statement to the batch, as an income or as a purchase.
+     * The cost of a purchase is split among its units only if it can be split exactly,
+     * otherwise the purchase becomes a single unit with the whole cost.
+     * */
+    private void addRow(MovementBatch batch, int[] counts, StatementRow row) {
+        String description = row.getDescription() != null ? row.getDescription() : DEFAULT_ITEM_NAME;
+
+        if (row.isIncome()) {
+            batch.addIncome(row.getAmount(), row.getDate(), categoryOf(row, DEFAULT_INCOME_CATEGORY));
+            counts[0]++;
+        } else {
+            long cost = -row.getAmount().getCents();
+            int quantity = cost % row.getQuantity() == 0 ? row.getQuantity() : 1;
+            Item item = new Item(description, quantity, ApplicationTags.MiscellaneousTags.CONFIRMED,
+                    Money.ofCents(cost / quantity), categoryOf(row, DEFAULT_PURCHASE_CATEGORY));
+            batch.addPurchase(item, row.getDate());
+            counts[1]++;
+        }
+    }
+
+    /**
+     * @return the id of the category of the row, which can be written with its id or its name
+     * */
+    private String categoryOf(StatementRow row, String defaultCategory) {
+        if (row.getCategory() == null) {
+            return defaultCategory;
+        }
+        String id = categories.get(row.getCategory().toLowerCase(Locale.ITALIAN));
+        return id != null ? id : defaultCategory;
+    }
+
+    private void loadCategories() throws IOException {
+        Categories all = new CategoryRepository(context).getCategories();
+        if (all == null) {
+            throw new IOException("Impossibile leggere le categorie");
+        }
+        for (Category category : all.getAll()) {
+            categories.put(category.getId().toLowerCase(Locale.ITALIAN), category.getId());
+            categories.put(category.getName().toLowerCase(Locale.ITALIAN), category.getId());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Interface of the readers of the bank statements. A parser reads the statement one row at a time,
+ * so a statement of any size is imported without keeping it in memory.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see StatementImporter   which writes the rows inside the database
+ * */
+public interface StatementParser extends Closeable {
+
+    /**
+     * This method reads the next movement of the statement.
+     *
+     * @return the movement, null when the statement is over
+     * @throws StatementFormatException if the row can't be read, the following rows can still be read
+     * @throws IOException if the statement can't be read anymore
+     * */
+    StatementRow next() throws StatementFormatException, IOException;
+
+    /**
+     * @return the number of lines read up to now
+     * */
+    int getLine();
+
+    /**
+     * This method returns the parser of a statement, chosen from the extension of its file.
+     * The files that are not QIF or OFX are read as CSV.
+     *
+     * @param fileName      the name of the file, it can be null
+     * @param reader        the content of the file
+     *
+     * @return the parser
+     * */
+    static StatementParser forFile(String fileName, BufferedReader reader) {
+        String name = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+
+        if (name.endsWith(".qif")) {
+            return new QifStatementParser(reader);
+        } else if (name.endsWith(".ofx") || name.endsWith(".qfx")) {
+            return new OfxStatementParser(reader);
+        }
+        return new CsvStatementParser(reader);
+    }
+}
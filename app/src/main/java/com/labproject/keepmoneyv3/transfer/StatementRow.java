@@ -0,0 +1,57 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+/**
+ * A movement read from a bank statement. A positive amount is an income, a negative amount is a purchase.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see StatementParser     which reads the rows of a statement
+ * */
+public class StatementRow {
+    private final long date;
+    private final Money amount;
+    private final String description;
+    private final String category;
+    private final int quantity;
+
+    /**
+     * @param date          the date of the movement, in epoch milliseconds
+     * @param amount        the signed amount of the movement, for a purchase the cost of all its units
+     * @param description   the description of the movement, used as the name of the item of a purchase, it can be null
+     * @param category      the id or the name of the category written in the statement, null if there is none
+     * @param quantity      the number of units bought, 1 for the statements that don't have it
+     * */
+    public StatementRow(long date, Money amount, String description, String category, int quantity) {
+        this.date = date;
+        this.amount = amount;
+        this.description = description;
+        this.category = category;
+        this.quantity = quantity;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public boolean isIncome() {
+        return amount.isPositive();
+    }
+}
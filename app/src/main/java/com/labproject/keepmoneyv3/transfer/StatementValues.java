@@ -0,0 +1,133 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import android.annotation.SuppressLint;
+
+import com.labproject.keepmoneyv3.utility.Money;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * This class reads the dates and the amounts written in the bank statements, which use different
+ * formats depending on the bank and on the country. An instance is used by a single parser,
+ * because the date formats are not thread safe.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+class StatementValues {
+
+    private final SimpleDateFormat[] dateFormats;
+
+    /**
+     * @param datePatterns      the patterns of the dates, tried in order: the first one that reads
+     *                          the whole date is used, so the ambiguous dates follow the first pattern
+     * */
+    @SuppressLint("SimpleDateFormat")
+    StatementValues(String... datePatterns) {
+        dateFormats = new SimpleDateFormat[datePatterns.length];
+        for (int i = 0; i < datePatterns.length; i++) {
+            dateFormats[i] = new SimpleDateFormat(datePatterns[i]);
+            dateFormats[i].setLenient(false);
+        }
+    }
+
+    /**
+     * This method reads a date.
+     *
+     * @param text      the date
+     *
+     * @return the date in epoch milliseconds, -1 if it doesn't match any of the patterns
+     * */
+    long parseDate(String text) {
+        String date = text.trim();
+        for (SimpleDateFormat format : dateFormats) {
+            ParsePosition position = new ParsePosition(0);
+            Date parsed = format.parse(date, position);
+            if (parsed != null && position.getIndex() == date.length()) {
+                return parsed.getTime();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * This method reads an amount, like "-1.234,56", "1,234.56", "12,50 €" or "12.50-".
+     * When both the separators are used, the last one separates the decimals and the other one the thousands.
+     * When only one is used, it separates the thousands if it appears more than once, or if it is followed
+     * by exactly 3 digits, as in "1,234,567" or "1.234"; otherwise it separates the decimals, as in "12,5".
+     * The groups of the thousands must have 3 digits, and the amount can't have more than 2 decimals,
+     * so a value that would be rounded is refused instead.
+     *
+     * @param text      the amount
+     *
+     * @return the amount
+     * @throws NumberFormatException if the text is not an amount
+     * */
+    static Money parseAmount(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        boolean negative = false;
+        int[] commas = new int[text.length()]; // the number of digits before every comma
+        int[] dots = new int[text.length()]; // the number of digits before every dot
+        int commaCount = 0;
+        int dotCount = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == ',') {
+                commas[commaCount++] = digits.length();
+            } else if (c == '.') {
+                dots[dotCount++] = digits.length();
+            } else if (c == '-' || c == '(') { // a leading or trailing minus, or an amount in brackets
+                negative = true;
+            } else if (c == '+' || c == ')' || Character.isWhitespace(c) || Character.isLetter(c) || c == '€' || c == '$') {
+                // signs of the currency and spaces, like "EUR 12,50"
+            } else {
+                throw new NumberFormatException("Importo non valido: " + text);
+            }
+        }
+        if (digits.length() == 0) {
+            throw new NumberFormatException("Importo non valido: " + text);
+        }
+
+        int decimalSeparator = -1;
+        int[] thousands;
+        int thousandsCount;
+        if (commaCount > 0 && dotCount > 0) {
+            boolean commaIsLast = commas[commaCount - 1] > dots[dotCount - 1]
+                    || (commas[commaCount - 1] == dots[dotCount - 1] && text.lastIndexOf(',') > text.lastIndexOf('.'));
+            if ((commaIsLast ? commaCount : dotCount) > 1) {
+                throw new NumberFormatException("Importo non valido: " + text); // like "1.234,567,89"
+            }
+            decimalSeparator = commaIsLast ? commas[0] : dots[0];
+            thousands = commaIsLast ? dots : commas;
+            thousandsCount = commaIsLast ? dotCount : commaCount;
+        } else {
+            thousands = commaCount > 0 ? commas : dots;
+            thousandsCount = commaCount + dotCount;
+            if (thousandsCount == 1 && digits.length() - thousands[0] != 3) {
+                decimalSeparator = thousands[0];
+                thousandsCount = 0;
+            }
+        }
+
+        int groupEnd = decimalSeparator >= 0 ? decimalSeparator : digits.length();
+        for (int i = thousandsCount - 1; i >= 0; i--) {
+            if (groupEnd - thousands[i] != 3 || (i == 0 && (thousands[0] == 0 || thousands[0] > 3))) {
+                throw new NumberFormatException("Importo non valido: " + text); // like "1.23.456", ".123" or "1234.567"
+            }
+            groupEnd = thousands[i];
+        }
+        if (decimalSeparator >= 0) {
+            if (digits.length() - decimalSeparator > 2) {
+                throw new NumberFormatException("Troppi decimali: " + text);
+            }
+            digits.insert(decimalSeparator, '.');
+        }
+
+        Money amount = Money.parse(digits.toString());
+        return negative ? Money.ZERO.minus(amount) : amount;
+    }
+}
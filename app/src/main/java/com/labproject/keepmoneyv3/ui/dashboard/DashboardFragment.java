@@ -1,7 +1,6 @@
 package com.labproject.keepmoneyv3.ui.dashboard;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -17,12 +16,11 @@ import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.activities.NavigationActivity;
 import com.labproject.keepmoneyv3.adapters.ArrayListViewAdapter;
 import com.labproject.keepmoneyv3.database.*;
-import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.User;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.Locale;
+import java.util.ArrayList;
 
 
 /**
@@ -41,12 +39,7 @@ public class DashboardFragment extends Fragment {
         void onDashboardFragmentOpened();
     }
 
-    /**
-     * An enum used to choose which sum calculate.
-     * **/
-    private enum ChooseEP{
-        INCOMES, PURCHASES
-    }
+    private static final int RECENT_ITEMS_LIMIT = 3; // number of purchases shown in the ListView
 
     private DashboardFragmentListener listener;
 
@@ -88,111 +81,59 @@ public class DashboardFragment extends Fragment {
         Context context = getContext();
         assert context != null;
 
-        ArrayListViewAdapter adapter = new ArrayListViewAdapter(context);
         ListView listView = root.findViewById(R.id.listviewRecentPurchases);
-        listView.setAdapter(adapter);
-        buildListView(adapter, user.getUsername());
+        listView.setAdapter(new ArrayListViewAdapter(context));
 
         TextView txtToEntriesBox = root.findViewById(R.id.txtBalanceIncomes);
         TextView txtToUscBox = root.findViewById(R.id.txtBalancePurchases);
         TextView txtBudgetBox = root.findViewById(R.id.txtBudget);
-
-        float incomes,purchases;
-        incomes = sumIncomesOrPurchases(user.getUsername(),ChooseEP.INCOMES);
-        purchases = sumIncomesOrPurchases(user.getUsername(),ChooseEP.PURCHASES);
-
-        String strIncomes = decimalFormat(incomes);
-        String strPurchases = decimalFormat(purchases);
-        String strTotal = decimalFormat(user.getTotal());
-
-        txtToEntriesBox.setText(strIncomes);
-        txtToUscBox.setText(strPurchases);
-        txtBudgetBox.setText(strTotal);
-
-        return root;
-    }
-
-    /**
-     * This method is used to get the sum of the incomes or the purchases
-     * for a certain user.
-     *
-     * @param username      the username
-     * @param choice        used to select the sum of the entries or the sum of the purchases
-     *
-     * @return value        a float number which represents the sum
-     * */
-    private float sumIncomesOrPurchases(String username, ChooseEP choice){
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor;
-        float value = 0;
-        switch (choice) {
-            case INCOMES:
-                cursor = dbManager.sumIncomesQuery(username);
-                if (cursor!=null){
-                    final String SUM_INC = "sumInc";
-                    while(cursor.moveToNext()) {
-                        value = cursor.getFloat(cursor.getColumnIndex(SUM_INC));
+        txtBudgetBox.setText(decimalFormat(user.getTotal()));
+
+        // the summary and the budget are read in background, and again every time their tables change
+        DbRepository repository = new DbRepository(context);
+        DbRepository.observe(() -> repository.getDashboardSummary(user.getUsername(), RECENT_ITEMS_LIMIT),
+                DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME,
+                DbStrings.TableItemsFields.TABLE_NAME, DbStrings.TableMonthlyTotalsFields.TABLE_NAME)
+                .observe(getViewLifecycleOwner(), summary -> {
+                    if (summary != null) {
+                        txtToEntriesBox.setText(decimalFormat(summary.getIncomes()));
+                        txtToUscBox.setText(decimalFormat(summary.getPurchases()));
+                        buildListView(listView, summary.getRecentPurchases());
+                    } else {
+                        Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
                     }
-                }
-                break;
-            case PURCHASES:
-                cursor = dbManager.sumPurchasesQuery(username, ApplicationTags.MiscellaneousTags.CONFIRMED);
-                if (cursor!=null){
-                    final String SUM_PURCH = "sumPurch";
-                    while(cursor.moveToNext()) {
-                        value = cursor.getFloat(cursor.getColumnIndex(SUM_PURCH));
+                });
+        DbRepository.observe(() -> repository.getUserTotal(user.getUsername()), DbStrings.TableUsersField.TABLE_NAME)
+                .observe(getViewLifecycleOwner(), total -> {
+                    if (total != null) {
+                        txtBudgetBox.setText(decimalFormat(total));
                     }
-                }
-                break;
-            default:
-                break;
-        }
-        return value;
-    }
+                });
 
+        return root;
+    }
 
     /**
-     * This method builds the ListView with the three most recent purchases.
+     * This method builds the ListView with the most recent purchases.
      *
-     * @param adapter       the adapter of the ListView
-     * @param username      the username
+     * @param listView      the ListView
+     * @param recentItems   the most recent purchases
      * */
-    void buildListView(ArrayListViewAdapter adapter, String username) {
-        final int RECENT_ITEMS_LIMIT = 3;
-
-        int picId, itemId;
-        int amount;
-        float itemPrice;
-        String itemName;
-
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor = dbManager.getPurchasesItemsQuery(RECENT_ITEMS_LIMIT, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, username);
-
-        if (cursor != null) {
-
-            while (cursor.moveToNext()) {
-                itemId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
-                itemName = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
-                itemPrice = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE));
-                amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
-                picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                adapter.buildMap(itemId, itemName, picId, itemPrice * amount); // build the list view
-            }
-
-        } else {
-            Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+    void buildListView(ListView listView, ArrayList<DefaultListViewItems> recentItems) {
+        ArrayListViewAdapter adapter = new ArrayListViewAdapter(requireContext());
+        for (DefaultListViewItems item : recentItems) {
+            adapter.buildMap(item.getId(), item.getItemName(), item.getImage(), item.getPrice()); // build the list view
         }
+        listView.setAdapter(adapter);
     }
 
     /**
-     * This method is used to correctly format a numeric value.
+     * This method is used to correctly format an amount of money.
      *
      * @param value  the value that needs to be formatted
      * @return       a string representation of the value
      */
-    private String decimalFormat(float value){
-        DecimalFormat decFormat = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-        decFormat.setMaximumFractionDigits(2);
-        return decFormat.format(value) + " €";
+    private String decimalFormat(Money value){
+        return value + " €";
     }
 }
\ No newline at end of file
@@ -3,38 +3,51 @@ package com.labproject.keepmoneyv3.ui.movements;
 import android.annotation.SuppressLint;
 import android.app.AlertDialog;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
-import android.widget.ListView;
+import android.widget.CheckBox;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.labproject.keepmoneyv3.R;
-import com.labproject.keepmoneyv3.adapters.ArrayListViewAdapter;
+import com.labproject.keepmoneyv3.adapters.MovementsAdapter;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.User;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-
 /**
  * This fragment displays the list of incomes or purchases of the user.
+ * The list follows the changes of the database: the rows already loaded are read again in background,
+ * and the adapter applies only the differences, so an added or deleted movement doesn't redraw the whole list.
  *
  * @author Giacomo Detomaso and Michelangelo De Pascale
  * */
 public class IncomesAndPurchasesTabFragment extends Fragment {
 
+    private static final int PREFETCH_DISTANCE = 10; // rows from the end of the list that start the load of the next page
+
     private int sort;
+    private boolean includeArchive; // true if the archived movements are shown after the recent ones
+    private volatile ListQuery query; // the rows shown, read again in background when the tables change
+    private volatile int loadedRows; // the number of rows loaded, read again when the tables change
+    private MovementsAdapter adapter;
+    private Page.Key nextKey; // the key of the next page of the list
+    private boolean allPagesLoaded;
+    private boolean loadingPage;
+    private int listVersion; // changed every time the rows are replaced, a page read before is not added to them
+    private Money total; // the total of the user read from the database, null until it's read
 
     /**
      * This method describes what happens when the fragment is created
@@ -52,282 +65,339 @@ public class IncomesAndPurchasesTabFragment extends Fragment {
         assert bundle != null;
         final int position = bundle.getInt(ApplicationTags.SerializableTags.POSITION_KEY);
 
-        ListView listView = root.findViewById(R.id.listViewTab);
-        Context context = getContext();
-        assert context != null;
-        ArrayListViewAdapter listAdapter = new ArrayListViewAdapter(getContext());
-
         User user = (User) bundle.getSerializable(ApplicationTags.SerializableTags.USERNAME_KEY);
         String username = user.getUsername();
 
         //this fragment is a page into the view pager inside the LogActivity
         final int PURCHASE_LIST_PAGE = 0;
-        final int INCOMES_LIST_PAGE = 1;
-
-        switch (position){
-            case PURCHASE_LIST_PAGE:
-                Button bP = root.findViewById(R.id.button2);
-
-                int sizeP = bundle.getInt(ApplicationTags.SerializableTags.PURCHASES_ROWS_KEY);
-
-                if(sizeP > 0){
-                    buildPurchaseListView(listAdapter, username);
-                    deletePurchase(listView, listAdapter, user);
-                    bP.setOnClickListener(view -> {
-                        switch(sort) {
-                            case 0:
-                                bP.setText(R.string.ascSort);
-                                sort++;
-                            break;
-                            case 1:
-                                bP.setText(R.string.descSort);
-                                sort++;
-                                break;
-                            case 2:
-                                bP.setText(R.string.predefined);
-                                sort = 0;
-                                break;
-                        }
-                        ArrayListViewAdapter listAdapterSort = new ArrayListViewAdapter(getContext());
-                        buildPurchaseListView(listAdapterSort, username);
-                        listView.setAdapter(listAdapterSort);
-                    });
-                } else {
-                    Toast.makeText(getContext(), "Non sono presenti spese semplici", Toast.LENGTH_SHORT).show();
-                }
-                break;
-
-            case INCOMES_LIST_PAGE:
-                Button bI = root.findViewById(R.id.button2);
-                int sizeE = bundle.getInt(ApplicationTags.SerializableTags.INCOMES_ROWS_KEY);
-
-                if(sizeE > 0){
-                    buildIncomesListView(listAdapter, username);
-                    deleteIncome(listView, listAdapter, user);
-                    bI.setOnClickListener(view -> {
-                        switch(sort) {
-                            case 0:
-                                bI.setText(R.string.ascSort);
-                                sort++;
-                                break;
-                            case 1:
-                                bI.setText(R.string.descSort);
-                                sort++;
-                                break;
-                            case 2:
-                                bI.setText(R.string.predefined);
-                                sort = 0;
-                                break;
-                        }
-                        ArrayListViewAdapter listAdapterSort = new ArrayListViewAdapter(getContext());
-                        buildIncomesListView(listAdapterSort, username);
-                        listView.setAdapter(listAdapterSort);
-                    });
+        final boolean purchases = position == PURCHASE_LIST_PAGE;
 
-                } else {
-                    Toast.makeText(getContext(),"Nono sono presenti ancora entrate",Toast.LENGTH_SHORT).show();
-                }
-                break;
+        Button sortButton = root.findViewById(R.id.button2);
+        CheckBox includeArchiveBox = root.findViewById(R.id.includeArchive);
+        RecyclerView recyclerView = root.findViewById(R.id.recyclerViewTab);
+
+        int rows = bundle.getInt(purchases ? ApplicationTags.SerializableTags.PURCHASES_ROWS_KEY : ApplicationTags.SerializableTags.INCOMES_ROWS_KEY);
+        int archivedRows = bundle.getInt(ApplicationTags.SerializableTags.ARCHIVED_ROWS_KEY);
+        if (rows == 0 && archivedRows == 0) {
+            Toast.makeText(getContext(), purchases ? "Non sono presenti spese semplici" : "Non sono presenti ancora entrate", Toast.LENGTH_SHORT).show();
         }
 
-        listView.setAdapter(listAdapter);
+        // the same adapter shows the list in every order, it only receives the new rows
+        adapter = new MovementsAdapter();
+        adapter.setOnItemClickListener(item -> {
+            if (purchases) {
+                deletePurchase(item);
+            } else {
+                deleteIncome(item);
+            }
+        });
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        recyclerView.setAdapter(adapter);
+        loadPagesOnScroll(recyclerView);
+
+        query = new ListQuery(username, purchases, sort, includeArchive);
+        observeRows(username, purchases, includeArchiveBox);
+
+        // the deletes only change the database, the total is read again after each of them
+        DbRepository repository = new DbRepository(requireContext().getApplicationContext());
+        DbRepository.observe(() -> repository.getUserTotal(username), DbStrings.TableUsersField.TABLE_NAME)
+                .observe(getViewLifecycleOwner(), userTotal -> {
+                    if (userTotal != null) {
+                        total = userTotal;
+                    }
+                });
+
+        sortButton.setOnClickListener(view -> {
+            switch(sort) {
+                case 0:
+                    sortButton.setText(R.string.ascSort);
+                    sort++;
+                    break;
+                case 1:
+                    sortButton.setText(R.string.descSort);
+                    sort++;
+                    break;
+                case 2:
+                    sortButton.setText(R.string.predefined);
+                    sort = 0;
+                    break;
+            }
+            reloadRows(username, purchases);
+        });
+
+        includeArchiveBox.setVisibility(archivedRows > 0 ? View.VISIBLE : View.GONE);
+        includeArchiveBox.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            includeArchive = isChecked;
+            reloadRows(username, purchases);
+        });
+
         return root;
     }
 
     /**
-     * This method builds the purchases' ListView.
-     *
-     * @param adapter       the adapter of the ListView
-     * @param username      the username
+     * This class identifies the rows shown by the list: the movements, their order and if the archive is included.
+     * It can't be changed, so it can be read by the background reads while the user chooses another order.
      * */
-    private void buildPurchaseListView(ArrayListViewAdapter adapter, String username) {
-        final int ITEMS_LIMIT = 0; // no limit
-
-        int picId, itemId;
-        int amount;
-        float itemPrice;
-        String itemName;
-
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor = dbManager.getPurchasesItemsQuery(ITEMS_LIMIT, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, username);
-
-        if (cursor != null) {
-            ArrayList<DefaultListViewItems> listToOrder = new ArrayList<>();
-            while (cursor.moveToNext()) {
-                itemId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
-                itemName = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
-                itemPrice = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE));
-                amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
-                picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                listToOrder.add(new DefaultListViewItems(itemId, itemName, picId, itemPrice * amount));
+    private static class ListQuery {
+        private final String username;
+        private final boolean purchases;
+        private final int sort;
+        private final boolean includeArchive;
+
+        ListQuery(String username, boolean purchases, int sort, boolean includeArchive) {
+            this.username = username;
+            this.purchases = purchases;
+            this.sort = sort;
+            this.includeArchive = includeArchive;
+        }
+
+        /**
+         * @return the page that follows a key, null if the query failed
+         * */
+        Page<DefaultListViewItems> readPage(DbRepository repository, Page.Key after) {
+            if (includeArchive) {
+                return purchases
+                        ? repository.getSimplePurchasesHistoryPage(username, sort, after)
+                        : repository.getIncomesHistoryPage(username, sort, after);
             }
-            adapter.buildMap(listToOrder, sort);
-        } else {
-            Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+            return purchases
+                    ? repository.getSimplePurchasesPage(username, sort, after)
+                    : repository.getIncomesPage(username, sort, after);
+        }
+    }
+
+    /**
+     * This class contains the first rows of a list, read together in background, and the number of
+     * archived movements, used to show the check box of the archive.
+     * */
+    private static class ListRows {
+        private final ListQuery query;
+        private final Page<DefaultListViewItems> pages;
+        private final int archivedRows;
+
+        ListRows(ListQuery query, Page<DefaultListViewItems> pages, int archivedRows) {
+            this.query = query;
+            this.pages = pages;
+            this.archivedRows = archivedRows;
         }
     }
 
     /**
-     * This method builds the incomes' ListView.
+     * This method reads the list again every time a movement is added, deleted or archived, keeping the rows
+     * already loaded, so the position of the user in the list doesn't change. The first read loads the first page.
      *
-     * @param adapter       the adapter of the ListView
      * @param username      the username
+     * @param purchases     true to show the purchases, false to show the incomes
+     * @param checkBox      the check box of the archive, shown only if the user has archived movements
      * */
-    private void buildIncomesListView(ArrayListViewAdapter adapter, String username){
-            int picId, incomeID;
-            float value;
-            String date;
-
-            DbManager dbManager = new DbManager(getContext());
-            Cursor cursor = dbManager.getPurchasesDataQueryByUsername(username);
-
-            if (cursor == null) {
-                Toast.makeText(getContext(),"Errore nel reperire le informazioni",Toast.LENGTH_LONG).show();
+    private void observeRows(String username, boolean purchases, CheckBox checkBox) {
+        Context context = requireContext().getApplicationContext();
+        DbRepository repository = new DbRepository(context);
+        String[] tables = purchases
+                ? new String[]{DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME,
+                        DbStrings.TablePurchasesArchiveFields.TABLE_NAME}
+                : new String[]{DbStrings.TableIncomesFields.TABLE_NAME, DbStrings.TableIncomesArchiveFields.TABLE_NAME};
+
+        DbRepository.observe(() -> {
+            ListQuery rowsQuery = query;
+            Page<DefaultListViewItems> pages = DbRepository.readPages(after -> rowsQuery.readPage(repository, after), loadedRows);
+            int[] archivedRows = MovementsFragment.getArchivedRows(context, username);
+            return new ListRows(rowsQuery, pages, archivedRows[purchases ? 1 : 0]);
+        }, tables).observe(getViewLifecycleOwner(), rows -> {
+            if (rows.archivedRows > 0 || includeArchive) {
+                checkBox.setVisibility(View.VISIBLE);
             } else {
-                ArrayList<DefaultListViewItems> listToOrder = new ArrayList<>();
-                adapter.notifyDataSetChanged();
-                while (cursor.moveToNext()) {
-                    incomeID = cursor.getInt(cursor.getColumnIndex(DbStrings.TableIncomesFields.INCOMES_ID));
-                    date = cursor.getString(cursor.getColumnIndex(DbStrings.TableIncomesFields.INCOMES_DATE));
-                    value = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableIncomesFields.INCOMES_VAL));
-                    picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                    listToOrder.add(new DefaultListViewItems(incomeID, date, picId, value));
-                }
-                adapter.buildMap(listToOrder, sort);
+                checkBox.setVisibility(View.GONE);
+            }
+            if (rows.query == query) { // otherwise the user has chosen another order, which is being read
+                showRows(rows.pages);
             }
+        });
     }
 
     /**
-     * This method deletes the selected purchase from the database, updating the user total
-     * according to the deleted purchase information.
+     * This method reads in background the first page of the list, after the user has chosen another
+     * order or the archive, and shows it with the same adapter: the rows still shown are only moved.
      *
-     * @param listView      the listView
-     * @param listAdapter   the listAdapter
-     * @param user          the user
+     * @param username      the username
+     * @param purchases     true to show the purchases, false to show the incomes
      * */
-    private void deletePurchase(@NotNull ListView listView, ArrayListViewAdapter listAdapter, User user){
-        listView.setOnItemClickListener((parent, view, position, id) -> {
-            AlertDialog alertDialog = new AlertDialog.Builder(getContext()).create();
-            alertDialog.setTitle("Conferma eliminazione");
-            alertDialog.setMessage("Confermi l'eliminazione della seguente spesa?");
-
-            alertDialog.setButton(AlertDialog.BUTTON_NEGATIVE, "Annulla",
-                    (dialog, which) -> dialog.dismiss());
-
-            alertDialog.setButton(AlertDialog.BUTTON_POSITIVE, "Conferma",
-                    (dialog, which) -> {
-                        DefaultListViewItems defaultListViewItem = listAdapter.getItem(position);
-                        if(defaultListViewItem != null) {
-                            int itemId = defaultListViewItem.getId();
-                            DbManager dbManager = new DbManager(getContext());
-                            Cursor cursor = dbManager.queryGetPurchaseIdFromItemId(itemId);
-                            if (cursor == null) {
-                                Toast.makeText(getContext(), "Si è verificato un errore nell'ottenimento delle informazioni necessarie all'eliminazione dell'oggetto", Toast.LENGTH_LONG).show();
-                            } else {
-                                while (cursor.moveToNext()) {
-                                    int purchaseId = cursor.getInt(cursor.getColumnIndex("id"));
-                                    addBackMoneyToUser(itemId, user);
-                                    long affectedRows = dbManager.removePurchase(itemId, purchaseId);
-
-                                    if(affectedRows > 0) {
-                                        requireActivity().getSupportFragmentManager().popBackStack();
-                                    } else {
-                                        Toast.makeText(getContext(), "Problemi nella rimozione della spesa!", Toast.LENGTH_LONG).show();
-                                    }
-                                }
-                            }
-                        }
-                    });
-            alertDialog.show();
+    private void reloadRows(String username, boolean purchases) {
+        ListQuery rowsQuery = new ListQuery(username, purchases, sort, includeArchive);
+        query = rowsQuery;
+        listVersion++;
+        loadingPage = true; // no page is added until the first one of the new list is shown
+        DbRepository repository = new DbRepository(requireContext());
+
+        DbRepository.load(() -> rowsQuery.readPage(repository, null)).observe(getViewLifecycleOwner(), page -> {
+            if (rowsQuery == query) {
+                showRows(page);
+            }
         });
     }
 
     /**
-     * This method deletes the selected income from the database, updating the user total
-     * according to the deleted income information.
+     * This method replaces the rows of the list with the first rows read again.
      *
-     * @param listView      the listView
-     * @param listAdapter   the listAdapter
-     * @param user          the user
+     * @param pages     the first pages of the list, null if the query failed
      * */
-    private void deleteIncome(@NotNull ListView listView, ArrayListViewAdapter listAdapter, User user){
-        listView.setOnItemClickListener((parent, view, position, id) -> {
-            AlertDialog alertDialog = new AlertDialog.Builder(getContext()).create();
-            alertDialog.setTitle("Conferma eliminazione");
-            alertDialog.setMessage("Confermi l'eliminazione della seguente entrata?");
-
-            alertDialog.setButton(AlertDialog.BUTTON_NEGATIVE, "Annulla",
-                    (dialog, which) -> dialog.dismiss());
-
-            alertDialog.setButton(AlertDialog.BUTTON_POSITIVE, "Conferma",
-                    (dialog, which) -> {
-                        DefaultListViewItems defaultListViewItem = listAdapter.getItem(position);
-                        if(defaultListViewItem != null) {
-                            int itemId = defaultListViewItem.getId();
-                            DbManager dbManager = new DbManager(getContext());
-                            if (removeMoneyFromUser(itemId, user) == 1) {
-                                long affectedRows = dbManager.removeIncome(itemId);
-
-                                if(affectedRows > 0) {
-                                    requireActivity().getSupportFragmentManager().popBackStack();
-                                } else {
-                                    Toast.makeText(getContext(), "Problemi nel rimuovere la spesa!", Toast.LENGTH_LONG).show();
-                                }
-
-                            } else {
-                                Toast.makeText(getContext(), "Impossibile rimuovere la spesa, saldo negativo!", Toast.LENGTH_LONG).show();
-                            }
-                        }
-                    });
-            alertDialog.show();
+    private void showRows(Page<DefaultListViewItems> pages) {
+        listVersion++;
+        loadingPage = false;
+
+        if (pages != null) {
+            adapter.submitRows(pages.getRows());
+            loadedRows = pages.getRows().size();
+            nextKey = pages.getNextKey();
+            allPagesLoaded = pages.isLast();
+        } else {
+            allPagesLoaded = true; // the query is not tried again at every scroll
+            Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * This method reads in background the next page of the purchases or of the incomes, in the order
+     * chosen with the sort button, and adds it to the list as soon as it is ready.
+     * The archived movements are read too, if the user asked for them.
+     * */
+    private void loadNextPage() {
+        if (allPagesLoaded || loadingPage) {
+            return;
+        }
+        loadingPage = true;
+
+        ListQuery rowsQuery = query;
+        Page.Key after = nextKey;
+        int version = listVersion;
+        DbRepository repository = new DbRepository(requireContext());
+
+        DbRepository.load(() -> rowsQuery.readPage(repository, after)).observe(getViewLifecycleOwner(), page -> {
+            if (version != listVersion) {
+                return; // the rows have been replaced, the page belongs to the old list
+            }
+            loadingPage = false;
+
+            if (page != null) {
+                adapter.addPage(page.getRows());
+                loadedRows = adapter.getSubmittedCount();
+                nextKey = page.getNextKey();
+                allPagesLoaded = page.isLast();
+            } else {
+                allPagesLoaded = true; // the query is not tried again at every scroll
+                Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+            }
         });
     }
 
     /**
-     * This method updates the user budget after a purchase is deleted.
+     * This method loads the next page when the user scrolls close to the end of the list,
+     * so only the rows seen by the user are read from the database.
      *
-     * @param itemId        the id of the item
-     * @param user          the user
+     * @param recyclerView      the recyclerView
      * */
-    private void addBackMoneyToUser(int itemId, User user){
-        DbManager dbManager2 = new DbManager(getContext());
-        Cursor cursor2 = dbManager2.queryGetCostFromItemId(itemId);
-        if (cursor2 == null) {
-            Toast.makeText(getContext(),"Si è verificato un errore nell'ottenimento delle informazioni necessarie all'eliminazione dell'oggetto",Toast.LENGTH_LONG).show();
-        } else {
-            while (cursor2.moveToNext()) {
-                user.setTotal(user.getTotal()+cursor2.getFloat(cursor2.getColumnIndex("cost")));
-                dbManager2.updateUserTotal(user.getTotal(),user.getUsername());
+    private void loadPagesOnScroll(@NotNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+                // the page is added by a later message of the main thread, never while the list is laying out its rows
+                if (layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
             }
-        }
+        });
     }
 
     /**
-     * This method updates the user budget after an income is deleted.
+     * This method deletes the selected purchase from the database, updating the user total
+     * according to the deleted purchase information. The purchase is read and deleted on the write executor,
+     * the list and the total are updated by the change of the tables.
      *
-     * @param incomeId      the id of the income
-     * @param user          the user
+     * @param item          the selected purchase
+     * */
+    private void deletePurchase(@NotNull DefaultListViewItems item){
+        if (includeArchive) {
+            // an archived movement can't be deleted, and the list doesn't tell which rows are archived
+            Toast.makeText(getContext(), "Nascondi i movimenti archiviati per eliminare un movimento", Toast.LENGTH_LONG).show();
+            return;
+        }
+        AlertDialog alertDialog = new AlertDialog.Builder(getContext()).create();
+        alertDialog.setTitle("Conferma eliminazione");
+        alertDialog.setMessage("Confermi l'eliminazione della seguente spesa?");
+
+        alertDialog.setButton(AlertDialog.BUTTON_NEGATIVE, "Annulla",
+                (dialog, which) -> dialog.dismiss());
+
+        alertDialog.setButton(AlertDialog.BUTTON_POSITIVE, "Conferma",
+                (dialog, which) -> {
+                    Context context = requireContext().getApplicationContext();
+                    int itemId = item.getId();
+
+                    DbExecutors.writes().execute(() -> {
+                        DbManager dbManager = new DbManager(context);
+                        Long purchaseId = dbManager.queryGetPurchaseIdFromItemId(itemId, CursorReader.firstLong("id"));
+                        if (purchaseId == null) {
+                            DbExecutors.postToMainThread(() -> Toast.makeText(context, "Si è verificato un errore nell'ottenimento delle informazioni necessarie all'eliminazione dell'oggetto", Toast.LENGTH_LONG).show());
+                        } else if (purchaseId > 0) {
+                            long affectedRows = dbManager.removePurchase(itemId, purchaseId.intValue());
+
+                            if (affectedRows <= 0) {
+                                DbExecutors.postToMainThread(() -> Toast.makeText(context, "Problemi nella rimozione della spesa!", Toast.LENGTH_LONG).show());
+                            }
+                        }
+                    });
+                });
+        alertDialog.show();
+    }
+
+    /**
+     * This method deletes the selected income from the database, updating the user total
+     * according to the deleted income information. The income is read and deleted on the write executor,
+     * the list and the total are updated by the change of the tables.
      *
-     * @return an integer number that indicates if the money can be removed from the user
+     * @param item          the selected income
      * */
-    private int removeMoneyFromUser(int incomeId, User user){
-        int canBeRemoved = 1;
-        DbManager dbManager2 = new DbManager(getContext());
-        Cursor cursor2 = dbManager2.queryGetIncomeValueFromItemId(incomeId);
-        if (cursor2 == null) {
-            Toast.makeText(getContext(),"Si è verificato un errore nell'ottenimento delle informazioni necessarie all'eliminazione dell'oggetto",Toast.LENGTH_LONG).show();
-        } else {
-            while (cursor2.moveToNext()) {
-                float toRemove = cursor2.getFloat(cursor2.getColumnIndex("value"));
-                if(toRemove <= user.getTotal()){
-                    user.setTotal(user.getTotal()-toRemove);
-                    dbManager2.updateUserTotal(user.getTotal(),user.getUsername());
-                } else {
-                    canBeRemoved = 0;
-                }
-            }
+    private void deleteIncome(@NotNull DefaultListViewItems item){
+        if (includeArchive) {
+            // an archived movement can't be deleted, and the list doesn't tell which rows are archived
+            Toast.makeText(getContext(), "Nascondi i movimenti archiviati per eliminare un movimento", Toast.LENGTH_LONG).show();
+            return;
         }
-        return canBeRemoved;
+        AlertDialog alertDialog = new AlertDialog.Builder(getContext()).create();
+        alertDialog.setTitle("Conferma eliminazione");
+        alertDialog.setMessage("Confermi l'eliminazione della seguente entrata?");
+
+        alertDialog.setButton(AlertDialog.BUTTON_NEGATIVE, "Annulla",
+                (dialog, which) -> dialog.dismiss());
+
+        alertDialog.setButton(AlertDialog.BUTTON_POSITIVE, "Conferma",
+                (dialog, which) -> {
+                    Context context = requireContext().getApplicationContext();
+                    int itemId = item.getId();
+                    Money userTotal = total; // the last total read, the income can't take it below zero
+                    if (userTotal == null) {
+                        Toast.makeText(context, "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+
+                    DbExecutors.writes().execute(() -> {
+                        DbManager dbManager = new DbManager(context);
+                        Long value = dbManager.queryGetIncomeValueFromItemId(itemId, CursorReader.firstLong("value"));
+                        if (value == null) {
+                            DbExecutors.postToMainThread(() -> Toast.makeText(context, "Si è verificato un errore nell'ottenimento delle informazioni necessarie all'eliminazione dell'oggetto", Toast.LENGTH_LONG).show());
+                        } else if (Money.ofCents(value).compareTo(userTotal) > 0) {
+                            DbExecutors.postToMainThread(() -> Toast.makeText(context, "Impossibile rimuovere la spesa, saldo negativo!", Toast.LENGTH_LONG).show());
+                        } else {
+                            long affectedRows = dbManager.removeIncome(itemId);
+
+                            if (affectedRows <= 0) {
+                                DbExecutors.postToMainThread(() -> Toast.makeText(context, "Problemi nel rimuovere la spesa!", Toast.LENGTH_LONG).show());
+                            }
+                        }
+                    });
+                });
+        alertDialog.show();
     }
 }
-
@@ -1,7 +1,6 @@
 package com.labproject.keepmoneyv3.ui.movements;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -15,13 +14,9 @@ import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.activities.NavigationActivity;
 import com.labproject.keepmoneyv3.adapters.TabPagerAdapter;
 import com.labproject.keepmoneyv3.database.*;
-import com.labproject.keepmoneyv3.utility.ApplicationTags;
 import com.labproject.keepmoneyv3.utility.User;
-import com.labproject.keepmoneyv3.utility.WishLists;
 import com.google.android.material.tabs.TabLayout;
 
-import java.util.ArrayList;
-
 /**
  * This class manages the creation of the PageAdapter and its items.
  *
@@ -68,86 +63,91 @@ public class MovementsFragment extends Fragment {
         listener.onMovementsFragmentOpened();
 
 
-        // tab pager data
+        // tab pager data, read in background once: every tab follows the changes of its own movements
         String username = user.getUsername();
-        int incomesRows = getIncomesRows(username);
-        int simplePurchasesRows = getSimplePurchasesRows(username);
-        ArrayList<WishLists>confirmedWishLists = new ArrayList<>();
-        getWishListData(confirmedWishLists, username);
-
-        // set the tab pager
+        Context context = requireContext();
         ViewPager viewPager = root.findViewById(R.id.pager);
         TabLayout tabLayout = root.findViewById(R.id.tab_layout);
-        TabPagerAdapter tabPagerAdapter = new TabPagerAdapter(getParentFragmentManager(), simplePurchasesRows, incomesRows, user, confirmedWishLists);
 
+        DbRepository.load(() -> new TabData(context, username))
+                .observe(getViewLifecycleOwner(), tabData -> {
+                    TabPagerAdapter tabPagerAdapter = new TabPagerAdapter(getParentFragmentManager(), tabData.simplePurchasesRows,
+                            tabData.incomesRows, tabData.archivedPurchasesRows, tabData.archivedIncomesRows, user);
 
-        viewPager.setAdapter(tabPagerAdapter);
-        tabLayout.setupWithViewPager(viewPager);
+                    viewPager.setAdapter(tabPagerAdapter);
+                    tabLayout.setupWithViewPager(viewPager);
+                });
         return root;
     }
 
+    /**
+     * This class contains the data needed to build the tabs, read together in background.
+     * The wishlists tab reads its own data.
+     * */
+    private static class TabData {
+        private final int incomesRows;
+        private final int simplePurchasesRows;
+        private final int archivedIncomesRows;
+        private final int archivedPurchasesRows;
+
+        TabData(Context context, String username) {
+            incomesRows = getIncomesRows(context, username);
+            simplePurchasesRows = getSimplePurchasesRows(context, username);
+
+            int[] archivedRows = getArchivedRows(context, username);
+            archivedIncomesRows = archivedRows[0];
+            archivedPurchasesRows = archivedRows[1];
+        }
+    }
+
     /**
      * This method gives the number of records inside the incomes table related to a specified user
      *
+     * @param context       the context used to open the database
      * @param username      the username of the user
      *
      * @return the number of rows of the income
      * */
-    int getIncomesRows(String username){
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor = dbManager.countIncomesRowsByUsername(username);
+    static int getIncomesRows(Context context, String username){
+        DbManager dbManager = new DbManager(context);
         final String NUM_ROWS_FIELD = "numRows";
-        int numRows = 0;
+        Long numRows = dbManager.countIncomesRowsByUsername(username, CursorReader.firstLong(NUM_ROWS_FIELD));
 
-        if(cursor != null){
-            while (cursor.moveToNext()){
-                numRows = cursor.getInt(cursor.getColumnIndex(NUM_ROWS_FIELD));
-            }
-        }
-        return numRows;
+        return numRows != null ? numRows.intValue() : 0;
     }
 
     /**
      * This method gives the number of records inside the purchases table
      * related to a specified user
      *
+     * @param context       the context used to open the database
      * @param username      the username of the user
      *
      * @return the number of rows of the income
      * */
-    int getSimplePurchasesRows(String username){
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor = dbManager.countSimplePurchasesRowsByUsername(username);
+    static int getSimplePurchasesRows(Context context, String username){
+        DbManager dbManager = new DbManager(context);
         final String NUM_ROWS_FIELD = "numRows";
-        int numRows = 0;
+        Long numRows = dbManager.countSimplePurchasesRowsByUsername(username, CursorReader.firstLong(NUM_ROWS_FIELD));
 
-        if(cursor != null){
-            while (cursor.moveToNext()){
-                numRows = cursor.getInt(cursor.getColumnIndex(NUM_ROWS_FIELD));
-            }
-        }
-        return numRows;
+        return numRows != null ? numRows.intValue() : 0;
     }
 
     /**
-     * Get the most important data of a wishlist related to a specified user
+     * This method gives the number of archived incomes and purchases of a specified user
+     *
+     * @param context       the context used to open the database
+     * @param username      the username of the user
      *
-     * @param  wishLists        the wishlist to populate
-     * @param username          the username of the user
+     * @return the number of archived incomes, followed by the number of archived purchases
      * */
-    private void getWishListData(ArrayList<WishLists>wishLists, String username) {
-        DbManager manager = new DbManager(getContext());
-
-        Cursor cursor = manager.getWishListDataQuery(username, ApplicationTags.MiscellaneousTags.CONFIRMED);
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                int wlId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_ID));
-                String listName = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_NAME));
-                String description = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_DESC));
-                int isConfirmed = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_IS_CONFIRMED));
-                wishLists.add(new WishLists(wlId, listName, description, isConfirmed));
-            }
-        }
+    static int[] getArchivedRows(Context context, String username){
+        DbManager dbManager = new DbManager(context);
+        int[] archivedRows = dbManager.countArchivedRowsByUsername(username, cursor -> cursor.moveToFirst()
+                ? new int[]{cursor.getInt(0), cursor.getInt(1)}
+                : null);
+
+        return archivedRows != null ? archivedRows : new int[2];
     }
 
-}
\ No newline at end of file
+}
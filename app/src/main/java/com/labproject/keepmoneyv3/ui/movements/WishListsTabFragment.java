@@ -1,6 +1,5 @@
 package com.labproject.keepmoneyv3.ui.movements;
 
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -17,7 +16,7 @@ import com.labproject.keepmoneyv3.adapters.ExpandableListViewAdapter;
 import com.labproject.keepmoneyv3.database.*;
 import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
-import com.labproject.keepmoneyv3.utility.WishLists;
+import com.labproject.keepmoneyv3.utility.User;
 
 
 import java.util.ArrayList;
@@ -44,22 +43,28 @@ public class WishListsTabFragment extends Fragment {
         Bundle bundle = getArguments();
 
         if(bundle != null){
-            ArrayList<WishLists>confirmedWl = (ArrayList<WishLists>) bundle.getSerializable(ApplicationTags.SerializableTags.WISH_LIST_KEYS);
-            ArrayList<String> wlTitles = new ArrayList<>();
-            HashMap<String, ArrayList<DefaultListViewItems>> mapList = new HashMap<>();
-
-            if (confirmedWl.size() > 0){
-                buildDefaultWishListItemsMap(confirmedWl, mapList);
-                getWLTitles(confirmedWl, wlTitles);
-
-                ExpandableListView expandableListView = root.findViewById(R.id.simpleExpandableListView);
-                ExpandableListViewAdapter adapter = new ExpandableListViewAdapter(getContext(), mapList, wlTitles);
-                expandableListView.setAdapter(adapter);
-
-            } else {
-                Toast.makeText(getContext(), "Non sono ancora state acquistate delle liste", Toast.LENGTH_LONG).show();
-            }
-
+            User user = (User) bundle.getSerializable(ApplicationTags.SerializableTags.USERNAME_KEY);
+            ExpandableListView expandableListView = root.findViewById(R.id.simpleExpandableListView);
+
+            // the bought wishlists are read in background with all their items, and again every time they change
+            WishListRepository repository = new WishListRepository(requireContext());
+            DbRepository.observe(() -> repository.getWishLists(user.getUsername(), ApplicationTags.MiscellaneousTags.CONFIRMED),
+                    DbStrings.TableWishListsFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME)
+                    .observe(getViewLifecycleOwner(), confirmedWl -> {
+                        if (confirmedWl != null && confirmedWl.size() > 0){
+                            ArrayList<String> wlTitles = new ArrayList<>();
+                            HashMap<String, ArrayList<DefaultListViewItems>> mapList = new HashMap<>();
+
+                            buildDefaultWishListItemsMap(confirmedWl, mapList);
+                            getWLTitles(confirmedWl, wlTitles);
+
+                            ExpandableListViewAdapter adapter = new ExpandableListViewAdapter(getContext(), mapList, wlTitles);
+                            expandableListView.setAdapter(adapter);
+
+                        } else {
+                            Toast.makeText(getContext(), "Non sono ancora state acquistate delle liste", Toast.LENGTH_LONG).show();
+                        }
+                    });
         }
         return root;
     }
@@ -67,32 +72,13 @@ public class WishListsTabFragment extends Fragment {
     /**
      * Builds the HashMap to send to the ExpandableWishListAdapter.
      *
-     * @param confirmedWl       the wishlist to populate
+     * @param confirmedWl       the wishlists, read with their items
      * @param map               the map to populate
      * */
-    private void buildDefaultWishListItemsMap(ArrayList<WishLists>confirmedWl, HashMap<String, ArrayList<DefaultListViewItems>> map){
-        DbManager dbManager = new DbManager(getContext());
-
-        for(int i = 0; i < confirmedWl.size(); i++){
-            Cursor cursor = dbManager.getWishListsItems(confirmedWl.get(i).getId());
-            ArrayList<DefaultListViewItems> defaultListViewItems = new ArrayList<>();
-
-            if(cursor != null) {
-                while (cursor.moveToNext()){
-                    String itemName = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
-                    float itemPrice = cursor.getFloat(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE));
-                    int amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
-                    int picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
-                    int id = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
-
-                    defaultListViewItems.add(new DefaultListViewItems(id, itemName, picId, itemPrice * amount));
-                }
-            }
-
-            map.put(confirmedWl.get(i).getName(), defaultListViewItems); // build the map
-
+    private void buildDefaultWishListItemsMap(ArrayList<WishListDetails>confirmedWl, HashMap<String, ArrayList<DefaultListViewItems>> map){
+        for (WishListDetails wl : confirmedWl){
+            map.put(wl.getName(), wl.getItems()); // build the map
         }
-
     }
 
     /**
@@ -101,8 +87,8 @@ public class WishListsTabFragment extends Fragment {
      * @param wishLists         the wishlists used to retrieve its list names
      * @param titles            the arraylist populated with the names of all wishlists
      * */
-    private void getWLTitles(ArrayList<WishLists>wishLists,ArrayList<String>titles){
-        for (WishLists wl : wishLists){
+    private void getWLTitles(ArrayList<WishListDetails>wishLists,ArrayList<String>titles){
+        for (WishListDetails wl : wishLists){
             titles.add(wl.getName());
         }
     }
@@ -2,7 +2,6 @@ package com.labproject.keepmoneyv3.ui.wishlist;
 
 import android.app.AlertDialog;
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,12 +17,14 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.labproject.keepmoneyv3.R;
 import com.labproject.keepmoneyv3.activities.NavigationActivity;
 import com.labproject.keepmoneyv3.adapters.WishListAdapter;
-import com.labproject.keepmoneyv3.database.DbManager;
+import com.labproject.keepmoneyv3.database.DbRepository;
 import com.labproject.keepmoneyv3.database.DbStrings;
+import com.labproject.keepmoneyv3.database.WishListDetails;
+import com.labproject.keepmoneyv3.database.WishListRepository;
 import com.labproject.keepmoneyv3.dialogs.DialogEditWishList;
 import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Money;
 import com.labproject.keepmoneyv3.utility.User;
-import com.labproject.keepmoneyv3.utility.WishLists;
 
 import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
@@ -40,7 +41,7 @@ public class WishListsFragment extends Fragment {
      * */
     public interface WishListsFragmentListener {
          User onWishListsFragmentOpened();
-         void confirmWishList(int listId, float listTotal);
+         void confirmWishList(int listId, Money listTotal);
     }
 
     private WishListsFragmentListener listener;
@@ -75,12 +76,24 @@ public class WishListsFragment extends Fragment {
 
         final int SPAN_COUNT = 2;
         RecyclerView recyclerView = root.findViewById(R.id.wishListRecyclerView);
-        WishListAdapter wishListAdapter = new WishListAdapter(getContext());
         recyclerView.setLayoutManager(new GridLayoutManager(getContext(), SPAN_COUNT));
-        buildGridView(wishListAdapter, user);
-        gridViewItemAction(wishListAdapter,user);
-
-        recyclerView.setAdapter(wishListAdapter);
+        recyclerView.setAdapter(new WishListAdapter(getContext()));
+
+        // the wishlists are read in background, and the grid is built again every time they change
+        WishListRepository repository = new WishListRepository(requireContext());
+        DbRepository.observe(() -> repository.getWishLists(user.getUsername(), ApplicationTags.MiscellaneousTags.NOT_CONFIRMED),
+                DbStrings.TableWishListsFields.TABLE_NAME, DbStrings.TablePurchasesFields.TABLE_NAME, DbStrings.TableItemsFields.TABLE_NAME)
+                .observe(getViewLifecycleOwner(), wishLists -> {
+                    if (wishLists == null) {
+                        Toast.makeText(getContext(), "Errore nel reperire le informazioni", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+
+                    WishListAdapter wishListAdapter = new WishListAdapter(getContext());
+                    buildGridView(wishListAdapter, wishLists);
+                    gridViewItemAction(wishListAdapter, wishLists);
+                    recyclerView.setAdapter(wishListAdapter);
+                });
 
         return root;
     }
@@ -89,22 +102,17 @@ public class WishListsFragment extends Fragment {
      * A method used to build the gridview with the WishLists not confirmed yet
      *
      * @param adapter       the adapter of the recycler view
+     * @param wishLists     the wishlists not confirmed yet
      * */
-    private void buildGridView(WishListAdapter adapter, @NotNull User user) {
-        DbManager manager = new DbManager(getContext());
-
-            Cursor cursor = manager.getWishListDataQuery(user.getUsername(), ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
-            if (cursor != null) {
-                while (cursor.moveToNext()) {
-                        float sum = cursor.getFloat(cursor.getColumnIndex("tot"));
-                        String listName = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_NAME));
-
-                        if(sum > 0)
-                            adapter.buildMap(listName, sum);
-                        else
-                            Toast.makeText(getContext(), "Non sono ancora presenti liste", Toast.LENGTH_LONG).show();
-                }
-            }
+    private void buildGridView(WishListAdapter adapter, @NotNull ArrayList<WishListDetails> wishLists) {
+        for (WishListDetails wishList : wishLists) {
+            Money sum = wishList.getTotal();
+
+            if(sum.isPositive())
+                adapter.buildMap(wishList.getName(), sum);
+            else
+                Toast.makeText(getContext(), "Non sono ancora presenti liste", Toast.LENGTH_LONG).show();
+        }
     }
 
 
@@ -118,7 +126,7 @@ public class WishListsFragment extends Fragment {
      * @return the builder of the Alert dialog
      * */
     @NotNull
-    private AlertDialog.Builder buildWishListOptionsDialog(String name, int listId, float total){
+    private AlertDialog.Builder buildWishListOptionsDialog(String name, int listId, Money total){
         AlertDialog.Builder builder = new AlertDialog.Builder(getContext());
 
         builder.setTitle("Gestione lista");
@@ -144,33 +152,13 @@ public class WishListsFragment extends Fragment {
     /**
      * Shows the AlertDialog described in the method buildWishListOptionsDialog
      * */
-    private void gridViewItemAction(@NotNull WishListAdapter wishListAdapter, @NotNull User user){
-        ArrayList<WishLists>wishLists = new ArrayList<>();
-
-        DbManager dbManager = new DbManager(getContext());
-        Cursor cursor = dbManager.getWishListDataQuery(user.getUsername(), ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
-        ArrayList<Float> totals = new ArrayList<>();
-
-        // get all the non confirmed wishlists of the current user
-        if (cursor != null){
-            while (cursor.moveToNext()) {
-                int wlId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_ID));
-                String listName = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_NAME));
-                String description = cursor.getString(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_DESC));
-                int isConfirmed = cursor.getInt(cursor.getColumnIndex(DbStrings.TableWishListsFields.WL_IS_CONFIRMED));
-                float sum = cursor.getFloat(cursor.getColumnIndex("tot"));
-                wishLists.add(new WishLists(wlId, listName, description, isConfirmed));
-                totals.add(sum);
-            }
-        }
-
+    private void gridViewItemAction(@NotNull WishListAdapter wishListAdapter, @NotNull ArrayList<WishListDetails> wishLists){
         wishListAdapter.setOnItemClickListener((view, position) -> {
-            String listName = wishLists.get(position).getName();
-            int listId = wishLists.get(position).getId();
+            WishListDetails wishList = wishLists.get(position);
 
-            AlertDialog alertDialog = buildWishListOptionsDialog(listName,listId, totals.get(position)).create();
+            AlertDialog alertDialog = buildWishListOptionsDialog(wishList.getName(), wishList.getId(), wishList.getTotal()).create();
             alertDialog.show();
         });
     }
 
-}
\ No newline at end of file
+}
@@ -15,6 +15,7 @@ public class ApplicationTags {
         public static final String USER_KEY = "user";
         public static final String INCOMES_ROWS_KEY = "incomes";
         public static final String PURCHASES_ROWS_KEY = "purchases";
+        public static final String ARCHIVED_ROWS_KEY = "archived"; // the archived incomes or purchases of a tab
         public static final String USERNAME_KEY = "username";
         public static final String WISH_LIST_KEYS = "wishlist";
         public static final String POSITION_KEY = "position";
@@ -54,6 +55,9 @@ public class ApplicationTags {
         public static final String EMAIL_REGEX = "^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$";
         public static final int NOT_CONFIRMED = 0;
         public static final int CONFIRMED = 1;
+        public static final int SORT_PREDEFINED = 0; // most recent first
+        public static final int SORT_ASC = 1; // by price, ascending
+        public static final int SORT_DESC = 2; // by price, descending
     }
 
     /**
@@ -3,14 +3,15 @@ package com.labproject.keepmoneyv3.utility;
 import java.io.Serializable;
 
 /**
- * A class that identifies a category
+ * A class that identifies a category. A category can't be changed, so the same object
+ * can be shared by all the screens.
  *
  * @author Michelangelo De Pascale
  * */
 
 public class Category implements Serializable {
-    private String id, name;
-    private int pictureId;
+    private final String id, name;
+    private final int pictureId;
 
     public Category(String id, String name, int pictureId){
         this.id = id;
@@ -26,18 +27,6 @@ public class Category implements Serializable {
         return id;
     }
 
-    public void setPictureId(int pictureId) {
-        this.pictureId = pictureId;
-    }
-
-    public void setId(String id) {
-        this.id = id;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public String getName() {
         return name;
     }
@@ -11,9 +11,9 @@ public  class DefaultListViewItems implements Serializable {
     private final int id;
     private final String itemName;
     private final int image;
-    private final float price;
+    private final Money price;
 
-    public DefaultListViewItems(int id, String itemName, int image, float price) {
+    public DefaultListViewItems(int id, String itemName, int image, Money price) {
         this.id = id;
         this.itemName = itemName;
         this.image = image;
@@ -28,7 +28,7 @@ public  class DefaultListViewItems implements Serializable {
         return image;
     }
 
-    public float getPrice() {
+    public Money getPrice() {
         return price;
     }
 
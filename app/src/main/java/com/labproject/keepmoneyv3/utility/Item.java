@@ -7,10 +7,10 @@ public class Item implements Serializable {
     private int amount;
     private int valid;
     private String name;
-    private float price;
+    private Money price; // price of a single unit
     private String catID;
 
-    public Item(String name, int amount, int valid, float price, String catID) {
+    public Item(String name, int amount, int valid, Money price, String catID) {
         this.name = name;
         this.price = price;
         this.amount = amount;
@@ -18,7 +18,7 @@ public class Item implements Serializable {
         this.valid = valid;
     }
 
-    public Item(int id, String name, int amount, int valid , float price, String catID) {
+    public Item(int id, String name, int amount, int valid , Money price, String catID) {
         this.id = id;
         this.name = name;
         this.price = price;
@@ -43,7 +43,7 @@ public class Item implements Serializable {
         return amount;
     }
 
-    public float getPrice() {
+    public Money getPrice() {
         return price;
     }
 
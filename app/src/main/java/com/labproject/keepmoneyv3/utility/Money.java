@@ -0,0 +1,96 @@
+package com.labproject.keepmoneyv3.utility;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An immutable amount of money, stored as a whole number of cents.
+ * All the arithmetic is done on integers, so totals never drift like they do with floats.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ * */
+public final class Money implements Serializable, Comparable<Money> {
+    public static final Money ZERO = new Money(0);
+
+    private static final int CENTS_PER_UNIT = 100;
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * This method converts a string typed by the user, like "12.5", into money.
+     * Values with more than two decimal digits are rounded to the nearest cent.
+     *
+     * @param value     the string to convert
+     *
+     * @return the money
+     * @throws NumberFormatException if the string is not a number
+     * */
+    public static Money parse(String value) {
+        BigDecimal decimal = new BigDecimal(value.trim()).setScale(2, RoundingMode.HALF_UP);
+        try {
+            return ofCents(decimal.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Value out of range: " + value);
+        }
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(int amount) {
+        return ofCents(Math.multiplyExact(cents, (long) amount));
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        return cents == ((Money) o).cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * This method returns the amount with two decimal digits, like "12.50".
+     *
+     * @return the string representation of the amount
+     * */
+    @Override
+    public String toString() {
+        // the sign is removed after the division, Math.abs(Long.MIN_VALUE) would still be negative
+        String sign = cents < 0 ? "-" : "";
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long rest = Math.abs(cents % CENTS_PER_UNIT);
+        return sign + units + "." + (rest < 10 ? "0" : "") + rest;
+    }
+}
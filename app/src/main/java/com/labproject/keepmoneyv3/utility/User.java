@@ -5,9 +5,9 @@ import java.io.Serializable;
 public class User implements Serializable {
     private String name, surname;
     private String username, password, email;
-    private float total;
+    private Money total;
 
-    public User(String username, String password, String name, String surname, String email, float total) {
+    public User(String username, String password, String name, String surname, String email, Money total) {
         this.username = username;
         this.password = password;
         this.name = name;
@@ -24,7 +24,7 @@ public class User implements Serializable {
         this.name = name;
     }
 
-    public void setTotal(float total) {
+    public void setTotal(Money total) {
         this.total = total;
     }
 
@@ -36,7 +36,7 @@ public class User implements Serializable {
         return password;
     }
 
-    public float getTotal() {
+    public Money getTotal() {
         return total;
     }
 }
@@ -0,0 +1,199 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test of DbManager.archiveMovements, on the native SQLite of Robolectric. The archive moves the old
+ * movements to other tables, so the test checks that nothing derived from the movements changes:
+ * the monthly totals, the total of the user and its journal, the lists read with the history pages and the search.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ArchiveTest {
+    private static final String USER = "mario";
+    private static final String OTHER_USER = "luigi";
+    private static final int CATEGORIES = 5;
+    private static final int MOVEMENTS = 1_000; // incomes and simple purchases of the user
+    private static final long FIRST_DATE = 1_500_000_000_000L;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int DAYS = 2_000;
+    private static final long CUTOFF = FIRST_DATE + 1_200 * DAY;
+
+    private static final String MONTHLY_TOTALS = "SELECT userId, month, idCat, incomes, purchases FROM monthlyTotals ORDER BY 1, 2, 3";
+
+    private DbManager dbManager;
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        DbHelper.closeInstance(); // the database of the previous test has been deleted
+        dbManager = new DbManager(context);
+        db = DbHelper.getInstance(context).getReadableDatabase();
+
+        for (int i = 1; i <= CATEGORIES; i++) {
+            dbManager.insertCategories("cat0" + i, "Categoria " + i, i);
+        }
+        dbManager.insertUser(USER, "pwd", "Mario", "Rossi", "mario@example.com", Money.ofCents(100_000));
+        dbManager.insertUser(OTHER_USER, "pwd", "Luigi", "Verdi", "luigi@example.com", Money.ofCents(100_000));
+
+        Random random = new Random(1);
+        for (int i = 0; i < MOVEMENTS; i++) {
+            long date = FIRST_DATE + random.nextInt(DAYS) * DAY;
+            String category = "cat0" + (1 + random.nextInt(CATEGORIES));
+            dbManager.insertIncome(Money.ofCents(100 + random.nextInt(5_000)), date, category, USER);
+            dbManager.insertPurchaseWithItem(new Item("oggetto" + i, 1 + random.nextInt(3), ApplicationTags.MiscellaneousTags.CONFIRMED,
+                    Money.ofCents(10 + random.nextInt(500)), category), date, USER);
+        }
+        dbManager.insertIncome(Money.ofCents(1_000), FIRST_DATE, "cat01", OTHER_USER);
+    }
+
+    @After
+    public void closeDatabase() {
+        DbHelper.closeInstance();
+    }
+
+    @Test
+    public void archiveMovements_keepsTheTotals() {
+        List<String> monthlyTotals = rows(MONTHLY_TOTALS);
+        Long total = dbManager.getUserTotalQuery(USER, CursorReader.firstLong("total"));
+        long oldMovements = count("SELECT COUNT(*) FROM incomes WHERE userId = '" + USER + "' AND dateIncome < " + CUTOFF) +
+                count("SELECT COUNT(*) FROM purchases WHERE userId = '" + USER + "' AND listId = 0 AND dateP < " + CUTOFF);
+
+        int archived = dbManager.archiveMovements(USER, CUTOFF);
+
+        assertEquals(oldMovements, archived);
+        assertTrue(archived > 0);
+        assertEquals(0, count("SELECT COUNT(*) FROM incomes WHERE userId = '" + USER + "' AND dateIncome < " + CUTOFF));
+        assertEquals(archived, count("SELECT COUNT(*) FROM incomesArchive") + count("SELECT COUNT(*) FROM purchasesArchive"));
+        assertEquals(archived, count("SELECT SUM(incomesCount) + SUM(purchasesCount) FROM archivedPeriods WHERE userId = '" + USER + "'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM incomes WHERE userId = '" + OTHER_USER + "'"));
+
+        assertEquals(monthlyTotals, rows(MONTHLY_TOTALS));
+        assertEquals(total, dbManager.getUserTotalQuery(USER, CursorReader.firstLong("total")));
+        assertTrue(dbManager.auditUserTotal(USER));
+
+        // the totals rebuilt from the recent and the archived movements are the same
+        assertTrue(dbManager.rebuildMonthlyTotals());
+        assertEquals(monthlyTotals, rows(MONTHLY_TOTALS));
+
+        assertEquals(0, dbManager.archiveMovements(USER, CUTOFF)); // nothing left to archive
+    }
+
+    @Test
+    public void historyPages_readTheRecentAndTheArchivedMovements() {
+        dbManager.archiveMovements(USER, CUTOFF);
+
+        int[] sorts = {ApplicationTags.MiscellaneousTags.SORT_PREDEFINED,
+                ApplicationTags.MiscellaneousTags.SORT_ASC, ApplicationTags.MiscellaneousTags.SORT_DESC};
+        for (int sort : sorts) {
+            assertAllRowsInOrder(sort, true);
+            assertAllRowsInOrder(sort, false);
+        }
+    }
+
+    @Test
+    public void search_findsTheArchivedPurchases() {
+        String name;
+        try (Cursor cursor = db.rawQuery("SELECT items.name FROM purchases JOIN items ON items.id = purchases.itemId " +
+                "WHERE purchases.userId = ? AND purchases.dateP < ? LIMIT 1", new String[]{USER, Long.toString(CUTOFF)})) {
+            assertTrue(cursor.moveToFirst());
+            name = cursor.getString(0);
+        }
+        SearchResults before = dbManager.search(USER, name, 10);
+        assertEquals(1, before.getItems().size());
+
+        dbManager.archiveMovements(USER, CUTOFF);
+
+        SearchResults after = dbManager.search(USER, name, 10);
+        assertEquals(1, after.getItems().size());
+        assertEquals(before.getItems().get(0).getId(), after.getItems().get(0).getId());
+        assertEquals(before.getItems().get(0).getPrice(), after.getItems().get(0).getPrice());
+        assertEquals(0, dbManager.search(OTHER_USER, name, 10).getItems().size());
+    }
+
+    /**
+     * This method reads all the pages of the incomes or of the simple purchases of the user,
+     * and checks that every movement is read once, in the order of the pages.
+     * */
+    private void assertAllRowsInOrder(int sort, boolean incomes) {
+        List<Page.Key> keys = new ArrayList<>();
+        Page.Key after = null;
+        int rows;
+        do {
+            List<Page.Key> page = new ArrayList<>();
+            CursorReader<Void> reader = cursor -> {
+                while (cursor.moveToNext()) {
+                    page.add(Page.keyOf(cursor));
+                }
+                return null;
+            };
+            if (incomes) {
+                dbManager.getIncomesHistoryPage(USER, sort, after, reader);
+            } else {
+                dbManager.getSimplePurchasesHistoryPage(USER, sort, after, reader);
+            }
+            keys.addAll(page);
+            rows = page.size();
+            after = rows > 0 ? page.get(rows - 1) : null;
+        } while (rows == Page.SIZE);
+
+        assertEquals(MOVEMENTS, keys.size());
+        HashSet<Long> ids = new HashSet<>();
+        for (int i = 0; i < keys.size(); i++) {
+            assertTrue(ids.add(keys.get(i).getRowId()));
+            if (i > 0) {
+                int compare = Long.compare(keys.get(i - 1).getSortKey(), keys.get(i).getSortKey());
+                if (compare == 0) {
+                    compare = Long.compare(keys.get(i - 1).getRowId(), keys.get(i).getRowId());
+                }
+                assertTrue(sort == ApplicationTags.MiscellaneousTags.SORT_ASC ? compare < 0 : compare > 0);
+            }
+        }
+    }
+
+    private long count(String query) {
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private List<String> rows(String query) {
+        List<String> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            while (cursor.moveToNext()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    row.append(cursor.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,207 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of the data used by the benchmarks. The same seed and the same number of rows
+ * always give the same database: the rows are built only from the seeded random generator and
+ * from a fixed first date, never from the current time.
+ * The rows are written with SQL in a single transaction, without the cost of a transaction for every row,
+ * and the triggers fill the monthly totals and the full-text indexes as they do in the application.
+ * The totals of the users and the balance journal are then built like migration 6 does.
+ *
+ * @author Giacomo Detomaso and Michelangelo De Pascale
+ *
+ * @see DbBenchmark     which times DbManager on the generated data
+ * */
+class BenchmarkDataset {
+    static final int USERS = 5;
+    static final String PASSWORD = "password";
+    static final long FIRST_DATE = 1_577_836_800_000L; // 1/1/2020
+    static final int YEARS = 3;
+    static final int WISH_LIST_ITEMS = 10;
+
+    private static final String[] CATEGORIES = {
+            ApplicationTags.PredefinedCategoriesId.CAT_TECH_ID, ApplicationTags.PredefinedCategoriesId.CAT_FOOD_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_FAMILY_ID, ApplicationTags.PredefinedCategoriesId.CAT_FUN_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_HOME_ID, ApplicationTags.PredefinedCategoriesId.CAT_HOLIDAY_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_SALARY_ID, ApplicationTags.PredefinedCategoriesId.CAT_PRESENT_ID,
+            ApplicationTags.PredefinedCategoriesId.CAT_BET_ID, ApplicationTags.PredefinedCategoriesId.CAT_HEALTH_ID};
+    private static final String[] WORDS = {
+            "pane", "latte", "caffè", "pasta", "riso", "olio", "vino", "birra", "acqua", "frutta", "mela", "pomodoro",
+            "carne", "pesce", "formaggio", "biscotti", "detersivo", "sapone", "libro", "quaderno", "scarpe", "giacca",
+            "telefono", "cuffie", "lampada", "sedia", "divano", "benzina", "treno", "cinema", "concerto", "ristorante",
+            "pizzeria", "farmacia", "regalo", "fiori", "palestra", "bolletta", "affitto", "internet"};
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+    private static final int INCOMES_PER_PURCHASE = 4; // a user buys more often than they earn
+
+    private final Random random;
+    private final int rows;
+
+    private final List<String> users = new ArrayList<>();
+    private final List<Integer> incomeIds = new ArrayList<>(); // the ids of the rows of the first user
+    private final List<int[]> purchaseIds = new ArrayList<>(); // {itemId, purchaseId}
+    private int wishLists;
+
+    /**
+     * @param seed      the seed of the random generator
+     * @param rows      the number of purchases, each with its item; the incomes are a quarter of them
+     *                  and one purchase out of ten belongs to a wishlist
+     * */
+    BenchmarkDataset(long seed, int rows) {
+        this.random = new Random(seed);
+        this.rows = rows;
+    }
+
+    /**
+     * This method writes the whole dataset inside an empty database.
+     *
+     * @param db        the database, with the schema created by DbHelper
+     * */
+    void insert(SQLiteDatabase db) {
+        SQLiteStatement category = db.compileStatement("INSERT INTO categories (id, description, picId) VALUES (?, ?, ?);");
+        SQLiteStatement user = db.compileStatement("INSERT INTO users (username, password, name, familyName, email, total) " +
+                "VALUES (?, ?, ?, ?, ?, ?);");
+        SQLiteStatement income = db.compileStatement("INSERT INTO incomes (value, dateIncome, idCat, userId) VALUES (?, ?, ?, ?);");
+        SQLiteStatement item = db.compileStatement("INSERT INTO items (price, name, amount, isConfirmed, idCat) VALUES (?, ?, ?, ?, ?);");
+        SQLiteStatement purchase = db.compileStatement("INSERT INTO purchases (dateP, userId, itemId, listId) VALUES (?, ?, ?, ?);");
+        SQLiteStatement wishList = db.compileStatement("INSERT INTO wishLists (name, description, isConfirmed) VALUES (?, ?, ?);");
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CATEGORIES.length; i++) {
+                category.bindString(1, CATEGORIES[i]);
+                category.bindString(2, "Categoria " + i);
+                category.bindLong(3, i);
+                category.executeInsert();
+            }
+
+            for (int u = 0; u < USERS; u++) {
+                String username = "utente" + u;
+                user.bindString(1, username);
+                user.bindString(2, PASSWORD);
+                user.bindString(3, "Nome" + u);
+                user.bindString(4, "Cognome" + u);
+                user.bindString(5, username + "@mail.it");
+                user.bindLong(6, 100_000_00); // the opening total, in cents
+                user.executeInsert();
+                users.add(username);
+            }
+
+            for (int i = 0; i < rows / INCOMES_PER_PURCHASE; i++) {
+                String username = randomUser();
+                income.bindLong(1, 500 + random.nextInt(300_000));
+                income.bindLong(2, randomDate());
+                income.bindString(3, randomCategory());
+                income.bindString(4, username);
+                long id = income.executeInsert();
+                if (username.equals(users.get(0))) {
+                    incomeIds.add((int) id);
+                }
+            }
+
+            int purchases = 0;
+            while (purchases < rows) {
+                String username = randomUser();
+                boolean inWishList = random.nextInt(10) == 0 && rows - purchases >= WISH_LIST_ITEMS;
+                long listId = 0;
+                int listItems = 1;
+                boolean confirmed = true;
+
+                if (inWishList) {
+                    confirmed = random.nextBoolean();
+                    wishList.bindString(1, randomName(2));
+                    wishList.bindString(2, randomName(6));
+                    wishList.bindLong(3, confirmed ? ApplicationTags.MiscellaneousTags.CONFIRMED : ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
+                    listId = wishList.executeInsert();
+                    listItems = WISH_LIST_ITEMS;
+                    wishLists++;
+                }
+
+                long date = randomDate();
+                for (int i = 0; i < listItems; i++, purchases++) {
+                    item.bindLong(1, 50 + random.nextInt(20_000));
+                    item.bindString(2, randomName(1 + random.nextInt(3)));
+                    item.bindLong(3, 1 + random.nextInt(3));
+                    item.bindLong(4, confirmed ? ApplicationTags.MiscellaneousTags.CONFIRMED : ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
+                    item.bindString(5, randomCategory());
+                    long itemId = item.executeInsert();
+
+                    purchase.bindLong(1, date);
+                    purchase.bindString(2, username);
+                    purchase.bindLong(3, itemId);
+                    purchase.bindLong(4, listId);
+                    long purchaseId = purchase.executeInsert();
+                    if (listId == 0 && username.equals(users.get(0))) {
+                        purchaseIds.add(new int[]{(int) itemId, (int) purchaseId});
+                    }
+                }
+            }
+
+            // the totals follow the movements, then they become the opening entries of the journal
+            db.execSQL("UPDATE users SET total = total + COALESCE((SELECT SUM(incomes) - SUM(purchases) " +
+                    "FROM monthlyTotals WHERE monthlyTotals.userId = users.username), 0);");
+            db.execSQL(DbStrings.TableBalanceJournalFields.INSERT_OPENINGS);
+            db.execSQL(DbStrings.TableBalanceCheckpointsFields.INSERT_FROM_OPENINGS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            for (SQLiteStatement statement : new SQLiteStatement[]{category, user, income, item, purchase, wishList}) {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * @return the user whose movements are timed, the users have about the same number of movements
+     * */
+    String getUser() {
+        return users.get(0);
+    }
+
+    List<Integer> getIncomeIds() {
+        return incomeIds;
+    }
+
+    List<int[]> getPurchaseIds() {
+        return purchaseIds;
+    }
+
+    int getWishLists() {
+        return wishLists;
+    }
+
+    /**
+     * This method returns a random text made of the words of the dataset, like the names of the items.
+     *
+     * @param words     the number of words
+     *
+     * @return the text
+     * */
+    String randomName(int words) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            name.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return name.toString();
+    }
+
+    String randomCategory() {
+        return CATEGORIES[random.nextInt(CATEGORIES.length)];
+    }
+
+    long randomDate() {
+        return FIRST_DATE + (long) (random.nextDouble() * YEARS * YEAR);
+    }
+
+    private String randomUser() {
+        return users.get(random.nextInt(users.size()));
+    }
+}
@@ -0,0 +1,178 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test of DbBackup, on the native SQLite of Robolectric. It checks that a restore puts back the data
+ * of the snapshot, that it waits for a write running on another thread, and that the files that are not
+ * valid databases of the application are refused before the database is touched.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class DbBackupTest {
+    private static final String USER = "mario";
+    private static final String CATEGORY = "cat01";
+    private static final int WISH_LIST_ITEMS = 500;
+    private static final long WRITE_PAUSE_MILLIS = 2; // pause after every item of the slow write
+
+    private Context context;
+    private DbManager dbManager;
+    private File snapshot;
+
+    @Before
+    public void createDatabase() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        DbHelper.closeInstance(); // the database of the previous test has been deleted
+        dbManager = new DbManager(context);
+        dbManager.insertCategories(CATEGORY, "Tecnologia", 1);
+        dbManager.insertUser(USER, "pwd", "Mario", "Rossi", "mario@example.com", Money.ofCents(100_000));
+        dbManager.insertIncome(Money.ofCents(2_500), 1_577_836_800_000L, CATEGORY, USER);
+
+        snapshot = new File(context.getCacheDir(), "snapshot.db");
+        assertTrue(DbBackup.createSnapshot(context, snapshot) > 0);
+    }
+
+    @After
+    public void closeDatabase() {
+        DbHelper.closeInstance();
+    }
+
+    @Test
+    public void restore_putsBackTheSnapshot() throws IOException {
+        dbManager.insertIncome(Money.ofCents(500), 1_577_923_200_000L, CATEGORY, USER);
+        assertEquals(2, countIncomes());
+
+        restore(new FileInputStream(snapshot));
+
+        assertEquals(1, countIncomes());
+        assertTrue(dbManager.auditUserTotal(USER));
+        assertTrue(dbManager.insertIncome(Money.ofCents(500), 1_577_923_200_000L, CATEGORY, USER) > 0);
+        assertEquals(2, countIncomes());
+    }
+
+    @Test
+    public void restore_waitsForTheRunningWrite() throws Exception {
+        ArrayList<Item> items = new ArrayList<>();
+        for (int i = 0; i < WISH_LIST_ITEMS; i++) {
+            items.add(new Item("oggetto" + i, 1, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, Money.ofCents(100), CATEGORY));
+        }
+
+        CountDownLatch started = new CountDownLatch(1);
+        long[] listId = new long[1];
+        Thread writer = new Thread(() -> listId[0] = dbManager.insertWishListWithItems("lista", "",
+                ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, items, USER, (written, total) -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(WRITE_PAUSE_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+        writer.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        restore(new FileInputStream(snapshot)); // replaces the database only after the end of the write
+        writer.join();
+
+        assertTrue(listId[0] > 0); // the write has not been interrupted
+        assertEquals(Long.valueOf(0), dbManager.countQuery(DbStrings.TableWishListsFields.TABLE_NAME, CursorReader.firstLong("numRows")));
+        assertTrue(dbManager.insertIncome(Money.ofCents(500), 1_577_923_200_000L, CATEGORY, USER) > 0);
+        assertTrue(dbManager.auditUserTotal(USER));
+    }
+
+    @Test
+    public void getStatement_outsideAWrite_throws() {
+        try {
+            DbHelper.getInstance(context).getStatement("SELECT 1");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void validate_refusesAFileThatIsNotADatabase() throws IOException {
+        assertRefused(new ByteArrayInputStream("questo non è un database".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void validate_refusesACorruptedDatabase() throws IOException {
+        byte[] bytes = Files.readAllBytes(snapshot.toPath());
+        for (int i = 4096; i + 200 < bytes.length; i += 4096) { // every page after the first one
+            bytes[i + 100] ^= 0x5a;
+            bytes[i + 101] ^= 0x33;
+        }
+        assertRefused(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void validate_refusesANewerVersion() throws IOException {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(snapshot.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        db.setVersion(DbHelper.VERSION + 1);
+        db.close();
+        assertRefused(new FileInputStream(snapshot));
+    }
+
+    @Test
+    public void validate_refusesADatabaseWithoutTheTables() throws IOException {
+        File other = new File(context.getCacheDir(), "other.db");
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(other, null);
+        db.execSQL(DbStrings.TableUsersField.getCreateTable());
+        db.setVersion(3);
+        db.close();
+        assertRefused(new FileInputStream(other));
+    }
+
+    private void restore(InputStream in) throws IOException {
+        try {
+            DbBackup.restore(context, DbBackup.prepareRestore(context, in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private void assertRefused(InputStream in) throws IOException {
+        dbManager.insertIncome(Money.ofCents(500), 1_577_923_200_000L, CATEGORY, USER);
+        try {
+            restore(in);
+            fail();
+        } catch (IOException e) {
+            // expected, the database is not changed
+        }
+        assertEquals(2, countIncomes());
+        assertFalse(new File(context.getDatabasePath(DbHelper.DB_NAME).getPath() + "-restore").exists());
+    }
+
+    private long countIncomes() {
+        return dbManager.countIncomesRowsByUsername(USER, CursorReader.firstLong("numRows"));
+    }
+}
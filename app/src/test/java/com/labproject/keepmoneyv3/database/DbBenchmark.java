@@ -0,0 +1,363 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local benchmark, which times the read and write paths of DbManager on a database filled by
+ * BenchmarkDataset. It runs on the JVM with the native SQLite of Robolectric, so no device is needed.
+ * The size of the dataset, the seed and the output file are read from system properties,
+ * set by Gradle from the project properties with the same names:
+ *
+ * ./gradlew testDebugUnitTest --tests '*DbBenchmark' -Pbenchmark.rows=1000000
+ *
+ * The benchmark is skipped when the number of rows is not set, so it doesn't slow down the other tests.
+ * Every operation is repeated up to MAX_RUNS times, or until it has run for TIME_BUDGET_NANOS,
+ * and the p50 and p99 latencies and the throughput of every operation are written as JSON.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class DbBenchmark {
+    static final String ROWS_PROPERTY = "benchmark.rows";
+    static final String SEED_PROPERTY = "benchmark.seed";
+    static final String OUTPUT_PROPERTY = "benchmark.output";
+
+    private static final long DEFAULT_SEED = 42;
+    private static final String DEFAULT_OUTPUT = "build/reports/benchmark/db-benchmark.json";
+
+    private static final int WARM_UP_RUNS = 3;
+    private static final int MIN_RUNS = 5;
+    private static final int MAX_RUNS = 200;
+    private static final long TIME_BUDGET_NANOS = 3_000_000_000L; // max time spent on a single operation
+    private static final long MONTH = 30L * 24 * 60 * 60 * 1000;
+
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private static final String BACKUP = "backup";
+    private static final String BULK = "bulk";
+    private static final int BULK_ROWS = 10_000; // purchases written by every run of the bulk inserts
+
+    private final List<Result> results = new ArrayList<>();
+    private Context context;
+    private DbManager dbManager;
+    private BenchmarkDataset dataset;
+    private long loadNanos;
+
+    @Before
+    public void createDatabase() {
+        Assume.assumeTrue("run only with -P" + ROWS_PROPERTY, System.getProperty(ROWS_PROPERTY) != null);
+        context = ApplicationProvider.getApplicationContext();
+        DbHelper.closeInstance();
+        dbManager = new DbManager(context);
+        SQLiteDatabase db = DbHelper.getInstance(context).getWritableDatabase();
+
+        dataset = new BenchmarkDataset(Long.getLong(SEED_PROPERTY, DEFAULT_SEED), Integer.getInteger(ROWS_PROPERTY));
+        long start = System.nanoTime();
+        dataset.insert(db);
+        loadNanos = System.nanoTime() - start;
+    }
+
+    @After
+    public void closeDatabase() {
+        DbHelper.closeInstance();
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        String user = dataset.getUser();
+        long lastMonth = BenchmarkDataset.FIRST_DATE + BenchmarkDataset.YEARS * 12 * MONTH - MONTH;
+        long end = lastMonth + MONTH;
+        int fromMonth = DbStrings.TableMonthlyTotalsFields.monthKey(2021, 0);
+        int toMonth = DbStrings.TableMonthlyTotalsFields.monthKey(2021, 11);
+        int confirmed = ApplicationTags.MiscellaneousTags.CONFIRMED;
+        int notConfirmed = ApplicationTags.MiscellaneousTags.NOT_CONFIRMED;
+
+        // reads, with the readers used by the screens
+        measure("queryCheckUserLogin", READ, i -> dbManager.queryCheckUserLogin(user, BenchmarkDataset.PASSWORD,
+                CursorReader.listOf(RowMappers::user)));
+        measure("sumIncomesQuery", READ, i -> dbManager.sumIncomesQuery(user, CursorReader.firstLong("sumInc")));
+        measure("sumPurchasesQuery", READ, i -> dbManager.sumPurchasesQuery(user, CursorReader.firstLong("sumPurch")));
+        measure("sumIncomesBetween", READ, i -> dbManager.sumIncomesBetween(user, lastMonth, end, CursorReader.firstLong("sumInc")));
+        measure("sumPurchasesBetween", READ, i -> dbManager.sumPurchasesBetween(user, lastMonth, end, CursorReader.firstLong("sumPurch")));
+        measure("getDashboardSummary", READ, i -> dbManager.getDashboardSummary(user, 3));
+        measure("getMonthlyTotalsQuery", READ, i -> dbManager.getMonthlyTotalsQuery(user, fromMonth, toMonth, Cursor::getCount));
+        measure("getCategoryTotalsQuery", READ, i -> dbManager.getCategoryTotalsQuery(user, fromMonth, toMonth, Cursor::getCount));
+        measure("getSimplePurchasesPage", READ, i -> dbManager.getSimplePurchasesPage(user,
+                ApplicationTags.MiscellaneousTags.SORT_PREDEFINED, null, Page.reader(RowMappers::itemListViewItem)));
+        measure("getSimplePurchasesPageByPrice", READ, i -> dbManager.getSimplePurchasesPage(user,
+                ApplicationTags.MiscellaneousTags.SORT_DESC, null, Page.reader(RowMappers::itemListViewItem)));
+        measure("getIncomesPage", READ, i -> dbManager.getIncomesPage(user,
+                ApplicationTags.MiscellaneousTags.SORT_PREDEFINED, null, Page.reader(RowMappers::incomeListViewItem)));
+        measure("getPurchasesItemsQueryAll", READ, i -> dbManager.getPurchasesItemsQuery(0, 0, user,
+                CursorReader.listOf(RowMappers::itemListViewItem)));
+        measure("getPurchasesDataQueryByUsername", READ, i -> dbManager.getPurchasesDataQueryByUsername(user,
+                CursorReader.listOf(RowMappers::incomeListViewItem)));
+        measure("getIncomesBetween", READ, i -> dbManager.getIncomesBetween(user, lastMonth, end, Cursor::getCount));
+        measure("getPurchasesBetween", READ, i -> dbManager.getPurchasesBetween(user, lastMonth, end, Cursor::getCount));
+        measure("getWishListDataQuery", READ, i -> dbManager.getWishListDataQuery(user, confirmed, Cursor::getCount));
+        measure("getWishListsWithItemsQuery", READ, i -> dbManager.getWishListsWithItemsQuery(user, notConfirmed,
+                WishListDetails.listReader()));
+        measure("searchPrefix", READ, i -> dbManager.search(user, "pa", 20));
+        measure("searchWords", READ, i -> dbManager.search(user, "pane latte", 20));
+        measure("getJournalBalance", READ, i -> dbManager.getJournalBalance(user));
+        measure("auditUserTotal", READ, i -> assertTrue(dbManager.auditUserTotal(user)));
+
+        // writes
+        measure("insertIncome", WRITE, i -> assertTrue(dbManager.insertIncome(Money.ofCents(1_000 + i), end + i,
+                dataset.randomCategory(), user) > 0));
+        measure("insertPurchaseWithItem", WRITE, i -> assertTrue(dbManager.insertPurchaseWithItem(new Item(dataset.randomName(2),
+                1, confirmed, Money.ofCents(100 + i), dataset.randomCategory()), end + i, user) > 0));
+
+        List<Integer> wishListIds = new ArrayList<>();
+        measure("insertWishListWithItems", WRITE, i -> {
+            ArrayList<Item> items = new ArrayList<>();
+            for (int j = 0; j < BenchmarkDataset.WISH_LIST_ITEMS; j++) {
+                items.add(new Item(dataset.randomName(2), 1, notConfirmed, Money.ofCents(100 + j), dataset.randomCategory()));
+            }
+            long listId = dbManager.insertWishListWithItems(dataset.randomName(2), dataset.randomName(6), notConfirmed,
+                    items, user, null);
+            assertTrue(listId > 0);
+            wishListIds.add((int) listId);
+        });
+        measure("confirmWishListPurchase", WRITE, wishListIds.size(),
+                i -> assertTrue(dbManager.confirmWishListPurchase(wishListIds.get(i), user, end)));
+
+        List<Integer> incomeIds = dataset.getIncomeIds();
+        measure("removeIncome", WRITE, incomeIds.size(), i -> assertEquals(1, dbManager.removeIncome(incomeIds.get(i))));
+        List<int[]> purchaseIds = dataset.getPurchaseIds();
+        measure("removePurchase", WRITE, purchaseIds.size(),
+                i -> assertEquals(2, dbManager.removePurchase(purchaseIds.get(i)[0], purchaseIds.get(i)[1])));
+
+        // 10k items with their purchases, not confirmed so the totals don't change: as they were written before
+        // the precompiled statements, one row and one commit at a time with ContentValues, then with ContentValues
+        // in a single transaction, and at last with the precompiled statements of DbManager.
+        // The rows of every workload are deleted before the next one, so all of them start from the same tables
+        SQLiteDatabase db = DbHelper.getInstance(context).getWritableDatabase();
+        long lastItemId = DatabaseUtils.longForQuery(db, "SELECT MAX(id) FROM items;", null);
+        long lastListId = DatabaseUtils.longForQuery(db, "SELECT COALESCE(MAX(id), 0) FROM wishLists;", null);
+        measure("insert10kContentValues", BULK, WARM_UP_RUNS + MIN_RUNS, i -> insertWithContentValues(db, user, false));
+        deleteBulkRows(db, lastItemId, lastListId);
+        measure("insert10kContentValuesOneTransaction", BULK, WARM_UP_RUNS + MIN_RUNS,
+                i -> insertWithContentValues(db, user, true));
+        deleteBulkRows(db, lastItemId, lastListId);
+        measure("insert10kPrecompiled", BULK, WARM_UP_RUNS + MIN_RUNS, i -> {
+            ArrayList<Item> items = new ArrayList<>(BULK_ROWS);
+            for (int j = 0; j < BULK_ROWS; j++) {
+                items.add(new Item(dataset.randomName(2), 1, notConfirmed, Money.ofCents(100 + j), dataset.randomCategory()));
+            }
+            assertTrue(dbManager.insertWishListWithItems(dataset.randomName(2), dataset.randomName(6), notConfirmed,
+                    items, user, null) > 0);
+        });
+        deleteBulkRows(db, lastItemId, lastListId);
+
+        // backup of the whole database, a few runs as every run copies all of it
+        File snapshot = new File(context.getCacheDir(), "benchmark-snapshot.db");
+        measure("createSnapshot", BACKUP, WARM_UP_RUNS + MIN_RUNS, i -> {
+            try {
+                assertTrue(DbBackup.createSnapshot(context, snapshot) > 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        measure("restoreSnapshot", BACKUP, WARM_UP_RUNS + MIN_RUNS, i -> {
+            try (InputStream in = new FileInputStream(snapshot)) {
+                DbBackup.restore(context, DbBackup.prepareRestore(context, in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertTrue(dbManager.auditUserTotal(user));
+
+        writeResults();
+    }
+
+    /**
+     * This method writes BULK_ROWS items and their purchases with SQLiteDatabase.insert, building the SQL of
+     * every row again, as DbManager did before the precompiled statements. The items are not confirmed,
+     * so the totals of the user don't change.
+     *
+     * @param db                the database
+     * @param user              the username
+     * @param oneTransaction    true to write all the rows in a single transaction, false to commit every row
+     * */
+    private void insertWithContentValues(SQLiteDatabase db, String user, boolean oneTransaction) {
+        if (oneTransaction) {
+            db.beginTransactionNonExclusive();
+        }
+        try {
+            for (int j = 0; j < BULK_ROWS; j++) {
+                ContentValues item = new ContentValues();
+                item.put(DbStrings.TableItemsFields.ITEMS_IS_CONFIRMED, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED);
+                item.put(DbStrings.TableItemsFields.ITEMS_NAME, dataset.randomName(2));
+                item.put(DbStrings.TableItemsFields.ITEMS_PRICE, 100 + j);
+                item.put(DbStrings.TableItemsFields.ITEMS_AMOUNT, 1);
+                item.put(DbStrings.TableItemsFields.ITEMS_ID_CAT, dataset.randomCategory());
+                long itemId = db.insertOrThrow(DbStrings.TableItemsFields.TABLE_NAME, null, item);
+
+                ContentValues purchase = new ContentValues();
+                purchase.put(DbStrings.TablePurchasesFields.PURCH_ID_USER, user);
+                purchase.put(DbStrings.TablePurchasesFields.PURCH_ITEM_ID, itemId);
+                purchase.put(DbStrings.TablePurchasesFields.PURCH_WL_ID, 0);
+                db.insertOrThrow(DbStrings.TablePurchasesFields.TABLE_NAME, null, purchase);
+            }
+            if (oneTransaction) {
+                db.setTransactionSuccessful();
+            }
+        } finally {
+            if (oneTransaction) {
+                db.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * This method deletes the items, their purchases and the wishlists written by the bulk inserts.
+     *
+     * @param db            the database
+     * @param lastItemId    the last item before the bulk inserts
+     * @param lastListId    the last wishlist before the bulk inserts
+     * */
+    private static void deleteBulkRows(SQLiteDatabase db, long lastItemId, long lastListId) {
+        String[] itemArgs = {Long.toString(lastItemId)};
+        db.beginTransactionNonExclusive();
+        try {
+            db.delete(DbStrings.TablePurchasesFields.TABLE_NAME, "itemId > ?", itemArgs);
+            db.delete(DbStrings.TableItemsFields.TABLE_NAME, "id > ?", itemArgs);
+            db.delete(DbStrings.TableWishListsFields.TABLE_NAME, "id > ?", new String[]{Long.toString(lastListId)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void measure(String name, String kind, IntConsumer operation) {
+        measure(name, kind, Integer.MAX_VALUE, operation);
+    }
+
+    /**
+     * This method times an operation. The first WARM_UP_RUNS runs are not timed, then the operation
+     * runs until it reaches MAX_RUNS runs or TIME_BUDGET_NANOS, but never less than MIN_RUNS times.
+     *
+     * @param name          the name of the operation in the results
+     * @param kind          READ, WRITE, BULK or BACKUP
+     * @param available     the max number of runs, including the warm-up, for the operations that consume rows
+     * @param operation     the operation, it receives the number of the run, starting from 0
+     * */
+    private void measure(String name, String kind, int available, IntConsumer operation) {
+        int run = 0;
+        for (; run < WARM_UP_RUNS && run < available; run++) {
+            operation.accept(run);
+        }
+
+        long[] nanos = new long[Math.min(MAX_RUNS, Math.max(0, available - run))];
+        long total = 0;
+        int runs = 0;
+        while (runs < nanos.length && (runs < MIN_RUNS || total < TIME_BUDGET_NANOS)) {
+            long start = System.nanoTime();
+            operation.accept(run++);
+            nanos[runs] = System.nanoTime() - start;
+            total += nanos[runs++];
+        }
+
+        if (runs > 0) {
+            results.add(new Result(name, kind, Arrays.copyOf(nanos, runs), total));
+        }
+    }
+
+    /**
+     * This method writes the results as a JSON object, with the parameters of the dataset
+     * and an element of the "results" array for every operation.
+     * */
+    private void writeResults() throws IOException {
+        File output = new File(System.getProperty(OUTPUT_PROPERTY, DEFAULT_OUTPUT));
+        File directory = output.getAbsoluteFile().getParentFile();
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+
+        try (PrintWriter writer = new PrintWriter(output, StandardCharsets.UTF_8.name())) {
+            writer.println("{");
+            writer.printf(Locale.ROOT, "  \"rows\": %d,%n", Integer.getInteger(ROWS_PROPERTY));
+            writer.printf(Locale.ROOT, "  \"seed\": %d,%n", Long.getLong(SEED_PROPERTY, DEFAULT_SEED));
+            writer.printf(Locale.ROOT, "  \"wishLists\": %d,%n", dataset.getWishLists());
+            writer.printf(Locale.ROOT, "  \"loadMs\": %.3f,%n", loadNanos / 1e6);
+            writer.printf(Locale.ROOT, "  \"databaseBytes\": %d,%n", context.getDatabasePath(DbHelper.DB_NAME).length());
+            writer.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                writer.print("    " + results.get(i).toJson());
+                writer.println(i < results.size() - 1 ? "," : "");
+            }
+            writer.println("  ]");
+            writer.println("}");
+        }
+    }
+
+    /**
+     * The timings of an operation.
+     * */
+    private static class Result {
+        private final String name;
+        private final String kind;
+        private final long[] nanos; // sorted
+        private final long totalNanos;
+
+        Result(String name, String kind, long[] nanos, long totalNanos) {
+            this.name = name;
+            this.kind = kind;
+            this.nanos = nanos.clone();
+            this.totalNanos = totalNanos;
+            Arrays.sort(this.nanos);
+        }
+
+        /**
+         * This method returns a percentile of the latency, with the nearest-rank method.
+         *
+         * @param percent       the percentile, between 0 and 100
+         *
+         * @return the latency in milliseconds
+         * */
+        double percentileMs(double percent) {
+            int rank = (int) Math.ceil(percent / 100 * nanos.length);
+            return nanos[Math.max(rank, 1) - 1] / 1e6;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"name\": \"%s\", \"kind\": \"%s\", \"runs\": %d, " +
+                            "\"p50Ms\": %.3f, \"p99Ms\": %.3f, \"meanMs\": %.3f, \"opsPerSecond\": %.1f}",
+                    name, kind, nanos.length, percentileMs(50), percentileMs(99),
+                    totalNanos / 1e6 / nanos.length, nanos.length / (totalNanos / 1e9));
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test, which builds a database with the schema and the data format of version 1,
+ * as the first release of the application wrote it, and opens it through DbHelper, so it is
+ * upgraded by all the migrations up to VERSION.
+ * The old database has "d/M/yyyy" dates, "HH:mm" times and money saved as float units;
+ * after the upgrade the test checks that no row is lost, that the sums are the same in cents,
+ * that the dates are the expected epoch milliseconds and that the schema is the one of a new database.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class MigrationTest {
+    private static final String USER = "mario";
+    private static final String OTHER_USER = "luigi";
+    private static final String[] CATEGORIES = {"CAT1", "CAT2", "CAT3"};
+    private static final int ROWS = 40_000; // items, incomes and purchases of the old database, one purchase for every item
+    private static final int MAX_CENTS = 500_000; // 5000.00, saved exactly in cents from a float
+    private static final int DAYS = 3650;
+
+    // rows with known values, checked one by one after the upgrade
+    private static final String KNOWN_INCOME_DATE = "5/3/2021";
+    private static final float KNOWN_INCOME_VALUE = 0.29f; // 28.999... cents as a double
+    private static final String KNOWN_PURCHASE_DATE = "28/12/2019";
+    private static final String KNOWN_PURCHASE_TIME = "23:45";
+    private static final float KNOWN_ITEM_PRICE = 19.99f;
+    private static final String[] BAD_INCOME_DATES = {"ieri", "", "31/02"};
+    private static final String[][] BAD_PURCHASE_DATES = {{"ieri", "10:00"}, {"1/1/2020", "25:99"}, {"", null}};
+
+    private Context context;
+
+    private long incomesCents;
+    private long incomesMillis;
+    private long itemsCents;
+    private long purchasesMillis;
+
+    private long knownIncomeId;
+    private long knownItemId;
+    private long knownPurchaseId;
+    private final Set<Long> badIncomeIds = new HashSet<>();
+    private final Set<Long> badPurchaseIds = new HashSet<>();
+
+    @Before
+    public void createOldDatabase() {
+        context = ApplicationProvider.getApplicationContext();
+        DbHelper.closeInstance();
+        File file = context.getDatabasePath(DbHelper.DB_NAME);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        assertTrue(!file.exists() || file.delete());
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.beginTransaction();
+            try {
+                createVersion1(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        DbHelper.closeInstance();
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsRowsAndSums() {
+        SQLiteDatabase db = DbHelper.getInstance(context).getReadableDatabase();
+
+        assertEquals(DbHelper.VERSION, db.getVersion());
+        assertEquals(2, count(db, "SELECT COUNT(*) FROM users"));
+        assertEquals(CATEGORIES.length, count(db, "SELECT COUNT(*) FROM categories"));
+        assertEquals(ROWS + 1, count(db, "SELECT COUNT(*) FROM items"));
+        assertEquals(ROWS + 1 + BAD_INCOME_DATES.length, count(db, "SELECT COUNT(*) FROM incomes"));
+        assertEquals(ROWS + 1 + BAD_PURCHASE_DATES.length, count(db, "SELECT COUNT(*) FROM purchases"));
+
+        assertEquals(123456, count(db, "SELECT total FROM users WHERE username = '" + USER + "'"));
+        assertEquals(29, count(db, "SELECT total FROM users WHERE username = '" + OTHER_USER + "'"));
+        assertEquals(incomesCents, count(db, "SELECT SUM(value) FROM incomes"));
+        assertEquals(itemsCents, count(db, "SELECT SUM(price) FROM items"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM incomes WHERE typeof(value) <> 'integer'"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM items WHERE typeof(price) <> 'integer'"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM users WHERE typeof(total) <> 'integer'"));
+
+        // the totals by month are built from the migrated movements
+        assertEquals(incomesCents, count(db, "SELECT SUM(incomes) FROM monthlyTotals"));
+    }
+
+    @Test
+    public void upgradeFromVersion1_convertsDatesAndAmounts() {
+        SQLiteDatabase db = DbHelper.getInstance(context).getReadableDatabase();
+
+        assertEquals(incomesMillis, count(db, "SELECT SUM(dateIncome) FROM incomes WHERE id NOT IN " + ids(badIncomeIds)));
+        assertEquals(purchasesMillis, count(db, "SELECT SUM(dateP) FROM purchases WHERE id NOT IN " + ids(badPurchaseIds)));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM incomes WHERE dateIncome IS NOT NULL AND typeof(dateIncome) <> 'integer'"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM purchases WHERE dateP IS NOT NULL AND typeof(dateP) <> 'integer'"));
+        assertEquals(0, count(db, "SELECT COUNT(*) FROM purchases WHERE timeP IS NOT NULL"));
+
+        assertEquals(localMillis(2021, 3, 5, 0, 0), count(db, "SELECT dateIncome FROM incomes WHERE id = " + knownIncomeId));
+        assertEquals(29, count(db, "SELECT value FROM incomes WHERE id = " + knownIncomeId));
+        assertEquals(localMillis(2019, 12, 28, 23, 45), count(db, "SELECT dateP FROM purchases WHERE id = " + knownPurchaseId));
+        assertEquals(1999, count(db, "SELECT price FROM items WHERE id = " + knownItemId));
+
+        // the dates that cannot be read become NULL, the rows are kept
+        assertEquals(BAD_INCOME_DATES.length, count(db, "SELECT COUNT(*) FROM incomes WHERE dateIncome IS NULL AND id IN " + ids(badIncomeIds)));
+        assertEquals(BAD_PURCHASE_DATES.length, count(db, "SELECT COUNT(*) FROM purchases WHERE dateP IS NULL AND id IN " + ids(badPurchaseIds)));
+    }
+
+    @Test
+    public void upgradeFromVersion1_hasTheSchemaOfANewDatabase() {
+        SQLiteDatabase db = DbHelper.getInstance(context).getReadableDatabase();
+
+        SQLiteDatabase newDb = SQLiteDatabase.create(null);
+        try {
+            createTables(newDb);
+            DbHelper.migrate(newDb, 1, DbHelper.VERSION);
+
+            Set<String> expected = schemaObjects(newDb);
+            assertTrue(expected.contains("index idx_incomes_user_date"));
+            assertTrue(expected.contains("index idx_purchases_user_date"));
+            assertFalse(expected.contains("index idx_incomes_user"));
+            assertEquals(expected, schemaObjects(db));
+        } finally {
+            newDb.close();
+        }
+    }
+
+    private void createVersion1(SQLiteDatabase db) {
+        createTables(db);
+
+        db.execSQL("INSERT INTO users (username, password, email, name, familyName, total) VALUES (?, 'pwd', NULL, 'Mario', 'Rossi', ?)",
+                new Object[]{USER, (double) 1234.56f});
+        db.execSQL("INSERT INTO users (username, password, email, name, familyName, total) VALUES (?, 'pwd', NULL, 'Luigi', 'Verdi', ?)",
+                new Object[]{OTHER_USER, (double) 0.29f});
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            db.execSQL("INSERT INTO categories (id, description, picId) VALUES (?, ?, ?)", new Object[]{CATEGORIES[i], CATEGORIES[i], i});
+        }
+
+        SQLiteStatement item = db.compileStatement("INSERT INTO items (price, name, amount, isConfirmed, idCat) VALUES (?, ?, ?, ?, ?)");
+        SQLiteStatement income = db.compileStatement("INSERT INTO incomes (value, dateIncome, idCat, userId) VALUES (?, ?, ?, ?)");
+        SQLiteStatement purchase = db.compileStatement("INSERT INTO purchases (dateP, timeP, userId, itemId) VALUES (?, ?, ?, ?)");
+
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < ROWS; i++) {
+            String user = i % 2 == 0 ? USER : OTHER_USER;
+            String category = CATEGORIES[i % CATEGORIES.length];
+            calendar.clear();
+            calendar.set(2010, Calendar.JANUARY, 1);
+            calendar.add(Calendar.DAY_OF_MONTH, i % DAYS);
+            String date = calendar.get(Calendar.DAY_OF_MONTH) + "/" + (calendar.get(Calendar.MONTH) + 1) + "/" + calendar.get(Calendar.YEAR);
+
+            int itemCents = (int) ((i * 7919L) % MAX_CENTS) + 1;
+            long itemId = insert(item, (double) (itemCents / 100f), "item" + i, 1 + i % 3, ApplicationTags.MiscellaneousTags.CONFIRMED, category);
+            itemsCents += itemCents;
+
+            int incomeCents = (int) ((i * 104_729L) % MAX_CENTS) + 1;
+            insert(income, (double) (incomeCents / 100f), date, category, user);
+            incomesCents += incomeCents;
+            incomesMillis += calendar.getTimeInMillis();
+
+            int hour = 8 + i % 12; // no time inside a change of daylight saving time
+            int minute = i % 60;
+            insert(purchase, date, String.format(Locale.ROOT, "%02d:%02d", hour, minute), user, itemId);
+            calendar.set(Calendar.HOUR_OF_DAY, hour);
+            calendar.set(Calendar.MINUTE, minute);
+            purchasesMillis += calendar.getTimeInMillis();
+        }
+
+        knownItemId = insert(item, (double) KNOWN_ITEM_PRICE, "known", 1, ApplicationTags.MiscellaneousTags.CONFIRMED, CATEGORIES[0]);
+        itemsCents += 1999;
+        knownIncomeId = insert(income, (double) KNOWN_INCOME_VALUE, KNOWN_INCOME_DATE, CATEGORIES[0], USER);
+        incomesCents += 29;
+        incomesMillis += localMillis(2021, 3, 5, 0, 0);
+        knownPurchaseId = insert(purchase, KNOWN_PURCHASE_DATE, KNOWN_PURCHASE_TIME, USER, knownItemId);
+        purchasesMillis += localMillis(2019, 12, 28, 23, 45);
+
+        for (String date : BAD_INCOME_DATES) {
+            badIncomeIds.add(insert(income, 1.0, date, CATEGORIES[0], USER));
+            incomesCents += 100;
+        }
+        for (String[] dateTime : BAD_PURCHASE_DATES) {
+            badPurchaseIds.add(insert(purchase, dateTime[0], dateTime[1], USER, knownItemId));
+        }
+    }
+
+    private static void createTables(SQLiteDatabase db) {
+        db.execSQL(DbStrings.TableUsersField.getCreateTable());
+        db.execSQL(DbStrings.TableCategoriesFields.getCreateTable());
+        db.execSQL(DbStrings.TableItemsFields.getCreateTable());
+        db.execSQL(DbStrings.TableIncomesFields.getCreateTable());
+        db.execSQL(DbStrings.TableWishListsFields.getCreateTable());
+        db.execSQL(DbStrings.TablePurchasesFields.getCreateTable());
+    }
+
+    private static long insert(SQLiteStatement statement, Object... args) {
+        statement.clearBindings();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+                statement.bindNull(i + 1);
+            } else if (args[i] instanceof Double) {
+                statement.bindDouble(i + 1, (Double) args[i]);
+            } else if (args[i] instanceof Number) {
+                statement.bindLong(i + 1, ((Number) args[i]).longValue());
+            } else {
+                statement.bindString(i + 1, args[i].toString());
+            }
+        }
+        return statement.executeInsert();
+    }
+
+    private static long localMillis(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static long count(SQLiteDatabase db, String query) {
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            assertTrue(query, cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private static String ids(Set<Long> ids) {
+        StringBuilder list = new StringBuilder("(");
+        for (long id : ids) {
+            list.append(list.length() > 1 ? ", " : "").append(id);
+        }
+        return list.append(")").toString();
+    }
+
+    private static Set<String> schemaObjects(SQLiteDatabase db) {
+        Set<String> objects = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%'", null)) {
+            while (cursor.moveToNext()) {
+                objects.add(cursor.getString(0) + " " + cursor.getString(1));
+            }
+        }
+        return objects;
+    }
+}
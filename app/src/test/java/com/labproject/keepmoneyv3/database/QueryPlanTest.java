@@ -0,0 +1,395 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.labproject.keepmoneyv3.utility.ApplicationTags;
+import com.labproject.keepmoneyv3.utility.Item;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test, which runs the queries of DbManager on a real SQLite engine and checks their plans.
+ * The database is created by DbHelper, so it has the schema of DbStrings after all the migrations,
+ * and it is filled with the data of two users through the writes of DbManager.
+ * Every test calls some methods of DbManager, collects the queries they run and fails if
+ * EXPLAIN QUERY PLAN shows that one of them reads a whole table instead of using an index.
+ * No ANALYZE is run, as in the application, so the plans are the ones chosen on the devices.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class QueryPlanTest {
+    private static final String USER = "mario";
+    private static final String OTHER_USER = "luigi";
+    private static final int MOVEMENTS = 300; // incomes and simple purchases of every user
+    private static final int WISH_LISTS = 6; // wishlists of every user, the first half is confirmed
+    private static final int WISH_LIST_ITEMS = 10;
+    private static final long FIRST_DATE = 1_577_836_800_000L; // 1/1/2020
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static final CursorReader<Integer> COUNT_ROWS = Cursor::getCount;
+    // the cost of a purchase is computed from its item, so the pages sorted by cost are sorted in a temporary b-tree
+    private static final String PURCHASE_COST = "items.price * items.amount";
+    private static final String ARCHIVED_PURCHASE_COST = "purchasesArchive.price * purchasesArchive.amount";
+
+    private final Map<String, String[]> queries = new LinkedHashMap<>(); // the queries run by the test, with their arguments
+    private DbManager dbManager;
+    private SQLiteDatabase db;
+
+    private int incomeId;
+    private int purchaseId;
+    private int itemId;
+    private int wishListId;
+
+    @Before
+    public void createDatabase() {
+        Context context = ApplicationProvider.getApplicationContext();
+        DbHelper.closeInstance(); // the database of the previous test has been deleted
+        dbManager = new DbManager(context);
+        db = DbHelper.getInstance(context).getReadableDatabase();
+
+        insertData();
+        DbManager.queryListener = (query, args) -> queries.put(query, args);
+    }
+
+    @After
+    public void closeDatabase() {
+        DbManager.queryListener = null;
+        DbHelper.closeInstance();
+    }
+
+    @Test
+    public void userQueries_useIndexes() {
+        assertNotNull(dbManager.queryCheckUserLogin(USER, "password", COUNT_ROWS));
+        assertNotNull(dbManager.getUserTotalQuery(USER, COUNT_ROWS));
+        dbManager.getJournalBalance(USER);
+        assertTrue(dbManager.auditUserTotal(USER));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void itemQueries_useIndexes() {
+        assertEquals(Integer.valueOf(1), dbManager.queryGetIncomeValueFromItemId(incomeId, COUNT_ROWS));
+        assertEquals(Integer.valueOf(1), dbManager.queryGetPurchaseIdFromItemId(itemId, COUNT_ROWS));
+        assertEquals(Integer.valueOf(1), dbManager.queryGetCostFromItemId(itemId, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void countsAndSums_useIndexes() {
+        long to = FIRST_DATE + MOVEMENTS * DAY;
+
+        assertNotNull(dbManager.countIncomesRowsByUsername(USER, COUNT_ROWS));
+        assertNotNull(dbManager.countSimplePurchasesRowsByUsername(USER, COUNT_ROWS));
+        assertNotNull(dbManager.sumIncomesQuery(USER, COUNT_ROWS));
+        assertNotNull(dbManager.sumPurchasesQuery(USER, COUNT_ROWS));
+        assertNotNull(dbManager.sumIncomesBetween(USER, FIRST_DATE, to, COUNT_ROWS));
+        assertNotNull(dbManager.sumPurchasesBetween(USER, FIRST_DATE, to, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void dashboardAndReports_useIndexes() {
+        int fromMonth = DbStrings.TableMonthlyTotalsFields.monthKey(2020, 0);
+        int toMonth = DbStrings.TableMonthlyTotalsFields.monthKey(2020, 11);
+
+        assertEquals(3, dbManager.getDashboardSummary(USER, 3).getRecentPurchases().size());
+        assertNotNull(dbManager.getMonthlyTotalsQuery(USER, fromMonth, toMonth, COUNT_ROWS));
+        assertNotNull(dbManager.getCategoryTotalsQuery(USER, fromMonth, toMonth, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void movementLists_useIndexes() {
+        long to = FIRST_DATE + MOVEMENTS * DAY;
+
+        assertEquals(Integer.valueOf(3), dbManager.getPurchasesItemsQuery(3, 0, USER, COUNT_ROWS));
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getPurchasesItemsQuery(0, 0, USER, COUNT_ROWS));
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getPurchasesDataQueryByUsername(USER, COUNT_ROWS));
+        assertNotNull(dbManager.getIncomesBetween(USER, FIRST_DATE, to, COUNT_ROWS));
+        assertNotNull(dbManager.getPurchasesBetween(USER, FIRST_DATE, to, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void pages_useIndexes() {
+        int[] sorts = {ApplicationTags.MiscellaneousTags.SORT_PREDEFINED, ApplicationTags.MiscellaneousTags.SORT_ASC,
+                ApplicationTags.MiscellaneousTags.SORT_DESC};
+        Page.Key after = new Page.Key(FIRST_DATE, MOVEMENTS / 2);
+
+        for (int sort : sorts) {
+            assertNotNull(dbManager.getSimplePurchasesPage(USER, sort, null, COUNT_ROWS));
+            assertNotNull(dbManager.getSimplePurchasesPage(USER, sort, after, COUNT_ROWS));
+            assertNotNull(dbManager.getIncomesPage(USER, sort, null, COUNT_ROWS));
+            assertNotNull(dbManager.getIncomesPage(USER, sort, after, COUNT_ROWS));
+        }
+
+        assertNoTableScan();
+        assertNoTemporarySort(PURCHASE_COST);
+    }
+
+    @Test
+    public void exportChunks_useIndexes() {
+        Page.Key after = new Page.Key(FIRST_DATE, MOVEMENTS / 2);
+        Page.Key afterItem = new Page.Key(wishListId, itemId);
+
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getIncomesForExport(USER, null, 1000, COUNT_ROWS));
+        assertNotNull(dbManager.getIncomesForExport(USER, after, 1000, COUNT_ROWS));
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getSimplePurchasesForExport(USER, null, 1000, COUNT_ROWS));
+        assertNotNull(dbManager.getSimplePurchasesForExport(USER, after, 1000, COUNT_ROWS));
+        assertEquals(Integer.valueOf(WISH_LISTS * WISH_LIST_ITEMS), dbManager.getWishListItemsForExport(USER, null, 1000, COUNT_ROWS));
+        assertNotNull(dbManager.getWishListItemsForExport(USER, afterItem, 1000, COUNT_ROWS));
+        assertNotNull(dbManager.countPurchasesRowsByUsername(USER, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void archive_usesIndexes() {
+        long cutoff = FIRST_DATE + MOVEMENTS / 2 * DAY;
+        Page.Key after = new Page.Key(FIRST_DATE, MOVEMENTS / 2);
+        Long incomes = dbManager.sumIncomesQuery(USER, CursorReader.firstLong("sumInc"));
+        Long purchases = dbManager.sumPurchasesQuery(USER, CursorReader.firstLong("sumPurch"));
+
+        assertEquals(MOVEMENTS, dbManager.archiveMovements(USER, cutoff)); // half of the incomes and half of the purchases
+        assertEquals(incomes, dbManager.sumIncomesQuery(USER, CursorReader.firstLong("sumInc")));
+        assertEquals(purchases, dbManager.sumPurchasesQuery(USER, CursorReader.firstLong("sumPurch")));
+        assertEquals(Long.valueOf(MOVEMENTS / 2), dbManager.countIncomesRowsByUsername(USER, CursorReader.firstLong("numRows")));
+        assertEquals(Long.valueOf(MOVEMENTS / 2), dbManager.countArchivedRowsByUsername(USER, CursorReader.firstLong("purchasesRows")));
+        assertNotNull(dbManager.getArchivedPeriodsQuery(USER, COUNT_ROWS));
+
+        for (int sort : new int[]{ApplicationTags.MiscellaneousTags.SORT_PREDEFINED, ApplicationTags.MiscellaneousTags.SORT_ASC,
+                ApplicationTags.MiscellaneousTags.SORT_DESC}) {
+            assertEquals(Integer.valueOf(Page.SIZE), dbManager.getSimplePurchasesHistoryPage(USER, sort, null, COUNT_ROWS));
+            assertNotNull(dbManager.getSimplePurchasesHistoryPage(USER, sort, after, COUNT_ROWS));
+            assertEquals(Integer.valueOf(Page.SIZE), dbManager.getIncomesHistoryPage(USER, sort, null, COUNT_ROWS));
+            assertNotNull(dbManager.getIncomesHistoryPage(USER, sort, after, COUNT_ROWS));
+        }
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getIncomesForExport(USER, null, 1000, COUNT_ROWS));
+        assertEquals(Integer.valueOf(MOVEMENTS), dbManager.getSimplePurchasesForExport(USER, null, 1000, COUNT_ROWS));
+        assertEquals(20, dbManager.search(USER, "Ogg", 20).getItems().size());
+        assertTrue(dbManager.auditUserTotal(USER));
+
+        assertNoTableScan();
+        assertNoTemporarySort(PURCHASE_COST, ARCHIVED_PURCHASE_COST);
+    }
+
+    @Test
+    public void wishListQueries_useIndexes() {
+        int confirmed = ApplicationTags.MiscellaneousTags.CONFIRMED;
+        int notConfirmed = ApplicationTags.MiscellaneousTags.NOT_CONFIRMED;
+
+        assertEquals(Integer.valueOf(WISH_LISTS / 2), dbManager.getWishListDataQuery(USER, confirmed, COUNT_ROWS));
+        assertEquals(Integer.valueOf(WISH_LISTS / 2 * WISH_LIST_ITEMS),
+                dbManager.getWishListsWithItemsQuery(USER, notConfirmed, COUNT_ROWS));
+        assertEquals(Integer.valueOf(WISH_LIST_ITEMS), dbManager.getWishListsItems(wishListId, COUNT_ROWS));
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void search_usesTheFullTextIndexes() {
+        SearchResults results = dbManager.search(USER, "Ogg", 20);
+
+        assertEquals(20, results.getItems().size());
+        assertEquals(WISH_LISTS, dbManager.search(USER, "lista", 20).getWishLists().size());
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void writes_useIndexes() {
+        assertEquals(1, dbManager.removeIncome(incomeId));
+        assertEquals(2, dbManager.removePurchase(itemId, purchaseId));
+        assertFalse(dbManager.confirmWishListPurchase(wishListId, OTHER_USER, FIRST_DATE)); // not a list of this user
+        assertTrue(dbManager.confirmWishListPurchase(wishListId, USER, FIRST_DATE));
+        dbManager.updateItemsValidity(ApplicationTags.MiscellaneousTags.CONFIRMED, itemId + 1);
+        dbManager.updateAtWishListConfirmation(ApplicationTags.MiscellaneousTags.CONFIRMED, wishListId);
+        dbManager.updatePurchasesDate(FIRST_DATE, purchaseId + 1);
+        dbManager.updateWishListItemInfo(Money.ofCents(500), 2, itemId + 1);
+
+        assertNoTableScan();
+    }
+
+    @Test
+    public void categories_areTheOnlyTableReadWhole() {
+        assertEquals(Integer.valueOf(10), dbManager.queryGetAllRows(DbStrings.TableCategoriesFields.TABLE_NAME, COUNT_ROWS));
+        assertNotNull(dbManager.countQuery(DbStrings.TableCategoriesFields.TABLE_NAME, COUNT_ROWS));
+
+        assertNoTableScan(DbStrings.TableCategoriesFields.TABLE_NAME); // a few rows, all shown by the dialogs
+    }
+
+    /**
+     * This method fills the database with two users, with their incomes, simple purchases and wishlists.
+     * The ids used by the tests are the ones of the first user, in the middle of its movements.
+     * */
+    private void insertData() {
+        String[] categories = {"cat01", "cat02", "cat03", "cat04", "cat05", "cat06", "cat07", "cat08", "cat09", "cat10"};
+        for (int i = 0; i < categories.length; i++) {
+            dbManager.insertCategories(categories[i], "Categoria " + i, i);
+        }
+
+        for (String user : new String[]{USER, OTHER_USER}) {
+            assertTrue(dbManager.insertUser(user, "password", "Nome", "Cognome", user + "@mail.it", Money.ofCents(100_000)) > 0);
+
+            for (int i = 0; i < MOVEMENTS; i++) {
+                String category = categories[i % categories.length];
+                long date = FIRST_DATE + i * DAY;
+
+                long income = dbManager.insertIncome(Money.ofCents(1_000 + i), date, category, user);
+                long purchase = dbManager.insertPurchaseWithItem(new Item("Oggetto " + i, 1 + i % 3,
+                        ApplicationTags.MiscellaneousTags.CONFIRMED, Money.ofCents(100 + i), category), date, user);
+                assertTrue(income > 0 && purchase > 0);
+
+                if (user.equals(USER) && i == MOVEMENTS / 2) {
+                    incomeId = (int) income;
+                    purchaseId = (int) purchase;
+                }
+            }
+
+            for (int l = 0; l < WISH_LISTS; l++) {
+                ArrayList<Item> items = new ArrayList<>();
+                for (int i = 0; i < WISH_LIST_ITEMS; i++) {
+                    items.add(new Item("Desiderio " + i, 1, ApplicationTags.MiscellaneousTags.NOT_CONFIRMED,
+                            Money.ofCents(200 + i), categories[i % categories.length]));
+                }
+                long listId = dbManager.insertWishListWithItems("Lista " + l, "Una lista di prova",
+                        ApplicationTags.MiscellaneousTags.NOT_CONFIRMED, items, user, null);
+                assertTrue(listId > 0);
+
+                if (l < WISH_LISTS / 2) {
+                    assertTrue(dbManager.confirmWishListPurchase((int) listId, user, FIRST_DATE + l * DAY));
+                } else if (user.equals(USER)) {
+                    wishListId = (int) listId;
+                }
+            }
+        }
+
+        try (Cursor cursor = db.rawQuery("SELECT itemId FROM purchases WHERE id = ?;", new String[]{Integer.toString(purchaseId)})) {
+            assertTrue(cursor.moveToFirst());
+            itemId = cursor.getInt(0);
+        }
+    }
+
+    /**
+     * This method checks the plans of all the queries run since the beginning of the test.
+     * A query fails the test if it scans a table, or a full-text index without a MATCH,
+     * instead of searching it by key.
+     *
+     * @param allowedTables     the tables that can be read whole
+     * */
+    private void assertNoTableScan(String... allowedTables) {
+        assertFalse("no query has been run", queries.isEmpty());
+        Set<String> tables = readTableNames();
+        Set<String> allowed = new HashSet<>(Arrays.asList(allowedTables));
+
+        for (Map.Entry<String, String[]> query : queries.entrySet()) {
+            List<String> plan = explain(query.getKey(), query.getValue());
+            for (String step : plan) {
+                String table = scannedTable(step);
+                if (table != null && tables.contains(table) && !allowed.contains(table)) {
+                    fail("the query scans the table " + table + ":\n" + query.getKey() + "\nplan: " + plan);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method checks that the queries of the pages run since the beginning of the test read their rows
+     * in the order of an index. A page fails the test if its plan sorts the rows in a temporary b-tree, which means
+     * reading all the matching rows before returning the first one. The other queries sort at most a few rows.
+     *
+     * @param allowedSortKeys   the sort keys that can't be read from an index, the pages ordered by them are not checked
+     * */
+    private void assertNoTemporarySort(String... allowedSortKeys) {
+        assertFalse("no query has been run", queries.isEmpty());
+
+        for (Map.Entry<String, String[]> query : queries.entrySet()) {
+            if (!query.getKey().contains(" AS " + Page.SORT_KEY_COLUMN) || orderedBy(query.getKey(), allowedSortKeys)) {
+                continue;
+            }
+            List<String> plan = explain(query.getKey(), query.getValue());
+            for (String step : plan) {
+                if (step.contains("USE TEMP B-TREE")) {
+                    fail("the query sorts its rows in a temporary b-tree:\n" + query.getKey() + "\nplan: " + plan);
+                }
+            }
+        }
+    }
+
+    private static boolean orderedBy(String query, String[] sortKeys) {
+        for (String sortKey : sortKeys) {
+            if (query.contains(sortKey + " AS " + Page.SORT_KEY_COLUMN)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> explain(String query, String[] args) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * This method returns the table scanned by a step of a plan, like "SCAN items" or "SCAN TABLE items"
+     * in the older versions of SQLite. The steps that scan a subquery return its name, which is not a table.
+     *
+     * @param step      the detail of the step
+     *
+     * @return the name of the table, null if the step is not a scan
+     * */
+    private static String scannedTable(String step) {
+        if (!step.startsWith("SCAN ")) {
+            return null;
+        }
+        // a full-text index scanned with a MATCH reads only the matching rows, the index 0 reads all of them
+        if (step.contains(" VIRTUAL TABLE INDEX ") && !step.contains(" VIRTUAL TABLE INDEX 0:")) {
+            return null;
+        }
+        String[] words = step.split(" ");
+        return words[1].equals("TABLE") && words.length > 2 ? words[2] : words[1];
+    }
+
+    private Set<String> readTableNames() {
+        Set<String> tables = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table';", null)) {
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,143 @@
+package com.labproject.keepmoneyv3.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.labproject.keepmoneyv3.utility.DefaultListViewItems;
+import com.labproject.keepmoneyv3.utility.Money;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local benchmark, which compares the per-row cost of reading a 50k rows cursor
+ * resolving the column indices on every row, as the screens used to do, with the cost of
+ * the mappers of RowMappers, which resolve them once per cursor.
+ * It runs on the JVM with the native SQLite of Robolectric, like DbBenchmark, and the results
+ * are written to the standard output. Like DbBenchmark, it's skipped unless -Pbenchmark.rows is set.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 29)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class RowMapperBenchmark {
+    private static final int ROWS = 50_000;
+    private static final int WARM_UP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    private static final String QUERY = "SELECT items.id, items.name, items.price, items.amount, categories.picId " +
+            "FROM items JOIN categories ON categories.id = items.idCat;";
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void createDatabase() {
+        Assume.assumeTrue("run only with -P" + DbBenchmark.ROWS_PROPERTY, System.getProperty(DbBenchmark.ROWS_PROPERTY) != null);
+        db = SQLiteDatabase.create(null); // in memory
+        db.execSQL("CREATE TABLE categories (id TEXT PRIMARY KEY, picId INTEGER);");
+        db.execSQL("CREATE TABLE items (id INTEGER PRIMARY KEY, name TEXT, price DECIMAL(10,2), amount INTEGER, idCat TEXT);");
+
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= 8; i++) {
+                db.execSQL("INSERT INTO categories VALUES (?, ?);", new Object[]{"cat0" + i, i});
+            }
+
+            SQLiteStatement insert = db.compileStatement("INSERT INTO items (name, price, amount, idCat) VALUES (?, ?, ?, ?);");
+            for (int i = 0; i < ROWS; i++) {
+                insert.clearBindings();
+                insert.bindString(1, "Oggetto " + i);
+                insert.bindLong(2, 100 + i % 10_000);
+                insert.bindLong(3, 1 + i % 5);
+                insert.bindString(4, "cat0" + (1 + i % 8));
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void closeDatabase() {
+        if (db != null) { // not opened when the benchmark is skipped
+            db.close();
+        }
+    }
+
+    @Test
+    public void perRowCostOn50kRows() {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            readWithLookups();
+            readWithMapper();
+        }
+
+        long lookupNanos = Long.MAX_VALUE;
+        long mapperNanos = Long.MAX_VALUE;
+        Money lookupTotal = Money.ZERO;
+        Money mapperTotal = Money.ZERO;
+
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime(); // the clock of SystemClock doesn't move under Robolectric
+            lookupTotal = total(readWithLookups());
+            lookupNanos = Math.min(lookupNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            mapperTotal = total(readWithMapper());
+            mapperNanos = Math.min(mapperNanos, System.nanoTime() - start);
+        }
+
+        System.out.printf(Locale.ROOT, "getColumnIndex per row: %d ns/row%n", lookupNanos / ROWS);
+        System.out.printf(Locale.ROOT, "RowMapper:              %d ns/row%n", mapperNanos / ROWS);
+
+        assertEquals(lookupTotal, mapperTotal); // the timings depend on the machine, only the results are checked
+    }
+
+    /**
+     * This method reads the cursor resolving the column indices on every row.
+     * */
+    private ArrayList<DefaultListViewItems> readWithLookups() {
+        ArrayList<DefaultListViewItems> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(QUERY, null)) {
+            while (cursor.moveToNext()) {
+                int itemId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_ID));
+                String itemName = cursor.getString(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_NAME));
+                Money itemPrice = Money.ofCents(cursor.getLong(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_PRICE)));
+                int amount = cursor.getInt(cursor.getColumnIndex(DbStrings.TableItemsFields.ITEMS_AMOUNT));
+                int picId = cursor.getInt(cursor.getColumnIndex(DbStrings.TableCategoriesFields.CATEGORIES_PIC_ID));
+                rows.add(new DefaultListViewItems(itemId, itemName, picId, itemPrice.times(amount)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * This method reads the cursor with the mapper used by DbRepository.
+     * */
+    private ArrayList<DefaultListViewItems> readWithMapper() {
+        try (Cursor cursor = db.rawQuery(QUERY, null)) {
+            return RowMappers.mapAll(cursor, RowMappers::itemListViewItem);
+        }
+    }
+
+    private static Money total(ArrayList<DefaultListViewItems> rows) {
+        assertEquals(ROWS, rows.size());
+
+        Money total = Money.ZERO;
+        for (DefaultListViewItems row : rows) {
+            total = total.plus(row.getPrice());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,270 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static com.labproject.keepmoneyv3.transfer.StatementValuesTest.date;
+import static org.junit.Assert.*;
+
+/**
+ * Local test of the parsers of the bank statements: the CSV, QIF and OFX files are read from strings,
+ * checking the movements read and that a bad row is reported without stopping the rows after it.
+ */
+public class StatementParserTest {
+
+    /**
+     * Reads all the rows of a statement, the rows that can't be read are added as their line number.
+     */
+    private static List<Object> readAll(String fileName, String content) throws IOException {
+        List<Object> rows = new ArrayList<>();
+        try (StatementParser parser = StatementParser.forFile(fileName, new BufferedReader(new StringReader(content)))) {
+            while (true) {
+                try {
+                    StatementRow row = parser.next();
+                    if (row == null) {
+                        return rows;
+                    }
+                    rows.add(row);
+                } catch (StatementFormatException e) {
+                    rows.add(e.getLine());
+                }
+            }
+        }
+    }
+
+    private static void assertRow(Object actual, long date, long cents, String description, String category, int quantity) {
+        assertTrue("not a row: " + actual, actual instanceof StatementRow);
+        StatementRow row = (StatementRow) actual;
+        assertEquals(date, row.getDate());
+        assertEquals(cents, row.getAmount().getCents());
+        assertEquals(description, row.getDescription());
+        assertEquals(category, row.getCategory());
+        assertEquals(quantity, row.getQuantity());
+    }
+
+    @Test
+    public void forFile_choosesTheParserFromTheExtension() {
+        BufferedReader reader = new BufferedReader(new StringReader(""));
+
+        assertTrue(StatementParser.forFile("estratto.QIF", reader) instanceof QifStatementParser);
+        assertTrue(StatementParser.forFile("estratto.ofx", reader) instanceof OfxStatementParser);
+        assertTrue(StatementParser.forFile("estratto.qfx", reader) instanceof OfxStatementParser);
+        assertTrue(StatementParser.forFile("estratto.csv", reader) instanceof CsvStatementParser);
+        assertTrue(StatementParser.forFile(null, reader) instanceof CsvStatementParser);
+    }
+
+    @Test
+    public void csv_readsTheItalianStatements() throws IOException {
+        List<Object> rows = readAll("estratto.csv",
+                "﻿Data;Importo;Descrizione;Categoria;Quantità\n" +
+                "05/01/2024;1.234,56;Stipendio;salary;\n" +
+                "06/01/2024;-12,50;\"Pranzo; con \"\"amici\"\"\";food;2\n" +
+                "\n" +
+                "07/01/2024;-1.234;Affitto;;\n");
+
+        assertEquals(3, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5), 123_456, "Stipendio", "salary", 1);
+        assertRow(rows.get(1), date(2024, Calendar.JANUARY, 6), -1250, "Pranzo; con \"amici\"", "food", 2);
+        assertRow(rows.get(2), date(2024, Calendar.JANUARY, 7), -123_400, "Affitto", null, 1);
+    }
+
+    @Test
+    public void csv_readsTheEnglishStatements() throws IOException {
+        List<Object> rows = readAll("statement.csv",
+                "Date,Amount,Description\n" +
+                "2024-01-05,\"1,234,567.89\",Salary\n" +
+                "2024-01-06 10:30,-12.5,\"Lunch,\nwith friends\"\n");
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5), 123_456_789, "Salary", null, 1);
+        assertRow(rows.get(1), date(2024, Calendar.JANUARY, 6) + (10 * 60 + 30) * 60_000L, -1250, "Lunch,\nwith friends", null, 1);
+    }
+
+    @Test
+    public void csv_readsTheColumnsOfIncomesAndPurchases() throws IOException {
+        List<Object> rows = readAll("estratto.csv",
+                "Data\tEntrate\tUscite\tCausale\n" +
+                "05/01/2024\t100,00\t\tBonifico\n" +
+                "06/01/2024\t\t-25,10\tSpesa\n");
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5), 10_000, "Bonifico", null, 1);
+        assertRow(rows.get(1), date(2024, Calendar.JANUARY, 6), -2510, "Spesa", null, 1);
+    }
+
+    @Test
+    public void csv_reportsTheBadRowsAndGoesOn() throws IOException {
+        List<Object> rows = readAll("estratto.csv",
+                "Data;Importo;Descrizione;Quantità\n" +
+                "ieri;10,00;Data sbagliata;\n" +
+                "05/01/2024;dieci;Importo sbagliato;\n" +
+                "05/01/2024;0,00;Importo nullo;\n" +
+                "05/01/2024;1.234,567;Troppi decimali;\n" +
+                "05/01/2024;-5,00;Quantità sbagliata;0\n" +
+                "05/01/2024;-5,00;Buona;\n");
+
+        assertEquals(6, rows.size());
+        assertEquals(2, rows.get(0));
+        assertEquals(3, rows.get(1));
+        assertEquals(4, rows.get(2));
+        assertEquals(5, rows.get(3));
+        assertEquals(6, rows.get(4));
+        assertRow(rows.get(5), date(2024, Calendar.JANUARY, 5), -500, "Buona", null, 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void csv_refusesAHeaderWithoutAmount() throws IOException {
+        readAll("estratto.csv", "Data;Descrizione\n05/01/2024;Stipendio\n");
+    }
+
+    @Test
+    public void qif_readsTheMovementsAndTheSplitTotals() throws IOException {
+        List<Object> rows = readAll("estratto.qif",
+                "!Type:Bank\n" +
+                "D05/01/2024\n" +
+                "T1.234,56\n" +
+                "PStipendio\n" +
+                "LSalary\n" +
+                "^\n" +
+                "D1/ 6'24\n" +
+                "T-100.00\n" +
+                "MSpesa divisa\n" +
+                "LFood:Supermercato\n" +
+                "SFood:Supermercato\n" +
+                "$-60.00\n" +
+                "SHome\n" +
+                "$-40.00\n" +
+                "^\n" +
+                "D07/01/2024\n" +
+                "T-50,00\n" +
+                "PGiroconto\n" +
+                "L[Risparmi]\n" +
+                "^\n");
+
+        assertEquals(3, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5), 123_456, "Stipendio", "Salary", 1);
+        assertRow(rows.get(1), date(2024, Calendar.JUNE, 1), -10_000, "Spesa divisa", "Food", 1); // the total of the splits
+        assertRow(rows.get(2), date(2024, Calendar.JANUARY, 7), -5000, "Giroconto", null, 1); // a transfer has no category
+    }
+
+    @Test
+    public void qif_skipsTheListsThatAreNotMovements() throws IOException {
+        List<Object> rows = readAll("estratto.qif",
+                "!Type:Cat\n" +
+                "NFood\n" +
+                "^\n" +
+                "!Type:Invst\n" +
+                "D05/01/2024\n" +
+                "T500.00\n" +
+                "^\n" +
+                "!Type:CCard\n" +
+                "D05/01/2024\n" +
+                "T-20.00\n" +
+                "PCarta\n"); // the last movement has no "^"
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5), -2000, "Carta", null, 1);
+    }
+
+    @Test
+    public void qif_reportsTheBadMovementsAndGoesOn() throws IOException {
+        List<Object> rows = readAll("estratto.qif",
+                "!Type:Bank\n" +
+                "D05/01/2024\n" +
+                "PSenza importo\n" +
+                "^\n" +
+                "D05/01/2024\n" +
+                "T0.00\n" +
+                "^\n" +
+                "D32/13/2024\n" +
+                "T10.00\n" +
+                "^\n" +
+                "D05/01/2024\n" +
+                "T10.0001\n" +
+                "^\n" +
+                "D05/01/2024\n" +
+                "T10.00\n" +
+                "^\n");
+
+        assertEquals(5, rows.size());
+        assertEquals(2, rows.get(0));
+        assertEquals(5, rows.get(1));
+        assertEquals(8, rows.get(2));
+        assertEquals(11, rows.get(3));
+        assertRow(rows.get(4), date(2024, Calendar.JANUARY, 5), 1000, null, null, 1);
+    }
+
+    @Test
+    public void ofx_readsTheSgmlVersion() throws IOException {
+        List<Object> rows = readAll("estratto.ofx",
+                "OFXHEADER:100\n" +
+                "DATA:OFXSGML\n" +
+                "VERSION:102\n" +
+                "\n" +
+                "<OFX>\n" +
+                "<BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n" +
+                "<DTSTART>20240101\n" +
+                "<STMTTRN>\n" +
+                "<TRNTYPE>CREDIT\n" +
+                "<DTPOSTED>20240105120000.000[+1:CET]\n" +
+                "<TRNAMT>1234.56\n" +
+                "<NAME>Stipendio &amp; bonus\n" +
+                "</STMTTRN>\n" +
+                "<STMTTRN>\n" +
+                "<TRNTYPE>DEBIT\n" +
+                "<DTPOSTED>20240106\n" +
+                "<TRNAMT>-12.50\n" +
+                "<MEMO>Pranzo\n" +
+                "</STMTTRN>\n" +
+                "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1>\n" +
+                "</OFX>\n");
+
+        assertEquals(2, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 5) + 12 * 3_600_000L, 123_456, "Stipendio & bonus", null, 1);
+        assertRow(rows.get(1), date(2024, Calendar.JANUARY, 6), -1250, "Pranzo", null, 1);
+    }
+
+    @Test
+    public void ofx_readsTheXmlVersion() throws IOException {
+        List<Object> rows = readAll("estratto.qfx",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<?OFX OFXHEADER=\"200\" VERSION=\"220\"?>\n" +
+                "<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n" +
+                "  <STMTTRN>\n" +
+                "    <TRNTYPE>DEBIT</TRNTYPE>\n" +
+                "    <DTPOSTED>20240106</DTPOSTED>\n" +
+                "    <TRNAMT>-1,234.00</TRNAMT>\n" +
+                "    <NAME></NAME>\n" +
+                "    <MEMO>Affitto</MEMO>\n" +
+                "  </STMTTRN>\n" +
+                "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n");
+
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), date(2024, Calendar.JANUARY, 6), -123_400, "Affitto", null, 1); // the memo replaces an empty name
+    }
+
+    @Test
+    public void ofx_reportsTheBadMovementsAndGoesOn() throws IOException {
+        List<Object> rows = readAll("estratto.ofx",
+                "<OFX>\n" +
+                "<STMTTRN><DTPOSTED>20240105<NAME>Senza importo</STMTTRN>\n" +
+                "<STMTTRN><DTPOSTED>20240105<TRNAMT>0.00</STMTTRN>\n" +
+                "<STMTTRN><DTPOSTED>2024XX05<TRNAMT>1.00</STMTTRN>\n" +
+                "<STMTTRN><DTPOSTED>20240105<TRNAMT>1.0050</STMTTRN>\n" +
+                "<STMTTRN><DTPOSTED>20240105<TRNAMT>-3.00<NAME>Buona</STMTTRN>\n" +
+                "</OFX>\n");
+
+        assertEquals(5, rows.size());
+        assertEquals(2, rows.get(0));
+        assertEquals(3, rows.get(1));
+        assertEquals(4, rows.get(2));
+        assertEquals(5, rows.get(3));
+        assertRow(rows.get(4), date(2024, Calendar.JANUARY, 5), -300, "Buona", null, 1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.labproject.keepmoneyv3.transfer;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test of StatementValues: the amounts written with the separators of the different countries,
+ * the thousands told from the decimals, the amounts that are refused instead of being rounded, and the dates.
+ */
+public class StatementValuesTest {
+
+    private static long cents(String text) {
+        return StatementValues.parseAmount(text).getCents();
+    }
+
+    private static void assertRefused(String text) {
+        try {
+            StatementValues.parseAmount(text);
+            fail("\"" + text + "\" should not be an amount");
+        } catch (NumberFormatException expected) {
+            // the row is reported as not valid
+        }
+    }
+
+    @Test
+    public void parseAmount_readsBothSeparators() {
+        assertEquals(123_456, cents("1.234,56"));
+        assertEquals(123_456, cents("1,234.56"));
+        assertEquals(123_456_789, cents("1.234.567,89"));
+        assertEquals(123_456_789, cents("1,234,567.89"));
+        assertEquals(123_456, cents("1 234,56"));
+    }
+
+    @Test
+    public void parseAmount_readsASingleSeparatorBeforeTheDecimals() {
+        assertEquals(1250, cents("12,50"));
+        assertEquals(1250, cents("12.50"));
+        assertEquals(1250, cents("12,5"));
+        assertEquals(1200, cents("12."));
+        assertEquals(50, cents(",50"));
+        assertEquals(1200, cents("12"));
+    }
+
+    @Test
+    public void parseAmount_readsRepeatedSeparatorsAsThousands() {
+        assertEquals(123_456_700, cents("1,234,567"));
+        assertEquals(123_456_700, cents("1.234.567"));
+    }
+
+    @Test
+    public void parseAmount_readsASeparatorBeforeThreeDigitsAsThousands() {
+        assertEquals(123_400, cents("1.234"));
+        assertEquals(123_400, cents("1,234"));
+        assertEquals(12_345_600, cents("123,456"));
+    }
+
+    @Test
+    public void parseAmount_readsTheSignsAndTheCurrency() {
+        assertEquals(-123_456, cents("-1.234,56"));
+        assertEquals(-1250, cents("12.50-"));
+        assertEquals(-1250, cents("(12,50)"));
+        assertEquals(1250, cents("+12,50"));
+        assertEquals(1250, cents("12,50 €"));
+        assertEquals(-1250, cents("EUR -12,50"));
+        assertEquals(1250, cents("$12.50"));
+    }
+
+    @Test
+    public void parseAmount_readsZero() {
+        assertEquals(0, cents("0"));
+        assertEquals(0, cents("0,00"));
+        assertEquals(0, cents("-0.00"));
+    }
+
+    @Test
+    public void parseAmount_refusesMoreThanTwoDecimals() {
+        assertRefused("12,3456");
+        assertRefused("12.3456");
+        assertRefused("1.234,567");
+        assertRefused("1,234.567");
+        assertRefused("0,0001");
+        assertEquals(1_234_500, cents("12,345")); // 3 digits after a single separator are thousands, not decimals
+    }
+
+    @Test
+    public void parseAmount_refusesWrongGroups() {
+        assertRefused("1.23.456");
+        assertRefused("1,2345,678");
+        assertRefused("1234.567"); // neither thousands nor decimals
+        assertRefused(".123");
+        assertRefused("1.234,56,78");
+        assertRefused("1..234");
+    }
+
+    @Test
+    public void parseAmount_refusesText() {
+        assertRefused("");
+        assertRefused("   ");
+        assertRefused("EUR");
+        assertRefused("12#50");
+        assertRefused("12/50");
+    }
+
+    @Test
+    public void parseDate_triesThePatternsInOrder() {
+        StatementValues values = new StatementValues("dd/MM/yyyy", "MM/dd/yyyy", "yyyy-MM-dd");
+
+        assertEquals(date(2024, Calendar.MAY, 1), values.parseDate("01/05/2024")); // the day comes first
+        assertEquals(date(2024, Calendar.DECEMBER, 25), values.parseDate("12/25/2024"));
+        assertEquals(date(2024, Calendar.JANUARY, 5), values.parseDate(" 2024-01-05 "));
+    }
+
+    @Test
+    public void parseDate_refusesPartialAndWrongDates() {
+        StatementValues values = new StatementValues("dd/MM/yyyy");
+
+        assertEquals(-1, values.parseDate("01/05/2024 10:00"));
+        assertEquals(-1, values.parseDate("31/02/2024"));
+        assertEquals(-1, values.parseDate("ieri"));
+    }
+
+    static long date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,119 @@
+package com.labproject.keepmoneyv3.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local test of Money: the conversion of the strings typed by the user, the exact arithmetic on the cents,
+ * which must fail instead of overflowing, and the format shown by the screens.
+ */
+public class MoneyTest {
+
+    @Test
+    public void parse_readsUnitsAndCents() {
+        assertEquals(1250, Money.parse("12.5").getCents());
+        assertEquals(1250, Money.parse(" 12.50 ").getCents());
+        assertEquals(1200, Money.parse("12").getCents());
+        assertEquals(5, Money.parse("0.05").getCents());
+        assertSame(Money.ZERO, Money.parse("0.00"));
+    }
+
+    @Test
+    public void parse_roundsHalfUpToTheCent() {
+        assertEquals(1235, Money.parse("12.345").getCents());
+        assertEquals(1234, Money.parse("12.3449").getCents());
+        assertEquals(1, Money.parse("0.005").getCents());
+        assertEquals(0, Money.parse("0.004").getCents());
+    }
+
+    @Test
+    public void parse_roundsNegativesAwayFromZero() {
+        assertEquals(-1250, Money.parse("-12.5").getCents());
+        assertEquals(-1235, Money.parse("-12.345").getCents());
+        assertEquals(-1, Money.parse("-0.005").getCents());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsText() {
+        Money.parse("12,5 €");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsEmptyString() {
+        Money.parse("  ");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsValuesThatDontFitInCents() {
+        Money.parse("92233720368547758.08"); // Long.MAX_VALUE + 1 cent
+    }
+
+    @Test
+    public void parse_acceptsTheLargestValue() {
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07").getCents());
+    }
+
+    @Test
+    public void arithmetic_isExact() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < 1000; i++) {
+            total = total.plus(Money.parse("0.10")); // 0.1f summed 1000 times is not 100
+        }
+        assertEquals(Money.ofCents(10_000), total);
+        assertEquals(Money.ofCents(-50), Money.ofCents(150).minus(Money.ofCents(200)));
+        assertEquals(Money.ofCents(3_597), Money.ofCents(1_199).times(3));
+        assertEquals(Money.ofCents(-3_597), Money.ofCents(-1_199).times(3));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void plus_failsOnOverflow() {
+        Money.ofCents(Long.MAX_VALUE).plus(Money.ofCents(1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void minus_failsOnOverflow() {
+        Money.ofCents(Long.MIN_VALUE).minus(Money.ofCents(1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void times_failsOnOverflow() {
+        Money.ofCents(Long.MAX_VALUE / 2 + 1).times(2);
+    }
+
+    @Test
+    public void compareAndEquals_useTheCents() {
+        assertTrue(Money.ofCents(100).compareTo(Money.ofCents(99)) > 0);
+        assertTrue(Money.ofCents(-1).compareTo(Money.ZERO) < 0);
+        assertEquals(Money.parse("1"), Money.ofCents(100));
+        assertEquals(Money.parse("1").hashCode(), Money.ofCents(100).hashCode());
+        assertNotEquals(Money.ofCents(100), Money.ofCents(-100));
+        assertTrue(Money.ofCents(1).isPositive());
+        assertFalse(Money.ZERO.isPositive());
+        assertFalse(Money.ofCents(-1).isPositive());
+    }
+
+    @Test
+    public void toString_hasTwoDecimalDigits() {
+        assertEquals("0.00", Money.ZERO.toString());
+        assertEquals("0.05", Money.ofCents(5).toString());
+        assertEquals("12.50", Money.ofCents(1250).toString());
+        assertEquals("1234567.89", Money.ofCents(123_456_789).toString());
+        assertEquals("-0.05", Money.ofCents(-5).toString());
+        assertEquals("-12.50", Money.ofCents(-1250).toString());
+    }
+
+    @Test
+    public void toString_handlesTheExtremes() {
+        assertEquals("92233720368547758.07", Money.ofCents(Long.MAX_VALUE).toString());
+        assertEquals("-92233720368547758.08", Money.ofCents(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    public void toString_canBeParsedBack() {
+        long[] values = {0, 1, -1, 99, -99, 100, 123_456_789, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long cents : values) {
+            assertEquals(cents, Money.parse(Money.ofCents(cents).toString()).getCents());
+        }
+    }
+}